@@ -0,0 +1,412 @@
+/*
+ * Copyright 2009-2016 Aarhus University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dk.brics.tajs;
+
+import dk.brics.tajs.analysis.Analysis;
+import dk.brics.tajs.monitoring.AnalysisMemoryLimiter;
+import dk.brics.tajs.monitoring.AnalysisTimeLimiter;
+import dk.brics.tajs.monitoring.CompositeMonitoring;
+import dk.brics.tajs.monitoring.IAnalysisMonitoring;
+import dk.brics.tajs.monitoring.Monitoring;
+import dk.brics.tajs.options.OptionValues;
+import dk.brics.tajs.options.Options;
+import dk.brics.tajs.util.AnalysisLimitationException;
+import org.apache.log4j.Logger;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static dk.brics.tajs.util.Collections.newList;
+import static dk.brics.tajs.util.Collections.newSet;
+import static dk.brics.tajs.util.Strings.toJSONString;
+
+/**
+ * Batch mode, analyzes the jobs of a manifest file (see {@link OptionValues#getBatchManifest()}).
+ * <p>
+ * Each line of the manifest is a job: the input files and options of one analysis, separated by white space.
+ * Empty lines and lines starting with '#' are ignored, and jobs are numbered by their line numbers.
+ * The options given on the command line, except the batch options, apply to all jobs.
+ * <p>
+ * The jobs are run one at a time, since the analysis keeps its state in static fields
+ * (the options and the value, object and scope chain caches), unless they are distributed to worker JVMs (see {@link BatchCoordinator}).
+ * The state is reset with {@link Main#reset()} before and after each job, so the jobs do not affect each other,
+ * and a job that fails, even by running out of memory, does not stop the batch.
+ * <p>
+ * The messages of each job are written to <code>job-N.jsonl</code> in the output directory (see <code>-message-stream</code>),
+ * a line is appended to <code>index.jsonl</code> whenever a job ends, and <code>summary.json</code> is written at the end.
+ */
+public final class Batch {
+
+    private static final Logger log = Logger.getLogger(Batch.class);
+
+    /**
+     * Options that only apply to the batch, not to the jobs. Each takes a value.
+     */
+    private static final Set<String> BATCH_OPTIONS = newSet(Arrays.asList("-batch", "-batch-output", "-batch-time-limit", "-batch-memory-limit",
+            "-batch-workers", "-batch-heap", "-batch-retry-heap", "-batch-job-deadline"));
+
+    /**
+     * Flags that only apply to the batch, not to the jobs.
+     */
+    private static final Set<String> BATCH_FLAGS = newSet(Arrays.asList("-batch-worker"));
+
+    /**
+     * Outcome of a job.
+     */
+    public enum Status {
+
+        /**
+         * The analysis completed (or its result was found in the result cache).
+         */
+        OK,
+
+        /**
+         * The options of the job are invalid.
+         */
+        INVALID,
+
+        /**
+         * The job exceeded the time limit.
+         */
+        TIME_LIMIT,
+
+        /**
+         * The job exceeded the memory limit, or the heap.
+         */
+        MEMORY_LIMIT,
+
+        /**
+         * The analysis gave up, see {@link AnalysisLimitationException}.
+         */
+        ANALYSIS_LIMITATION,
+
+        /**
+         * The analysis crashed.
+         */
+        ERROR
+    }
+
+    /**
+     * Job of a manifest.
+     */
+    public static final class Job {
+
+        private final int id;
+
+        private final List<String> arguments;
+
+        /**
+         * Constructs a new job.
+         */
+        public Job(int id, List<String> arguments) {
+            this.id = id;
+            this.arguments = arguments;
+        }
+
+        /**
+         * Returns the job number.
+         */
+        public int getId() {
+            return id;
+        }
+
+        /**
+         * Returns the input files and options of the job.
+         */
+        public List<String> getArguments() {
+            return Collections.unmodifiableList(arguments);
+        }
+
+        @Override
+        public String toString() {
+            return String.join(" ", arguments);
+        }
+    }
+
+    /**
+     * Result of a job.
+     */
+    public static final class Result {
+
+        private final Job job;
+
+        private final Status status;
+
+        private final long time;
+
+        private final int messages;
+
+        private final String detail;
+
+        /**
+         * Constructs a new result.
+         *
+         * @param time     elapsed time in milliseconds
+         * @param messages number of messages, -1 if the analysis did not complete
+         * @param detail   description of the failure, null if none
+         */
+        public Result(Job job, Status status, long time, int messages, String detail) {
+            this.job = job;
+            this.status = status;
+            this.time = time;
+            this.messages = messages;
+            this.detail = detail;
+        }
+
+        /**
+         * Returns the job.
+         */
+        public Job getJob() {
+            return job;
+        }
+
+        /**
+         * Returns the outcome.
+         */
+        public Status getStatus() {
+            return status;
+        }
+
+        /**
+         * Returns the elapsed time in milliseconds.
+         */
+        public long getTime() {
+            return time;
+        }
+
+        /**
+         * Returns the line of this result in the results index.
+         */
+        public String toJSON() {
+            StringBuilder b = new StringBuilder("{\"job\":").append(job.getId());
+            b.append(",\"arguments\":").append(toJSONString(job.toString()));
+            b.append(",\"status\":").append(toJSONString(status.toString()));
+            b.append(",\"time\":").append(time);
+            if (messages >= 0)
+                b.append(",\"messages\":").append(messages);
+            if (detail != null)
+                b.append(",\"detail\":").append(toJSONString(detail));
+            return b.append('}').toString();
+        }
+    }
+
+    private Batch() {
+    }
+
+    /**
+     * Checks whether the given command line selects batch mode.
+     */
+    public static boolean isBatch(String[] args) {
+        return Arrays.asList(args).contains("-batch");
+    }
+
+    /**
+     * Returns the given command line without the batch options.
+     */
+    static List<String> getCommonArguments(String[] args) {
+        List<String> common = newList();
+        for (int i = 0; i < args.length; i++) {
+            if (BATCH_OPTIONS.contains(args[i]))
+                i++; // skip the value
+            else if (!BATCH_FLAGS.contains(args[i]))
+                common.add(args[i]);
+        }
+        return common;
+    }
+
+    /**
+     * Reads the jobs of the given manifest file.
+     */
+    public static List<Job> readManifest(Path manifest) throws IOException {
+        List<Job> jobs = newList();
+        List<String> lines = Files.readAllLines(manifest, StandardCharsets.UTF_8);
+        for (int i = 0; i < lines.size(); i++) {
+            String line = lines.get(i).trim();
+            if (line.isEmpty() || line.startsWith("#"))
+                continue;
+            jobs.add(new Job(i + 1, newList(Arrays.asList(line.split("\\s+")))));
+        }
+        return jobs;
+    }
+
+    /**
+     * Runs the batch given by the command line.
+     *
+     * @return exit code: 0 if all jobs succeeded, 1 if some job failed, -1 if the batch could not be run
+     */
+    public static int run(String[] args) {
+        OptionValues options;
+        try {
+            Options.parse(args);
+            options = Options.get();
+        } catch (Exception e) {
+            System.err.println(e.getMessage());
+            return -1;
+        }
+        Path output = Paths.get(options.getBatchOutputDirectory() != null ? options.getBatchOutputDirectory() : "out/batch");
+        List<String> common = getCommonArguments(args);
+        List<Job> jobs;
+        try {
+            jobs = readManifest(Paths.get(options.getBatchManifest()));
+            Files.createDirectories(output);
+        } catch (IOException e) {
+            log.error("Unable to start batch: " + e);
+            return -1;
+        }
+        log.info("Running " + jobs.size() + " jobs from " + options.getBatchManifest());
+        Map<Status, Integer> counts = new EnumMap<>(Status.class);
+        long start = System.nanoTime();
+        try (Writer index = Files.newBufferedWriter(output.resolve("index.jsonl"), StandardCharsets.UTF_8)) {
+            if (options.getBatchWorkers() > 0) {
+                counts = BatchCoordinator.run(jobs, common, output, options, index);
+            } else {
+                for (Job job : jobs) {
+                    Result r = runJob(job, common, output, options.getBatchTimeLimit(), options.getBatchMemoryLimit());
+                    index.write(r.toJSON());
+                    index.write('\n');
+                    index.flush();
+                    counts.merge(r.getStatus(), 1, Integer::sum);
+                }
+            }
+        } catch (IOException e) {
+            log.error("Unable to write batch results: " + e);
+            return -1;
+        }
+        long elapsed = (System.nanoTime() - start) / 1000000;
+        int failed = jobs.size() - counts.getOrDefault(Status.OK, 0);
+        double throughput = elapsed > 0 ? jobs.size() * 60000.0 / elapsed : 0;
+        writeSummary(output, jobs.size(), failed, counts, elapsed, throughput);
+        log.info(String.format("Batch finished in %ds: %d jobs, %d failed %s, %.1f jobs/minute", elapsed / 1000, jobs.size(), failed, counts, throughput));
+        return failed == 0 ? 0 : 1;
+    }
+
+    private static void writeSummary(Path output, int jobs, int failed, Map<Status, Integer> counts, long elapsed, double throughput) {
+        StringBuilder b = new StringBuilder("{\"jobs\":").append(jobs);
+        b.append(",\"failed\":").append(failed);
+        for (Map.Entry<Status, Integer> me : counts.entrySet())
+            b.append(',').append(toJSONString(me.getKey().toString())).append(':').append(me.getValue());
+        b.append(",\"time\":").append(elapsed);
+        b.append(",\"jobsPerMinute\":").append(String.format("%.1f", throughput));
+        b.append("}\n");
+        try {
+            Files.write(output.resolve("summary.json"), b.toString().getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            log.error("Unable to write batch summary: " + e);
+        }
+    }
+
+    /**
+     * Checks the options and input files of a job, and resets the options.
+     *
+     * @return description of the first problem, null if none
+     */
+    private static String checkArguments(String[] args) {
+        try {
+            Options.parse(args);
+            Options.get().checkConsistency();
+            for (String f : Options.get().getArguments())
+                if (!Files.isReadable(Paths.get(f)))
+                    return "Unable to read " + f;
+            return null;
+        } catch (Exception e) {
+            return e.getMessage();
+        } finally {
+            Main.reset();
+        }
+    }
+
+    /**
+     * Runs a job in isolation.
+     *
+     * @param common       options that apply to all jobs
+     * @param output       directory for the messages of the job
+     * @param time_limit   time limit in seconds, -1 if none
+     * @param memory_limit memory limit in megabytes, -1 if none
+     */
+    public static Result runJob(Job job, List<String> common, Path output, int time_limit, int memory_limit) {
+        List<String> args = newList(common);
+        args.add("-message-stream");
+        args.add(output.resolve("job-" + job.getId() + ".jsonl").toString());
+        args.addAll(job.getArguments());
+        String[] argsArray = args.toArray(new String[0]);
+        long start = System.nanoTime();
+        Status status;
+        String detail = null;
+        int messages = -1;
+        try {
+            Main.reset();
+            String invalid = checkArguments(argsArray);
+            if (invalid != null) {
+                status = Status.INVALID;
+                detail = invalid;
+            } else if (Main.replayCachedResult(argsArray)) {
+                status = Status.OK;
+                detail = "cached";
+            } else {
+                Monitoring monitoring = new Monitoring();
+                List<IAnalysisMonitoring> monitors = newList();
+                monitors.add(monitoring);
+                if (time_limit > 0)
+                    monitors.add(new AnalysisTimeLimiter(time_limit, true));
+                if (memory_limit > 0)
+                    monitors.add(new AnalysisMemoryLimiter(memory_limit));
+                Analysis a = Main.init(argsArray, CompositeMonitoring.buildFromList(monitors), null);
+                if (a == null) {
+                    status = Status.INVALID;
+                    detail = "Unable to load the input files";
+                } else {
+                    Main.run(a);
+                    status = Status.OK;
+                    messages = monitoring.getSortedMessages().size();
+                }
+            }
+        } catch (AnalysisLimitationException.AnalysisTimeException e) {
+            status = Status.TIME_LIMIT;
+            detail = e.getMessage();
+        } catch (AnalysisLimitationException.AnalysisMemoryException e) {
+            status = Status.MEMORY_LIMIT;
+            detail = e.getMessage();
+        } catch (OutOfMemoryError e) {
+            status = Status.MEMORY_LIMIT;
+            detail = e.toString();
+        } catch (AnalysisLimitationException e) {
+            status = Status.ANALYSIS_LIMITATION;
+            detail = e.getMessage();
+        } catch (ThreadDeath e) {
+            throw e;
+        } catch (RuntimeException | Error e) { // includes StackOverflowError, and AssertionError from the assertions of the analysis
+            status = Status.ERROR;
+            detail = e.toString();
+            log.error("Job " + job.getId() + " failed", e);
+        } finally {
+            Main.reset();
+        }
+        Result r = new Result(job, status, (System.nanoTime() - start) / 1000000, messages, detail);
+        log.info("Job " + job.getId() + ": " + status + " in " + r.getTime() + "ms");
+        return r;
+    }
+}
@@ -0,0 +1,434 @@
+/*
+ * Copyright 2009-2016 Aarhus University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dk.brics.tajs;
+
+import dk.brics.tajs.Batch.Job;
+import dk.brics.tajs.Batch.Result;
+import dk.brics.tajs.Batch.Status;
+import dk.brics.tajs.options.OptionValues;
+import dk.brics.tajs.options.Options;
+import org.apache.log4j.Logger;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import static dk.brics.tajs.util.Collections.newList;
+
+/**
+ * Runs the jobs of a batch in worker JVMs (see {@link OptionValues#getBatchWorkers()}).
+ * <p>
+ * Each of the N worker slots runs one worker JVM at a time, started with the same class path as the coordinator
+ * and <code>-batch-worker</code>. Jobs are sent to the worker on its standard input, one line per job with the job number
+ * and arguments separated by tabs, and the worker answers on its standard output with the job number, the status and
+ * the results index line, also separated by tabs. The log output of the workers goes to <code>worker-K.log</code> in the output directory.
+ * <p>
+ * A job that runs out of memory, hits an analysis limitation, or takes its worker down, is retried once
+ * in a worker with the retry heap size (see {@link OptionValues#getBatchRetryHeap()}).
+ * A worker exits after a job that ran out of memory, and is restarted for the next job,
+ * so a job never runs in a JVM that has thrown {@link OutOfMemoryError}.
+ * <p>
+ * A worker whose job has not finished before the job deadline (see {@link OptionValues#getBatchJobDeadline()}) is killed,
+ * and the job is recorded with {@link Status#TIME_LIMIT} without a retry.
+ * Unexpected answers and failures in the coordinator are recorded with {@link Status#ERROR}, so the batch always completes.
+ */
+final class BatchCoordinator {
+
+    private static final Logger log = Logger.getLogger(BatchCoordinator.class);
+
+    private static final long megaFactor = 1024 * 1024;
+
+    /**
+     * Job deadline in seconds when neither a deadline nor a time limit is given.
+     */
+    private static final int DEFAULT_DEADLINE = 3600;
+
+    /**
+     * Extra seconds of the default job deadline, for loading the input and for the scan phase, which are not time limited.
+     */
+    private static final int DEADLINE_GRACE = 60;
+
+    /**
+     * Job to be sent to a worker.
+     */
+    private static final class Task {
+
+        private final Job job;
+
+        private final boolean retry;
+
+        private Task(Job job, boolean retry) {
+            this.job = job;
+            this.retry = retry;
+        }
+    }
+
+    /**
+     * Worker JVM.
+     */
+    private static final class Worker {
+
+        private final Process process;
+
+        private final int heap;
+
+        private final Writer in;
+
+        private final BufferedReader out;
+
+        /**
+         * Set if the worker has been killed by the watchdog.
+         */
+        private volatile boolean killed;
+
+        private Worker(Process process, int heap) {
+            this.process = process;
+            this.heap = heap;
+            in = new BufferedWriter(new OutputStreamWriter(process.getOutputStream(), StandardCharsets.UTF_8));
+            out = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8));
+        }
+
+        /**
+         * Sends a job to the worker and waits for the answer.
+         * The worker is killed if the answer has not arrived after the given number of seconds.
+         *
+         * @return the answer, null if the worker exited or was killed
+         */
+        private String send(Job job, ScheduledExecutorService watchdog, int deadline) {
+            ScheduledFuture<?> timer = watchdog.schedule(() -> {
+                killed = true;
+                process.destroyForcibly();
+            }, deadline, TimeUnit.SECONDS);
+            try {
+                in.write(job.getId() + "\t" + String.join("\t", job.getArguments()) + "\n");
+                in.flush();
+                return out.readLine();
+            } catch (IOException e) {
+                return null;
+            } finally {
+                timer.cancel(false);
+            }
+        }
+
+        /**
+         * Stops the worker, after letting it finish its current job.
+         */
+        private void stop() {
+            try {
+                in.close();
+            } catch (IOException e) {
+                // already exited
+            }
+            try {
+                if (!process.waitFor(10, TimeUnit.SECONDS))
+                    process.destroyForcibly();
+            } catch (InterruptedException e) {
+                process.destroyForcibly();
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private final List<String> command;
+
+    private final Path output;
+
+    private final int heap;
+
+    private final int retry_heap;
+
+    private final int deadline;
+
+    private final ScheduledExecutorService watchdog;
+
+    private final Writer index;
+
+    /**
+     * First failure to write the results index, null if none.
+     */
+    private IOException index_failure;
+
+    private final Map<Status, Integer> counts = new EnumMap<>(Status.class);
+
+    private final Deque<Task> queue = new ArrayDeque<>();
+
+    private int pending;
+
+    private BatchCoordinator(List<String> command, Path output, int heap, int retry_heap, int deadline, ScheduledExecutorService watchdog, Writer index) {
+        this.command = command;
+        this.output = output;
+        this.heap = heap;
+        this.retry_heap = retry_heap;
+        this.deadline = deadline;
+        this.watchdog = watchdog;
+        this.index = index;
+    }
+
+    /**
+     * Checks whether the given command line selects worker mode.
+     */
+    static boolean isWorker(String[] args) {
+        return Arrays.asList(args).contains("-batch-worker");
+    }
+
+    /**
+     * Runs the given jobs in worker JVMs and writes their results index lines.
+     *
+     * @param common options that apply to all jobs
+     * @return number of jobs for each status
+     */
+    static Map<Status, Integer> run(List<Job> jobs, List<String> common, Path output, OptionValues options, Writer index) throws IOException {
+        int heap = Math.max(options.getBatchHeap(), 0);
+        int retry_heap = options.getBatchRetryHeap() > 0 ? options.getBatchRetryHeap()
+                : 2 * (heap > 0 ? heap : (int) (Runtime.getRuntime().maxMemory() / megaFactor));
+        int deadline = options.getBatchJobDeadline() > 0 ? options.getBatchJobDeadline()
+                : options.getBatchTimeLimit() > 0 ? 2 * options.getBatchTimeLimit() + DEADLINE_GRACE : DEFAULT_DEADLINE;
+        List<String> command = newList();
+        command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(Main.class.getName());
+        command.add("-batch-worker");
+        command.add("-batch-output");
+        command.add(output.toString());
+        if (options.getBatchTimeLimit() > 0) {
+            command.add("-batch-time-limit");
+            command.add(Integer.toString(options.getBatchTimeLimit()));
+        }
+        if (options.getBatchMemoryLimit() > 0) {
+            command.add("-batch-memory-limit");
+            command.add(Integer.toString(options.getBatchMemoryLimit()));
+        }
+        command.addAll(common);
+        ScheduledExecutorService watchdog = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "batch-watchdog");
+            t.setDaemon(true);
+            return t;
+        });
+        BatchCoordinator c = new BatchCoordinator(command, output, heap, retry_heap, deadline, watchdog, index);
+        for (Job job : jobs)
+            c.queue.add(new Task(job, false));
+        c.pending = jobs.size();
+        int workers = options.getBatchWorkers();
+        log.info("Starting " + workers + " workers" + (heap > 0 ? " with " + heap + "MB heap" : "") + ", retrying with " + retry_heap + "MB heap, job deadline " + deadline + "s");
+        ExecutorService slots = Executors.newFixedThreadPool(workers);
+        for (int i = 0; i < workers; i++) {
+            int slot = i;
+            slots.execute(() -> c.runSlot(slot));
+        }
+        slots.shutdown();
+        try {
+            while (!slots.awaitTermination(1, TimeUnit.MINUTES))
+                log.info("Jobs left: " + c.getPending());
+        } catch (InterruptedException e) {
+            slots.shutdownNow();
+            Thread.currentThread().interrupt();
+        } finally {
+            watchdog.shutdownNow();
+        }
+        if (c.index_failure != null)
+            throw c.index_failure;
+        return c.counts;
+    }
+
+    private synchronized int getPending() {
+        return pending;
+    }
+
+    /**
+     * Returns the next task, waiting while other slots may still add retries.
+     *
+     * @return the task, null if all jobs have finished
+     */
+    private synchronized Task next() throws InterruptedException {
+        while (queue.isEmpty() && pending > 0)
+            wait();
+        return queue.pollFirst();
+    }
+
+    /**
+     * Records the outcome of a task, or schedules a retry.
+     * The number of pending jobs is decreased even if the results index cannot be written.
+     */
+    private synchronized void finish(Task t, Status status, String json, boolean crashed) {
+        boolean retry = !t.retry && (status == Status.MEMORY_LIMIT || status == Status.ANALYSIS_LIMITATION || crashed);
+        try {
+            if (retry) {
+                log.info("Retrying job " + t.job.getId() + " (" + status + ") with " + retry_heap + "MB heap");
+                queue.addFirst(new Task(t.job, true)); // before the remaining jobs, so retry workers are not restarted needlessly
+            } else {
+                counts.merge(status, 1, Integer::sum);
+                index.write(json.substring(0, json.length() - 1) + ",\"retried\":" + t.retry + "}\n");
+                index.flush();
+            }
+        } catch (IOException e) {
+            log.error("Unable to write batch results: " + e);
+            if (index_failure == null)
+                index_failure = e;
+        } finally {
+            if (!retry)
+                pending--;
+            notifyAll();
+        }
+    }
+
+    private Worker start(int slot, int worker_heap) throws IOException {
+        List<String> cmd = newList(command);
+        if (worker_heap > 0)
+            cmd.add(1, "-Xmx" + worker_heap + "m");
+        Process process = new ProcessBuilder(cmd)
+                .redirectError(ProcessBuilder.Redirect.appendTo(output.resolve("worker-" + slot + ".log").toFile()))
+                .start();
+        return new Worker(process, worker_heap);
+    }
+
+    /**
+     * Feeds tasks to the worker of the given slot until all jobs have finished.
+     */
+    private void runSlot(int slot) {
+        Worker worker = null;
+        try {
+            Task t;
+            while ((t = next()) != null) {
+                long start = System.nanoTime();
+                try {
+                    worker = runTask(slot, t, worker, start);
+                } catch (RuntimeException e) {
+                    log.error("Job " + t.job.getId() + " failed in the coordinator", e);
+                    if (worker != null) {
+                        worker.stop();
+                        worker = null;
+                    }
+                    Result r = new Result(t.job, Status.ERROR, (System.nanoTime() - start) / 1000000, -1, e.toString());
+                    finish(t, r.getStatus(), r.toJSON(), false);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            if (worker != null)
+                worker.stop();
+        }
+    }
+
+    /**
+     * Runs a task in the given worker, or in a new worker if the given one cannot be used, and records its outcome.
+     *
+     * @return the worker to use for the next task, null if none
+     */
+    private Worker runTask(int slot, Task t, Worker worker, long start) {
+        int worker_heap = t.retry ? retry_heap : heap;
+        if (worker != null && (worker.heap != worker_heap || !worker.process.isAlive())) {
+            worker.stop();
+            worker = null;
+        }
+        String answer = null;
+        String failure;
+        try {
+            if (worker == null)
+                worker = start(slot, worker_heap);
+            answer = worker.send(t.job, watchdog, deadline);
+            failure = worker.killed ? "Worker killed after the job deadline of " + deadline + "s" : "Worker exited";
+        } catch (IOException e) {
+            failure = "Unable to start worker: " + e.getMessage();
+        }
+        if (answer != null) {
+            String[] parts = answer.split("\t", 3);
+            if (parts.length == 3 && parts[0].equals(Integer.toString(t.job.getId())) && isStatus(parts[1])
+                    && parts[2].startsWith("{") && parts[2].endsWith("}")) {
+                Status status = Status.valueOf(parts[1]);
+                finish(t, status, parts[2], false);
+                if (status == Status.MEMORY_LIMIT) { // the worker exits after such a job (see runWorker)
+                    worker.stop();
+                    return null;
+                }
+                return worker;
+            }
+            failure = "Unexpected answer from worker: " + answer;
+        }
+        log.error("Job " + t.job.getId() + ": " + failure);
+        boolean killed = worker != null && worker.killed;
+        if (worker != null)
+            worker.stop();
+        Result r = new Result(t.job, killed ? Status.TIME_LIMIT : Status.ERROR, (System.nanoTime() - start) / 1000000, -1, failure);
+        finish(t, r.getStatus(), r.toJSON(), !killed);
+        return null;
+    }
+
+    private static boolean isStatus(String s) {
+        for (Status status : Status.values())
+            if (status.name().equals(s))
+                return true;
+        return false;
+    }
+
+    /**
+     * Runs jobs from standard input until it is closed, or until a job runs out of memory.
+     * The answers are written to standard output, and the log output to standard error.
+     *
+     * @return exit code
+     */
+    static int runWorker(String[] args) {
+        PrintStream answers = System.out;
+        System.setOut(System.err);
+        Main.initLogging();
+        OptionValues options;
+        try {
+            Options.parse(args);
+            options = Options.get();
+        } catch (Exception e) {
+            System.err.println(e.getMessage());
+            return -1;
+        }
+        Path output = Paths.get(options.getBatchOutputDirectory() != null ? options.getBatchOutputDirectory() : "out/batch");
+        List<String> common = Batch.getCommonArguments(args);
+        try (BufferedReader in = new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                List<String> parts = Arrays.asList(line.split("\t"));
+                Job job = new Job(Integer.parseInt(parts.get(0)), newList(parts.subList(1, parts.size())));
+                Result r = Batch.runJob(job, common, output, options.getBatchTimeLimit(), options.getBatchMemoryLimit());
+                answers.println(job.getId() + "\t" + r.getStatus() + "\t" + r.toJSON());
+                answers.flush();
+                if (r.getStatus() == Status.MEMORY_LIMIT)
+                    return 0; // the coordinator starts a fresh JVM for the next job
+            }
+        } catch (IOException e) {
+            log.error("Unable to read jobs: " + e);
+            return -1;
+        }
+        return 0;
+    }
+}
@@ -18,7 +18,10 @@ package dk.brics.tajs;
 
 import dk.brics.tajs.analysis.Analysis;
 import dk.brics.tajs.analysis.AsyncEvents;
+import dk.brics.tajs.analysis.MemoryBudgetContextSensitivityStrategy;
+import dk.brics.tajs.analysis.nativeobjects.concrete.NashornConcreteSemantics;
 import dk.brics.tajs.flowgraph.FlowGraph;
+import dk.brics.tajs.flowgraph.Function;
 import dk.brics.tajs.flowgraph.HostEnvSources;
 import dk.brics.tajs.flowgraph.JavaScriptSource;
 import dk.brics.tajs.flowgraph.JavaScriptSource.Kind;
@@ -28,10 +31,14 @@ import dk.brics.tajs.lattice.Obj;
 import dk.brics.tajs.lattice.ScopeChain;
 import dk.brics.tajs.lattice.State;
 import dk.brics.tajs.lattice.Value;
+import dk.brics.tajs.monitoring.AnalysisEvents;
 import dk.brics.tajs.monitoring.AnalysisPhase;
+import dk.brics.tajs.monitoring.GraphExporter;
 import dk.brics.tajs.monitoring.IAnalysisMonitoring;
 import dk.brics.tajs.monitoring.Monitoring;
+import dk.brics.tajs.monitoring.ResultCache;
 import dk.brics.tajs.options.ExperimentalOptions;
+import dk.brics.tajs.options.OptionValues;
 import dk.brics.tajs.options.Options;
 import dk.brics.tajs.solver.SolverSynchronizer;
 import dk.brics.tajs.util.AnalysisException;
@@ -41,11 +48,8 @@ import net.htmlparser.jericho.Source;
 import org.apache.log4j.Logger;
 import org.apache.log4j.PropertyConfigurator;
 
-import java.io.FileWriter;
 import java.io.IOException;
-import java.io.PrintWriter;
 import java.nio.charset.Charset;
-import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.List;
@@ -60,6 +64,11 @@ public class Main {
 
     private static Logger log = Logger.getLogger(Main.class);
 
+    /**
+     * Flight recorder event for the current phase.
+     */
+    private static AnalysisEvents.Phase phase_event;
+
     private Main() {
     }
 
@@ -71,6 +80,12 @@ public class Main {
     public static void main(String[] args) {
         try {
             initLogging();
+            if (BatchCoordinator.isWorker(args))
+                System.exit(BatchCoordinator.runWorker(args));
+            if (Batch.isBatch(args))
+                System.exit(Batch.run(args));
+            if (replayCachedResult(args))
+                System.exit(0);
             Analysis a = init(args, null);
             if (a == null)
                 System.exit(-1);
@@ -82,6 +97,26 @@ public class Main {
         }
     }
 
+    /**
+     * Emits the output of an earlier run with the same input files and options, if available (see {@link ResultCache}).
+     * The options are left unchanged.
+     *
+     * @return true if the cached output was used
+     */
+    static boolean replayCachedResult(String[] args) {
+        OptionValues options = Options.get();
+        try {
+            Options.parse(args);
+            Options.get().checkConsistency();
+            ResultCache cache = ResultCache.make();
+            return cache != null && cache.replay();
+        } catch (Exception e) {
+            return false; // reported by init
+        } finally {
+            Options.set(options);
+        }
+    }
+
     /**
      * Resets all internal counters and caches.
      */
@@ -93,6 +128,8 @@ public class Main {
         Obj.reset();
         Strings.reset();
         ScopeChain.reset();
+        NashornConcreteSemantics.reset();
+        MemoryBudgetContextSensitivityStrategy.reset();
     }
 
     /**
@@ -144,26 +181,38 @@ public class Main {
                     js_files.add(fn);
             }
             FlowGraphBuilder builder = new FlowGraphBuilder(null, String.join(",", files));
-            builder.transformHostFunctionSources(HostEnvSources.get());
+            List<JavaScriptSource> hostEnvSources = HostEnvSources.get();
+            List<JavaScriptSource> sources = newList();
             if (!js_files.isEmpty()) {
                 if (htmlFileName != null)
                     throw new AnalysisException("Cannot analyze an HTML file and JavaScript files at the same time.");
-                // build flowgraph for JS files
                 for (String js_file : js_files) {
                     if (!Options.get().isQuietEnabled())
                         log.info("Loading " + js_file);
                     Path file = Paths.get(js_file).toAbsolutePath();
-                    builder.transformStandAloneCode(JavaScriptSource.makeFileCode(file.toUri().toURL(), js_file, Loader.getString(file, Charset.forName("UTF-8"))));
+                    sources.add(JavaScriptSource.makeFileCode(file.toUri().toURL(), js_file, Loader.getString(file, Charset.forName("UTF-8"))));
                 }
             } else {
-                // build flowgraph for JavaScript code in or referenced from HTML file
                 Options.get().enableIncludeDom(); // always enable DOM if any HTML files are involved
                 if (!Options.get().isQuietEnabled())
                     log.info("Loading " + htmlFileName);
                 Path htmlFile = Paths.get(htmlFileName).toAbsolutePath();
                 HTMLParser p = new HTMLParser(htmlFile.toUri().toURL(), htmlFileName);
                 document = p.getHTML();
-                for (JavaScriptSource js : p.getJavaScript()) {
+                sources.addAll(p.getJavaScript());
+            }
+            List<JavaScriptSource> allSources = newList(hostEnvSources);
+            allSources.addAll(sources);
+            builder.parseAhead(allSources);
+            builder.transformHostFunctionSources(hostEnvSources);
+            if (htmlFileName == null) {
+                // build flowgraph for JS files
+                for (JavaScriptSource js : sources) {
+                    builder.transformStandAloneCode(js);
+                }
+            } else {
+                // build flowgraph for JavaScript code in or referenced from HTML file
+                for (JavaScriptSource js : sources) {
                     if (!Options.get().isQuietEnabled() && js.getKind() == Kind.FILE)
                         log.info("Loading " + js.getPrettyFileName());
                     builder.transformWebAppCode(js);
@@ -188,7 +237,10 @@ public class Main {
         return analysis;
     }
 
-    private static boolean isHTMLFileName(String fileName) {
+    /**
+     * Checks whether the given file name is analyzed as an HTML file, which enables the DOM model.
+     */
+    public static boolean isHTMLFileName(String fileName) {
         String f = fileName.toLowerCase();
         return f.endsWith(".html") || f.endsWith(".xhtml") || f.endsWith(".htm");
     }
@@ -229,35 +281,37 @@ public class Main {
         enterPhase(AnalysisPhase.SCAN, monitoring);
         analysis.getSolver().scan();
         leavePhase(AnalysisPhase.SCAN, monitoring);
+
+        MemoryBudgetContextSensitivityStrategy.reset();
     }
 
     /**
-     * Outputs the flowgraph (in graphviz dot files).
+     * Outputs the flowgraph (see {@link GraphExporter}), and dot files for each function.
      */
     private static void dumpFlowGraph(FlowGraph g, boolean end) {
+        Path outdir = Paths.get("out").resolve("flowgraphs");
+        GraphExporter.writeFlowGraph(g, outdir, end ? "final" : "initial");
         try {
-            // create directories
-            Path outdir = Paths.get("out").resolve("flowgraphs");
-            Files.createDirectories(outdir);
-            // dump the flowgraph to file
-            String fileName = end ? "final" : "initial" + ".dot";
-            try (PrintWriter pw = new PrintWriter(new FileWriter(outdir.resolve(fileName).toFile()))) {
-                g.toDot(pw);
-            } catch (IOException e) {
-                throw new AnalysisException(e);
-            }
             // dump each function to file
             g.toDot(outdir, end);
-            // also print flowgraph
-            log.info(g.toString());
         } catch (IOException e) {
             throw new AnalysisException(e);
         }
+        // also print flowgraph, one function at a time
+        for (Function f : g.getFunctions()) {
+            if (!HostEnvSources.isHostEnvSource(f.getSourceLocation())) {
+                String s = g.toString(f);
+                log.info(s.substring(0, s.length() - 1));
+            }
+        }
+        log.info("");
     }
 
     private static void enterPhase(AnalysisPhase phase, IAnalysisMonitoring monitoring) {
         String phaseName = prettyPhaseName(phase);
         showPhaseStart(phaseName);
+        phase_event = new AnalysisEvents.Phase(phase);
+        phase_event.begin();
         monitoring.beginPhase(phase);
     }
 
@@ -269,6 +323,10 @@ public class Main {
 
     private static void leavePhase(AnalysisPhase phase, IAnalysisMonitoring monitoring) {
         monitoring.endPhase(phase);
+        if (phase_event != null) {
+            phase_event.commit();
+            phase_event = null;
+        }
     }
 
     private static String prettyPhaseName(AnalysisPhase phase) {
@@ -21,6 +21,8 @@ import dk.brics.tajs.lattice.AnalysisLatticeElement;
 import dk.brics.tajs.lattice.CallEdge;
 import dk.brics.tajs.lattice.Context;
 import dk.brics.tajs.lattice.State;
+import dk.brics.tajs.monitoring.AnalysisProgress;
+import dk.brics.tajs.monitoring.CompositeMonitoring;
 import dk.brics.tajs.monitoring.IAnalysisMonitoring;
 import dk.brics.tajs.options.Options;
 import dk.brics.tajs.solver.IAnalysis;
@@ -53,15 +55,22 @@ public final class Analysis implements IAnalysis<State, Context, CallEdge, IAnal
 
     /**
      * Constructs a new analysis object.
+     * If {@link dk.brics.tajs.options.OptionValues#isJMXEnabled()} is set, an {@link AnalysisProgress} MBean is
+     * registered and added to the given monitoring.
      */
     public Analysis(IAnalysisMonitoring monitoring, SolverSynchronizer sync) {
-        this.monitoring = monitoring;
         initial_state_builder = new InitialStateBuilder();
         transfer = new Transfer();
         worklist_strategy = new WorkListStrategy();
         eval_cache = new EvalCache();
         solver = new Solver(this, sync);
         state_util = new PropVarOperations();
+        if (Options.get().isJMXEnabled()) {
+            AnalysisProgress progress = new AnalysisProgress(solver);
+            progress.register();
+            monitoring = CompositeMonitoring.buildFromList(monitoring, progress);
+        }
+        this.monitoring = monitoring;
     }
 
     @Override
@@ -76,6 +85,9 @@ public final class Analysis implements IAnalysis<State, Context, CallEdge, IAnal
         } else {
             context_sensitivity_strategy = new BasicContextSensitivityStrategy();
         }
+        if (Options.get().getMemoryBudget() > 0) {
+            context_sensitivity_strategy = new MemoryBudgetContextSensitivityStrategy(context_sensitivity_strategy, Options.get().getMemoryBudget(), monitoring);
+        }
     }
 
     @Override
@@ -54,6 +54,25 @@ public class BasicContextSensitivityStrategy implements IContextSensitivityStrat
      */
     private final Map<Function, Set<String>> contextSensitiveParameters = newMap();
 
+    /**
+     * Bound on the number of contexts per function and loop, null if unbounded.
+     */
+    private final ContextBudget budget;
+
+    /**
+     * Constructs a new strategy with the context budget from the options.
+     */
+    public BasicContextSensitivityStrategy() {
+        this(ContextBudget.make());
+    }
+
+    /**
+     * Constructs a new strategy with the given context budget (null if unbounded).
+     */
+    public BasicContextSensitivityStrategy(ContextBudget budget) {
+        this.budget = budget;
+    }
+
     @Override
     public HeapContext makeFunctionHeapContext(Function fun, Solver.SolverInterface c) {
         return makeHeapContext(c.getState().getContext().getFunArgs());
@@ -118,6 +137,9 @@ public class BasicContextSensitivityStrategy implements IContextSensitivityStrat
                 funArgs = new ContextArguments(f.getParameterNames(), contextSensitiveArguments, null);
             }
         }
+        if (funArgs != null && budget != null && !budget.admit(f, funArgs)) {
+            funArgs = null;
+        }
         return funArgs;
     }
 
@@ -203,6 +225,10 @@ public class BasicContextSensitivityStrategy implements IContextSensitivityStrat
 
         Context c = new Context(currentContext.getThisVal(), currentContext.getFunArgs(), currentContext.getSpecialRegisters(),
                 loopUnrolling, currentContext.getLoopUnrollingsAtEntry());
+        if (budget != null && !budget.admit(node, c)) {
+            // stop unrolling, like when the maximum number of unrollings is reached
+            return currentContext;
+        }
 
         if (log.isDebugEnabled())
             log.debug("creating loop unrolling context " + c);
@@ -0,0 +1,135 @@
+/*
+ * Copyright 2009-2016 Aarhus University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dk.brics.tajs.analysis;
+
+import dk.brics.tajs.flowgraph.Function;
+import dk.brics.tajs.flowgraph.jsnodes.BeginLoopNode;
+import dk.brics.tajs.lattice.Context;
+import dk.brics.tajs.lattice.ContextArguments;
+import dk.brics.tajs.monitoring.AnalysisEvents;
+import dk.brics.tajs.options.Options;
+import org.apache.log4j.Logger;
+
+import java.util.Map;
+import java.util.Set;
+
+import static dk.brics.tajs.util.Collections.newMap;
+import static dk.brics.tajs.util.Collections.newSet;
+
+/**
+ * Bound on the number of contexts per function and per loop.
+ * <p>
+ * A context strategy asks the budget before it creates a context with new argument values for a function,
+ * or a new unrolling of a loop. When the budget of the function or loop is exhausted, the strategy
+ * widens the context instead (no argument values, or no further unrolling), so all remaining calls or iterations
+ * share a merged context. Each merge is recorded as a {@link AnalysisEvents.ContextMerge} event and counted,
+ * and the first merge for each function or loop is logged.
+ */
+public class ContextBudget {
+
+    private static Logger log = Logger.getLogger(ContextBudget.class);
+
+    private final int budget;
+
+    private final Map<Function, Set<ContextArguments>> function_contexts = newMap();
+
+    private final Map<BeginLoopNode, Set<Context>> loop_contexts = newMap();
+
+    private final Set<Object> reported = newSet();
+
+    private int merged_function_contexts;
+
+    private int merged_loop_contexts;
+
+    /**
+     * Constructs a new budget with the given maximum number of contexts per function and per loop.
+     */
+    public ContextBudget(int budget) {
+        this.budget = budget;
+    }
+
+    /**
+     * Constructs a budget according to {@link dk.brics.tajs.options.OptionValues#getContextBudget()}, or returns null if there is no budget.
+     */
+    public static ContextBudget make() {
+        int budget = Options.get().getContextBudget();
+        return budget > 0 ? new ContextBudget(budget) : null;
+    }
+
+    /**
+     * Checks whether a context with the given argument values may be used for the given function.
+     * The same arguments are always admitted again once they have been admitted.
+     */
+    public boolean admit(Function f, ContextArguments args) {
+        Set<ContextArguments> contexts = function_contexts.computeIfAbsent(f, k -> newSet());
+        if (contexts.contains(args))
+            return true;
+        if (contexts.size() < budget) {
+            contexts.add(args);
+            return true;
+        }
+        merged_function_contexts++;
+        merged(f, f + " at " + f.getSourceLocation(), "function", f.getSourceLocation());
+        return false;
+    }
+
+    /**
+     * Checks whether the given unrolling context may be used for the given loop.
+     * The same context is always admitted again once it has been admitted.
+     */
+    public boolean admit(BeginLoopNode n, Context c) {
+        Set<Context> contexts = loop_contexts.computeIfAbsent(n, k -> newSet());
+        if (contexts.contains(c))
+            return true;
+        if (contexts.size() < budget) {
+            contexts.add(c);
+            return true;
+        }
+        merged_loop_contexts++;
+        merged(n, "loop at " + n.getSourceLocation(), "loop", n.getSourceLocation());
+        return false;
+    }
+
+    /**
+     * Records a merge for the given function or loop.
+     */
+    private void merged(Object key, String description, String kind, Object location) {
+        if (reported.add(key))
+            log.info("Context budget of " + budget + " exhausted for " + description + ", merging further contexts");
+        AnalysisEvents.ContextMerge e = new AnalysisEvents.ContextMerge();
+        if (e.shouldCommit()) {
+            e.kind = kind;
+            e.location = String.valueOf(location);
+            e.budget = budget;
+            e.commit();
+        }
+    }
+
+    /**
+     * Returns the number of function contexts that have been merged.
+     */
+    public int getNumberOfMergedFunctionContexts() {
+        return merged_function_contexts;
+    }
+
+    /**
+     * Returns the number of loop unrolling contexts that have been merged.
+     */
+    public int getNumberOfMergedLoopContexts() {
+        return merged_loop_contexts;
+    }
+}
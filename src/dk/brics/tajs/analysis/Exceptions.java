@@ -104,7 +104,7 @@ public class Exceptions {
         if (v.isMaybePresent() || Options.get().isPropagateDeadFlow()) {
             BasicBlock handlerblock = source.getBlock().getExceptionHandler();
             state.writeRegister(AbstractNode.EXCEPTION_REG, v);
-            c.propagateToBasicBlock(state, handlerblock, state.getContext());
+            c.propagateToExceptionHandler(state, handlerblock, state.getContext());
         }
     }
 }
@@ -0,0 +1,305 @@
+/*
+ * Copyright 2009-2016 Aarhus University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dk.brics.tajs.analysis;
+
+import dk.brics.tajs.flowgraph.AbstractNode;
+import dk.brics.tajs.flowgraph.Function;
+import dk.brics.tajs.flowgraph.jsnodes.BeginForInNode;
+import dk.brics.tajs.flowgraph.jsnodes.BeginLoopNode;
+import dk.brics.tajs.flowgraph.jsnodes.EndLoopNode;
+import dk.brics.tajs.lattice.Context;
+import dk.brics.tajs.lattice.HeapContext;
+import dk.brics.tajs.lattice.ObjectLabel;
+import dk.brics.tajs.lattice.State;
+import dk.brics.tajs.lattice.Value;
+import dk.brics.tajs.monitoring.IAnalysisMonitoring;
+import org.apache.log4j.Logger;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+
+import static dk.brics.tajs.util.Collections.newList;
+
+/**
+ * Context sensitivity strategy that progressively degrades another strategy when the heap runs full.
+ * <p>
+ * The collection usage thresholds of the tenured heap pools are set at 80%, 90% and 100% of the memory budget.
+ * Each time a threshold is exceeded after a garbage collection, the next step of {@link Degradation} is applied
+ * to all contexts constructed from then on. Contexts that already exist are not changed, so the analysis
+ * result remains sound, only less precise. The monitoring is notified of the first degradation, so that
+ * the less precise result is not mistaken for the result of a complete run.
+ * <p>
+ * The thresholds are polled by the solver thread, so no notification listeners are involved.
+ * <p>
+ * The thresholds are JVM-wide, and the exceeded state of a pool reflects its most recent collection,
+ * which may have happened before this analysis started. A pool is therefore only checked once it has been
+ * collected during this analysis, and the original thresholds are restored by {@link #reset()}.
+ */
+public class MemoryBudgetContextSensitivityStrategy implements IContextSensitivityStrategy {
+
+    private static Logger log = Logger.getLogger(MemoryBudgetContextSensitivityStrategy.class);
+
+    /**
+     * Degradation steps, from most to least precise.
+     */
+    public enum Degradation {
+
+        /**
+         * Contexts are constructed by the underlying strategy.
+         */
+        NONE("full context sensitivity"),
+
+        /**
+         * Function entry contexts do not include argument values.
+         */
+        NO_PARAMETER_SENSITIVITY("no parameter sensitivity"),
+
+        /**
+         * Additionally, loops are no longer unrolled.
+         */
+        NO_LOOP_UNROLLING("no loop unrolling"),
+
+        /**
+         * Additionally, activation, arguments and constructed objects of new call edges share a single heap context.
+         */
+        MERGED_CALL_HEAP_CONTEXTS("merged heap contexts for calls");
+
+        private final String description;
+
+        Degradation(String description) {
+            this.description = description;
+        }
+
+        @Override
+        public String toString() {
+            return description;
+        }
+    }
+
+    /**
+     * Fractions of the memory budget where the degradation steps are applied.
+     */
+    private static final double[] STEPS = {0.8, 0.9, 1.0};
+
+    /**
+     * Number of context constructions between two checks of the memory pools.
+     */
+    private static final int CHECK_INTERVAL_MASK = 0x3f;
+
+    private final IContextSensitivityStrategy strategy;
+
+    private final int budget;
+
+    private final IAnalysisMonitoring monitoring;
+
+    private final List<MemoryPoolMXBean> pools = newList();
+
+    /**
+     * Collection usage thresholds of the pools before this strategy was constructed.
+     */
+    private final long[] original_thresholds;
+
+    /**
+     * Garbage collectors of each pool.
+     */
+    private final List<List<GarbageCollectorMXBean>> collectors = newList();
+
+    /**
+     * Number of collections of each pool when this strategy was constructed.
+     */
+    private final long[] baseline_collections;
+
+    /**
+     * The strategy whose thresholds are currently set, if any.
+     */
+    private static MemoryBudgetContextSensitivityStrategy active;
+
+    private Degradation degradation = Degradation.NONE;
+
+    private int checks;
+
+    /**
+     * Constructs a new strategy that degrades the given strategy when the tenured heap exceeds
+     * the given percentage of its maximum size.
+     */
+    public MemoryBudgetContextSensitivityStrategy(IContextSensitivityStrategy strategy, int budget, IAnalysisMonitoring monitoring) {
+        this.strategy = strategy;
+        this.budget = budget;
+        this.monitoring = monitoring;
+        reset();
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            // the pools supporting usage thresholds are the ones that are not emptied by every collection
+            if (pool.getType() == MemoryType.HEAP && pool.isUsageThresholdSupported() && pool.isCollectionUsageThresholdSupported() && pool.getUsage().getMax() > 0)
+                pools.add(pool);
+        }
+        if (pools.isEmpty())
+            log.warn("No heap memory pool supports collection usage thresholds, ignoring memory budget");
+        original_thresholds = new long[pools.size()];
+        baseline_collections = new long[pools.size()];
+        for (int i = 0; i < pools.size(); i++) {
+            MemoryPoolMXBean pool = pools.get(i);
+            original_thresholds[i] = pool.getCollectionUsageThreshold();
+            List<GarbageCollectorMXBean> gcs = newList();
+            for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans())
+                if (Arrays.asList(gc.getMemoryPoolNames()).contains(pool.getName()))
+                    gcs.add(gc);
+            collectors.add(gcs);
+            baseline_collections[i] = getCollectionCount(gcs);
+        }
+        active = this;
+        setThresholds();
+    }
+
+    /**
+     * Restores the original collection usage thresholds, if a strategy has set them.
+     * Called when the analysis ends, and before a new strategy is constructed.
+     */
+    public static void reset() {
+        if (active == null)
+            return;
+        for (int i = 0; i < active.pools.size(); i++)
+            active.pools.get(i).setCollectionUsageThreshold(active.original_thresholds[i]);
+        active = null;
+    }
+
+    /**
+     * Returns the total number of collections by the given collectors.
+     */
+    private static long getCollectionCount(List<GarbageCollectorMXBean> gcs) {
+        long count = 0;
+        for (GarbageCollectorMXBean gc : gcs)
+            count += Math.max(gc.getCollectionCount(), 0);
+        return count;
+    }
+
+    /**
+     * Returns the current degradation step.
+     */
+    public Degradation getDegradation() {
+        return degradation;
+    }
+
+    /**
+     * Sets the collection usage thresholds of the pools for the next degradation step.
+     */
+    private void setThresholds() {
+        int next = degradation.ordinal();
+        if (next >= STEPS.length || active != this)
+            return;
+        for (MemoryPoolMXBean pool : pools)
+            pool.setCollectionUsageThreshold((long) (pool.getUsage().getMax() * (budget / 100.0) * STEPS[next]));
+    }
+
+    /**
+     * Checks whether a collection usage threshold has been exceeded, and if so, applies the next degradation step(s).
+     */
+    private void checkMemory() {
+        if ((++checks & CHECK_INTERVAL_MASK) != 0 || degradation.ordinal() >= STEPS.length || active != this)
+            return;
+        for (int i = 0; i < pools.size(); i++) {
+            MemoryPoolMXBean pool = pools.get(i);
+            if (getCollectionCount(collectors.get(i)) == baseline_collections[i]) // the last collection happened before this analysis
+                continue;
+            if (!pool.isCollectionUsageThresholdExceeded())
+                continue;
+            MemoryUsage usage = pool.getCollectionUsage();
+            double percent = usage.getUsed() * 100.0 / usage.getMax();
+            Degradation old = degradation;
+            while (degradation.ordinal() < STEPS.length && percent >= budget * STEPS[degradation.ordinal()])
+                degradation = Degradation.values()[degradation.ordinal() + 1];
+            if (degradation != old) {
+                log.warn(String.format("Heap usage after GC at %.0f%% of '%s' (budget %d%%), degrading context sensitivity to %s",
+                        percent, pool.getName(), budget, degradation));
+                monitoring.visitIncompleteResult("context sensitivity was degraded to " + degradation);
+                setThresholds();
+            }
+        }
+    }
+
+    private boolean isDegraded(Degradation d) {
+        return degradation.compareTo(d) >= 0;
+    }
+
+    @Override
+    public HeapContext makeFunctionHeapContext(Function fun, Solver.SolverInterface c) {
+        return strategy.makeFunctionHeapContext(fun, c);
+    }
+
+    @Override
+    public HeapContext makeActivationAndArgumentsHeapContext(State state, ObjectLabel function, Set<ObjectLabel> this_objs, FunctionCalls.CallInfo callInfo, Solver.SolverInterface c) {
+        checkMemory();
+        if (isDegraded(Degradation.MERGED_CALL_HEAP_CONTEXTS))
+            return null;
+        return strategy.makeActivationAndArgumentsHeapContext(state, function, this_objs, callInfo, c);
+    }
+
+    @Override
+    public HeapContext makeConstructorHeapContext(State state, ObjectLabel function, FunctionCalls.CallInfo callInfo, Solver.SolverInterface c) {
+        checkMemory();
+        if (isDegraded(Degradation.MERGED_CALL_HEAP_CONTEXTS))
+            return null;
+        return strategy.makeConstructorHeapContext(state, function, callInfo, c);
+    }
+
+    @Override
+    public HeapContext makeObjectLiteralHeapContext(AbstractNode node, State state) {
+        return strategy.makeObjectLiteralHeapContext(node, state);
+    }
+
+    @Override
+    public Context makeInitialContext() {
+        return strategy.makeInitialContext();
+    }
+
+    @Override
+    public Context makeFunctionEntryContext(State state, ObjectLabel function, FunctionCalls.CallInfo callInfo, Set<ObjectLabel> this_objs, Solver.SolverInterface c) {
+        checkMemory();
+        Context context = strategy.makeFunctionEntryContext(state, function, callInfo, this_objs, c);
+        if (isDegraded(Degradation.NO_PARAMETER_SENSITIVITY) && context.getFunArgs() != null)
+            context = new Context(context.getThisVal(), null, context.getSpecialRegisters(), context.getLoopUnrolling(), context.getLoopUnrollingsAtEntry());
+        return context;
+    }
+
+    @Override
+    public Context makeForInEntryContext(Context currentContext, BeginForInNode n, Value v) {
+        return strategy.makeForInEntryContext(currentContext, n, v);
+    }
+
+    @Override
+    public Context makeNextLoopUnrollingContext(Context currentContext, BeginLoopNode node) {
+        checkMemory();
+        if (isDegraded(Degradation.NO_LOOP_UNROLLING))
+            return currentContext;
+        return strategy.makeNextLoopUnrollingContext(currentContext, node);
+    }
+
+    @Override
+    public Context makeLoopExitContext(Context currentContext, EndLoopNode node) {
+        return strategy.makeLoopExitContext(currentContext, node);
+    }
+
+    @Override
+    public void requestContextSensitiveParameter(Function function, String parameter) {
+        strategy.requestContextSensitiveParameter(function, parameter);
+    }
+}
@@ -54,7 +54,9 @@ public class StaticDeterminacyContextSensitivityStrategy implements IContextSens
 
     private final Map<HeapContext, Map<String, Value>> closureVariableValuesAtAllocation = newMap();
 
-    private final BasicContextSensitivityStrategy basic = new BasicContextSensitivityStrategy();
+    private final ContextBudget budget = ContextBudget.make();
+
+    private final BasicContextSensitivityStrategy basic = new BasicContextSensitivityStrategy(budget);
 
     public StaticDeterminacyContextSensitivityStrategy(SyntacticHints syntacticHints) {
         this.syntacticHints = syntacticHints;
@@ -259,7 +261,12 @@ public class StaticDeterminacyContextSensitivityStrategy implements IContextSens
             }
         }
 
-        return new ContextArguments(obj_f.getFunction().getParameterNames(), selectedArguments, closureVariables);
+        ContextArguments funArgs = new ContextArguments(obj_f.getFunction().getParameterNames(), selectedArguments, closureVariables);
+        if (budget != null && !budget.admit(obj_f.getFunction(), funArgs)) {
+            // widen to a context that is shared by all further calls
+            return null;
+        }
+        return funArgs;
     }
 
     private boolean isRecursiveHeapContext(ObjectLabel l) {
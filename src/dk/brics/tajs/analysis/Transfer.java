@@ -70,7 +70,7 @@ public class Transfer implements
 
     @Override
     public void visit(Node n) {
-        n.visitBy(js_node_transfer);
+        js_node_transfer.transfer(n);
         if (!(n instanceof CallNode) && !(n instanceof IfNode) && n.isRegistersDone()) // call and if nodes are treated elsewhere
             js_node_transfer.getSolverInterface().getState().clearOrdinaryRegisters();
     }
@@ -37,6 +37,7 @@ import dk.brics.tajs.lattice.ObjectLabel;
 import dk.brics.tajs.lattice.ObjectLabel.Kind;
 import dk.brics.tajs.lattice.State;
 import dk.brics.tajs.lattice.Value;
+import dk.brics.tajs.monitoring.GraphExporter;
 import dk.brics.tajs.options.Options;
 import dk.brics.tajs.solver.NodeAndContext;
 import dk.brics.tajs.unevalizer.Unevalizer;
@@ -46,8 +47,7 @@ import dk.brics.tajs.util.AnalysisLimitationException;
 import dk.brics.tajs.util.Strings;
 import org.apache.log4j.Logger;
 
-import java.io.File;
-import java.io.PrintWriter;
+import java.nio.file.Paths;
 import java.util.Set;
 
 import static dk.brics.tajs.analysis.dom.DOMFunctions.createDOMFunction;
@@ -447,13 +447,8 @@ public class DOMWindow {
                                 allCallbacks = allCallbacks.join(Value.makeObject(callbackUnevaled));
                                 evalCache.setCode(cc, e);
                                 if (Options.get().isFlowGraphEnabled()) {
-                                    try (PrintWriter pw = new PrintWriter(new File("out" + File.separator + "flowgraphs" + File.separator + "uneval-" +
-                                            callNode.getIndex() + "-" + Integer.toHexString(s.getContext().hashCode()) + ".dot"))) {
-                                        currFg.toDot(pw);
-                                        pw.flush();
-                                    } catch (Exception ee) {
-                                        throw new AnalysisException(ee);
-                                    }
+                                    GraphExporter.writeFlowGraph(currFg, Paths.get("out").resolve("flowgraphs"), "uneval-" +
+                                            callNode.getIndex() + "-" + Integer.toHexString(s.getContext().hashCode()));
                                 }
                             }else{
                                 if (Options.get().isUnsoundEnabled() && call.getSourceNode() instanceof EventDispatcherNode) {
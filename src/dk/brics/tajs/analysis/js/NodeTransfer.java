@@ -51,6 +51,7 @@ import dk.brics.tajs.flowgraph.jsnodes.HasNextPropertyNode;
 import dk.brics.tajs.flowgraph.jsnodes.IfNode;
 import dk.brics.tajs.flowgraph.jsnodes.NewObjectNode;
 import dk.brics.tajs.flowgraph.jsnodes.NextPropertyNode;
+import dk.brics.tajs.flowgraph.jsnodes.Node;
 import dk.brics.tajs.flowgraph.jsnodes.NodeVisitor;
 import dk.brics.tajs.flowgraph.jsnodes.NopNode;
 import dk.brics.tajs.flowgraph.jsnodes.ReadPropertyNode;
@@ -71,6 +72,7 @@ import dk.brics.tajs.lattice.Str;
 import dk.brics.tajs.lattice.UnknownValueResolver;
 import dk.brics.tajs.lattice.Value;
 import dk.brics.tajs.monitoring.IAnalysisMonitoring;
+import dk.brics.tajs.monitoring.MonitoringCallback;
 import dk.brics.tajs.options.Options;
 import dk.brics.tajs.solver.BlockAndContext;
 import dk.brics.tajs.solver.CallGraph;
@@ -123,6 +125,105 @@ public class NodeTransfer implements NodeVisitor {
         return c;
     }
 
+    /**
+     * Transfers the given node.
+     * Dispatches on the opcode of the node rather than through {@link Node#visitBy(NodeVisitor)},
+     * so that the transfer does not depend on a virtual call with a receiver for each kind of node.
+     */
+    public void transfer(Node n) {
+        switch (n.getOpcode()) {
+            case ASSUME:
+                visit((AssumeNode) n);
+                break;
+            case BINARY_OPERATOR:
+                visit((BinaryOperatorNode) n);
+                break;
+            case CALL:
+                visit((CallNode) n);
+                break;
+            case CATCH:
+                visit((CatchNode) n);
+                break;
+            case CONSTANT:
+                visit((ConstantNode) n);
+                break;
+            case DELETE_PROPERTY:
+                visit((DeletePropertyNode) n);
+                break;
+            case BEGIN_WITH:
+                visit((BeginWithNode) n);
+                break;
+            case EXCEPTIONAL_RETURN:
+                visit((ExceptionalReturnNode) n);
+                break;
+            case DECLARE_FUNCTION:
+                visit((DeclareFunctionNode) n);
+                break;
+            case BEGIN_FOR_IN:
+                visit((BeginForInNode) n);
+                break;
+            case IF:
+                visit((IfNode) n);
+                break;
+            case END_WITH:
+                visit((EndWithNode) n);
+                break;
+            case NEW_OBJECT:
+                visit((NewObjectNode) n);
+                break;
+            case NEXT_PROPERTY:
+                visit((NextPropertyNode) n);
+                break;
+            case HAS_NEXT_PROPERTY:
+                visit((HasNextPropertyNode) n);
+                break;
+            case NOP:
+                visit((NopNode) n);
+                break;
+            case READ_PROPERTY:
+                visit((ReadPropertyNode) n);
+                break;
+            case READ_VARIABLE:
+                visit((ReadVariableNode) n);
+                break;
+            case RETURN:
+                visit((ReturnNode) n);
+                break;
+            case THROW:
+                visit((ThrowNode) n);
+                break;
+            case TYPEOF:
+                visit((TypeofNode) n);
+                break;
+            case UNARY_OPERATOR:
+                visit((UnaryOperatorNode) n);
+                break;
+            case DECLARE_VARIABLE:
+                visit((DeclareVariableNode) n);
+                break;
+            case WRITE_PROPERTY:
+                visit((WritePropertyNode) n);
+                break;
+            case WRITE_VARIABLE:
+                visit((WriteVariableNode) n);
+                break;
+            case EVENT_DISPATCHER:
+                visit((EventDispatcherNode) n);
+                break;
+            case END_FOR_IN:
+                visit((EndForInNode) n);
+                break;
+            case BEGIN_LOOP:
+                visit((BeginLoopNode) n);
+                break;
+            case END_LOOP:
+                visit((EndLoopNode) n);
+                break;
+            default:
+                throw new AnalysisException("Unexpected node kind: " + n.getOpcode());
+        }
+    }
+
     /**
      * Transfer ordinary and exceptional return for the given call node and callee entry.
      */
@@ -348,7 +449,8 @@ public class NodeTransfer implements NodeVisitor {
             v = pv.readVariable(varname, base_objs);
             m.visitPropertyRead(n, base_objs, Value.makeTemporaryStr(varname), c.getState(), true);
             m.visitVariableAsRead(n, v, c.getState());
-            m.visitVariableOrProperty(varname, n.getSourceLocation(), v, c.getState().getContext(), c.getState());
+            if (c.isMonitored(MonitoringCallback.VARIABLE_OR_PROPERTY))
+                m.visitVariableOrProperty(varname, n.getSourceLocation(), v, c.getState().getContext(), c.getState());
             m.visitReadNonThisVariable(n, v);
             if (v.isMaybeAbsent())
                 Exceptions.throwReferenceError(c);
@@ -358,7 +460,8 @@ public class NodeTransfer implements NodeVisitor {
             }
             if (result_base_reg != AbstractNode.NO_VALUE)
                 c.getState().writeRegister(result_base_reg, Value.makeObject(base_objs)); // see 10.1.4
-            m.visitRead(n, v, c.getState());
+            if (c.isMonitored(MonitoringCallback.READ))
+                m.visitRead(n, v, c.getState());
             m.visitReadVariable(n, v, c.getState()); // TODO: combine some of these m.visitXYZ methods?
         }
         if (v.isNotPresent() && !Options.get().isPropagateDeadFlow()) {
@@ -382,7 +485,8 @@ public class NodeTransfer implements NodeVisitor {
             pv.writeProperty(arguments_obj, Integer.toString(f.getParameterNames().indexOf(n.getVariableName())), v);
         }
         m.visitPropertyWrite(n, objs, Value.makeTemporaryStr(n.getVariableName()));
-        m.visitVariableOrProperty(n.getVariableName(), n.getSourceLocation(), v, c.getState().getContext(), c.getState());
+        if (c.isMonitored(MonitoringCallback.VARIABLE_OR_PROPERTY))
+            m.visitVariableOrProperty(n.getVariableName(), n.getSourceLocation(), v, c.getState().getContext(), c.getState());
     }
 
     /**
@@ -453,8 +557,10 @@ public class NodeTransfer implements NodeVisitor {
         if (!n.isPropertyFixed()) {
             v = JSGlobal.removeTAJSSpecificFunctions(v);
         }
-        m.visitVariableOrProperty(n.getPropertyString(), n.getSourceLocation(), v, c.getState().getContext(), c.getState());
-        m.visitRead(n, v, c.getState());
+        if (c.isMonitored(MonitoringCallback.VARIABLE_OR_PROPERTY))
+            m.visitVariableOrProperty(n.getPropertyString(), n.getSourceLocation(), v, c.getState().getContext(), c.getState());
+        if (c.isMonitored(MonitoringCallback.READ))
+            m.visitRead(n, v, c.getState());
         if (v.isNotPresent() && !Options.get().isPropagateDeadFlow()) {
             c.getState().setToNone();
             return;
@@ -529,7 +635,8 @@ public class NodeTransfer implements NodeVisitor {
                 && propertystr.getStr().equals("innerHTML")) {
             m.visitInnerHTMLWrite(n, v);
         }
-        m.visitVariableOrProperty(n.getPropertyString(), n.getSourceLocation(), v, c.getState().getContext(), c.getState());
+        if (c.isMonitored(MonitoringCallback.VARIABLE_OR_PROPERTY))
+            m.visitVariableOrProperty(n.getPropertyString(), n.getSourceLocation(), v, c.getState().getContext(), c.getState());
     }
 
     /**
@@ -540,7 +647,8 @@ public class NodeTransfer implements NodeVisitor {
         Value v;
         if (n.isVariable()) {
             v = pv.deleteVariable(n.getVariableName());
-            m.visitVariableOrProperty(n.getVariableName(), n.getSourceLocation(), v, c.getState().getContext(), c.getState());
+            if (c.isMonitored(MonitoringCallback.VARIABLE_OR_PROPERTY))
+                m.visitVariableOrProperty(n.getVariableName(), n.getSourceLocation(), v, c.getState().getContext(), c.getState());
         } else {
             Value baseval = c.getState().readRegister(n.getBaseRegister());
             baseval = UnknownValueResolver.getRealValue(baseval, c.getState());
@@ -586,7 +694,8 @@ public class NodeTransfer implements NodeVisitor {
             Value val = pv.readVariable(n.getVariableName(), null); // TODO: should also count as a variable read in Monitoring?
             val = UnknownValueResolver.getRealValue(val, c.getState());
             v = Operators.typeof(val, val.isMaybeAbsent());
-            m.visitVariableOrProperty(n.getVariableName(), n.getOperandSourceLocation(), val, c.getState().getContext(), c.getState());
+            if (c.isMonitored(MonitoringCallback.VARIABLE_OR_PROPERTY))
+                m.visitVariableOrProperty(n.getVariableName(), n.getOperandSourceLocation(), val, c.getState().getContext(), c.getState());
         } else {
             Value val = c.getState().readRegister(n.getArgRegister());
             val = UnknownValueResolver.getRealValue(val, c.getState());
@@ -151,6 +151,7 @@ public class UserFunctionCalls {
 
         Function f = obj_f.getFunction();
         AbstractNode n = call.getSourceNode();
+        f.translateBody(c.getFlowGraph()); // (only has an effect the first time a function with a deferred body is called)
 
         if (log.isDebugEnabled())
             log.debug("enterUserFunction " + (implicit ? "(implicit)" : "") + "from node " + n.getIndex() + " at " + n.getSourceLocation()
@@ -426,20 +427,27 @@ public class UserFunctionCalls {
         return_state.makeWritableStore();
         return_state.setStoreDefault(caller_state.getStoreDefault().freeze());
         // strengthen each object and replace polymorphic values
-        State summarized_calledge = calledge_state.clone();
-        summarizeStoreAndRegisters(summarized_calledge, return_state.getSummarized());
+        SummarizedCallEdge summarized_calledge = new SummarizedCallEdge(calledge_state, return_state.getSummarized());
         for (ObjectLabel objlabel : return_state.getStore().keySet()) {
-            Obj obj = return_state.getObject(objlabel, true); // always preparing for object updates, even if no changes are made
+            Obj obj = return_state.getObject(objlabel, false);
+            Obj calledge_obj = null;
+            if (!obj.isSomeNonModifiedOrPolymorphic() && !obj.isSomeNone()) {
+                if (!obj.isScopeChainUnknown())
+                    continue; // nothing to replace, so avoid making the object writable
+                calledge_obj = summarized_calledge.getObject(objlabel);
+                if (calledge_obj.isScopeChainUnknown())
+                    continue;
+            }
+            obj = return_state.getObject(objlabel, true);
             replacePolymorphicValues(obj, calledge_state, caller_entry_state, callee_summarized);
-            Obj calledge_obj = summarized_calledge.getObject(objlabel, false);
+            if (calledge_obj == null)
+                calledge_obj = summarized_calledge.getObject(objlabel);
             if (log.isDebugEnabled())
                 log.debug("strengthenNonModifiedParts on " + objlabel);
             obj.replaceNonModifiedParts(calledge_obj);
         }
         // restore objects that were not used by the callee (i.e. either 'unknown' or never retrieved from basis_store to store)
-        for (Map.Entry<ObjectLabel, Obj> me : summarized_calledge.getStore().entrySet())
-            if (!return_state.getStore().containsKey(me.getKey()))
-                return_state.putObject(me.getKey(), me.getValue()); // obj is freshly created at summarizeStoreAndRegisters, so freeze() unnecessary
+        summarized_calledge.restoreObjects(return_state);
         // remove objects that are equal to the default object
         return_state.removeObjectsEqualToDefault(caller_entry_state.getStoreDefault().isAllNone());
         // restore execution_context and stacked_objlabels from caller
@@ -459,6 +467,88 @@ public class UserFunctionCalls {
         return res;
     }
 
+    /**
+     * Call edge state summarized according to the summarization in the callee, as needed by
+     * {@link #mergeFunctionReturn(State, State, State, State, Summarized, Value, Value)}.
+     * The summarization is performed lazily for each object label.
+     * Only if some object is affected by summarization of singleton objects, the entire state is summarized.
+     */
+    private static final class SummarizedCallEdge {
+
+        private final State calledge_state;
+
+        private final Summarized summarized;
+
+        /**
+         * Object labels whose objects are removed or joined by summarization of singleton objects.
+         */
+        private final Set<ObjectLabel> affected;
+
+        /**
+         * Summarized copy of the call edge state, null if not yet needed.
+         */
+        private State summarized_state;
+
+        SummarizedCallEdge(State calledge_state, Summarized summarized) {
+            this.calledge_state = calledge_state;
+            this.summarized = summarized;
+            affected = newSet();
+            for (ObjectLabel objlabel : summarized.getMaybeSummarized())
+                if (objlabel.isSingleton()) {
+                    affected.add(objlabel.makeSummary());
+                    if (summarized.isDefinitelySummarized(objlabel))
+                        affected.add(objlabel);
+                }
+        }
+
+        /**
+         * Returns the entire summarized call edge state.
+         */
+        private State getSummarizedState() {
+            if (summarized_state == null) {
+                summarized_state = calledge_state.clone();
+                summarizeStoreAndRegisters(summarized_state, summarized);
+            }
+            return summarized_state;
+        }
+
+        /**
+         * Returns the summarized object for the given object label.
+         * The result must not be modified.
+         */
+        Obj getObject(ObjectLabel objlabel) {
+            if (summarized_state != null || affected.contains(objlabel))
+                return getSummarizedState().getObject(objlabel, false);
+            Obj obj = calledge_state.getObject(objlabel, false);
+            if (summarized.getMaybeSummarized().isEmpty() || !calledge_state.getStore().containsKey(objlabel))
+                return obj;
+            return obj.summarize(summarized);
+        }
+
+        /**
+         * Puts the summarized call edge objects that are not in the store of the given state into that store.
+         */
+        void restoreObjects(State return_state) {
+            if (!affected.isEmpty())
+                getSummarizedState();
+            if (summarized_state != null) {
+                for (Map.Entry<ObjectLabel, Obj> me : summarized_state.getStore().entrySet())
+                    if (!return_state.getStore().containsKey(me.getKey()))
+                        return_state.putObject(me.getKey(), me.getValue()); // obj is freshly created at summarizeStoreAndRegisters, so freeze() unnecessary
+                return;
+            }
+            for (Map.Entry<ObjectLabel, Obj> me : calledge_state.getStore().entrySet())
+                if (!return_state.getStore().containsKey(me.getKey())) {
+                    Obj obj = me.getValue();
+                    if (summarized.getMaybeSummarized().isEmpty())
+                        obj.freeze(); // shared with the call edge state
+                    else
+                        obj = obj.summarize(summarized);
+                    return_state.putObject(me.getKey(), obj);
+                }
+        }
+    }
+
     /**
      * Replaces the polymorphic properties of the given object.
      * Used by {@link #mergeFunctionReturn(State, State, State, State, Summarized, Value, Value)}.
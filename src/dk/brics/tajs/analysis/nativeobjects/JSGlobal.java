@@ -50,6 +50,7 @@ import dk.brics.tajs.lattice.ObjectLabel.Kind;
 import dk.brics.tajs.lattice.State;
 import dk.brics.tajs.lattice.UnknownValueResolver;
 import dk.brics.tajs.lattice.Value;
+import dk.brics.tajs.monitoring.GraphExporter;
 import dk.brics.tajs.options.Options;
 import dk.brics.tajs.solver.BlockAndContext;
 import dk.brics.tajs.solver.CallGraph;
@@ -61,10 +62,9 @@ import dk.brics.tajs.util.AnalysisException;
 import dk.brics.tajs.util.AnalysisLimitationException;
 import org.apache.log4j.Logger;
 
-import java.io.File;
-import java.io.PrintWriter;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.nio.file.Paths;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Map;
@@ -200,13 +200,8 @@ public class JSGlobal {
                     evalCache.setCode(cc, e);
                     c.propagateToBasicBlock(state.clone(), e.getEntryBlock(), state.getContext());
                     if (Options.get().isFlowGraphEnabled()) {
-                        try (PrintWriter pw = new PrintWriter(new File("out" + File.separator + "flowgraphs" + File.separator + "uneval-" +
-                                evalCall.getIndex() + "-" + Integer.toHexString(state.getContext().hashCode()) + ".dot"))) {
-                            currentFg.toDot(pw);
-                            pw.flush();
-                        } catch (Exception ee) {
-                            throw new AnalysisException(ee);
-                        }
+                        GraphExporter.writeFlowGraph(currentFg, Paths.get("out").resolve("flowgraphs"), "uneval-" +
+                                evalCall.getIndex() + "-" + Integer.toHexString(state.getContext().hashCode()));
                     }
                     return Value.makeNone();
                 } else {
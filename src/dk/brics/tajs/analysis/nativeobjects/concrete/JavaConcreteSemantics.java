@@ -0,0 +1,923 @@
+/*
+ * Copyright 2009-2016 Aarhus University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dk.brics.tajs.analysis.nativeobjects.concrete;
+
+import dk.brics.tajs.analysis.Conversion;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.MathContext;
+import java.math.RoundingMode;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+import static dk.brics.tajs.util.Collections.newList;
+import static dk.brics.tajs.util.Collections.newMap;
+
+/**
+ * Concrete semantics of the most commonly used native functions, implemented directly in Java.
+ * <p>
+ * Covers String.prototype.*, String.fromCharCode, Number.prototype.toFixed/toString, Math.*, parseInt, parseFloat and RegExp.prototype.exec.
+ * Whenever the ECMAScript semantics cannot be reproduced exactly (implementation-dependent results, regular expression features
+ * that behave differently in {@link java.util.regex}, non-primitive receivers, etc.), the evaluation is declined by returning null,
+ * and the caller falls back to {@link NashornConcreteSemantics}.
+ */
+public class JavaConcreteSemantics {
+
+    private static final double TWO_TO_53 = 9007199254740992.0;
+
+    private static final Pattern STR_DECIMAL_LITERAL = Pattern.compile("[+-]?(Infinity|(\\d+\\.?\\d*|\\.\\d+)([eE][+-]?\\d+)?)");
+
+    private static final Pattern HEX_INTEGER_LITERAL = Pattern.compile("0[xX][0-9a-fA-F]+");
+
+    /**
+     * Java character class contents for the ECMAScript WhiteSpace and LineTerminator characters (\s).
+     */
+    private static final String WHITE_SPACE_CLASS = "\\t\\n\\u000B\\f\\r \\u00A0\\uFEFF\\u2028\\u2029\\p{Zs}";
+
+    /**
+     * ECMAScript word boundary (\b), using the ASCII word characters.
+     */
+    private static final String WORD_BOUNDARY = "(?:(?<=\\w)(?!\\w)|(?<!\\w)(?=\\w))";
+
+    /**
+     * ECMAScript non-word boundary (\B).
+     */
+    private static final String NON_WORD_BOUNDARY = "(?:(?<=\\w)(?=\\w)|(?<!\\w)(?!\\w))";
+
+    private JavaConcreteSemantics() {
+    }
+
+    /**
+     * Evaluates the given native function, or returns null if the call is not supported.
+     */
+    @SuppressWarnings("unchecked")
+    public static <T extends ConcreteValue> InvocationResult<T> apply(String functionName, ConcreteValue base, List<ConcreteValue> arguments) {
+        ConcreteValue result;
+        try {
+            result = evaluate(functionName, base, arguments);
+        } catch (ECMAScriptException e) {
+            return InvocationResult.makeException();
+        }
+        if (result == null) {
+            return null;
+        }
+        return InvocationResult.makeValue((T) result);
+    }
+
+    private static ConcreteValue evaluate(String functionName, ConcreteValue base, List<ConcreteValue> args) {
+        if (functionName.startsWith("String.prototype.")) {
+            return evaluateStringFunction(functionName.substring("String.prototype.".length()), base, args);
+        }
+        if (functionName.startsWith("Math.")) {
+            return evaluateMathFunction(functionName.substring("Math.".length()), args);
+        }
+        switch (functionName) {
+            case "String.fromCharCode": {
+                StringBuilder b = new StringBuilder();
+                for (ConcreteValue arg : args) {
+                    b.append((char) (Conversion.toUInt32(toNumber(arg)) & 0xffff));
+                }
+                return new ConcreteString(b.toString());
+            }
+            case "Number.prototype.toFixed": {
+                if (!(base instanceof ConcreteNumber)) {
+                    return null;
+                }
+                double f = toInteger(arg(args, 0));
+                if (f < 0 || f > 20) {
+                    throw new ECMAScriptException(); // RangeError
+                }
+                return new ConcreteString(toFixed(((ConcreteNumber) base).getNumber(), (int) f));
+            }
+            case "Number.prototype.toString": {
+                if (!(base instanceof ConcreteNumber)) {
+                    return null;
+                }
+                double x = ((ConcreteNumber) base).getNumber();
+                ConcreteValue radixArg = arg(args, 0);
+                double radix = radixArg instanceof ConcreteUndefined ? 10 : toInteger(radixArg);
+                if (radix < 2 || radix > 36) {
+                    throw new ECMAScriptException(); // RangeError
+                }
+                if (radix == 10) {
+                    return new ConcreteString(numberToString(x));
+                }
+                if (Double.isNaN(x) || Double.isInfinite(x)) {
+                    return new ConcreteString(numberToString(x));
+                }
+                if (x != Math.floor(x) || Math.abs(x) >= TWO_TO_53) {
+                    return null; // digits of fractions and large numbers are implementation-dependent
+                }
+                return new ConcreteString(Long.toString((long) x, (int) radix));
+            }
+            case "parseInt":
+                return new ConcreteNumber(parseInt(toStr(arg(args, 0)), toNumber(arg(args, 1))));
+            case "parseFloat":
+                return new ConcreteNumber(parseFloat(toStr(arg(args, 0))));
+            case "RegExp.prototype.exec": {
+                if (!(base instanceof ConcreteRegularExpression)) {
+                    return null;
+                }
+                String s = toStr(arg(args, 0));
+                Matcher m = matcher((ConcreteRegularExpression) base, s);
+                if (m == null) {
+                    return null;
+                }
+                return m.find() ? makeMatchArray(m, s) : new ConcreteNull();
+            }
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * 15.5.4 Properties of the String Prototype Object.
+     */
+    private static ConcreteValue evaluateStringFunction(String name, ConcreteValue base, List<ConcreteValue> args) {
+        if (base instanceof ConcreteUndefined || base instanceof ConcreteNull) {
+            throw new ECMAScriptException(); // TypeError by CheckObjectCoercible
+        }
+        String s = toStr(base);
+        int len = s.length();
+        switch (name) {
+            case "charAt": { // 15.5.4.4
+                double pos = toInteger(arg(args, 0));
+                return new ConcreteString(pos < 0 || pos >= len ? "" : String.valueOf(s.charAt((int) pos)));
+            }
+            case "charCodeAt": { // 15.5.4.5
+                double pos = toInteger(arg(args, 0));
+                return new ConcreteNumber(pos < 0 || pos >= len ? Double.NaN : s.charAt((int) pos));
+            }
+            case "concat": { // 15.5.4.6
+                StringBuilder b = new StringBuilder(s);
+                for (ConcreteValue arg : args) {
+                    b.append(toStr(arg));
+                }
+                return new ConcreteString(b.toString());
+            }
+            case "indexOf": { // 15.5.4.7
+                String search = toStr(arg(args, 0));
+                int start = (int) Math.min(Math.max(toInteger(arg(args, 1)), 0), len);
+                return new ConcreteNumber((double) s.indexOf(search, start));
+            }
+            case "lastIndexOf": { // 15.5.4.8
+                String search = toStr(arg(args, 0));
+                double numPos = toNumber(arg(args, 1));
+                double pos = Double.isNaN(numPos) ? Double.POSITIVE_INFINITY : toInteger(numPos);
+                int start = (int) Math.min(Math.max(pos, 0), len);
+                return new ConcreteNumber((double) s.lastIndexOf(search, start));
+            }
+            case "slice": { // 15.5.4.13
+                double start = toInteger(arg(args, 0));
+                double end = arg(args, 1) instanceof ConcreteUndefined ? len : toInteger(arg(args, 1));
+                int from = (int) (start < 0 ? Math.max(len + start, 0) : Math.min(start, len));
+                int to = (int) (end < 0 ? Math.max(len + end, 0) : Math.min(end, len));
+                return new ConcreteString(from < to ? s.substring(from, to) : "");
+            }
+            case "substring": { // 15.5.4.15
+                double start = toInteger(arg(args, 0));
+                double end = arg(args, 1) instanceof ConcreteUndefined ? len : toInteger(arg(args, 1));
+                int finalStart = (int) Math.min(Math.max(start, 0), len);
+                int finalEnd = (int) Math.min(Math.max(end, 0), len);
+                return new ConcreteString(s.substring(Math.min(finalStart, finalEnd), Math.max(finalStart, finalEnd)));
+            }
+            case "substr": { // B.2.3
+                double start = toInteger(arg(args, 0));
+                double length = arg(args, 1) instanceof ConcreteUndefined ? Double.POSITIVE_INFINITY : toInteger(arg(args, 1));
+                if (start < 0) {
+                    start = Math.max(len + start, 0);
+                }
+                double resultLength = Math.min(Math.max(length, 0), len - start);
+                if (resultLength <= 0) {
+                    return new ConcreteString("");
+                }
+                return new ConcreteString(s.substring((int) start, (int) (start + resultLength)));
+            }
+            case "toLowerCase": // 15.5.4.16
+                return new ConcreteString(s.toLowerCase(Locale.ROOT));
+            case "toUpperCase": // 15.5.4.18
+                return new ConcreteString(s.toUpperCase(Locale.ROOT));
+            case "startsWith": { // ES6 21.1.3.18
+                if (arg(args, 0) instanceof ConcreteRegularExpression) {
+                    throw new ECMAScriptException(); // TypeError
+                }
+                String search = toStr(arg(args, 0));
+                int start = (int) Math.min(Math.max(toInteger(arg(args, 1)), 0), len);
+                return new ConcreteBoolean(s.startsWith(search, start));
+            }
+            case "endsWith": { // ES6 21.1.3.6
+                if (arg(args, 0) instanceof ConcreteRegularExpression) {
+                    throw new ECMAScriptException(); // TypeError
+                }
+                String search = toStr(arg(args, 0));
+                double endPosition = arg(args, 1) instanceof ConcreteUndefined ? len : toInteger(arg(args, 1));
+                int end = (int) Math.min(Math.max(endPosition, 0), len);
+                int start = end - search.length();
+                return new ConcreteBoolean(start >= 0 && s.startsWith(search, start));
+            }
+            case "split": // 15.5.4.14
+                return split(s, arg(args, 0), arg(args, 1));
+            case "replace": // 15.5.4.11
+                return replace(s, arg(args, 0), arg(args, 1));
+            case "search": { // 15.5.4.12
+                Matcher m = matcher(toRegExp(arg(args, 0)), s);
+                if (m == null) {
+                    return null;
+                }
+                return new ConcreteNumber(m.find() ? (double) m.start() : -1);
+            }
+            case "match": { // 15.5.4.10
+                ConcreteRegularExpression re = toRegExp(arg(args, 0));
+                Matcher m = matcher(re, s);
+                if (m == null) {
+                    return null;
+                }
+                if (!re.getGlobal().getBooleanValue()) {
+                    return m.find() ? makeMatchArray(m, s) : new ConcreteNull();
+                }
+                List<ConcreteValue> matches = newList();
+                while (m.find()) {
+                    if (m.start() == m.end()) {
+                        return null; // advancement after empty matches differs between ES5 and later editions
+                    }
+                    matches.add(new ConcreteString(m.group()));
+                }
+                return matches.isEmpty() ? new ConcreteNull() : new ConcreteArray(matches, newMap());
+            }
+            default: // localeCompare and toLocale*Case are locale dependent
+                return null;
+        }
+    }
+
+    /**
+     * 15.5.4.14 String.prototype.split, only for string separators.
+     */
+    private static ConcreteValue split(String s, ConcreteValue separator, ConcreteValue limit) {
+        if (separator instanceof ConcreteRegularExpression) {
+            return null;
+        }
+        long lim = limit instanceof ConcreteUndefined ? 4294967295L : Conversion.toUInt32(toNumber(limit));
+        List<ConcreteValue> result = newList();
+        if (lim == 0) {
+            return new ConcreteArray(result, newMap());
+        }
+        if (separator instanceof ConcreteUndefined) {
+            result.add(new ConcreteString(s));
+            return new ConcreteArray(result, newMap());
+        }
+        String r = toStr(separator);
+        if (s.isEmpty()) {
+            if (!r.isEmpty()) {
+                result.add(new ConcreteString(s));
+            }
+            return new ConcreteArray(result, newMap());
+        }
+        int p = 0;
+        int q = p;
+        while (q != s.length()) {
+            int e = s.startsWith(r, q) ? q + r.length() : -1;
+            if (e == -1 || e == p) {
+                q++;
+            } else {
+                result.add(new ConcreteString(s.substring(p, q)));
+                if (result.size() == lim) {
+                    return new ConcreteArray(result, newMap());
+                }
+                p = e;
+                q = p;
+            }
+        }
+        result.add(new ConcreteString(s.substring(p)));
+        return new ConcreteArray(result, newMap());
+    }
+
+    /**
+     * 15.5.4.11 String.prototype.replace, only for string replacement values.
+     */
+    private static ConcreteValue replace(String s, ConcreteValue searchValue, ConcreteValue replaceValue) {
+        String replacement = toStr(replaceValue);
+        if (!(searchValue instanceof ConcreteRegularExpression)) {
+            String search = toStr(searchValue);
+            int pos = s.indexOf(search);
+            if (pos == -1) {
+                return new ConcreteString(s);
+            }
+            String expanded = expandReplacement(replacement, s, pos, search, new String[0]);
+            return expanded == null ? null : new ConcreteString(s.substring(0, pos) + expanded + s.substring(pos + search.length()));
+        }
+        ConcreteRegularExpression re = (ConcreteRegularExpression) searchValue;
+        Matcher m = matcher(re, s);
+        if (m == null) {
+            return null;
+        }
+        StringBuilder b = new StringBuilder();
+        int last = 0;
+        while (m.find()) {
+            if (re.getGlobal().getBooleanValue() && m.start() == m.end()) {
+                return null; // advancement after empty matches differs between ES5 and later editions
+            }
+            String[] captures = new String[m.groupCount()];
+            for (int i = 0; i < captures.length; i++) {
+                captures[i] = m.group(i + 1);
+            }
+            String expanded = expandReplacement(replacement, s, m.start(), m.group(), captures);
+            if (expanded == null) {
+                return null;
+            }
+            b.append(s, last, m.start()).append(expanded);
+            last = m.end();
+            if (!re.getGlobal().getBooleanValue()) {
+                break;
+            }
+        }
+        b.append(s, last, s.length());
+        return new ConcreteString(b.toString());
+    }
+
+    /**
+     * Expands the $-patterns of a replacement string (table 22 of 15.5.4.11), or returns null if the result is implementation-defined.
+     */
+    private static String expandReplacement(String replacement, String s, int position, String matched, String[] captures) {
+        if (replacement.indexOf('$') == -1) {
+            return replacement;
+        }
+        StringBuilder b = new StringBuilder();
+        for (int i = 0; i < replacement.length(); i++) {
+            char ch = replacement.charAt(i);
+            if (ch != '$' || i + 1 == replacement.length()) {
+                b.append(ch);
+                continue;
+            }
+            char next = replacement.charAt(i + 1);
+            if (next == '$') {
+                b.append('$');
+                i++;
+            } else if (next == '&') {
+                b.append(matched);
+                i++;
+            } else if (next == '`') {
+                b.append(s, 0, position);
+                i++;
+            } else if (next == '\'') {
+                b.append(s, Math.min(position + matched.length(), s.length()), s.length());
+                i++;
+            } else if (next >= '0' && next <= '9') {
+                boolean twoDigits = i + 2 < replacement.length() && replacement.charAt(i + 2) >= '0' && replacement.charAt(i + 2) <= '9';
+                int n = twoDigits ? (next - '0') * 10 + (replacement.charAt(i + 2) - '0') : next - '0';
+                if (n == 0 || n > captures.length) {
+                    return null;
+                }
+                String capture = captures[n - 1];
+                b.append(capture != null ? capture : "");
+                i += twoDigits ? 2 : 1;
+            } else {
+                b.append(ch);
+            }
+        }
+        return b.toString();
+    }
+
+    /**
+     * 15.8.2 Function Properties of the Math Object.
+     */
+    private static ConcreteValue evaluateMathFunction(String name, List<ConcreteValue> args) {
+        double x = toNumber(arg(args, 0));
+        double y = toNumber(arg(args, 1));
+        double r;
+        switch (name) {
+            case "abs":
+                r = Math.abs(x);
+                break;
+            case "acos":
+                r = Math.acos(x);
+                break;
+            case "asin":
+                r = Math.asin(x);
+                break;
+            case "atan":
+                r = Math.atan(x);
+                break;
+            case "atan2":
+                r = Math.atan2(x, y);
+                break;
+            case "ceil":
+                r = Math.ceil(x);
+                break;
+            case "cos":
+                r = Math.cos(x);
+                break;
+            case "exp":
+                r = Math.exp(x);
+                break;
+            case "floor":
+                r = Math.floor(x);
+                break;
+            case "log":
+                r = Math.log(x);
+                break;
+            case "max":
+            case "min": {
+                r = name.equals("max") ? Double.NEGATIVE_INFINITY : Double.POSITIVE_INFINITY;
+                for (ConcreteValue arg : args) {
+                    double v = toNumber(arg);
+                    r = name.equals("max") ? Math.max(r, v) : Math.min(r, v);
+                }
+                break;
+            }
+            case "pow":
+                r = Math.pow(x, y);
+                break;
+            case "round":
+                r = round(x);
+                break;
+            case "sin":
+                r = Math.sin(x);
+                break;
+            case "sqrt":
+                r = Math.sqrt(x);
+                break;
+            case "tan":
+                r = Math.tan(x);
+                break;
+            default: // in particular Math.random
+                return null;
+        }
+        return new ConcreteNumber(r);
+    }
+
+    /**
+     * 15.8.2.15 Math.round.
+     */
+    private static double round(double x) {
+        if (Double.isNaN(x) || Double.isInfinite(x) || Math.abs(x) >= TWO_TO_53) {
+            return x;
+        }
+        double f = Math.floor(x);
+        double r = x - f >= 0.5 ? f + 1 : f;
+        if (r == 0 && (x < 0 || 1 / x < 0)) {
+            return -0.0;
+        }
+        return r;
+    }
+
+    /**
+     * 15.1.2.2 parseInt.
+     */
+    private static double parseInt(String input, double radixNumber) {
+        String s = trimLeft(input);
+        int i = 0;
+        int sign = 1;
+        if (i < s.length() && (s.charAt(i) == '+' || s.charAt(i) == '-')) {
+            if (s.charAt(i) == '-') {
+                sign = -1;
+            }
+            i++;
+        }
+        int r = Conversion.toInt32(radixNumber);
+        boolean stripPrefix = true;
+        if (r != 0) {
+            if (r < 2 || r > 36) {
+                return Double.NaN;
+            }
+            if (r != 16) {
+                stripPrefix = false;
+            }
+        } else {
+            r = 10;
+        }
+        if (stripPrefix && (s.startsWith("0x", i) || s.startsWith("0X", i))) {
+            i += 2;
+            r = 16;
+        }
+        int end = i;
+        while (end < s.length() && Character.digit(s.charAt(end), r) != -1 && s.charAt(end) < 128) {
+            end++;
+        }
+        if (end == i) {
+            return Double.NaN;
+        }
+        String digits = s.substring(i, end);
+        double number = r == 10 ? Double.parseDouble(digits) : new BigInteger(digits, r).doubleValue();
+        return sign * number;
+    }
+
+    /**
+     * 15.1.2.3 parseFloat.
+     */
+    private static double parseFloat(String input) {
+        Matcher m = STR_DECIMAL_LITERAL.matcher(trimLeft(input));
+        if (!m.lookingAt()) {
+            return Double.NaN;
+        }
+        return Double.parseDouble(m.group());
+    }
+
+    /**
+     * 15.7.4.5 Number.prototype.toFixed.
+     */
+    static String toFixed(double x, int f) {
+        if (Double.isNaN(x)) {
+            return "NaN";
+        }
+        if (Math.abs(x) >= 1e21) {
+            return numberToString(x);
+        }
+        // the exact binary value is rounded, so ties are real ties, which are resolved upwards
+        String digits = new BigDecimal(Math.abs(x)).setScale(f, RoundingMode.HALF_UP).toPlainString();
+        return x < 0 ? "-" + digits : digits;
+    }
+
+    /**
+     * 9.8.1 ToString Applied to the Number Type.
+     */
+    static String numberToString(double m) {
+        if (Double.isNaN(m)) {
+            return "NaN";
+        }
+        if (m == 0) {
+            return "0";
+        }
+        if (m < 0) {
+            return "-" + numberToString(-m);
+        }
+        if (Double.isInfinite(m)) {
+            return "Infinity";
+        }
+        // find the shortest decimal representation that reads back as m, preferring the closest one
+        BigDecimal exact = new BigDecimal(m);
+        BigDecimal shortest = null;
+        for (int k = 1; shortest == null; k++) {
+            BigDecimal down = exact.round(new MathContext(k, RoundingMode.FLOOR));
+            BigDecimal up = exact.round(new MathContext(k, RoundingMode.CEILING));
+            boolean downOk = down.doubleValue() == m;
+            boolean upOk = up.doubleValue() == m;
+            if (downOk && upOk) {
+                shortest = exact.round(new MathContext(k, RoundingMode.HALF_EVEN));
+            } else if (downOk) {
+                shortest = down;
+            } else if (upOk) {
+                shortest = up;
+            }
+        }
+        shortest = shortest.stripTrailingZeros();
+        String s = shortest.unscaledValue().toString();
+        int k = s.length();
+        int n = k - shortest.scale();
+        StringBuilder b = new StringBuilder();
+        if (k <= n && n <= 21) {
+            b.append(s);
+            for (int i = 0; i < n - k; i++) {
+                b.append('0');
+            }
+        } else if (0 < n && n <= 21) {
+            b.append(s, 0, n).append('.').append(s, n, k);
+        } else if (-6 < n && n <= 0) {
+            b.append("0.");
+            for (int i = 0; i < -n; i++) {
+                b.append('0');
+            }
+            b.append(s);
+        } else {
+            b.append(s.charAt(0));
+            if (k > 1) {
+                b.append('.').append(s, 1, k);
+            }
+            b.append('e').append(n - 1 >= 0 ? "+" : "-").append(Math.abs(n - 1));
+        }
+        return b.toString();
+    }
+
+    /**
+     * 9.3 ToNumber.
+     */
+    private static double toNumber(ConcreteValue v) {
+        if (v instanceof ConcreteNumber) {
+            return ((ConcreteNumber) v).getNumber();
+        }
+        if (v instanceof ConcreteBoolean) {
+            return ((ConcreteBoolean) v).getBooleanValue() ? 1 : 0;
+        }
+        if (v instanceof ConcreteUndefined) {
+            return Double.NaN;
+        }
+        if (v instanceof ConcreteNull) {
+            return 0;
+        }
+        return stringToNumber(toStr(v));
+    }
+
+    /**
+     * 9.3.1 ToNumber Applied to the String Type.
+     */
+    private static double stringToNumber(String str) {
+        String s = trimLeft(str);
+        int end = s.length();
+        while (end > 0 && isWhiteSpaceOrLineTerminator(s.charAt(end - 1))) {
+            end--;
+        }
+        s = s.substring(0, end);
+        if (s.isEmpty()) {
+            return 0;
+        }
+        if (HEX_INTEGER_LITERAL.matcher(s).matches()) {
+            return new BigInteger(s.substring(2), 16).doubleValue();
+        }
+        if (STR_DECIMAL_LITERAL.matcher(s).matches()) {
+            return Double.parseDouble(s);
+        }
+        return Double.NaN;
+    }
+
+    /**
+     * 9.4 ToInteger.
+     */
+    private static double toInteger(ConcreteValue v) {
+        return toInteger(toNumber(v));
+    }
+
+    private static double toInteger(double number) {
+        if (Double.isNaN(number)) {
+            return 0;
+        }
+        if (number == 0 || Double.isInfinite(number)) {
+            return number;
+        }
+        return Math.signum(number) * Math.floor(Math.abs(number));
+    }
+
+    /**
+     * 9.8 ToString.
+     */
+    private static String toStr(ConcreteValue v) {
+        if (v instanceof ConcreteString) {
+            return ((ConcreteString) v).getString();
+        }
+        if (v instanceof ConcreteNumber) {
+            return numberToString(((ConcreteNumber) v).getNumber());
+        }
+        if (v instanceof ConcreteBoolean) {
+            return String.valueOf(((ConcreteBoolean) v).getBooleanValue());
+        }
+        if (v instanceof ConcreteUndefined) {
+            return "undefined";
+        }
+        if (v instanceof ConcreteNull) {
+            return "null";
+        }
+        if (v instanceof ConcreteArray) { // 15.4.4.5 Array.prototype.join
+            ConcreteArray array = (ConcreteArray) v;
+            StringBuilder b = new StringBuilder();
+            for (int i = 0; i < array.getLength(); i++) {
+                if (i > 0) {
+                    b.append(',');
+                }
+                ConcreteValue element = array.get(i);
+                if (!(element instanceof ConcreteUndefined || element instanceof ConcreteNull)) {
+                    b.append(toStr(element));
+                }
+            }
+            return b.toString();
+        }
+        ConcreteRegularExpression re = (ConcreteRegularExpression) v; // 15.10.6.4 RegExp.prototype.toString
+        return "/" + re.getSource().getString() + "/" + (re.getGlobal().getBooleanValue() ? "g" : "") + (re.getIgnoreCase().getBooleanValue() ? "i" : "") + (re.getMultiline().getBooleanValue() ? "m" : "");
+    }
+
+    /**
+     * Converts a match/search argument to a regular expression, like <code>new RegExp(v)</code>.
+     */
+    private static ConcreteRegularExpression toRegExp(ConcreteValue v) {
+        if (v instanceof ConcreteRegularExpression) {
+            return (ConcreteRegularExpression) v;
+        }
+        String source = v instanceof ConcreteUndefined ? "" : toStr(v);
+        return new ConcreteRegularExpression(new ConcreteString(source), new ConcreteBoolean(false), new ConcreteBoolean(false), new ConcreteBoolean(false));
+    }
+
+    /**
+     * Constructs the result array of RegExp.prototype.exec (15.10.6.2).
+     */
+    private static ConcreteArray makeMatchArray(Matcher m, String input) {
+        List<ConcreteValue> elements = newList();
+        for (int i = 0; i <= m.groupCount(); i++) {
+            String group = m.group(i);
+            elements.add(group != null ? new ConcreteString(group) : new ConcreteUndefined());
+        }
+        Map<String, ConcreteValue> properties = newMap();
+        properties.put("index", new ConcreteNumber((double) m.start()));
+        properties.put("input", new ConcreteString(input));
+        return new ConcreteArray(elements, properties);
+    }
+
+    /**
+     * Constructs a Java matcher for the given regular expression and input,
+     * or returns null if the Java semantics of the regular expression may differ from the ECMAScript semantics.
+     */
+    private static Matcher matcher(ConcreteRegularExpression re, String input) {
+        if (re.getMultiline().getBooleanValue()) {
+            return null;
+        }
+        String source = re.getSource().getString();
+        int flags = 0;
+        if (re.getIgnoreCase().getBooleanValue()) {
+            if (!isASCII(source) || !isASCII(input)) {
+                return null; // ECMAScript canonicalization of non-ASCII characters differs from Java case folding
+            }
+            flags |= Pattern.CASE_INSENSITIVE;
+        }
+        String translated = translate(source);
+        if (translated == null) {
+            return null;
+        }
+        try {
+            return Pattern.compile(translated, flags).matcher(input);
+        } catch (PatternSyntaxException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Translates an ECMAScript regular expression pattern to an equivalent Java pattern, or returns null if the pattern
+     * uses features that have different semantics in Java (such as backreferences and captures in quantified groups).
+     */
+    private static String translate(String source) {
+        StringBuilder b = new StringBuilder();
+        Deque<Integer> groups = new ArrayDeque<>();
+        int captures = 0;
+        boolean inClass = false;
+        for (int i = 0; i < source.length(); i++) {
+            char ch = source.charAt(i);
+            if (ch == '\\') {
+                if (++i == source.length()) {
+                    return null;
+                }
+                char e = source.charAt(i);
+                if ("dDwWtnrf".indexOf(e) != -1) {
+                    b.append('\\').append(e);
+                } else if (e == 's') {
+                    b.append(inClass ? WHITE_SPACE_CLASS : "[" + WHITE_SPACE_CLASS + "]");
+                } else if (e == 'S' && !inClass) {
+                    b.append("[^").append(WHITE_SPACE_CLASS).append("]");
+                } else if (e == 'b') {
+                    b.append(inClass ? "\\x08" : WORD_BOUNDARY);
+                } else if (e == 'B' && !inClass) {
+                    b.append(NON_WORD_BOUNDARY);
+                } else if (e == 'u' && isHex(source, i + 1, 4)) {
+                    b.append(source, i - 1, i + 5);
+                    i += 4;
+                } else if (e == 'x' && isHex(source, i + 1, 2)) {
+                    b.append(source, i - 1, i + 3);
+                    i += 2;
+                } else if (e < 128 && !Character.isLetterOrDigit(e)) {
+                    b.append('\\').append(e);
+                } else {
+                    return null;
+                }
+            } else if (inClass) {
+                if (ch == ']') {
+                    inClass = false;
+                    b.append(ch);
+                } else if (ch == '[' || ch == '&') {
+                    b.append('\\').append(ch);
+                } else {
+                    b.append(ch);
+                }
+            } else {
+                switch (ch) {
+                    case '[':
+                        if (source.startsWith("[]", i) || source.startsWith("[^]", i)) {
+                            return null;
+                        }
+                        inClass = true;
+                        b.append(ch);
+                        if (source.startsWith("[^", i)) {
+                            b.append('^');
+                            i++;
+                        }
+                        break;
+                    case '(':
+                        if (source.startsWith("(?", i)) {
+                            if (!source.startsWith("(?:", i) && !source.startsWith("(?=", i) && !source.startsWith("(?!", i)) {
+                                return null;
+                            }
+                            b.append(source, i, i + 3);
+                            i += 2;
+                            groups.push(captures);
+                        } else {
+                            b.append(ch);
+                            captures++;
+                            groups.push(captures);
+                        }
+                        break;
+                    case ')':
+                        if (groups.isEmpty()) {
+                            return null;
+                        }
+                        int capturesAtStart = groups.pop();
+                        boolean quantified = i + 1 < source.length() && "*+?{".indexOf(source.charAt(i + 1)) != -1;
+                        if (quantified && captures > capturesAtStart) {
+                            return null; // ECMAScript resets inner captures in each iteration
+                        }
+                        b.append(ch);
+                        break;
+                    case '.':
+                        b.append("[^\\n\\r\\u2028\\u2029]");
+                        break;
+                    case '$':
+                        b.append("\\z");
+                        break;
+                    default:
+                        b.append(ch);
+                }
+            }
+        }
+        if (inClass || !groups.isEmpty()) {
+            return null;
+        }
+        return b.toString();
+    }
+
+    private static boolean isHex(String s, int start, int length) {
+        if (start + length > s.length()) {
+            return false;
+        }
+        for (int i = start; i < start + length; i++) {
+            if (Character.digit(s.charAt(i), 16) == -1 || s.charAt(i) >= 128) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isASCII(String s) {
+        for (int i = 0; i < s.length(); i++) {
+            if (s.charAt(i) >= 128) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 7.2 White Space and 7.3 Line Terminators.
+     */
+    private static boolean isWhiteSpaceOrLineTerminator(char c) {
+        switch (c) {
+            case '\t':
+            case '\u000B':
+            case '\f':
+            case ' ':
+            case '\u00A0':
+            case '\uFEFF':
+            case '\n':
+            case '\r':
+            case '\u2028':
+            case '\u2029':
+                return true;
+            default:
+                return Character.getType(c) == Character.SPACE_SEPARATOR;
+        }
+    }
+
+    private static String trimLeft(String s) {
+        int i = 0;
+        while (i < s.length() && isWhiteSpaceOrLineTerminator(s.charAt(i))) {
+            i++;
+        }
+        return s.substring(i);
+    }
+
+    private static ConcreteValue arg(List<ConcreteValue> args, int i) {
+        return i < args.size() ? args.get(i) : new ConcreteUndefined();
+    }
+
+    /**
+     * Signals that the evaluation throws an ECMAScript exception.
+     */
+    private static class ECMAScriptException extends RuntimeException {
+
+        ECMAScriptException() {
+            super(null, null, false, false);
+        }
+    }
+}
@@ -26,15 +26,23 @@ import org.apache.log4j.Logger;
 import javax.script.ScriptEngine;
 import javax.script.ScriptEngineManager;
 import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.stream.Collectors;
 
+import static dk.brics.tajs.util.Collections.newList;
 import static dk.brics.tajs.util.Collections.newMap;
 
 /**
  * Concrete semantics implementation.
  * Will perform concrete evaluation of concrete values using the Java native implementation of JavaScript.
+ * <p>
+ * The common native functions are evaluated by {@link JavaConcreteSemantics} without the script engine.
+ * <p>
+ * The results of {@link #apply(String, ConcreteValue, List)} are memoized in a bounded LRU cache,
+ * keyed by the function name and the source code of the receiver and arguments.
  */
 public class NashornConcreteSemantics { // XXX: singleton, but no reset method? just use static methods instead?
 
@@ -42,8 +50,24 @@ public class NashornConcreteSemantics { // XXX: singleton, but no reset method?
 
     private static NashornConcreteSemantics instance;
 
+    /**
+     * Maximum number of memoized results.
+     */
+    private static final int CACHE_SIZE = 10000;
+
     private final ScriptEngine engine;
 
+    private final Map<String, InvocationResult<?>> cache = new LinkedHashMap<String, InvocationResult<?>>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, InvocationResult<?>> eldest) {
+            return size() > CACHE_SIZE;
+        }
+    };
+
+    private int cache_hits;
+
+    private int cache_misses;
+
     private NashornConcreteSemantics() {
         engine = new ScriptEngineManager().getEngineByName("JavaScript");
     }
@@ -55,6 +79,38 @@ public class NashornConcreteSemantics { // XXX: singleton, but no reset method?
         return instance;
     }
 
+    /**
+     * Clears the cache and the cache statistics.
+     */
+    public static void reset() {
+        if (instance != null) {
+            instance.cache.clear();
+            instance.cache_hits = 0;
+            instance.cache_misses = 0;
+        }
+    }
+
+    /**
+     * Returns the number of cache hits.
+     */
+    public static int getNumberOfCacheHits() {
+        return instance != null ? instance.cache_hits : 0;
+    }
+
+    /**
+     * Returns the number of cache misses.
+     */
+    public static int getNumberOfCacheMisses() {
+        return instance != null ? instance.cache_misses : 0;
+    }
+
+    /**
+     * Returns the cache size.
+     */
+    public static int getCacheSize() {
+        return instance != null ? instance.cache.size() : 0;
+    }
+
 //    public static void main(String[] args) throws ScriptException {
 //        System.out.println(get().toConcreteValue((get().makeEngine().eval("[null, undefined]"))));
 //    }
@@ -65,61 +121,125 @@ public class NashornConcreteSemantics { // XXX: singleton, but no reset method?
 
     @SuppressWarnings("unchecked")
     public <T extends ConcreteValue> InvocationResult<T> apply(String functionName, ConcreteValue base, List<ConcreteValue> arguments) {
-        if ("String.prototype.startsWith".equals(functionName)) { // Nashorn does not implement this "standard" feature
-            if (isConcreteString(base) && arguments.size() == 1 && isConcreteString(arguments.get(0))) {
-                boolean startsWith = ((ConcreteString) base).getString().startsWith(((ConcreteString) arguments.get(0)).getString());
-                return InvocationResult.makeValue((T) new ConcreteBoolean(startsWith));
-            }
-            return InvocationResult.makeNonConcrete();
+        InvocationResult<T> result = JavaConcreteSemantics.apply(functionName, base, arguments);
+        if (result != null) {
+            return result;
         }
-        if ("String.prototype.endsWith".equals(functionName)) { // Nashorn does not implement this "standard" feature
-            if (isConcreteString(base) && arguments.size() == 1 && isConcreteString(arguments.get(0))) {
-                boolean endsWith = ((ConcreteString) base).getString().endsWith(((ConcreteString) arguments.get(0)).getString());
-                return InvocationResult.makeValue((T) new ConcreteBoolean(endsWith));
-            }
-            return InvocationResult.makeNonConcrete();
+        // the script only depends on the function name and the source code of the values, so it is used as the cache key
+        String script = makeScript(functionName, makeApplyArguments(base.toSourceCode(), makeList(arguments)));
+        result = (InvocationResult<T>) cache.get(script);
+        if (result != null) {
+            cache_hits++;
+            return result;
         }
-        String script = String.format("%s.apply(%s, [%s]);", functionName, base.toSourceCode(), makeList(arguments));
-        return eval(script);
+        cache_misses++;
+        result = eval(script);
+        cache.put(script, result);
+        return result;
     }
 
-    private Boolean isConcreteString(ConcreteValue base) {
-        return base.accept(new ConcreteValueVisitor<Boolean>() {
-            @Override
-            public Boolean visit(ConcreteNumber v) {
-                return false;
-            }
+    private static String makeApplyArguments(String base, String arguments) {
+        return String.format("%s, [%s]", base, arguments);
+    }
 
-            @Override
-            public Boolean visit(ConcreteString v) {
-                return true;
-            }
+    private static String makeScript(String functionName, String applyArguments) {
+        return String.format("%s.apply(%s);", functionName, applyArguments);
+    }
 
-            @Override
-            public Boolean visit(ConcreteArray v) {
-                return false;
+    /**
+     * Applies the given function to each of the given combinations of a receiver (the first element) and arguments (the remaining elements).
+     * <p>
+     * The combinations that are neither handled by {@link JavaConcreteSemantics} nor cached are evaluated together
+     * in a single script evaluation, where the function is resolved once and each value is converted to source code once.
+     *
+     * @return the results, in the order of the combinations
+     */
+    @SuppressWarnings("unchecked")
+    public <T extends ConcreteValue> List<InvocationResult<T>> applyAll(String functionName, List<List<ConcreteValue>> combinations) {
+        List<InvocationResult<T>> results = newList();
+        Map<ConcreteValue, String> sources = new IdentityHashMap<>();
+        List<Integer> pending = newList();
+        List<String> pendingApplyArguments = newList();
+        List<String> pendingScripts = newList();
+        for (int i = 0; i < combinations.size(); i++) {
+            List<ConcreteValue> combination = combinations.get(i);
+            ConcreteValue base = combination.get(0);
+            List<ConcreteValue> arguments = combination.subList(1, combination.size());
+            InvocationResult<T> result = JavaConcreteSemantics.apply(functionName, base, arguments);
+            if (result == null) {
+                String applyArguments = makeApplyArguments(sources.computeIfAbsent(base, ConcreteValue::toSourceCode),
+                        String.join(",", arguments.stream().map(a -> sources.computeIfAbsent(a, ConcreteValue::toSourceCode)).collect(Collectors.toList())));
+                String script = makeScript(functionName, applyArguments);
+                result = (InvocationResult<T>) cache.get(script);
+                if (result != null) {
+                    cache_hits++;
+                } else {
+                    cache_misses++;
+                    pending.add(i);
+                    pendingApplyArguments.add(applyArguments);
+                    pendingScripts.add(script);
+                }
             }
-
-            @Override
-            public Boolean visit(ConcreteUndefined v) {
-                return false;
+            results.add(result);
+        }
+        if (pending.size() == 1) {
+            results.set(pending.get(0), eval(pendingScripts.get(0)));
+        } else if (!pending.isEmpty()) {
+            List<InvocationResult<T>> batch = evalAll(functionName, pendingApplyArguments);
+            for (int i = 0; i < pending.size(); i++) {
+                results.set(pending.get(i), batch.get(i));
             }
+        }
+        for (int i = 0; i < pending.size(); i++) {
+            cache.put(pendingScripts.get(i), results.get(pending.get(i)));
+        }
+        return results;
+    }
 
-            @Override
-            public Boolean visit(ConcreteRegularExpression v) {
-                return false;
+    /**
+     * Evaluates calls of the given function with the given receiver and argument lists in a single script evaluation.
+     * Falls back to evaluating the calls one by one if the combined script fails.
+     */
+    private <T extends ConcreteValue> List<InvocationResult<T>> evalAll(String functionName, List<String> applyArguments) {
+        // each call result is wrapped in a one-element array, so null results can be distinguished from exceptions
+        StringBuilder b = new StringBuilder("(function(f) { var r = [];");
+        for (String arguments : applyArguments) {
+            b.append(" try { r.push([f.apply(").append(arguments).append(")]); } catch (e) { r.push(null); }");
+        }
+        b.append(" return r; })(").append(functionName).append(");");
+        List<InvocationResult<T>> results = newList();
+        Object resultObject;
+        try {
+            resultObject = engine.eval(b.toString());
+        } catch (Throwable t) {
+            if (Options.get().isDebugEnabled()) {
+                log.error(t);
             }
-
-            @Override
-            public Boolean visit(ConcreteNull v) {
-                return false;
+            for (String arguments : applyArguments) {
+                results.add(eval(makeScript(functionName, arguments)));
             }
+            return results;
+        }
+        ScriptObjectMirror array = (ScriptObjectMirror) resultObject;
+        for (int i = 0; i < applyArguments.size(); i++) {
+            results.add(toInvocationResult((ScriptObjectMirror) array.getSlot(i)));
+        }
+        return results;
+    }
 
-            @Override
-            public Boolean visit(ConcreteBoolean v) {
-                return false;
+    @SuppressWarnings("unchecked")
+    private <T extends ConcreteValue> InvocationResult<T> toInvocationResult(ScriptObjectMirror wrapped) {
+        if (wrapped == null) {
+            return InvocationResult.makeException();
+        }
+        try {
+            return InvocationResult.makeValue((T) toConcreteValue(wrapped.getSlot(0)));
+        } catch (Throwable t) {
+            if (Options.get().isDebugEnabled()) {
+                log.error(t);
             }
-        });
+            return InvocationResult.makeNonConcrete();
+        }
     }
 
     @SuppressWarnings("unchecked")
@@ -43,6 +43,13 @@ public class TAJSSplitConcreteSemantics { // XXX: splitting...
 
     private static final Bridge concreteSemantics = new TAJSSingleConcreteSemanticsBridge();
 
+    private static final Bridge splitConcreteSemantics = new TAJSSplitConcreteSemanticsBridge();
+
+    /**
+     * Maximal number of argument combinations to evaluate for a single split call.
+     */
+    private static final int MAX_COMBINATIONS = 64;
+
     private TAJSSplitConcreteSemantics() {}
 
     public static <T> Set<List<T>> makePowerSetOfListsFromListsOfSets(List<Set<T>> sources) {
@@ -86,6 +93,10 @@ public class TAJSSplitConcreteSemantics { // XXX: splitting...
      * @return Some concrete value if the call is guaranteed to be concrete and the call succeeds with the expected return type. Otherwire None.
      */
     public static <T extends ConcreteValue> Set<InvocationResult<T>> convertTAJSCall(Value vThis, String functionName, int maxArguments, FunctionCalls.CallInfo call, Solver.SolverInterface c) {
+        return convertTAJSCall(vThis, functionName, maxArguments, call, c, concreteSemantics);
+    }
+
+    private static <T extends ConcreteValue> Set<InvocationResult<T>> convertTAJSCall(Value vThis, String functionName, int maxArguments, FunctionCalls.CallInfo call, Solver.SolverInterface c, Bridge bridge) {
         if (Options.get().isConcreteNativeDisabled()) {
             return singleton(InvocationResult.makeNonConcrete());
         }
@@ -120,7 +131,7 @@ public class TAJSSplitConcreteSemantics { // XXX: splitting...
             }
             arguments.add(argument);
         }
-        return convertTAJSCallExplicit(vThis, functionName, arguments, c);
+        return convertTAJSCallExplicit(vThis, functionName, arguments, c, bridge);
     }
 
     /**
@@ -154,16 +165,27 @@ public class TAJSSplitConcreteSemantics { // XXX: splitting...
      * Can always be called. Will return None if something goes wrong or is non-concrete.
      */
     public static <T extends ConcreteValue> Set<InvocationResult<T>> convertTAJSCallExplicit(Value vThis, String functionName, List<Value> arguments, Solver.SolverInterface c) {
+        return convertTAJSCallExplicit(vThis, functionName, arguments, c, concreteSemantics);
+    }
+
+    private static <T extends ConcreteValue> Set<InvocationResult<T>> convertTAJSCallExplicit(Value vThis, String functionName, List<Value> arguments, Solver.SolverInterface c, Bridge bridge) {
         vThis = UnknownValueResolver.getRealValue(vThis, c.getState());
         arguments = arguments.stream().map(arg -> UnknownValueResolver.getRealValue(arg, c.getState())).collect(Collectors.toList());
-        return concreteSemantics.convertTAJSCallExplicit(vThis, functionName, arguments, c);
+        return bridge.convertTAJSCallExplicit(vThis, functionName, arguments, c);
+    }
+
+    /**
+     * Selects the bridge for calls where a set of results can be consumed.
+     */
+    private static Bridge getSplittingBridge() {
+        return Options.get().isSplitConcreteCallsEnabled() ? splitConcreteSemantics : concreteSemantics;
     }
 
     /**
      * Utility wrapper for {@link #convertTAJSCall(Value, String, int, FunctionCalls.CallInfo, GenericSolver.SolverInterface)}, in case of non-concrete state or call-failure, the supplied default value is returned.
      */
     public static <T extends PrimitiveConcreteValue> Set<Value> convertTAJSCall(Value vThis, String functionName, int maxArguments, FunctionCalls.CallInfo call, Solver.SolverInterface c, Value defaultValue) {
-        Set<InvocationResult<T>> concreteResult = convertTAJSCall(vThis, functionName, maxArguments, call, c);
+        Set<InvocationResult<T>> concreteResult = convertTAJSCall(vThis, functionName, maxArguments, call, c, getSplittingBridge());
         return handleResult(concreteResult, defaultValue, c);
     }
 
@@ -188,7 +210,7 @@ public class TAJSSplitConcreteSemantics { // XXX: splitting...
      * Utility wrapper for {@link #convertTAJSCallExplicit(Value, String, List, GenericSolver.SolverInterface)}, in case of non-concrete state or call-failure, the supplied default value is returned.
      */
     public static <T extends PrimitiveConcreteValue> Set<Value> convertTAJSCallExplicit(Value vThis, String functionName, List<Value> arguments, Solver.SolverInterface c, Value defaultValue) {
-        Set<InvocationResult<T>> concreteResult = convertTAJSCallExplicit(vThis, functionName, arguments, c);
+        Set<InvocationResult<T>> concreteResult = convertTAJSCallExplicit(vThis, functionName, arguments, c, getSplittingBridge());
         return handleResult(concreteResult, defaultValue, c);
     }
 
@@ -225,4 +247,69 @@ public class TAJSSplitConcreteSemantics { // XXX: splitting...
             return singleton(result);
         }
     }
+
+    /**
+     * Splits the receiver and the arguments into their concrete components, and evaluates all combinations in one batch.
+     * <p>
+     * Values that cannot be split into finitely many concrete values, or too many combinations, give a non-concrete result.
+     */
+    private static class TAJSSplitConcreteSemanticsBridge implements Bridge {
+
+        @Override
+        public <T extends ConcreteValue> Set<InvocationResult<T>> convertTAJSCallExplicit(Value vThis, String functionName, List<Value> arguments, Solver.SolverInterface c) {
+            List<Set<ConcreteValue>> sources = newList();
+            long combinations = 1;
+            for (Value value : Stream.concat(Stream.of(vThis), arguments.stream()).collect(Collectors.toList())) {
+                Set<ConcreteValue> split = split(value, c);
+                if (split == null) {
+                    return singleton(InvocationResult.makeNonConcrete());
+                }
+                combinations *= split.size();
+                if (combinations > MAX_COMBINATIONS) {
+                    return singleton(InvocationResult.makeNonConcrete());
+                }
+                sources.add(split);
+            }
+            List<List<ConcreteValue>> calls = newList(makePowerSetOfListsFromListsOfSets(sources));
+            List<InvocationResult<T>> results = NashornConcreteSemantics.get().applyAll(functionName, calls);
+            return newSet(results);
+        }
+
+        /**
+         * Returns the concrete values described by the given value, or null if they cannot be enumerated.
+         */
+        private static Set<ConcreteValue> split(Value value, Solver.SolverInterface c) {
+            if (SingleGamma.isConcreteValue(value, c)) {
+                return singleton(SingleGamma.toConcreteValue(value, c));
+            }
+            if (value.isNone() || value.isMaybeObject() || value.isMaybeNull() || value.isMaybeGetterOrSetter()) {
+                return null;
+            }
+            Set<ConcreteValue> split = newSet();
+            if (value.isMaybeUndef()) {
+                split.add(new ConcreteUndefined());
+            }
+            if (value.isMaybeTrue()) {
+                split.add(new ConcreteBoolean(true));
+            }
+            if (value.isMaybeFalse()) {
+                split.add(new ConcreteBoolean(false));
+            }
+            Value num = value.restrictToNum();
+            if (!num.isNone()) {
+                if (!SingleGamma.isConcreteNumber(num, c)) {
+                    return null;
+                }
+                split.add(SingleGamma.toConcreteNumber(num, c));
+            }
+            Value str = value.restrictToStr();
+            if (!str.isNone()) {
+                if (!SingleGamma.isConcreteString(str, c)) {
+                    return null;
+                }
+                split.add(SingleGamma.toConcreteString(str, c));
+            }
+            return split;
+        }
+    }
 }
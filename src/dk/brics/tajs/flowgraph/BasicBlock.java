@@ -81,6 +81,11 @@ public class BasicBlock {
      */
     private BasicBlock entry_predecessor_block;
 
+    /**
+     * The ordinary registers that are live at entry of this block, in increasing order, or null if not known.
+     */
+    private int[] live_registers;
+
     /**
      * Constructs a new initially empty block of nodes.
      *
@@ -397,4 +402,18 @@ public class BasicBlock {
     public void setEntryPredecessorBlock(BasicBlock entry_predecessor_block) {
         this.entry_predecessor_block = entry_predecessor_block;
     }
+
+    /**
+     * Returns the ordinary registers that are live at entry of this block, in increasing order, or null if not known.
+     */
+    public int[] getLiveRegisters() {
+        return live_registers;
+    }
+
+    /**
+     * Sets the ordinary registers that are live at entry of this block.
+     */
+    public void setLiveRegisters(int[] live_registers) {
+        this.live_registers = live_registers;
+    }
 }
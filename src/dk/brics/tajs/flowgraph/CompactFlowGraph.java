@@ -0,0 +1,186 @@
+/*
+ * Copyright 2009-2016 Aarhus University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dk.brics.tajs.flowgraph;
+
+import dk.brics.tajs.flowgraph.jsnodes.Node;
+import dk.brics.tajs.flowgraph.jsnodes.Opcode;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * Frozen array-based form of a flow graph, for iterating over blocks, edges and nodes through their indices.
+ * <p>
+ * The successors of the blocks are stored in compressed sparse row form: the successors of the block with index <i>b</i>
+ * are the blocks with the indices <code>successors[successor_start[b] .. successor_start[b] + successor_count[b] - 1]</code>,
+ * in the iteration order of {@link BasicBlock#getSuccessors()}.
+ * The kind of each node is stored as an {@link Opcode} ordinal.
+ * <p>
+ * The form is rebuilt when the flow graph is closed, and updated when the flow graph is extended during the analysis.
+ * Updated blocks get new rows at the end of the successor array, so an update only visits the updated blocks.
+ * Blocks that are created during the analysis without being added to the flow graph (implicit after-call blocks) are not included.
+ */
+public final class CompactFlowGraph {
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    /**
+     * The blocks, by block index.
+     */
+    private BasicBlock[] blocks;
+
+    /**
+     * Start of the successor row of each block, by block index.
+     */
+    private int[] successor_start;
+
+    /**
+     * Number of successors of each block, by block index.
+     */
+    private int[] successor_count;
+
+    /**
+     * Block indices of the successors.
+     */
+    private int[] successors;
+
+    /**
+     * Used length of {@link #successors}.
+     */
+    private int successors_size;
+
+    /**
+     * The nodes, by node index.
+     */
+    private AbstractNode[] nodes;
+
+    /**
+     * Opcode ordinal of each node, by node index, -1 if not a {@link Node}.
+     */
+    private byte[] opcodes;
+
+    /**
+     * Constructs a new empty form.
+     */
+    CompactFlowGraph() {
+        clear();
+    }
+
+    private void clear() {
+        blocks = new BasicBlock[INITIAL_CAPACITY];
+        successor_start = new int[INITIAL_CAPACITY];
+        successor_count = new int[INITIAL_CAPACITY];
+        successors = new int[INITIAL_CAPACITY];
+        successors_size = 0;
+        nodes = new AbstractNode[INITIAL_CAPACITY];
+        opcodes = new byte[INITIAL_CAPACITY];
+    }
+
+    /**
+     * Rebuilds this form from the blocks of the given functions.
+     */
+    void rebuild(Collection<Function> functions) {
+        clear();
+        for (Function f : functions)
+            update(f.getBlocks());
+    }
+
+    /**
+     * Adds or updates the given blocks and their nodes.
+     * The blocks and nodes must have been given indices.
+     */
+    void update(Collection<BasicBlock> bs) {
+        for (BasicBlock b : bs) {
+            int index = b.getIndex();
+            if (index < 0)
+                throw new IllegalArgumentException("Block has not been added to flow graph: " + b);
+            if (index >= blocks.length) {
+                int capacity = Math.max(index + 1, 2 * blocks.length);
+                blocks = Arrays.copyOf(blocks, capacity);
+                successor_start = Arrays.copyOf(successor_start, capacity);
+                successor_count = Arrays.copyOf(successor_count, capacity);
+            }
+            blocks[index] = b;
+            Collection<BasicBlock> succs = b.getSuccessors();
+            if (successors_size + succs.size() > successors.length)
+                successors = Arrays.copyOf(successors, Math.max(successors_size + succs.size(), 2 * successors.length));
+            successor_start[index] = successors_size;
+            successor_count[index] = succs.size();
+            for (BasicBlock succ : succs)
+                successors[successors_size++] = succ.getIndex();
+            for (AbstractNode n : b.getNodes())
+                addNode(n);
+        }
+    }
+
+    private void addNode(AbstractNode n) {
+        int index = n.getIndex();
+        if (index < 0)
+            throw new IllegalArgumentException("Node has not been added to flow graph: " + n);
+        if (index >= nodes.length) {
+            int capacity = Math.max(index + 1, 2 * nodes.length);
+            nodes = Arrays.copyOf(nodes, capacity);
+            opcodes = Arrays.copyOf(opcodes, capacity);
+        }
+        nodes[index] = n;
+        opcodes[index] = n instanceof Node ? (byte) ((Node) n).getOpcode().ordinal() : -1;
+    }
+
+    /**
+     * Checks whether the given block is included in this form.
+     */
+    public boolean contains(BasicBlock b) {
+        int index = b.getIndex();
+        return index >= 0 && index < blocks.length && blocks[index] == b;
+    }
+
+    /**
+     * Returns the block with the given index.
+     */
+    public BasicBlock getBlock(int block) {
+        return blocks[block];
+    }
+
+    /**
+     * Returns the number of successors of the block with the given index.
+     */
+    public int getNumberOfSuccessors(int block) {
+        return successor_count[block];
+    }
+
+    /**
+     * Returns the index of the i'th successor of the block with the given index.
+     */
+    public int getSuccessor(int block, int i) {
+        return successors[successor_start[block] + i];
+    }
+
+    /**
+     * Returns the node with the given index.
+     */
+    public AbstractNode getNode(int node) {
+        return nodes[node];
+    }
+
+    /**
+     * Returns the opcode of the node with the given index, or null if it is not a {@link Node}.
+     */
+    public Opcode getOpcode(int node) {
+        byte opcode = opcodes[node];
+        return opcode < 0 ? null : Opcode.get(opcode);
+    }
+}
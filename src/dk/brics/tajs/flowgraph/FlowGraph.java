@@ -66,6 +66,11 @@ public class FlowGraph {
      */
     private SyntacticHints syntacticHints;
 
+    /**
+     * Frozen array-based form of this flow graph.
+     */
+    private final CompactFlowGraph compact_flow_graph = new CompactFlowGraph();
+
     /**
      * Constructs a new uninitialized flow graph.
      */
@@ -139,6 +144,29 @@ public class FlowGraph {
         return main.getEntry();
     }
 
+    /**
+     * Returns the frozen array-based form of this flow graph.
+     * The form is the same object during the lifetime of the flow graph, but its contents change when the flow graph is frozen.
+     */
+    public CompactFlowGraph getCompactFlowGraph() {
+        return compact_flow_graph;
+    }
+
+    /**
+     * Rebuilds the frozen form from all the blocks of this flow graph.
+     * Must be called when the flow graph has been completed and all blocks and nodes have indices.
+     */
+    public void freeze() {
+        compact_flow_graph.rebuild(functions);
+    }
+
+    /**
+     * Updates the frozen form with the given blocks, which have been added or changed since the last freeze.
+     */
+    public void freeze(Collection<BasicBlock> blocks) {
+        compact_flow_graph.update(blocks);
+    }
+
     /**
      * Runs complete on all the functions in the flow graph.
      */
@@ -157,14 +185,23 @@ public class FlowGraph {
             if (HostEnvSources.isHostEnvSource(f.getSourceLocation())) {
                 continue;
             }
-            if (f == main)
-                b.append("<main> ");
-            b.append(f).append('\n');
-            List<BasicBlock> sortedBlocks = newList(f.getBlocks());
-            java.util.Collections.sort(sortedBlocks, (o1, o2) -> o1.getOrder() - o2.getOrder());
-            for (BasicBlock k : sortedBlocks) {
-                b.append("  ").append(k).append("\n");
-            }
+            b.append(toString(f));
+        }
+        return b.toString();
+    }
+
+    /**
+     * Returns a string description of the given function and its blocks, as it appears in {@link #toString()}.
+     */
+    public String toString(Function f) {
+        StringBuilder b = new StringBuilder();
+        if (f == main)
+            b.append("<main> ");
+        b.append(f).append('\n');
+        List<BasicBlock> sortedBlocks = newList(f.getBlocks());
+        java.util.Collections.sort(sortedBlocks, (o1, o2) -> o1.getOrder() - o2.getOrder());
+        for (BasicBlock k : sortedBlocks) {
+            b.append("  ").append(k).append("\n");
         }
         return b.toString();
     }
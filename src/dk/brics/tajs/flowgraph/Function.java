@@ -27,6 +27,7 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 import java.util.Set;
+import java.util.function.Consumer;
 
 import static dk.brics.tajs.util.Collections.newList;
 import static dk.brics.tajs.util.Collections.newSet;
@@ -113,6 +114,12 @@ public class Function {
      */
     private final String source;
 
+    /**
+     * Translation of the function body into the flow graph, or null if the body has been translated
+     * (see {@link dk.brics.tajs.options.OptionValues#isLazyFunctionBodiesEnabled()}).
+     */
+    private Consumer<FlowGraph> body_translation;
+
     /**
      * Constructs a new function.
      * The node set is initially empty, and the entry/exit nodes are not set.
@@ -480,4 +487,31 @@ public class Function {
     public String getSource() {
         return source;
     }
+
+    /**
+     * Defers the translation of the function body until {@link #translateBody(FlowGraph)} is called.
+     * Until then, the entry block leads directly to the ordinary exit.
+     */
+    public void setBodyTranslation(Consumer<FlowGraph> body_translation) {
+        this.body_translation = body_translation;
+    }
+
+    /**
+     * Returns true if the function body has been translated.
+     */
+    public boolean isBodyTranslated() {
+        return body_translation == null;
+    }
+
+    /**
+     * Translates the function body and adds it to the given flow graph, unless the body has been translated already.
+     * Must be called before the first flow to the function entry.
+     */
+    public void translateBody(FlowGraph flow_graph) {
+        if (body_translation == null)
+            return;
+        Consumer<FlowGraph> t = body_translation;
+        body_translation = null;
+        t.accept(flow_graph);
+    }
 }
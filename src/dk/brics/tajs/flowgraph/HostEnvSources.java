@@ -83,7 +83,11 @@ public class HostEnvSources {
     }
 
     public static boolean isHostEnvSource(SourceLocation sourceLocation) {
-        return sourceLocation.getPrettyFileName().startsWith(fileNamePrefix);
+        return sourceLocation.getSourceFile().isHostEnvSource();
+    }
+
+    static boolean isHostEnvFileName(String prettyFileName) {
+        return prettyFileName.startsWith(fileNamePrefix);
     }
 
     public static SourceLocation getLoaderDummySourceLocation() {
@@ -0,0 +1,140 @@
+/*
+ * Copyright 2009-2016 Aarhus University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dk.brics.tajs.flowgraph;
+
+import java.lang.ref.WeakReference;
+import java.net.URL;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Source file of a {@link SourceLocation}.
+ * <p>
+ * Source files are canonicalized, so all source locations in the same file share the same instance,
+ * and files can be compared by identity.
+ * Each file knows whether it is a host environment source (see {@link HostEnvSources}).
+ * Immutable.
+ */
+public final class SourceFile {
+
+    private static final Map<SourceFile, WeakReference<SourceFile>> cache = new WeakHashMap<>();
+
+    private static SourceFile last;
+
+    private final String prettyFileName;
+
+    private final URL location;
+
+    private final String external_location; // URL.equals and URL.hashCode may resolve host names, so the string form is used instead
+
+    private final boolean host_env;
+
+    private final int hashcode;
+
+    private SourceFile(String prettyFileName, URL location) {
+        this.prettyFileName = prettyFileName;
+        this.location = location;
+        this.external_location = location != null ? location.toExternalForm() : null;
+        this.host_env = HostEnvSources.isHostEnvFileName(prettyFileName);
+        this.hashcode = prettyFileName.hashCode() * 31 + (external_location != null ? external_location.hashCode() : 0);
+    }
+
+    /**
+     * Returns the canonical source file with the given pretty file name and location.
+     * Each occurrence of '\' is replaced by '/' in the pretty file name.
+     */
+    public static synchronized SourceFile get(String prettyFileName, URL location) {
+        prettyFileName = prettyFileName.replace('\\', '/');
+        if (last != null && last.matches(prettyFileName, location))
+            return last;
+        SourceFile f = new SourceFile(prettyFileName, location);
+        WeakReference<SourceFile> ref = cache.get(f);
+        SourceFile canonical = ref != null ? ref.get() : null;
+        if (canonical == null) {
+            canonical = f;
+            cache.put(f, new WeakReference<>(f));
+        }
+        last = canonical;
+        return canonical;
+    }
+
+    private boolean matches(String prettyFileName, URL location) {
+        if (!this.prettyFileName.equals(prettyFileName))
+            return false;
+        if (this.location == location)
+            return true;
+        return this.location != null && location != null && external_location.equals(location.toExternalForm());
+    }
+
+    /**
+     * Returns the source file name.
+     */
+    public String getPrettyFileName() {
+        return prettyFileName;
+    }
+
+    /**
+     * Returns the URL of the source file, or null if not available.
+     */
+    public URL getLocation() {
+        return location;
+    }
+
+    /**
+     * Checks whether this is a host environment source file.
+     */
+    public boolean isHostEnvSource() {
+        return host_env;
+    }
+
+    /**
+     * Compares source files by file name, and then by location.
+     */
+    int compareTo(SourceFile f) {
+        if (this == f)
+            return 0;
+        int c = prettyFileName.compareTo(f.prettyFileName);
+        if (c != 0)
+            return c;
+        if (external_location == null)
+            return f.external_location == null ? 0 : -1;
+        if (f.external_location == null)
+            return 1;
+        return external_location.compareTo(f.external_location);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o)
+            return true;
+        if (!(o instanceof SourceFile))
+            return false;
+        SourceFile f = (SourceFile) o;
+        return hashcode == f.hashcode && prettyFileName.equals(f.prettyFileName) &&
+                (external_location != null ? external_location.equals(f.external_location) : f.external_location == null);
+    }
+
+    @Override
+    public int hashCode() {
+        return hashcode;
+    }
+
+    @Override
+    public String toString() {
+        return prettyFileName;
+    }
+}
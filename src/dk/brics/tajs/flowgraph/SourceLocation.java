@@ -20,6 +20,10 @@ import java.net.URL;
 
 /**
  * Source location.
+ * <p>
+ * The source file is shared between all locations in the same file (see {@link SourceFile}),
+ * and the line and column numbers are packed into a single long, such that
+ * locations can be compared without looking at file names within the same file.
  */
 public class SourceLocation implements Comparable<SourceLocation> {
 
@@ -30,28 +34,17 @@ public class SourceLocation implements Comparable<SourceLocation> {
 
         SourceLocation that = (SourceLocation) o;
 
-        if (linenumber != that.linenumber) return false;
-        if (columnnumber != that.columnnumber) return false;
-        if (location != null ? !location.equals(that.location) : that.location != null) return false;
-        return prettyFileName != null ? prettyFileName.equals(that.prettyFileName) : that.prettyFileName == null;
+        return position == that.position && file == that.file;
     }
 
     @Override
     public int hashCode() {
-        int result = linenumber;
-        result = 31 * result + columnnumber;
-        result = 31 * result + (location != null ? location.hashCode() : 0);
-        result = 31 * result + (prettyFileName != null ? prettyFileName.hashCode() : 0);
-        return result;
+        return 31 * (31 * getLineNumber() + getColumnNumber()) + file.hashCode();
     }
 
-    private int linenumber;
+    private final SourceFile file;
 
-    private int columnnumber;
-
-    private final URL location;
-
-    private String prettyFileName;
+    private final long position; // line number in the high bits, column number (offset to order as signed) in the low bits
 
     /**
      * Constructs a new source location.
@@ -59,17 +52,30 @@ public class SourceLocation implements Comparable<SourceLocation> {
      * Each occurrence of '\' is replaced by '/' in the pretty file name.
      */
     public SourceLocation(int linenumber, int columnnumber, String prettyFileName, URL location) {
-        this.linenumber = linenumber;
-        this.columnnumber = columnnumber;
-        this.prettyFileName = prettyFileName.replace('\\', '/');
-        this.location = location;
+        this(linenumber, columnnumber, SourceFile.get(prettyFileName, location));
+    }
+
+    /**
+     * Constructs a new source location in the given source file.
+     * 0 means "no number".
+     */
+    public SourceLocation(int linenumber, int columnnumber, SourceFile file) {
+        this.file = file;
+        this.position = ((long) linenumber << 32) | ((columnnumber ^ Integer.MIN_VALUE) & 0xffffffffL);
+    }
+
+    /**
+     * Returns the source file.
+     */
+    public SourceFile getSourceFile() {
+        return file;
     }
 
     /**
      * Returns the source file name.
      */
     public String getPrettyFileName() {
-        return prettyFileName;
+        return file.getPrettyFileName();
     }
 
     /**
@@ -77,7 +83,7 @@ public class SourceLocation implements Comparable<SourceLocation> {
      * 0 means "no number".
      */
     public int getLineNumber() {
-        return linenumber;
+        return (int) (position >> 32);
     }
 
     /**
@@ -85,7 +91,7 @@ public class SourceLocation implements Comparable<SourceLocation> {
      * 0 means "no number".
      */
     public int getColumnNumber() {
-        return columnnumber;
+        return (int) position ^ Integer.MIN_VALUE;
     }
 
     /**
@@ -93,7 +99,9 @@ public class SourceLocation implements Comparable<SourceLocation> {
      */
     @Override
     public String toString() {
-        return prettyFileName + (linenumber > 0 ? ":" + linenumber + (columnnumber > 0 ? ":" + columnnumber : "") : "");
+        int linenumber = getLineNumber();
+        int columnnumber = getColumnNumber();
+        return getPrettyFileName() + (linenumber > 0 ? ":" + linenumber + (columnnumber > 0 ? ":" + columnnumber : "") : "");
     }
 
     /**
@@ -101,16 +109,18 @@ public class SourceLocation implements Comparable<SourceLocation> {
      */
     @Override
     public int compareTo(SourceLocation e) {
-        int c = prettyFileName.compareTo(e.prettyFileName);
+        if (file == e.file)
+            return Long.compare(position, e.position);
+        int c = getPrettyFileName().compareTo(e.getPrettyFileName());
         if (c != 0)
             return c;
-        c = linenumber - e.linenumber;
+        c = Long.compare(position, e.position);
         if (c != 0)
             return c;
-        return columnnumber - e.columnnumber;
+        return file.compareTo(e.file);
     }
 
     public URL getLocation() {
-        return location;
+        return file.getLocation();
     }
 }
@@ -16,6 +16,7 @@
 
 package dk.brics.tajs.flowgraph;
 
+import java.util.Collections;
 import java.util.Map;
 import java.util.Set;
 
@@ -59,6 +60,34 @@ public class SyntacticHints {
         correlatedAccessFunctions.add(function);
     }
 
+    /**
+     * Returns the literal allocation nodes that appear in for-in loops.
+     */
+    public Set<AbstractNode> getInForIn() {
+        return Collections.unmodifiableSet(inForIn);
+    }
+
+    /**
+     * Returns the variables read in each literal allocation.
+     */
+    public Map<AbstractNode, Set<String>> getVariableDependencies() {
+        return Collections.unmodifiableMap(variableDependencies);
+    }
+
+    /**
+     * Returns the loop variable candidates of each function.
+     */
+    public Map<Function, Set<String>> getLoopVariables() {
+        return Collections.unmodifiableMap(loopVariables);
+    }
+
+    /**
+     * Returns the functions that contain variables that are used as both property read and write names.
+     */
+    public Set<Function> getCorrelatedAccessFunctions() {
+        return Collections.unmodifiableSet(correlatedAccessFunctions);
+    }
+
     /**
      * Checks whether the given variable appears syntactically in the condition of a non-nested loop
      * and in a dynamic property read operation in the given function.
@@ -25,6 +25,8 @@ import dk.brics.tajs.flowgraph.SourceLocation;
  */
 public abstract class Node extends AbstractNode {
 
+    private Opcode opcode;
+
     /**
      * Constructs a new node.
      */
@@ -37,6 +39,15 @@ public abstract class Node extends AbstractNode {
      */
     public abstract void visitBy(NodeVisitor v);
 
+    /**
+     * Returns the kind of this node.
+     */
+    public Opcode getOpcode() {
+        if (opcode == null)
+            opcode = Opcode.of(this);
+        return opcode;
+    }
+
     @Override
     public void visitBy(AbstractNodeVisitor v) {
         v.visit(this);
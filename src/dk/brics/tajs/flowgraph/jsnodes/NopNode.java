@@ -40,6 +40,13 @@ public class NopNode extends Node {
         this.text = text;
     }
 
+    /**
+     * Returns the descriptive text, or null if none.
+     */
+    public String getText() {
+        return text;
+    }
+
     @Override
     public String toString() {
         if (text != null) {
@@ -0,0 +1,340 @@
+/*
+ * Copyright 2009-2016 Aarhus University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dk.brics.tajs.flowgraph.jsnodes;
+
+/**
+ * Node kinds, one for each kind of {@link Node}, in the order of {@link NodeVisitor}.
+ * Allows dispatching on the kind of a node with a switch instead of a visitor.
+ */
+public enum Opcode {
+
+    /**
+     * An {@link AssumeNode}.
+     */
+    ASSUME,
+
+    /**
+     * A {@link BinaryOperatorNode}.
+     */
+    BINARY_OPERATOR,
+
+    /**
+     * A {@link CallNode}.
+     */
+    CALL,
+
+    /**
+     * A {@link CatchNode}.
+     */
+    CATCH,
+
+    /**
+     * A {@link ConstantNode}.
+     */
+    CONSTANT,
+
+    /**
+     * A {@link DeletePropertyNode}.
+     */
+    DELETE_PROPERTY,
+
+    /**
+     * A {@link BeginWithNode}.
+     */
+    BEGIN_WITH,
+
+    /**
+     * An {@link ExceptionalReturnNode}.
+     */
+    EXCEPTIONAL_RETURN,
+
+    /**
+     * A {@link DeclareFunctionNode}.
+     */
+    DECLARE_FUNCTION,
+
+    /**
+     * A {@link BeginForInNode}.
+     */
+    BEGIN_FOR_IN,
+
+    /**
+     * An {@link IfNode}.
+     */
+    IF,
+
+    /**
+     * An {@link EndWithNode}.
+     */
+    END_WITH,
+
+    /**
+     * A {@link NewObjectNode}.
+     */
+    NEW_OBJECT,
+
+    /**
+     * A {@link NextPropertyNode}.
+     */
+    NEXT_PROPERTY,
+
+    /**
+     * A {@link HasNextPropertyNode}.
+     */
+    HAS_NEXT_PROPERTY,
+
+    /**
+     * A {@link NopNode}.
+     */
+    NOP,
+
+    /**
+     * A {@link ReadPropertyNode}.
+     */
+    READ_PROPERTY,
+
+    /**
+     * A {@link ReadVariableNode}.
+     */
+    READ_VARIABLE,
+
+    /**
+     * A {@link ReturnNode}.
+     */
+    RETURN,
+
+    /**
+     * A {@link ThrowNode}.
+     */
+    THROW,
+
+    /**
+     * A {@link TypeofNode}.
+     */
+    TYPEOF,
+
+    /**
+     * An {@link UnaryOperatorNode}.
+     */
+    UNARY_OPERATOR,
+
+    /**
+     * A {@link DeclareVariableNode}.
+     */
+    DECLARE_VARIABLE,
+
+    /**
+     * A {@link WritePropertyNode}.
+     */
+    WRITE_PROPERTY,
+
+    /**
+     * A {@link WriteVariableNode}.
+     */
+    WRITE_VARIABLE,
+
+    /**
+     * An {@link EventDispatcherNode}.
+     */
+    EVENT_DISPATCHER,
+
+    /**
+     * An {@link EndForInNode}.
+     */
+    END_FOR_IN,
+
+    /**
+     * A {@link BeginLoopNode}.
+     */
+    BEGIN_LOOP,
+
+    /**
+     * An {@link EndLoopNode}.
+     */
+    END_LOOP;
+
+    private static final Opcode[] opcodes = values();
+
+    /**
+     * Returns the opcode with the given ordinal.
+     */
+    public static Opcode get(int ordinal) {
+        return opcodes[ordinal];
+    }
+
+    /**
+     * Returns the opcode of the given node.
+     */
+    public static Opcode of(Node n) {
+        Classifier c = new Classifier();
+        n.visitBy(c);
+        return c.opcode;
+    }
+
+    /**
+     * Visitor that finds the opcode of a node.
+     */
+    private static final class Classifier implements NodeVisitor {
+
+        private Opcode opcode;
+
+        @Override
+        public void visit(AssumeNode n) {
+            opcode = ASSUME;
+        }
+
+        @Override
+        public void visit(BinaryOperatorNode n) {
+            opcode = BINARY_OPERATOR;
+        }
+
+        @Override
+        public void visit(CallNode n) {
+            opcode = CALL;
+        }
+
+        @Override
+        public void visit(CatchNode n) {
+            opcode = CATCH;
+        }
+
+        @Override
+        public void visit(ConstantNode n) {
+            opcode = CONSTANT;
+        }
+
+        @Override
+        public void visit(DeletePropertyNode n) {
+            opcode = DELETE_PROPERTY;
+        }
+
+        @Override
+        public void visit(BeginWithNode n) {
+            opcode = BEGIN_WITH;
+        }
+
+        @Override
+        public void visit(ExceptionalReturnNode n) {
+            opcode = EXCEPTIONAL_RETURN;
+        }
+
+        @Override
+        public void visit(DeclareFunctionNode n) {
+            opcode = DECLARE_FUNCTION;
+        }
+
+        @Override
+        public void visit(BeginForInNode n) {
+            opcode = BEGIN_FOR_IN;
+        }
+
+        @Override
+        public void visit(IfNode n) {
+            opcode = IF;
+        }
+
+        @Override
+        public void visit(EndWithNode n) {
+            opcode = END_WITH;
+        }
+
+        @Override
+        public void visit(NewObjectNode n) {
+            opcode = NEW_OBJECT;
+        }
+
+        @Override
+        public void visit(NextPropertyNode n) {
+            opcode = NEXT_PROPERTY;
+        }
+
+        @Override
+        public void visit(HasNextPropertyNode n) {
+            opcode = HAS_NEXT_PROPERTY;
+        }
+
+        @Override
+        public void visit(NopNode n) {
+            opcode = NOP;
+        }
+
+        @Override
+        public void visit(ReadPropertyNode n) {
+            opcode = READ_PROPERTY;
+        }
+
+        @Override
+        public void visit(ReadVariableNode n) {
+            opcode = READ_VARIABLE;
+        }
+
+        @Override
+        public void visit(ReturnNode n) {
+            opcode = RETURN;
+        }
+
+        @Override
+        public void visit(ThrowNode n) {
+            opcode = THROW;
+        }
+
+        @Override
+        public void visit(TypeofNode n) {
+            opcode = TYPEOF;
+        }
+
+        @Override
+        public void visit(UnaryOperatorNode n) {
+            opcode = UNARY_OPERATOR;
+        }
+
+        @Override
+        public void visit(DeclareVariableNode n) {
+            opcode = DECLARE_VARIABLE;
+        }
+
+        @Override
+        public void visit(WritePropertyNode n) {
+            opcode = WRITE_PROPERTY;
+        }
+
+        @Override
+        public void visit(WriteVariableNode n) {
+            opcode = WRITE_VARIABLE;
+        }
+
+        @Override
+        public void visit(EventDispatcherNode n) {
+            opcode = EVENT_DISPATCHER;
+        }
+
+        @Override
+        public void visit(EndForInNode n) {
+            opcode = END_FOR_IN;
+        }
+
+        @Override
+        public void visit(BeginLoopNode n) {
+            opcode = BEGIN_LOOP;
+        }
+
+        @Override
+        public void visit(EndLoopNode n) {
+            opcode = END_LOOP;
+        }
+    }
+}
@@ -202,6 +202,29 @@ public class ASTInfo {
         newFunctions.forEach(this::updateFunctionsWithVariableCorrelatedPropertyAccesses);
     }
 
+    /**
+     * Adds the information gathered by another instance.
+     * The other instance must have been updated with different ASTs than this one,
+     * so the result is the same as if this instance had been updated with those ASTs.
+     */
+    public void addAll(ASTInfo other) {
+        nestedLoops.addAll(other.nestedLoops);
+        loopConditionVariableReads.putAll(other.loopConditionVariableReads);
+        loopNonInitializerVariableWrites.putAll(other.loopNonInitializerVariableWrites);
+        loopNonInitializerDynamicPropertyVariableReads.putAll(other.loopNonInitializerDynamicPropertyVariableReads);
+        literalsInForIn.addAll(other.literalsInForIn);
+        functionsOrLoopsWithDynamicPropertyReads.addAll(other.functionsOrLoopsWithDynamicPropertyReads);
+        dynamicPropertyWrites.addAll(other.dynamicPropertyWrites);
+        variableReadsInLiterals.putAll(other.variableReadsInLiterals);
+        functionVariableReads.putAll(other.functionVariableReads);
+        functionVariableDeclarations.putAll(other.functionVariableDeclarations);
+        functionClosureVariables.putAll(other.functionClosureVariables);
+        functionHierarchy.putAll(other.functionHierarchy);
+        functions.addAll(other.functions);
+        functionsWithVariablesAsPropertyAccessName.putAll(other.functionsWithVariablesAsPropertyAccessName);
+        functionsWithVariableCorrelatedPropertyAccesses.putAll(other.functionsWithVariableCorrelatedPropertyAccesses);
+    }
+
     private void updateFunctionsWithVariableCorrelatedPropertyAccesses(FunctionDeclarationTree fun) {
         if (!functionsWithVariablesAsPropertyAccessName.containsKey(fun)) {
             return;
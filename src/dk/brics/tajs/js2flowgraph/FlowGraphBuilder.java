@@ -48,10 +48,16 @@ import org.apache.log4j.Logger;
 import java.net.URL;
 import java.nio.file.Paths;
 import java.util.Collection;
+import java.util.IdentityHashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.Stack;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.stream.Collectors;
 
 import static dk.brics.tajs.js2flowgraph.FunctionBuilderHelper.addNodeToBlock;
@@ -88,6 +94,16 @@ public class FlowGraphBuilder {
 
     private SyntacticHintsCollector syntacticHintsCollector;
 
+    /**
+     * Sources that are being parsed ahead of their transformation, see {@link #parseAhead(List)}.
+     */
+    private final Map<JavaScriptSource, Future<ParsedProgram>> parsedAhead = new IdentityHashMap<>();
+
+    /**
+     * Cache of translated files, null if disabled.
+     */
+    private final FlowGraphCache flowGraphCache;
+
     /**
      * Constructs a new flow graph builder using a fresh environment.
      */
@@ -109,6 +125,9 @@ public class FlowGraphBuilder {
             env = AstEnv.makeInitial();
             Function main = new Function(null, null, null, new SourceLocation(0, 0, prettyFileName, location));
             env = setupFunction(main, env, fab);
+            flowGraphCache = FlowGraphCache.make();
+        } else {
+            flowGraphCache = null; // code added to an existing flow graph is not cached
         }
         functionAndBlocksManager = fab;
         astInfo = new ASTInfo();
@@ -134,19 +153,72 @@ public class FlowGraphBuilder {
      */
     Function transformCode(JavaScriptSource source, int lineOffset, int columnOffset) {
         final AstEnv env = initialEnv.makeAppendBlock(processed.getAppendBlock());
-        ProgramTree t = makeAST(source.getLocation(), source.getPrettyFileName(), source.getCode(), lineOffset, columnOffset);
+        if (isCacheable(source, lineOffset, columnOffset)) {
+            return transformCachedCode(source, env);
+        }
+        ProgramTree t = makeAST(source, lineOffset, columnOffset);
         processed = new FunctionBuilder(astInfo, functionAndBlocksManager, source.getLocation(), syntacticHintsCollector).process(t, env);
         return processed.getAppendBlock().getFunction();
     }
 
     /**
-     * Parses the given JavaScript code.
+     * Checks whether the translation of the given code can be cached, see {@link FlowGraphCache}.
+     * Only files without location offsets are cached.
      */
-    private ProgramTree makeAST(URL location, String prettyFileName, String sourceContent, int lineOffset, int columnOffset) {
+    private boolean isCacheable(JavaScriptSource source, int lineOffset, int columnOffset) {
+        return flowGraphCache != null && source.getKind() == JavaScriptSource.Kind.FILE && lineOffset == 0 && columnOffset == 0;
+    }
+
+    /**
+     * Transforms the given file using the flow graph cache, and appends it to the main function.
+     * If the file is not in the cache, it is transformed and the result is stored in the cache.
+     */
+    private Function transformCachedCode(JavaScriptSource source, AstEnv env) {
         if (closed) {
             throw new RuntimeException("Already closed.");
         }
+        BasicBlock appendBlock = flowGraphCache.load(source, env, functionAndBlocksManager, syntacticHintsCollector);
+        if (appendBlock != null) {
+            Future<ParsedProgram> future = parsedAhead.remove(source);
+            if (future != null) {
+                future.cancel(false);
+            }
+        } else {
+            ProgramTree t = makeAST(source, 0, 0);
+            FlowGraphCache.Recording recording = flowGraphCache.startRecording(env, functionAndBlocksManager, syntacticHintsCollector);
+            try {
+                appendBlock = new FunctionBuilder(astInfo, functionAndBlocksManager, source.getLocation(), syntacticHintsCollector).process(t, env).getAppendBlock();
+            } finally {
+                flowGraphCache.stopRecording(source, recording, appendBlock, functionAndBlocksManager, syntacticHintsCollector);
+            }
+        }
+        processed = TranslationResult.makeAppendBlock(appendBlock);
+        return appendBlock.getFunction();
+    }
 
+    /**
+     * Parses the given JavaScript code, or takes the result of parsing it ahead.
+     */
+    private ProgramTree makeAST(JavaScriptSource source, int lineOffset, int columnOffset) {
+        if (closed) {
+            throw new RuntimeException("Already closed.");
+        }
+        ParsedProgram parsed = takeParsedAhead(source, lineOffset, columnOffset);
+        if (parsed != null) {
+            reportParseMessages(parsed.parseResult);
+            astInfo.addAll(parsed.astInfo);
+            return parsed.parseResult.getProgramAST();
+        }
+        ParseResult parseResult = parse(parser, source, lineOffset, columnOffset);
+        reportParseMessages(parseResult);
+        astInfo.updateWith(parseResult.getProgramAST());
+        return parseResult.getProgramAST();
+    }
+
+    /**
+     * Parses the given JavaScript code with the given location offsets.
+     */
+    private static ParseResult parse(JavaScriptParser parser, JavaScriptSource source, int lineOffset, int columnOffset) {
         // add line/column offsets (a bit hacky - but it avoids other silly encodings or extra fields)
         StringBuilder s = new StringBuilder();
         for (int i = 0; i < lineOffset; i++) {
@@ -155,12 +227,94 @@ public class FlowGraphBuilder {
         for (int i = 0; i < columnOffset; i++) {
             s.append(" ");
         }
-        s.append(sourceContent);
+        s.append(source.getCode());
+        return parser.parse(source.getLocation(), source.getPrettyFileName(), s.toString());
+    }
 
-        ParseResult parseResult = parser.parse(location, prettyFileName, s.toString());
-        reportParseMessages(parseResult);
-        astInfo.updateWith(parseResult.getProgramAST());
-        return parseResult.getProgramAST();
+    /**
+     * Starts parsing the given sources concurrently, using the number of threads given by {@link Options#getParsingThreads()}.
+     * The AST information of each source is collected by the same thread that parses it.
+     * <p>
+     * The sources must still be transformed afterwards, and the transformation remains sequential:
+     * parse errors are reported, the AST information is added, and functions and blocks are created
+     * in the order of the transformations, so the resulting flow graph does not depend on the order the parsing completes in.
+     * Does nothing if parallel parsing is not enabled.
+     */
+    public void parseAhead(List<JavaScriptSource> sources) {
+        int threads = Math.min(Options.get().getParsingThreads(), sources.size());
+        if (threads <= 1) {
+            return;
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "TAJS parser");
+            t.setDaemon(true);
+            return t;
+        });
+        for (JavaScriptSource source : sources) {
+            if (isCacheable(source, 0, 0) && flowGraphCache.contains(source)) {
+                continue;
+            }
+            // event handlers and embedded code are parsed with their offsets, see transformWebAppCode
+            boolean offsets = source.getKind() != JavaScriptSource.Kind.FILE;
+            int lineOffset = offsets ? source.getLineOffset() : 0;
+            int columnOffset = offsets ? source.getColumnOffset() : 0;
+            parsedAhead.put(source, executor.submit(() -> {
+                ParseResult parseResult = parse(new JavaScriptParser(mode), source, lineOffset, columnOffset);
+                ASTInfo info = new ASTInfo();
+                if (parseResult.getErrors().isEmpty()) {
+                    info.updateWith(parseResult.getProgramAST());
+                }
+                return new ParsedProgram(parseResult, info, lineOffset, columnOffset);
+            }));
+        }
+        executor.shutdown();
+    }
+
+    /**
+     * Returns the result of parsing the given source ahead, or null if it has not been parsed ahead with the given offsets.
+     */
+    private ParsedProgram takeParsedAhead(JavaScriptSource source, int lineOffset, int columnOffset) {
+        Future<ParsedProgram> future = parsedAhead.remove(source);
+        if (future == null) {
+            return null;
+        }
+        ParsedProgram parsed;
+        try {
+            parsed = future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AnalysisException(e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new AnalysisException(e.getCause());
+        }
+        if (parsed.lineOffset != lineOffset || parsed.columnOffset != columnOffset) {
+            return null;
+        }
+        return parsed;
+    }
+
+    /**
+     * Result of parsing a source ahead of its transformation.
+     */
+    private static final class ParsedProgram {
+
+        private final ParseResult parseResult;
+
+        private final ASTInfo astInfo;
+
+        private final int lineOffset;
+
+        private final int columnOffset;
+
+        private ParsedProgram(ParseResult parseResult, ASTInfo astInfo, int lineOffset, int columnOffset) {
+            this.parseResult = parseResult;
+            this.astInfo = astInfo;
+            this.lineOffset = lineOffset;
+            this.columnOffset = columnOffset;
+        }
     }
 
     /**
@@ -201,7 +355,7 @@ public class FlowGraphBuilder {
             }
 
             case EVENTHANDLER: {
-                Function function = transformFunctionBody(s.getLocation(), s.getPrettyFileName(), s.getCode(), s.getLineOffset(), s.getColumnOffset(), initialEnv);
+                Function function = transformFunctionBody(s, s.getLineOffset(), s.getColumnOffset(), initialEnv);
                 function.getNode().setDomEventType(s.getEventKind());
                 return function;
             }
@@ -215,8 +369,9 @@ public class FlowGraphBuilder {
      *
      * @return the new function
      */
-    private Function transformFunctionBody(URL location, String prettyFileName, String sourceContent, int lineOffset, int columnOffset, AstEnv env) {
-        ProgramTree tree = makeAST(location, prettyFileName, sourceContent, lineOffset, columnOffset);
+    private Function transformFunctionBody(JavaScriptSource source, int lineOffset, int columnOffset, AstEnv env) {
+        URL location = source.getLocation();
+        ProgramTree tree = makeAST(source, lineOffset, columnOffset);
         FormalParameterListTree params = new FormalParameterListTree(tree.location, ImmutableList.of());
         return new FunctionBuilder(astInfo, functionAndBlocksManager, location, syntacticHintsCollector).processFunctionDeclaration(Kind.DECLARATION, null, params, tree, env, makeSourceLocation(tree, location), null);
     }
@@ -246,7 +401,11 @@ public class FlowGraphBuilder {
      */
     public FlowGraph close(FlowGraph flowGraph, BasicBlock exitBlock) {
         closed = true;
+        if (flowGraphCache != null && log.isDebugEnabled()) {
+            log.debug("Flow graph cache hits: " + flowGraphCache.getNumberOfHits() + ", misses: " + flowGraphCache.getNumberOfMisses());
+        }
 
+        boolean extending = flowGraph != null;
         if (flowGraph == null) {
             // assume old flowgraph already has these.
 
@@ -272,11 +431,100 @@ public class FlowGraphBuilder {
         }
         flowGraph.getFunctions().forEach(f -> setEntryBlocks(f, functionAndBlocksManager));
 
-        // bypass empty basic blocks
+        bypassEmptyBlocks(blocksAndFunctions.getSecond());
+
+        // optimize the new blocks, unless extending (the existing blocks may be referenced by the analysis)
+        if (!extending && FlowGraphOptimizer.isEnabled())
+            FlowGraphOptimizer.optimize(blocksAndFunctions.getSecond());
+
+        // add each non-empty basic block to the flow graph
+        for (BasicBlock b : blocksAndFunctions.getSecond()) {
+            if (!b.isEmpty()) {
+                flowGraph.addBlock(b);
+            }
+        }
+
+        linkForInNodes(flowGraph.getFunctions());
+
+        if (!extending && RegisterLiveness.isEnabled())
+            flowGraph.getFunctions().forEach(RegisterLiveness::compute);
+
+        // set block orders
+        flowGraph.complete();
+
+        // Avoid changes to block- & node-indexes due to a change in a hostenv-source.
+        // (dynamically added code from eval et. al will still change)
+        List<Function> sortedFunctions = newList(flowGraph.getFunctions());
+        java.util.Collections.sort(sortedFunctions, (f1, f2) -> {
+            boolean f1host = HostEnvSources.isHostEnvSource(f1.getSourceLocation());
+            boolean f2host = HostEnvSources.isHostEnvSource(f2.getSourceLocation());
+            if (f1host != f2host) {
+                return f1host ? 1 : -1;
+            }
+            return 0;
+        });
+        setIndices(sortedFunctions, origBlockCount, origNodeCount);
+        flowGraph.freeze();
+
+        if (Options.get().isTestFlowGraphBuilderEnabled())
+            log.info("fg2: " + flowGraph);
+        return flowGraph;
+    }
+
+    /**
+     * Completes the translation of a function body that has been deferred (see {@link FlowGraphMutator#translateFunctionBody}).
+     * Unlike {@link #close(FlowGraph, BasicBlock)}, only the given function and the functions declared in its body are visited,
+     * so the cost does not depend on the size of the existing flow graph.
+     *
+     * @param flowGraph the existing flow graph, which contains the given function
+     */
+    void closeFunctionBody(FlowGraph flowGraph, Function function) {
+        closed = true;
+        int origBlockCount = flowGraph.getNumberOfBlocks();
+        int origNodeCount = flowGraph.getNumberOfNodes();
+
+        // wire the last processed block to the exit
+        processed.getAppendBlock().addSuccessor(function.getOrdinaryExit());
+
+        Pair<List<Function>, List<BasicBlock>> blocksAndFunctions = functionAndBlocksManager.close();
+        List<Function> functions = newList();
+        functions.add(function);
+        for (Function f : blocksAndFunctions.getFirst()) {
+            flowGraph.addFunction(f);
+            functions.add(f);
+        }
+        functions.forEach(f -> setEntryBlocks(f, functionAndBlocksManager));
+
+        // the entry block is already in the flow graph, but its successor is new and may be empty
+        List<BasicBlock> blocks = newList(blocksAndFunctions.getSecond());
+        blocks.add(function.getEntry());
+        bypassEmptyBlocks(blocks);
+        if (FlowGraphOptimizer.isEnabled())
+            FlowGraphOptimizer.optimize(blocks);
+        for (BasicBlock b : blocksAndFunctions.getSecond()) {
+            if (!b.isEmpty()) {
+                flowGraph.addBlock(b);
+            }
+        }
+        linkForInNodes(functions);
+        if (RegisterLiveness.isEnabled())
+            functions.forEach(RegisterLiveness::compute);
+        functions.forEach(Function::complete);
+        setIndices(functions, origBlockCount, origNodeCount);
+        functions.forEach(f -> flowGraph.freeze(f.getBlocks())); // includes the entry block, which has a new successor
+
+        if (Options.get().isTestFlowGraphBuilderEnabled())
+            log.info("fg2: " + function);
+    }
+
+    /**
+     * Bypasses empty basic blocks among the successors of the given blocks.
+     */
+    private static void bypassEmptyBlocks(List<BasicBlock> blocks) {
         boolean changed;
         do {
             changed = false;
-            for (BasicBlock b1 : blocksAndFunctions.getSecond()) {
+            for (BasicBlock b1 : blocks) {
                 for (BasicBlock b2 : newList(b1.getSuccessors())) {
                     // b1 has an ordinary edge to b2
                     if (b2.isEmpty()) {
@@ -302,17 +550,14 @@ public class FlowGraphBuilder {
                 }
             }
         } while (changed);
+    }
 
-        // add each non-empty basic block to the flow graph
-        for (BasicBlock b : blocksAndFunctions.getSecond()) {
-            if (!b.isEmpty()) {
-                flowGraph.addBlock(b);
-            }
-        }
-
-        // complete links from end-for-in nodes to begin-for-in nodes (cannot be done at constructor time due to later cloning)
+    /**
+     * Completes links from end-for-in nodes to begin-for-in nodes in the given functions (cannot be done at constructor time due to later cloning).
+     */
+    private static void linkForInNodes(Collection<Function> functions) {
         Collection<EndForInNode> ends = newList();
-        for (Function f : flowGraph.getFunctions()) {
+        for (Function f : functions) {
             for (BasicBlock b : f.getBlocks()) {
                 for (AbstractNode n : b.getNodes()) {
                     if (n instanceof EndForInNode) {
@@ -327,25 +572,13 @@ public class FlowGraphBuilder {
         for (EndForInNode end : ends) {
             end.getBeginNode().getEndNodes().add(end);
         }
+    }
 
-        int blockCount = origBlockCount;
-        int nodeCount = origNodeCount;
-
-        // set block orders
-        flowGraph.complete();
-
-        // Avoid changes to block- & node-indexes due to a change in a hostenv-source.
-        // (dynamically added code from eval et. al will still change)
-        List<Function> sortedFunctions = newList(flowGraph.getFunctions());
-        java.util.Collections.sort(sortedFunctions, (f1, f2) -> {
-            boolean f1host = HostEnvSources.isHostEnvSource(f1.getSourceLocation());
-            boolean f2host = HostEnvSources.isHostEnvSource(f2.getSourceLocation());
-            if (f1host != f2host) {
-                return f1host ? 1 : -1;
-            }
-            return 0;
-        });
-        for (Function function : sortedFunctions) {
+    /**
+     * Sets the indices of the blocks and nodes in the given functions that do not have an index yet, in block order.
+     */
+    private static void setIndices(List<Function> functions, int blockCount, int nodeCount) {
+        for (Function function : functions) {
             List<BasicBlock> blocks = newList(function.getBlocks());
             java.util.Collections.sort(blocks, (o1, o2) -> o1.getOrder() - o2.getOrder());
 
@@ -359,10 +592,6 @@ public class FlowGraphBuilder {
                     }
             }
         }
-
-        if (Options.get().isTestFlowGraphBuilderEnabled())
-            log.info("fg2: " + flowGraph);
-        return flowGraph;
     }
 
     /**
@@ -507,7 +736,7 @@ public class FlowGraphBuilder {
 
         sources.stream().map(source -> {
             // make a function for each source ...
-            ProgramTree tree = makeAST(source.getLocation(), source.getPrettyFileName(), source.getCode(), source.getLineOffset(), source.getColumnOffset());
+            ProgramTree tree = makeAST(source, source.getLineOffset(), source.getColumnOffset());
 
             FormalParameterListTree params = new FormalParameterListTree(tree.location, ImmutableList.<ParseTree>of());
 
@@ -0,0 +1,1696 @@
+/*
+ * Copyright 2009-2016 Aarhus University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dk.brics.tajs.js2flowgraph;
+
+import dk.brics.tajs.flowgraph.AbstractNode;
+import dk.brics.tajs.flowgraph.BasicBlock;
+import dk.brics.tajs.flowgraph.EventType;
+import dk.brics.tajs.flowgraph.Function;
+import dk.brics.tajs.flowgraph.JavaScriptSource;
+import dk.brics.tajs.flowgraph.SourceLocation;
+import dk.brics.tajs.flowgraph.SyntacticHints;
+import dk.brics.tajs.flowgraph.jsnodes.AssumeNode;
+import dk.brics.tajs.flowgraph.jsnodes.BeginForInNode;
+import dk.brics.tajs.flowgraph.jsnodes.BeginLoopNode;
+import dk.brics.tajs.flowgraph.jsnodes.BeginWithNode;
+import dk.brics.tajs.flowgraph.jsnodes.BinaryOperatorNode;
+import dk.brics.tajs.flowgraph.jsnodes.CallNode;
+import dk.brics.tajs.flowgraph.jsnodes.CatchNode;
+import dk.brics.tajs.flowgraph.jsnodes.ConstantNode;
+import dk.brics.tajs.flowgraph.jsnodes.DeclareFunctionNode;
+import dk.brics.tajs.flowgraph.jsnodes.DeclareVariableNode;
+import dk.brics.tajs.flowgraph.jsnodes.DeletePropertyNode;
+import dk.brics.tajs.flowgraph.jsnodes.EndForInNode;
+import dk.brics.tajs.flowgraph.jsnodes.EndLoopNode;
+import dk.brics.tajs.flowgraph.jsnodes.EndWithNode;
+import dk.brics.tajs.flowgraph.jsnodes.EventDispatcherNode;
+import dk.brics.tajs.flowgraph.jsnodes.ExceptionalReturnNode;
+import dk.brics.tajs.flowgraph.jsnodes.HasNextPropertyNode;
+import dk.brics.tajs.flowgraph.jsnodes.IfNode;
+import dk.brics.tajs.flowgraph.jsnodes.NewObjectNode;
+import dk.brics.tajs.flowgraph.jsnodes.NextPropertyNode;
+import dk.brics.tajs.flowgraph.jsnodes.Node;
+import dk.brics.tajs.flowgraph.jsnodes.NodeVisitor;
+import dk.brics.tajs.flowgraph.jsnodes.NopNode;
+import dk.brics.tajs.flowgraph.jsnodes.ReadPropertyNode;
+import dk.brics.tajs.flowgraph.jsnodes.ReadVariableNode;
+import dk.brics.tajs.flowgraph.jsnodes.ReturnNode;
+import dk.brics.tajs.flowgraph.jsnodes.ThrowNode;
+import dk.brics.tajs.flowgraph.jsnodes.TypeofNode;
+import dk.brics.tajs.flowgraph.jsnodes.UnaryOperatorNode;
+import dk.brics.tajs.flowgraph.jsnodes.WritePropertyNode;
+import dk.brics.tajs.flowgraph.jsnodes.WriteVariableNode;
+import dk.brics.tajs.options.Options;
+import dk.brics.tajs.util.AnalysisException;
+import dk.brics.tajs.util.Pair;
+import org.apache.log4j.Logger;
+
+import java.io.IOException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static dk.brics.tajs.util.Collections.newList;
+import static dk.brics.tajs.util.Collections.newMap;
+import static dk.brics.tajs.util.Collections.newSet;
+
+/**
+ * Persistent cache of translated JavaScript files, see {@link dk.brics.tajs.options.OptionValues#getFlowGraphCacheDirectory()}.
+ * <p>
+ * An entry describes what the translation of a file as top-level code of the main function adds to the flow graph under construction:
+ * the new functions, blocks and nodes, the nodes and successors added to existing blocks of the main function,
+ * the variables declared in the main function, the unreachable blocks, and the syntactic hints.
+ * The AST information is not stored, as it is only used during the translation.
+ * <p>
+ * Entries are keyed by a hash of the file contents and the options that affect the translation,
+ * so the same library is shared between applications regardless of its file name.
+ * Source locations in the file are stored without the file name, and registers of the main function are stored relative
+ * to the first register that is available for the file, so an entry can be stitched into any flow graph under construction.
+ * Block and node indices are not stored, as they are assigned when the flow graph is closed.
+ */
+class FlowGraphCache {
+
+    private static final Logger log = Logger.getLogger(FlowGraphCache.class);
+
+    /**
+     * Version of the entry format, must be changed whenever the format or the translation changes.
+     */
+    private static final int VERSION = 1;
+
+    private static final int MAGIC = 0x54414a53;
+
+    private static final String SUFFIX = ".fg";
+
+    // block references: existing blocks of the main function, or blocks of the entry
+
+    private static final int START_BLOCK = 0;
+
+    private static final int MAIN_ENTRY = 1;
+
+    private static final int MAIN_ORDINARY_EXIT = 2;
+
+    private static final int MAIN_EXCEPTIONAL_EXIT = 3;
+
+    private static final int NO_BLOCK = 4;
+
+    private static final int FIRST_BLOCK = 5;
+
+    // function references
+
+    private static final int NO_FUNCTION = 0;
+
+    private static final int MAIN_FUNCTION = 1;
+
+    private static final int FIRST_FUNCTION = 2;
+
+    // source location kinds
+
+    private static final int NO_LOCATION = 0;
+
+    private static final int LOCAL_LOCATION = 1;
+
+    private static final int FOREIGN_LOCATION = 2;
+
+    // function source kinds
+
+    private static final int NO_SOURCE = 0;
+
+    private static final int SUBSTRING_SOURCE = 1;
+
+    private static final int STRING_SOURCE = 2;
+
+    /**
+     * Node kinds, in the order of {@link NodeVisitor}.
+     */
+    private enum NodeKind {
+        ASSUME, BINARY_OPERATOR, CALL, CATCH, CONSTANT, DELETE_PROPERTY, BEGIN_WITH, EXCEPTIONAL_RETURN,
+        DECLARE_FUNCTION, BEGIN_FOR_IN, IF, END_WITH, NEW_OBJECT, NEXT_PROPERTY, HAS_NEXT_PROPERTY, NOP,
+        READ_PROPERTY, READ_VARIABLE, RETURN, THROW, TYPEOF, UNARY_OPERATOR, DECLARE_VARIABLE, WRITE_PROPERTY,
+        WRITE_VARIABLE, EVENT_DISPATCHER, END_FOR_IN, BEGIN_LOOP, END_LOOP
+    }
+
+    private final Path directory;
+
+    private int hits;
+
+    private int misses;
+
+    private FlowGraphCache(Path directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Creates a cache for the directory given by the options.
+     *
+     * @return the cache, or null if caching is disabled or the directory cannot be created
+     */
+    static FlowGraphCache make() {
+        String dir = Options.get().getFlowGraphCacheDirectory();
+        if (dir == null) {
+            return null;
+        }
+        if (Options.get().isLazyFunctionBodiesEnabled()) {
+            log.warn("Flow graph cache is not supported with lazy function bodies");
+            return null;
+        }
+        Path directory = Paths.get(dir);
+        try {
+            Files.createDirectories(directory);
+        } catch (IOException e) {
+            log.warn("Unable to create flow graph cache directory " + directory + ": " + e);
+            return null;
+        }
+        return new FlowGraphCache(directory);
+    }
+
+    /**
+     * Returns the number of cache hits.
+     */
+    int getNumberOfHits() {
+        return hits;
+    }
+
+    /**
+     * Returns the number of cache misses.
+     */
+    int getNumberOfMisses() {
+        return misses;
+    }
+
+    /**
+     * Checks whether the given source has an entry.
+     */
+    boolean contains(JavaScriptSource source) {
+        return Files.exists(getEntryFile(source));
+    }
+
+    private Path getEntryFile(JavaScriptSource source) {
+        return directory.resolve(makeKey(source) + SUFFIX);
+    }
+
+    /**
+     * Computes the entry key of the given source.
+     */
+    private static String makeKey(JavaScriptSource source) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new AnalysisException(e);
+        }
+        String fingerprint = String.format("version=%d,unrolling=%b,determinacy=%b,unevalizer=%b,",
+                VERSION, Options.get().isLoopUnrollingEnabled(), Options.get().isDeterminacyEnabled(), Options.get().isUnevalizerEnabled());
+        String code = source.getCode();
+        ByteBuffer bytes = ByteBuffer.allocate(2 * (fingerprint.length() + code.length()));
+        bytes.asCharBuffer().put(fingerprint).put(code); // the raw UTF-16 code units, as the code may contain unpaired surrogates
+        digest.update(bytes);
+        StringBuilder key = new StringBuilder();
+        for (byte b : digest.digest()) {
+            key.append(String.format("%02x", b));
+        }
+        return key.toString();
+    }
+
+    /**
+     * Starts recording the translation of a file.
+     *
+     * @param env environment of the translation of the top-level code
+     */
+    Recording startRecording(AstEnv env, FunctionAndBlockManager functionAndBlocksManager, SyntacticHintsCollector syntacticHintsCollector) {
+        syntacticHintsCollector.startRecording();
+        return new Recording(env, functionAndBlocksManager);
+    }
+
+    /**
+     * Stops recording the translation of a file, and stores the entry for the file if the translation completed.
+     *
+     * @param appendBlock the block where the translation ended, null if the translation did not complete
+     */
+    void stopRecording(JavaScriptSource source, Recording recording, BasicBlock appendBlock, FunctionAndBlockManager functionAndBlocksManager, SyntacticHintsCollector syntacticHintsCollector) {
+        SyntacticHints hints = syntacticHintsCollector.stopRecording();
+        if (appendBlock == null) {
+            return;
+        }
+        byte[] entry;
+        try {
+            entry = new Encoder(source, recording, functionAndBlocksManager, hints).encode(appendBlock);
+        } catch (NotCacheableException e) {
+            log.debug("Not caching flow graph of " + source.getPrettyFileName() + ": " + e.getMessage());
+            return;
+        }
+        Path file = getEntryFile(source);
+        try {
+            // write to a temporary file first, so concurrent readers never see a partial entry
+            Path tmp = Files.createTempFile(directory, "tmp", SUFFIX);
+            Files.write(tmp, entry);
+            try {
+                Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            log.warn("Unable to write flow graph cache entry " + file + ": " + e);
+        }
+    }
+
+    /**
+     * Adds the cached translation of the given file to the flow graph under construction.
+     *
+     * @param env environment of the translation of the top-level code
+     * @return the block where the translation ended, or null if there is no usable entry
+     */
+    BasicBlock load(JavaScriptSource source, AstEnv env, FunctionAndBlockManager functionAndBlocksManager, SyntacticHintsCollector syntacticHintsCollector) {
+        Path file = getEntryFile(source);
+        if (!Files.exists(file)) {
+            misses++;
+            return null;
+        }
+        Decoder decoder;
+        try {
+            decoder = new Decoder(source, env, Files.readAllBytes(file));
+            decoder.decode();
+        } catch (IOException | RuntimeException e) {
+            // nothing has been added to the flow graph yet
+            log.warn("Ignoring unreadable flow graph cache entry " + file + ": " + e);
+            misses++;
+            return null;
+        }
+        hits++;
+        if (log.isDebugEnabled()) {
+            log.debug("Using cached flow graph of " + source.getPrettyFileName());
+        }
+        return decoder.apply(functionAndBlocksManager, syntacticHintsCollector);
+    }
+
+    /**
+     * Thrown if a translation cannot be stored, because it depends on parts of the flow graph that cannot be referenced from an entry.
+     */
+    private static class NotCacheableException extends RuntimeException {
+
+        NotCacheableException(String message) {
+            super(message);
+        }
+    }
+
+    /**
+     * The state of the flow graph under construction before the translation of a file.
+     */
+    static final class Recording {
+
+        private final AstEnv env;
+
+        private final int firstRegister;
+
+        private final int numberOfFunctions;
+
+        private final int numberOfBlocks;
+
+        private final Map<BasicBlock, Integer> mainBlockSizes = new IdentityHashMap<>();
+
+        private final Map<BasicBlock, Set<BasicBlock>> mainBlockSuccessors = new IdentityHashMap<>();
+
+        private final Set<String> mainVariableNames;
+
+        private final boolean mainUsesThis;
+
+        private Recording(AstEnv env, FunctionAndBlockManager functionAndBlocksManager) {
+            this.env = env;
+            Function main = env.getFunction();
+            firstRegister = env.getRegisterManager().getRegister();
+            numberOfFunctions = functionAndBlocksManager.getFunctions().size();
+            numberOfBlocks = functionAndBlocksManager.getBlocks().size();
+            for (BasicBlock b : functionAndBlocksManager.getBlocks()) {
+                if (b.getFunction() == main) {
+                    mainBlockSizes.put(b, b.getNodes().size());
+                    mainBlockSuccessors.put(b, newSet(b.getSuccessors()));
+                }
+            }
+            mainVariableNames = newSet(main.getVariableNames());
+            mainUsesThis = main.isUsesThis();
+        }
+    }
+
+    /**
+     * Writer of entries.
+     */
+    private static final class Encoder implements NodeVisitor {
+
+        private final JavaScriptSource source;
+
+        private final Recording recording;
+
+        private final Function main;
+
+        private final BasicBlock startBlock;
+
+        private final List<Function> functionList;
+
+        private final List<BasicBlock> blockList;
+
+        private final SyntacticHints hints;
+
+        private final FunctionAndBlockManager functionAndBlocksManager;
+
+        private final Map<Function, Integer> functions = new IdentityHashMap<>();
+
+        private final Map<BasicBlock, Integer> blocks = new IdentityHashMap<>();
+
+        private final Map<AbstractNode, Boolean> recordedNodes = new IdentityHashMap<>();
+
+        private final Map<AbstractNode, Integer> nodes = new IdentityHashMap<>();
+
+        private final List<AbstractNode> nodeList = newList();
+
+        private final Map<String, Integer> strings = newMap();
+
+        private final Output body = new Output();
+
+        private int[] lineStarts;
+
+        private Encoder(JavaScriptSource source, Recording recording, FunctionAndBlockManager functionAndBlocksManager, SyntacticHints hints) {
+            this.source = source;
+            this.recording = recording;
+            this.hints = hints;
+            this.functionAndBlocksManager = functionAndBlocksManager;
+            main = recording.env.getFunction();
+            startBlock = recording.env.getAppendBlock();
+            List<Function> allFunctions = functionAndBlocksManager.getFunctions();
+            List<BasicBlock> allBlocks = functionAndBlocksManager.getBlocks();
+            functionList = newList(allFunctions.subList(recording.numberOfFunctions, allFunctions.size()));
+            blockList = newList(allBlocks.subList(recording.numberOfBlocks, allBlocks.size()));
+        }
+
+        byte[] encode(BasicBlock appendBlock) {
+            for (Function f : functionList) {
+                functions.put(f, functions.size());
+            }
+            for (BasicBlock b : blockList) {
+                blocks.put(b, blocks.size());
+            }
+            List<BasicBlock> changedBlocks = getChangedMainBlocks();
+            for (BasicBlock b : blockList) {
+                b.getNodes().forEach(n -> recordedNodes.put(n, true));
+            }
+            for (BasicBlock b : changedBlocks) {
+                b.getNodes().subList(recording.mainBlockSizes.get(b), b.getNodes().size()).forEach(n -> recordedNodes.put(n, true));
+            }
+            for (BasicBlock b : blockList) {
+                b.getNodes().forEach(this::addNode);
+            }
+            for (BasicBlock b : changedBlocks) {
+                b.getNodes().subList(recording.mainBlockSizes.get(b), b.getNodes().size()).forEach(this::addNode);
+            }
+
+            body.writeVarInt(recording.env.getRegisterManager().getRegister() - recording.firstRegister);
+
+            // functions
+            body.writeVarInt(functionList.size());
+            for (Function f : functionList) {
+                writeString(f.getName());
+                body.writeVarInt(f.getParameterNames().size());
+                f.getParameterNames().forEach(this::writeString);
+                writeFunction(f.getOuterFunction());
+                writeLocation(f.getSourceLocation());
+                writeFunctionSource(f.getSource(), f.getSourceLocation());
+                body.writeBoolean(f.isUsesThis());
+                body.writeSignedVarInt(f.getMaxRegister());
+                writeStrings(f.getVariableNames());
+                writeStrings(f.getClosureVariableNames());
+            }
+
+            // blocks
+            body.writeVarInt(blockList.size());
+            for (BasicBlock b : blockList) {
+                writeFunction(b.getFunction());
+            }
+            for (BasicBlock b : blockList) {
+                writeBlock(b.getExceptionHandler());
+            }
+            for (Function f : functionList) {
+                writeBlock(f.getEntry());
+                writeBlock(f.getOrdinaryExit());
+                writeBlock(f.getExceptionalExit());
+            }
+
+            // nodes
+            body.writeVarInt(nodeList.size());
+            for (AbstractNode n : nodeList) {
+                writeNode(n);
+            }
+            for (AbstractNode n : nodeList) {
+                writeNodeReference(n.getDuplicateOf());
+            }
+
+            // block contents
+            for (BasicBlock b : blockList) {
+                writeNodes(b.getNodes());
+                writeBlocks(b.getSuccessors());
+            }
+            body.writeVarInt(changedBlocks.size());
+            for (BasicBlock b : changedBlocks) {
+                writeBlock(b);
+                writeNodes(b.getNodes().subList(recording.mainBlockSizes.get(b), b.getNodes().size()));
+                List<BasicBlock> addedSuccessors = newList(b.getSuccessors());
+                addedSuccessors.removeAll(recording.mainBlockSuccessors.get(b));
+                writeBlocks(addedSuccessors);
+            }
+            for (Function f : functionList) {
+                writeNodeReference(f.getNode());
+            }
+
+            // unreachable blocks
+            List<Pair<BasicBlock, BasicBlock>> unreachables = newList();
+            for (BasicBlock b : blockList) {
+                if (functionAndBlocksManager.isUnreachable(b)) {
+                    unreachables.add(Pair.make(functionAndBlocksManager.getUnreachableSyntacticSuccessorPredecessor(b), b));
+                }
+            }
+            body.writeVarInt(unreachables.size());
+            for (Pair<BasicBlock, BasicBlock> p : unreachables) {
+                writeBlock(p.getFirst());
+                writeBlock(p.getSecond());
+            }
+
+            // syntactic hints
+            writeNodes(hints.getInForIn());
+            body.writeVarInt(hints.getVariableDependencies().size());
+            hints.getVariableDependencies().forEach((n, vs) -> {
+                writeNodeReference(n);
+                writeStrings(vs);
+            });
+            body.writeVarInt(hints.getLoopVariables().size());
+            hints.getLoopVariables().forEach((f, vs) -> {
+                writeFunction(f);
+                writeStrings(vs);
+            });
+            body.writeVarInt(hints.getCorrelatedAccessFunctions().size());
+            hints.getCorrelatedAccessFunctions().forEach(this::writeFunction);
+
+            // main function
+            Set<String> addedVariableNames = newSet(main.getVariableNames());
+            addedVariableNames.removeAll(recording.mainVariableNames);
+            writeStrings(addedVariableNames);
+            body.writeBoolean(main.isUsesThis() && !recording.mainUsesThis);
+
+            writeBlock(appendBlock);
+
+            Output entry = new Output();
+            entry.writeInt(MAGIC);
+            entry.writeVarInt(VERSION);
+            entry.writeVarInt(source.getCode().length());
+            entry.writeVarInt(strings.size());
+            String[] table = new String[strings.size()];
+            strings.forEach((s, i) -> table[i] = s);
+            for (String s : table) {
+                entry.writeChars(s);
+            }
+            entry.writeBytes(body);
+            return entry.toByteArray();
+        }
+
+        /**
+         * Finds the existing blocks of the main function that have been changed by the translation.
+         */
+        private List<BasicBlock> getChangedMainBlocks() {
+            List<BasicBlock> changed = newList();
+            for (Map.Entry<BasicBlock, Integer> e : recording.mainBlockSizes.entrySet()) {
+                BasicBlock b = e.getKey();
+                Set<BasicBlock> successors = recording.mainBlockSuccessors.get(b);
+                if (b.getNodes().size() < e.getValue() || !b.getSuccessors().containsAll(successors)) {
+                    throw new NotCacheableException("existing block modified");
+                }
+                if (b.getNodes().size() > e.getValue() || b.getSuccessors().size() > successors.size()) {
+                    getBlockRole(b); // only blocks that can be referenced can be changed
+                    changed.add(b);
+                }
+            }
+            changed.sort((b1, b2) -> getBlockRole(b1) - getBlockRole(b2));
+            return changed;
+        }
+
+        private int getBlockRole(BasicBlock b) {
+            if (b == startBlock) {
+                return START_BLOCK;
+            } else if (b == main.getEntry()) {
+                return MAIN_ENTRY;
+            } else if (b == main.getOrdinaryExit()) {
+                return MAIN_ORDINARY_EXIT;
+            } else if (b == main.getExceptionalExit()) {
+                return MAIN_EXCEPTIONAL_EXIT;
+            }
+            throw new NotCacheableException("reference to an existing block");
+        }
+
+        /**
+         * Adds the given node to the node table, after the nodes it is constructed from.
+         */
+        private void addNode(AbstractNode n) {
+            if (nodes.containsKey(n)) {
+                return;
+            }
+            if (n instanceof BeginLoopNode) {
+                addNode(((BeginLoopNode) n).getIfNode());
+            } else if (n instanceof EndLoopNode) {
+                addNode(((EndLoopNode) n).getBeginNode());
+            } else if (n instanceof EndForInNode) {
+                addNode(((EndForInNode) n).getBeginNode());
+            }
+            if (!recordedNodes.containsKey(n)) {
+                throw new NotCacheableException("reference to a node that is not in the file");
+            }
+            if (!(n instanceof Node)) {
+                throw new NotCacheableException("unsupported node " + n);
+            }
+            nodes.put(n, nodeList.size());
+            nodeList.add(n);
+        }
+
+        private void writeNode(AbstractNode n) {
+            current = n;
+            ((Node) n).visitBy(this);
+        }
+
+        /**
+         * The node being written.
+         */
+        private AbstractNode current;
+
+        /**
+         * Writes the kind and the properties that are common to all nodes.
+         */
+        private void writeHeader(NodeKind kind) {
+            body.writeVarInt(kind.ordinal());
+            writeLocation(current.getSourceLocation());
+            BasicBlock implicitAfterCall = current.getImplicitAfterCall();
+            body.writeVarInt((current.isArtificial() ? 1 : 0) | (current.isRegistersDone() ? 2 : 0) | (implicitAfterCall != null ? 4 : 0));
+            if (implicitAfterCall != null) {
+                writeBlock(implicitAfterCall);
+            }
+        }
+
+        /**
+         * Writes a register of the current node.
+         * Ordinary registers of the main function are written relative to the first register available for the file.
+         */
+        private void writeRegister(int r) {
+            if (current.getBlock().getFunction() == main && r >= AbstractNode.FIRST_ORDINARY_REG) {
+                if (r < recording.firstRegister) {
+                    throw new NotCacheableException("reference to an existing register");
+                }
+                body.writeVarInt(((r - recording.firstRegister) << 1) | 1);
+            } else {
+                body.writeVarInt((r - AbstractNode.NO_VALUE) << 1);
+            }
+        }
+
+        private void writeString(String s) {
+            if (s == null) {
+                body.writeVarInt(0);
+                return;
+            }
+            Integer i = strings.get(s);
+            if (i == null) {
+                i = strings.size();
+                strings.put(s, i);
+            }
+            body.writeVarInt(i + 1);
+        }
+
+        private void writeStrings(Set<String> ss) {
+            body.writeVarInt(ss.size());
+            ss.forEach(this::writeString);
+        }
+
+        private void writeEnum(Enum<?> e) {
+            writeString(e == null ? null : e.name());
+        }
+
+        private void writeFunction(Function f) {
+            if (f == null) {
+                body.writeVarInt(NO_FUNCTION);
+            } else if (f == main) {
+                body.writeVarInt(MAIN_FUNCTION);
+            } else {
+                Integer i = functions.get(f);
+                if (i == null) {
+                    throw new NotCacheableException("reference to an existing function");
+                }
+                body.writeVarInt(FIRST_FUNCTION + i);
+            }
+        }
+
+        private void writeBlock(BasicBlock b) {
+            if (b == null) {
+                body.writeVarInt(NO_BLOCK);
+                return;
+            }
+            Integer i = blocks.get(b);
+            body.writeVarInt(i != null ? FIRST_BLOCK + i : getBlockRole(b));
+        }
+
+        private void writeBlocks(Collection<BasicBlock> bs) {
+            body.writeVarInt(bs.size());
+            bs.forEach(this::writeBlock);
+        }
+
+        private void writeNodeReference(AbstractNode n) {
+            if (n == null) {
+                body.writeVarInt(0);
+                return;
+            }
+            Integer i = nodes.get(n);
+            if (i == null) {
+                throw new NotCacheableException("reference to a node that is not in the file");
+            }
+            body.writeVarInt(i + 1);
+        }
+
+        private void writeNodes(Collection<? extends AbstractNode> ns) {
+            body.writeVarInt(ns.size());
+            ns.forEach(this::writeNodeReference);
+        }
+
+        private void writeLocation(SourceLocation location) {
+            if (location == null) {
+                body.writeVarInt(NO_LOCATION);
+            } else if (isLocal(location)) {
+                body.writeVarInt(LOCAL_LOCATION);
+                body.writeVarInt(location.getLineNumber());
+                body.writeVarInt(location.getColumnNumber());
+            } else {
+                body.writeVarInt(FOREIGN_LOCATION);
+                writeString(location.getPrettyFileName());
+                writeString(location.getLocation() == null ? null : location.getLocation().toString());
+                body.writeVarInt(location.getLineNumber());
+                body.writeVarInt(location.getColumnNumber());
+            }
+        }
+
+        private boolean isLocal(SourceLocation location) {
+            return location.getLocation() == source.getLocation() && location.getPrettyFileName().equals(source.getPrettyFileName().replace('\\', '/'));
+        }
+
+        /**
+         * Writes the source code of a function, as a position in the file if possible.
+         */
+        private void writeFunctionSource(String functionSource, SourceLocation location) {
+            if (functionSource == null) {
+                body.writeVarInt(NO_SOURCE);
+                return;
+            }
+            String code = source.getCode();
+            int offset = -1;
+            if (isLocal(location)) {
+                if (lineStarts == null) {
+                    lineStarts = makeLineStarts(code);
+                }
+                int line = location.getLineNumber() - 1;
+                if (line >= 0 && line < lineStarts.length) {
+                    int candidate = lineStarts[line] + location.getColumnNumber() - 1;
+                    if (candidate >= 0 && code.startsWith(functionSource, candidate)) {
+                        offset = candidate;
+                    }
+                }
+            }
+            if (offset == -1) {
+                offset = code.indexOf(functionSource);
+            }
+            if (offset != -1) {
+                body.writeVarInt(SUBSTRING_SOURCE);
+                body.writeVarInt(offset);
+                body.writeVarInt(functionSource.length());
+            } else {
+                body.writeVarInt(STRING_SOURCE);
+                writeString(functionSource);
+            }
+        }
+
+        private static int[] makeLineStarts(String code) {
+            List<Integer> starts = newList();
+            starts.add(0);
+            for (int i = 0; i < code.length(); i++) {
+                char c = code.charAt(i);
+                if (c == '\n' || c == '\u2028' || c == '\u2029' || (c == '\r' && (i + 1 == code.length() || code.charAt(i + 1) != '\n'))) {
+                    starts.add(i + 1);
+                }
+            }
+            return starts.stream().mapToInt(Integer::intValue).toArray();
+        }
+
+        @Override
+        public void visit(AssumeNode n) {
+            writeHeader(NodeKind.ASSUME);
+            writeEnum(n.getKind());
+            writeString(n.getVariableName());
+            writeRegister(n.getBaseRegister());
+            writeRegister(n.getPropertyRegister());
+            writeString(n.getPropertyString());
+        }
+
+        @Override
+        public void visit(BinaryOperatorNode n) {
+            writeHeader(NodeKind.BINARY_OPERATOR);
+            writeEnum(n.getOperator());
+            writeRegister(n.getArg1Register());
+            writeRegister(n.getArg2Register());
+            writeRegister(n.getResultRegister());
+        }
+
+        @Override
+        public void visit(CallNode n) {
+            writeHeader(NodeKind.CALL);
+            writeEnum(n.getLiteralConstructorKind());
+            body.writeBoolean(n.isConstructorCall());
+            writeRegister(n.getResultRegister());
+            writeRegister(n.getBaseRegister());
+            writeRegister(n.getFunctionRegister());
+            writeRegister(n.getPropertyRegister());
+            writeString(n.getPropertyString());
+            body.writeVarInt(n.getNumberOfArgs());
+            for (int i = 0; i < n.getNumberOfArgs(); i++) {
+                writeRegister(n.getArgRegister(i));
+            }
+        }
+
+        @Override
+        public void visit(CatchNode n) {
+            writeHeader(NodeKind.CATCH);
+            writeString(n.getVariableName());
+            writeRegister(n.getValueRegister());
+            writeRegister(n.getScopeObjRegister());
+        }
+
+        @Override
+        public void visit(ConstantNode n) {
+            writeHeader(NodeKind.CONSTANT);
+            writeEnum(n.getType());
+            switch (n.getType()) {
+                case NUMBER:
+                    body.writeLong(Double.doubleToRawLongBits(n.getNumber()));
+                    break;
+                case STRING:
+                    writeString(n.getString());
+                    break;
+                case BOOLEAN:
+                    body.writeBoolean(n.getBoolean());
+                    break;
+                default:
+                    break;
+            }
+            writeRegister(n.getResultRegister());
+        }
+
+        @Override
+        public void visit(DeletePropertyNode n) {
+            writeHeader(NodeKind.DELETE_PROPERTY);
+            writeString(n.getVariableName());
+            if (!n.isVariable()) {
+                writeRegister(n.getBaseRegister());
+                writeRegister(n.getPropertyRegister());
+                writeString(n.getPropertyString());
+            }
+            writeRegister(n.getResultRegister());
+        }
+
+        @Override
+        public void visit(BeginWithNode n) {
+            writeHeader(NodeKind.BEGIN_WITH);
+            writeRegister(n.getObjectRegister());
+        }
+
+        @Override
+        public void visit(ExceptionalReturnNode n) {
+            writeHeader(NodeKind.EXCEPTIONAL_RETURN);
+        }
+
+        @Override
+        public void visit(DeclareFunctionNode n) {
+            writeHeader(NodeKind.DECLARE_FUNCTION);
+            writeFunction(n.getFunction());
+            body.writeBoolean(n.isExpression());
+            writeRegister(n.getResultRegister());
+            writeEnum(n.getDomEventType());
+        }
+
+        @Override
+        public void visit(BeginForInNode n) {
+            writeHeader(NodeKind.BEGIN_FOR_IN);
+            writeRegister(n.getObjectRegister());
+            writeRegister(n.getPropertyListRegister());
+        }
+
+        @Override
+        public void visit(IfNode n) {
+            writeHeader(NodeKind.IF);
+            writeRegister(n.getConditionRegister());
+            writeBlock(n.getSuccTrue());
+            writeBlock(n.getSuccFalse());
+        }
+
+        @Override
+        public void visit(EndWithNode n) {
+            writeHeader(NodeKind.END_WITH);
+        }
+
+        @Override
+        public void visit(NewObjectNode n) {
+            writeHeader(NodeKind.NEW_OBJECT);
+            writeRegister(n.getResultRegister());
+        }
+
+        @Override
+        public void visit(NextPropertyNode n) {
+            writeHeader(NodeKind.NEXT_PROPERTY);
+            writeRegister(n.getPropertyListRegister());
+            writeRegister(n.getPropertyRegister());
+        }
+
+        @Override
+        public void visit(HasNextPropertyNode n) {
+            writeHeader(NodeKind.HAS_NEXT_PROPERTY);
+            writeRegister(n.getPropertyListRegister());
+            writeRegister(n.getResultRegister());
+        }
+
+        @Override
+        public void visit(NopNode n) {
+            writeHeader(NodeKind.NOP);
+            writeString(n.getText());
+        }
+
+        @Override
+        public void visit(ReadPropertyNode n) {
+            writeHeader(NodeKind.READ_PROPERTY);
+            writeRegister(n.getBaseRegister());
+            writeRegister(n.getPropertyRegister());
+            writeString(n.getPropertyString());
+            writeRegister(n.getResultRegister());
+        }
+
+        @Override
+        public void visit(ReadVariableNode n) {
+            writeHeader(NodeKind.READ_VARIABLE);
+            writeString(n.getVariableName());
+            writeRegister(n.getResultRegister());
+            writeRegister(n.getResultBaseRegister());
+        }
+
+        @Override
+        public void visit(ReturnNode n) {
+            writeHeader(NodeKind.RETURN);
+            writeRegister(n.getReturnValueRegister());
+        }
+
+        @Override
+        public void visit(ThrowNode n) {
+            writeHeader(NodeKind.THROW);
+            writeRegister(n.getValueRegister());
+        }
+
+        @Override
+        public void visit(TypeofNode n) {
+            writeHeader(NodeKind.TYPEOF);
+            writeString(n.getVariableName());
+            if (!n.isVariable()) {
+                writeRegister(n.getArgRegister());
+            }
+            writeRegister(n.getResultRegister());
+            writeLocation(n.getOperandSourceLocation());
+        }
+
+        @Override
+        public void visit(UnaryOperatorNode n) {
+            writeHeader(NodeKind.UNARY_OPERATOR);
+            writeEnum(n.getOperator());
+            writeRegister(n.getArgRegister());
+            writeRegister(n.getResultRegister());
+        }
+
+        @Override
+        public void visit(DeclareVariableNode n) {
+            writeHeader(NodeKind.DECLARE_VARIABLE);
+            writeString(n.getVariableName());
+        }
+
+        @Override
+        public void visit(WritePropertyNode n) {
+            writeHeader(NodeKind.WRITE_PROPERTY);
+            writeRegister(n.getBaseRegister());
+            writeRegister(n.getPropertyRegister());
+            writeString(n.getPropertyString());
+            writeRegister(n.getValueRegister());
+            writeEnum(n.getKind());
+            body.writeBoolean(n.isDecl());
+        }
+
+        @Override
+        public void visit(WriteVariableNode n) {
+            writeHeader(NodeKind.WRITE_VARIABLE);
+            writeRegister(n.getValueRegister());
+            writeString(n.getVariableName());
+        }
+
+        @Override
+        public void visit(EventDispatcherNode n) {
+            writeHeader(NodeKind.EVENT_DISPATCHER);
+            writeEnum(n.getType());
+        }
+
+        @Override
+        public void visit(EndForInNode n) {
+            writeHeader(NodeKind.END_FOR_IN);
+            writeNodeReference(n.getBeginNode());
+        }
+
+        @Override
+        public void visit(BeginLoopNode n) {
+            writeHeader(NodeKind.BEGIN_LOOP);
+            writeNodeReference(n.getIfNode());
+            body.writeBoolean(n.isNested());
+        }
+
+        @Override
+        public void visit(EndLoopNode n) {
+            writeHeader(NodeKind.END_LOOP);
+            writeNodeReference(n.getBeginNode());
+        }
+    }
+
+    /**
+     * Reader of entries.
+     * Decoding creates the functions, blocks and nodes of the entry without changing the flow graph under construction,
+     * which is only changed by {@link #apply(FunctionAndBlockManager, SyntacticHintsCollector)}.
+     */
+    private static final class Decoder {
+
+        private final JavaScriptSource source;
+
+        private final AstEnv env;
+
+        private final Function main;
+
+        private final Input in;
+
+        private String[] strings;
+
+        private int registerCount;
+
+        private int firstRegister;
+
+        private final List<Function> functions = newList();
+
+        private final List<BasicBlock> blocks = newList();
+
+        private final List<AbstractNode> nodes = newList();
+
+        private final List<Pair<BasicBlock, List<AbstractNode>>> addedNodes = newList();
+
+        private final List<Pair<BasicBlock, List<BasicBlock>>> addedSuccessors = newList();
+
+        private final List<Pair<BasicBlock, BasicBlock>> unreachables = newList();
+
+        private final SyntacticHints hints = new SyntacticHints();
+
+        private Set<String> mainVariableNames;
+
+        private boolean mainUsesThis;
+
+        private BasicBlock appendBlock;
+
+        private Decoder(JavaScriptSource source, AstEnv env, byte[] entry) {
+            this.source = source;
+            this.env = env;
+            this.main = env.getFunction();
+            this.in = new Input(entry);
+        }
+
+        void decode() throws IOException {
+            if (in.readInt() != MAGIC || in.readVarInt() != VERSION || in.readVarInt() != source.getCode().length()) {
+                throw new IOException("Unexpected entry header");
+            }
+            strings = new String[in.readVarInt()];
+            for (int i = 0; i < strings.length; i++) {
+                strings[i] = in.readChars();
+            }
+            firstRegister = env.getRegisterManager().getRegister();
+            registerCount = in.readVarInt();
+
+            // functions
+            int numberOfFunctions = in.readVarInt();
+            for (int i = 0; i < numberOfFunctions; i++) {
+                String name = readString();
+                List<String> parameterNames = newList();
+                int numberOfParameters = in.readVarInt();
+                for (int j = 0; j < numberOfParameters; j++) {
+                    parameterNames.add(readString());
+                }
+                Function outer = readFunction();
+                SourceLocation location = readLocation();
+                Function f = new Function(name, parameterNames, outer, location, readFunctionSource());
+                f.setUsesThis(in.readBoolean());
+                f.setMaxRegister(in.readSignedVarInt());
+                readStrings().forEach(f::addVariableName);
+                f.getClosureVariableNames().addAll(readStrings());
+                functions.add(f);
+            }
+
+            // blocks
+            int numberOfBlocks = in.readVarInt();
+            for (int i = 0; i < numberOfBlocks; i++) {
+                blocks.add(new BasicBlock(readFunction()));
+            }
+            for (BasicBlock b : blocks) {
+                b.setExceptionHandler(readBlock());
+            }
+            for (Function f : functions) {
+                f.setEntry(readBlock());
+                f.setOrdinaryExit(readBlock());
+                f.setExceptionalExit(readBlock());
+            }
+
+            // nodes
+            int numberOfNodes = in.readVarInt();
+            for (int i = 0; i < numberOfNodes; i++) {
+                nodes.add(readNode());
+            }
+            for (AbstractNode n : nodes) {
+                AbstractNode duplicateOf = readNodeReference();
+                if (duplicateOf != null) {
+                    n.setDuplicateOf(duplicateOf);
+                }
+            }
+
+            // block contents
+            for (BasicBlock b : blocks) {
+                readNodes().forEach(b::addNode);
+                readBlocks().forEach(b::addSuccessor);
+            }
+            int numberOfChangedBlocks = in.readVarInt();
+            for (int i = 0; i < numberOfChangedBlocks; i++) {
+                BasicBlock b = readBlock();
+                addedNodes.add(Pair.make(b, readNodes()));
+                addedSuccessors.add(Pair.make(b, readBlocks()));
+            }
+            for (Function f : functions) {
+                f.setNode((DeclareFunctionNode) readNodeReference());
+            }
+
+            // unreachable blocks
+            int numberOfUnreachables = in.readVarInt();
+            for (int i = 0; i < numberOfUnreachables; i++) {
+                unreachables.add(Pair.make(readBlock(), readBlock()));
+            }
+
+            // syntactic hints
+            readNodes().forEach(hints::registerInForIn);
+            int numberOfDependencies = in.readVarInt();
+            for (int i = 0; i < numberOfDependencies; i++) {
+                AbstractNode n = readNodeReference();
+                readStrings().forEach(v -> hints.registerVariableDependency(n, v));
+            }
+            int numberOfLoopVariables = in.readVarInt();
+            for (int i = 0; i < numberOfLoopVariables; i++) {
+                Function f = readFunction();
+                readStrings().forEach(v -> hints.registerLoopVariable(f, v));
+            }
+            int numberOfCorrelatedAccessFunctions = in.readVarInt();
+            for (int i = 0; i < numberOfCorrelatedAccessFunctions; i++) {
+                hints.registerCorrelatedAccessFunction(readFunction());
+            }
+
+            // main function
+            mainVariableNames = readStrings();
+            mainUsesThis = in.readBoolean();
+
+            appendBlock = readBlock();
+            if (!in.isAtEnd()) {
+                throw new IOException("Unexpected data at end of entry");
+            }
+        }
+
+        /**
+         * Adds the decoded translation to the flow graph under construction.
+         *
+         * @return the block where the translation ended
+         */
+        BasicBlock apply(FunctionAndBlockManager functionAndBlocksManager, SyntacticHintsCollector syntacticHintsCollector) {
+            functions.forEach(functionAndBlocksManager::add);
+            functionAndBlocksManager.add(blocks);
+            for (Pair<BasicBlock, List<AbstractNode>> p : addedNodes) {
+                p.getSecond().forEach(p.getFirst()::addNode);
+            }
+            for (Pair<BasicBlock, List<BasicBlock>> p : addedSuccessors) {
+                p.getSecond().forEach(p.getFirst()::addSuccessor);
+            }
+            for (Pair<BasicBlock, BasicBlock> p : unreachables) {
+                functionAndBlocksManager.registerUnreachableSyntacticSuccessor(p.getFirst(), p.getSecond());
+            }
+            syntacticHintsCollector.addAll(hints);
+            mainVariableNames.forEach(main::addVariableName);
+            if (mainUsesThis) {
+                main.setUsesThis(true);
+            }
+            for (int i = 0; i < registerCount; i++) {
+                env.getRegisterManager().nextRegister();
+            }
+            return appendBlock;
+        }
+
+        private String readString() throws IOException {
+            int i = in.readVarInt();
+            if (i == 0) {
+                return null;
+            }
+            if (i > strings.length) {
+                throw new IOException("Invalid string reference");
+            }
+            return strings[i - 1];
+        }
+
+        private Set<String> readStrings() throws IOException {
+            Set<String> result = newSet();
+            int size = in.readVarInt();
+            for (int i = 0; i < size; i++) {
+                result.add(readString());
+            }
+            return result;
+        }
+
+        private <E extends Enum<E>> E readEnum(Class<E> type) throws IOException {
+            String name = readString();
+            return name == null ? null : Enum.valueOf(type, name);
+        }
+
+        private Function readFunction() throws IOException {
+            int i = in.readVarInt();
+            if (i == NO_FUNCTION) {
+                return null;
+            } else if (i == MAIN_FUNCTION) {
+                return main;
+            } else if (i - FIRST_FUNCTION < functions.size()) {
+                return functions.get(i - FIRST_FUNCTION);
+            }
+            throw new IOException("Invalid function reference");
+        }
+
+        private BasicBlock readBlock() throws IOException {
+            int i = in.readVarInt();
+            switch (i) {
+                case START_BLOCK:
+                    return env.getAppendBlock();
+                case MAIN_ENTRY:
+                    return main.getEntry();
+                case MAIN_ORDINARY_EXIT:
+                    return main.getOrdinaryExit();
+                case MAIN_EXCEPTIONAL_EXIT:
+                    return main.getExceptionalExit();
+                case NO_BLOCK:
+                    return null;
+                default:
+                    if (i - FIRST_BLOCK >= blocks.size()) {
+                        throw new IOException("Invalid block reference");
+                    }
+                    return blocks.get(i - FIRST_BLOCK);
+            }
+        }
+
+        private List<BasicBlock> readBlocks() throws IOException {
+            List<BasicBlock> result = newList();
+            int size = in.readVarInt();
+            for (int i = 0; i < size; i++) {
+                result.add(readBlock());
+            }
+            return result;
+        }
+
+        private AbstractNode readNodeReference() throws IOException {
+            int i = in.readVarInt();
+            if (i == 0) {
+                return null;
+            }
+            if (i > nodes.size()) {
+                throw new IOException("Invalid node reference");
+            }
+            return nodes.get(i - 1);
+        }
+
+        private List<AbstractNode> readNodes() throws IOException {
+            List<AbstractNode> result = newList();
+            int size = in.readVarInt();
+            for (int i = 0; i < size; i++) {
+                result.add(readNodeReference());
+            }
+            return result;
+        }
+
+        private SourceLocation readLocation() throws IOException {
+            switch (in.readVarInt()) {
+                case NO_LOCATION:
+                    return null;
+                case LOCAL_LOCATION:
+                    return new SourceLocation(in.readVarInt(), in.readVarInt(), source.getPrettyFileName(), source.getLocation());
+                case FOREIGN_LOCATION: {
+                    String prettyFileName = readString();
+                    String url = readString();
+                    return new SourceLocation(in.readVarInt(), in.readVarInt(), prettyFileName, url == null ? null : new URL(url));
+                }
+                default:
+                    throw new IOException("Invalid source location");
+            }
+        }
+
+        private String readFunctionSource() throws IOException {
+            switch (in.readVarInt()) {
+                case NO_SOURCE:
+                    return null;
+                case SUBSTRING_SOURCE: {
+                    int offset = in.readVarInt();
+                    return source.getCode().substring(offset, offset + in.readVarInt());
+                }
+                case STRING_SOURCE:
+                    return readString();
+                default:
+                    throw new IOException("Invalid function source");
+            }
+        }
+
+        /**
+         * Reads a register, relocating ordinary registers of the main function.
+         */
+        private int readRegister() throws IOException {
+            int r = in.readVarInt();
+            if ((r & 1) != 0) {
+                return firstRegister + (r >>> 1);
+            }
+            return (r >>> 1) + AbstractNode.NO_VALUE;
+        }
+
+        private AbstractNode readNode() throws IOException {
+            int kind = in.readVarInt();
+            if (kind >= NodeKind.values().length) {
+                throw new IOException("Invalid node kind");
+            }
+            SourceLocation location = readLocation();
+            int flags = in.readVarInt();
+            BasicBlock implicitAfterCall = (flags & 4) != 0 ? readBlock() : null;
+            AbstractNode n;
+            switch (NodeKind.values()[kind]) {
+                case ASSUME: {
+                    AssumeNode.Kind assumeKind = readEnum(AssumeNode.Kind.class);
+                    String varname = readString();
+                    int base = readRegister();
+                    int property = readRegister();
+                    String propertyString = readString();
+                    switch (assumeKind) {
+                        case VARIABLE_NON_NULL_UNDEF:
+                            n = AssumeNode.makeVariableNonNullUndef(varname, location);
+                            break;
+                        case PROPERTY_NON_NULL_UNDEF:
+                            n = propertyString != null ? AssumeNode.makePropertyNonNullUndef(base, propertyString, location) : AssumeNode.makePropertyNonNullUndef(base, property, location);
+                            break;
+                        case UNREACHABLE:
+                            n = AssumeNode.makeUnreachable(location);
+                            break;
+                        default:
+                            throw new IOException("Invalid assume kind");
+                    }
+                    break;
+                }
+                case BINARY_OPERATOR: {
+                    BinaryOperatorNode.Op op = readEnum(BinaryOperatorNode.Op.class);
+                    int arg1 = readRegister();
+                    int arg2 = readRegister();
+                    n = new BinaryOperatorNode(op, arg1, arg2, readRegister(), location);
+                    break;
+                }
+                case CALL: {
+                    CallNode.LiteralConstructorKinds literalConstructorKind = readEnum(CallNode.LiteralConstructorKinds.class);
+                    boolean constructor = in.readBoolean();
+                    int result = readRegister();
+                    int base = readRegister();
+                    int function = readRegister();
+                    int property = readRegister();
+                    String propertyString = readString();
+                    List<Integer> args = newList();
+                    int numberOfArgs = in.readVarInt();
+                    for (int i = 0; i < numberOfArgs; i++) {
+                        args.add(readRegister());
+                    }
+                    if (literalConstructorKind != null) {
+                        n = new CallNode(literalConstructorKind, result, base, function, args, location);
+                    } else if (propertyString != null || property != AbstractNode.NO_VALUE) {
+                        n = new CallNode(constructor, result, base, property, propertyString, args, location);
+                    } else {
+                        n = new CallNode(constructor, result, base, function, args, location);
+                    }
+                    break;
+                }
+                case CATCH: {
+                    String varname = readString();
+                    int value = readRegister();
+                    int scopeObj = readRegister();
+                    n = varname != null ? new CatchNode(varname, scopeObj, location) : new CatchNode(value, location);
+                    break;
+                }
+                case CONSTANT: {
+                    ConstantNode.Type type = readEnum(ConstantNode.Type.class);
+                    switch (type) {
+                        case NUMBER: {
+                            double number = Double.longBitsToDouble(in.readLong());
+                            n = ConstantNode.makeNumber(number, readRegister(), location);
+                            break;
+                        }
+                        case STRING: {
+                            String string = readString();
+                            n = ConstantNode.makeString(string, readRegister(), location);
+                            break;
+                        }
+                        case BOOLEAN: {
+                            boolean bool = in.readBoolean();
+                            n = ConstantNode.makeBoolean(bool, readRegister(), location);
+                            break;
+                        }
+                        case NULL:
+                            n = ConstantNode.makeNull(readRegister(), location);
+                            break;
+                        case UNDEFINED:
+                            n = ConstantNode.makeUndefined(readRegister(), location);
+                            break;
+                        default:
+                            throw new IOException("Invalid constant type");
+                    }
+                    break;
+                }
+                case DELETE_PROPERTY: {
+                    String varname = readString();
+                    if (varname != null) {
+                        n = new DeletePropertyNode(varname, readRegister(), location);
+                    } else {
+                        int base = readRegister();
+                        int property = readRegister();
+                        String propertyString = readString();
+                        int result = readRegister();
+                        n = propertyString != null ? new DeletePropertyNode(base, propertyString, result, location) : new DeletePropertyNode(base, property, result, location);
+                    }
+                    break;
+                }
+                case BEGIN_WITH:
+                    n = new BeginWithNode(readRegister(), location);
+                    break;
+                case EXCEPTIONAL_RETURN:
+                    n = new ExceptionalReturnNode(location);
+                    break;
+                case DECLARE_FUNCTION: {
+                    Function function = readFunction();
+                    boolean expression = in.readBoolean();
+                    DeclareFunctionNode declaration = new DeclareFunctionNode(function, expression, readRegister(), location);
+                    EventType domEventType = readEnum(EventType.class);
+                    if (domEventType != null) {
+                        declaration.setDomEventType(domEventType);
+                    }
+                    n = declaration;
+                    break;
+                }
+                case BEGIN_FOR_IN: {
+                    int object = readRegister();
+                    n = new BeginForInNode(object, readRegister(), location);
+                    break;
+                }
+                case IF: {
+                    IfNode ifNode = new IfNode(readRegister(), location);
+                    BasicBlock succTrue = readBlock();
+                    BasicBlock succFalse = readBlock();
+                    if (succTrue != null || succFalse != null) {
+                        ifNode.setSuccessors(succTrue, succFalse);
+                    }
+                    n = ifNode;
+                    break;
+                }
+                case END_WITH:
+                    n = new EndWithNode(location);
+                    break;
+                case NEW_OBJECT:
+                    n = new NewObjectNode(readRegister(), location);
+                    break;
+                case NEXT_PROPERTY: {
+                    int propertyList = readRegister();
+                    n = new NextPropertyNode(propertyList, readRegister(), location);
+                    break;
+                }
+                case HAS_NEXT_PROPERTY: {
+                    int propertyList = readRegister();
+                    n = new HasNextPropertyNode(propertyList, readRegister(), location);
+                    break;
+                }
+                case NOP:
+                    n = new NopNode(readString(), location);
+                    break;
+                case READ_PROPERTY: {
+                    int base = readRegister();
+                    int property = readRegister();
+                    String propertyString = readString();
+                    int result = readRegister();
+                    n = propertyString != null ? new ReadPropertyNode(base, propertyString, result, location) : new ReadPropertyNode(base, property, result, location);
+                    break;
+                }
+                case READ_VARIABLE: {
+                    String varname = readString();
+                    int result = readRegister();
+                    n = new ReadVariableNode(varname, result, readRegister(), location);
+                    break;
+                }
+                case RETURN:
+                    n = new ReturnNode(readRegister(), location);
+                    break;
+                case THROW:
+                    n = new ThrowNode(readRegister(), location);
+                    break;
+                case TYPEOF: {
+                    String varname = readString();
+                    int arg = varname == null ? readRegister() : AbstractNode.NO_VALUE;
+                    int result = readRegister();
+                    SourceLocation operandLocation = readLocation();
+                    n = varname != null ? new TypeofNode(varname, result, location, operandLocation) : new TypeofNode(arg, result, location, operandLocation);
+                    break;
+                }
+                case UNARY_OPERATOR: {
+                    UnaryOperatorNode.Op op = readEnum(UnaryOperatorNode.Op.class);
+                    int arg = readRegister();
+                    n = new UnaryOperatorNode(op, arg, readRegister(), location);
+                    break;
+                }
+                case DECLARE_VARIABLE:
+                    n = new DeclareVariableNode(readString(), location);
+                    break;
+                case WRITE_PROPERTY: {
+                    int base = readRegister();
+                    int property = readRegister();
+                    String propertyString = readString();
+                    int value = readRegister();
+                    WritePropertyNode.Kind writeKind = readEnum(WritePropertyNode.Kind.class);
+                    boolean decl = in.readBoolean();
+                    n = propertyString != null ? new WritePropertyNode(base, propertyString, value, writeKind, decl, location) : new WritePropertyNode(base, property, value, decl, location);
+                    break;
+                }
+                case WRITE_VARIABLE: {
+                    int value = readRegister();
+                    n = new WriteVariableNode(value, readString(), location);
+                    break;
+                }
+                case EVENT_DISPATCHER:
+                    n = new EventDispatcherNode(readEnum(EventDispatcherNode.Type.class), location);
+                    break;
+                case END_FOR_IN:
+                    n = new EndForInNode((BeginForInNode) readNodeReference(), location);
+                    break;
+                case BEGIN_LOOP: {
+                    IfNode ifNode = (IfNode) readNodeReference();
+                    n = new BeginLoopNode(ifNode, in.readBoolean(), location);
+                    break;
+                }
+                case END_LOOP:
+                    n = new EndLoopNode((BeginLoopNode) readNodeReference(), location);
+                    break;
+                default:
+                    throw new IOException("Invalid node kind");
+            }
+            if ((flags & 1) != 0) {
+                n.setArtificial();
+            }
+            n.setRegistersDone((flags & 2) != 0);
+            if (implicitAfterCall != null) {
+                n.setImplicitAfterCall(implicitAfterCall);
+            }
+            return n;
+        }
+    }
+
+    /**
+     * Growable byte buffer with variable-length integer encoding.
+     */
+    private static final class Output {
+
+        private byte[] bytes = new byte[1024];
+
+        private int size;
+
+        private void ensureCapacity(int n) {
+            if (size + n > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(2 * bytes.length, size + n));
+            }
+        }
+
+        void writeByte(int b) {
+            ensureCapacity(1);
+            bytes[size++] = (byte) b;
+        }
+
+        void writeInt(int i) {
+            for (int shift = 24; shift >= 0; shift -= 8) {
+                writeByte(i >>> shift);
+            }
+        }
+
+        void writeLong(long l) {
+            for (int shift = 56; shift >= 0; shift -= 8) {
+                writeByte((int) (l >>> shift));
+            }
+        }
+
+        void writeVarInt(int i) {
+            while ((i & ~0x7f) != 0) {
+                writeByte((i & 0x7f) | 0x80);
+                i >>>= 7;
+            }
+            writeByte(i);
+        }
+
+        void writeSignedVarInt(int i) {
+            writeVarInt((i << 1) ^ (i >> 31));
+        }
+
+        void writeBoolean(boolean b) {
+            writeByte(b ? 1 : 0);
+        }
+
+        /**
+         * Writes the UTF-16 code units of a string, which need not be well-formed.
+         */
+        void writeChars(String s) {
+            writeVarInt(s.length());
+            for (int i = 0; i < s.length(); i++) {
+                writeVarInt(s.charAt(i));
+            }
+        }
+
+        void writeBytes(Output other) {
+            ensureCapacity(other.size);
+            System.arraycopy(other.bytes, 0, bytes, size, other.size);
+            size += other.size;
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(bytes, size);
+        }
+    }
+
+    /**
+     * Reader of bytes written by {@link Output}.
+     */
+    private static final class Input {
+
+        private final byte[] bytes;
+
+        private int position;
+
+        Input(byte[] bytes) {
+            this.bytes = bytes;
+        }
+
+        int readByte() throws IOException {
+            if (position >= bytes.length) {
+                throw new IOException("Unexpected end of entry");
+            }
+            return bytes[position++] & 0xff;
+        }
+
+        int readInt() throws IOException {
+            int i = 0;
+            for (int k = 0; k < 4; k++) {
+                i = (i << 8) | readByte();
+            }
+            return i;
+        }
+
+        long readLong() throws IOException {
+            long l = 0;
+            for (int k = 0; k < 8; k++) {
+                l = (l << 8) | readByte();
+            }
+            return l;
+        }
+
+        int readVarInt() throws IOException {
+            int i = 0;
+            for (int shift = 0; shift < 35; shift += 7) {
+                int b = readByte();
+                i |= (b & 0x7f) << shift;
+                if ((b & 0x80) == 0) {
+                    return i;
+                }
+            }
+            throw new IOException("Invalid integer");
+        }
+
+        int readSignedVarInt() throws IOException {
+            int i = readVarInt();
+            return (i >>> 1) ^ -(i & 1);
+        }
+
+        boolean readBoolean() throws IOException {
+            return readByte() != 0;
+        }
+
+        String readChars() throws IOException {
+            int length = readVarInt();
+            if (length > bytes.length - position) {
+                throw new IOException("Invalid string length");
+            }
+            char[] chars = new char[length];
+            for (int i = 0; i < length; i++) {
+                chars[i] = (char) readVarInt();
+            }
+            return new String(chars);
+        }
+
+        boolean isAtEnd() {
+            return position == bytes.length;
+        }
+    }
+}
@@ -16,6 +16,7 @@
 
 package dk.brics.tajs.js2flowgraph;
 
+import com.google.javascript.jscomp.parsing.parser.trees.ParseTree;
 import dk.brics.tajs.flowgraph.AbstractNode;
 import dk.brics.tajs.flowgraph.BasicBlock;
 import dk.brics.tajs.flowgraph.EventType;
@@ -28,11 +29,13 @@ import dk.brics.tajs.flowgraph.jsnodes.ConstantNode;
 import dk.brics.tajs.flowgraph.jsnodes.LoadNode;
 import dk.brics.tajs.util.Pair;
 
+import java.net.URL;
 import java.util.List;
 import java.util.Set;
 import java.util.Stack;
 
 import static dk.brics.tajs.js2flowgraph.FunctionBuilderHelper.makeBasicBlock;
+import static dk.brics.tajs.js2flowgraph.FunctionBuilderHelper.makeSuccessorBasicBlock;
 import static dk.brics.tajs.util.Collections.newSet;
 
 /**
@@ -127,6 +130,37 @@ public class FlowGraphMutator {
         return new FlowGraphFragment(sourceCodeIdentifier, entryBlock, entryFunction, blocksAndFunctions.getFirst(), blocksAndFunctions.getSecond());
     }
 
+    /**
+     * Translates the body of a function whose translation has been deferred, and adds it to the given flow graph
+     * (see {@link dk.brics.tajs.options.OptionValues#isLazyFunctionBodiesEnabled()}).
+     *
+     * @param existingFlowGraph       the existing flow graph, which contains the function
+     * @param function                the function, whose entry block leads directly to the ordinary exit
+     * @param body                    the function body
+     * @param functionEnv             the environment of the function, as prepared when the function was declared
+     * @param astInfo                 AST information of the program containing the function
+     * @param syntacticHintsCollector collector of the syntactic hints of the existing flow graph
+     * @param location                location of the source containing the function
+     */
+    static void translateFunctionBody(FlowGraph existingFlowGraph, Function function, ParseTree body, AstEnv functionEnv,
+                                      ASTInfo astInfo, SyntacticHintsCollector syntacticHintsCollector, URL location) {
+        FunctionAndBlockManager functionAndBlocksManager = new FunctionAndBlockManager();
+
+        // the existing blocks of the function are already in the flow graph, so use new blocks for declarations and the body
+        BasicBlock declarationBlock = makeBasicBlock(function, function.getExceptionalExit(), functionAndBlocksManager);
+        BasicBlock firstBodyBlock = makeSuccessorBasicBlock(function, declarationBlock, functionAndBlocksManager);
+        function.getEntry().removeSuccessor(function.getOrdinaryExit());
+        function.getEntry().addSuccessor(declarationBlock);
+        AstEnv env = functionEnv.makeDeclarationBlock(declarationBlock).makeAppendBlock(firstBodyBlock);
+
+        TranslationResult processedBody = new FunctionBuilder(astInfo, functionAndBlocksManager, location, syntacticHintsCollector).process(body, env);
+        function.setMaxRegister(functionEnv.getRegisterManager().getRegister()); // assumes monotonically increasing register implementation
+
+        FlowGraphBuilder flowGraphBuilder = new FlowGraphBuilder(env.makeAppendBlock(processedBody.getAppendBlock()), functionAndBlocksManager, location, function.getSourceLocation().getPrettyFileName());
+        flowGraphBuilder.closeFunctionBody(existingFlowGraph, function);
+        existingFlowGraph.check();
+    }
+
     private static String formatDynamicSourceCodeFileName(String fileName) {
         return String.format("%s(%s)", dynamicSourceCodePrefix, fileName);
     }
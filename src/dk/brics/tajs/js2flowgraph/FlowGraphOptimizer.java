@@ -0,0 +1,217 @@
+/*
+ * Copyright 2009-2016 Aarhus University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dk.brics.tajs.js2flowgraph;
+
+import dk.brics.tajs.flowgraph.AbstractNode;
+import dk.brics.tajs.flowgraph.BasicBlock;
+import dk.brics.tajs.flowgraph.Function;
+import dk.brics.tajs.flowgraph.jsnodes.BeginForInNode;
+import dk.brics.tajs.flowgraph.jsnodes.BeginLoopNode;
+import dk.brics.tajs.flowgraph.jsnodes.CallNode;
+import dk.brics.tajs.flowgraph.jsnodes.CatchNode;
+import dk.brics.tajs.flowgraph.jsnodes.ConstantNode;
+import dk.brics.tajs.flowgraph.jsnodes.EndForInNode;
+import dk.brics.tajs.flowgraph.jsnodes.EndLoopNode;
+import dk.brics.tajs.flowgraph.jsnodes.EventDispatcherNode;
+import dk.brics.tajs.flowgraph.jsnodes.ExceptionalReturnNode;
+import dk.brics.tajs.flowgraph.jsnodes.IfNode;
+import dk.brics.tajs.flowgraph.jsnodes.NopNode;
+import dk.brics.tajs.flowgraph.jsnodes.ReturnNode;
+import dk.brics.tajs.flowgraph.jsnodes.ThrowNode;
+import dk.brics.tajs.options.Options;
+import org.apache.log4j.Logger;
+
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static dk.brics.tajs.util.Collections.newMap;
+import static dk.brics.tajs.util.Collections.newSet;
+
+/**
+ * Simplifies new basic blocks before they are added to the flow graph
+ * (see {@link dk.brics.tajs.options.OptionValues#isFlowGraphOptimizationEnabled()}).
+ * <ul>
+ * <li>Removes nop nodes, and constant nodes whose result register is never read.
+ * <li>Merges straight-line blocks, i.e. a block with a single successor that has no other predecessors is appended to its predecessor.
+ * </ul>
+ * This reduces the number of node and block transfers, and the number of abstract states stored at block entries.
+ * Only blocks that have not been added to a flow graph yet (i.e., with block index -1) are changed.
+ * Blocks that become empty must be skipped when adding the blocks to the flow graph.
+ */
+final class FlowGraphOptimizer {
+
+    private static final Logger log = Logger.getLogger(FlowGraphOptimizer.class);
+
+    /**
+     * The new blocks.
+     */
+    private final List<BasicBlock> blocks;
+
+    /**
+     * The new blocks and the existing blocks of their functions.
+     */
+    private final Set<BasicBlock> all_blocks;
+
+    private int removed_nodes;
+
+    private int merged_blocks;
+
+    private FlowGraphOptimizer(List<BasicBlock> blocks) {
+        this.blocks = blocks;
+        all_blocks = newSet(blocks);
+        for (BasicBlock b : blocks)
+            all_blocks.addAll(b.getFunction().getBlocks());
+    }
+
+    /**
+     * Checks whether the optimization is enabled.
+     * The unevalizer inspects the flow graph structure around calls to eval, so the optimization is disabled with the unevalizer.
+     */
+    static boolean isEnabled() {
+        return Options.get().isFlowGraphOptimizationEnabled() && !Options.get().isUnevalizerEnabled();
+    }
+
+    /**
+     * Optimizes the given blocks.
+     * Should be called after the entry blocks have been set, and after empty blocks have been bypassed.
+     */
+    static void optimize(List<BasicBlock> blocks) {
+        FlowGraphOptimizer optimizer = new FlowGraphOptimizer(blocks);
+        optimizer.mergeBlocks();
+        optimizer.removeNodes();
+        if (log.isDebugEnabled())
+            log.debug("Flow graph optimization removed " + optimizer.removed_nodes + " nodes and merged " + optimizer.merged_blocks + " blocks");
+    }
+
+    /**
+     * Removes nop nodes and dead constant nodes, without making any block empty.
+     */
+    private void removeNodes() {
+        Map<Function, BitSet> reads = newMap();
+        Set<AbstractNode> duplicated = newSet();
+        for (BasicBlock b : all_blocks) {
+            RegisterUses uses = new RegisterUses(reads.computeIfAbsent(b.getFunction(), f -> new BitSet()));
+            for (AbstractNode n : b.getNodes()) {
+                uses.addReads(n);
+                if (n.getDuplicateOf() != null)
+                    duplicated.add(n.getDuplicateOf());
+            }
+        }
+        for (BasicBlock b : blocks) {
+            if (b.getIndex() != -1)
+                continue;
+            BitSet function_reads = b.getFunction().isBodyTranslated() ? reads.get(b.getFunction()) : null; // the body may read registers of the entry block
+            List<AbstractNode> nodes = b.getNodes();
+            for (int i = 0; i < nodes.size() && nodes.size() > 1; ) {
+                AbstractNode n = nodes.get(i);
+                boolean removable = (n instanceof NopNode || (n instanceof ConstantNode && isDead((ConstantNode) n, function_reads)))
+                        && !duplicated.contains(n)
+                        && !(i == 0 && b.isEntry()) // the first node of the function entry identifies the activation and arguments objects
+                        && !(i == 0 && n.isRegistersDone());
+                if (removable) {
+                    if (n.isRegistersDone())
+                        nodes.get(i - 1).setRegistersDone(true);
+                    nodes.remove(i);
+                    removed_nodes++;
+                } else
+                    i++;
+            }
+        }
+    }
+
+    /**
+     * Checks whether the result of the given constant node is never read.
+     * If the registers that are read are unknown (null), only constants without a result register are dead.
+     */
+    private static boolean isDead(ConstantNode n, BitSet reads) {
+        int r = n.getResultRegister();
+        return r == AbstractNode.NO_VALUE || (reads != null && r >= AbstractNode.FIRST_ORDINARY_REG && !reads.get(r));
+    }
+
+    /**
+     * Merges straight-line blocks.
+     */
+    private void mergeBlocks() {
+        Map<BasicBlock, Integer> predecessors = newMap();
+        Set<BasicBlock> handlers = newSet();
+        for (BasicBlock b : all_blocks) {
+            for (BasicBlock s : b.getSuccessors())
+                predecessors.merge(s, 1, Integer::sum);
+            if (b.getExceptionHandler() != null)
+                handlers.add(b.getExceptionHandler());
+        }
+        Map<BasicBlock, BasicBlock> merged = newMap(); // merged block -> the block it has been appended to
+        for (BasicBlock a : blocks) {
+            if (a.isEmpty())
+                continue;
+            while (a.getSuccessors().size() == 1) {
+                BasicBlock b = a.getSingleSuccessor();
+                if (!canMerge(a, b, predecessors, handlers))
+                    break;
+                for (AbstractNode n : b.getNodes())
+                    a.addNode(n);
+                b.getNodes().clear();
+                a.getSuccessors().clear();
+                for (BasicBlock s : b.getSuccessors())
+                    a.addSuccessor(s);
+                b.getSuccessors().clear();
+                merged.put(b, a);
+                merged_blocks++;
+            }
+        }
+        for (BasicBlock b : blocks) {
+            BasicBlock p = b.getEntryPredecessorBlock();
+            if (p != null) {
+                while (merged.containsKey(p))
+                    p = merged.get(p);
+                b.setEntryPredecessorBlock(p);
+            }
+        }
+    }
+
+    /**
+     * Checks whether the block b can be appended to its single predecessor a.
+     */
+    private static boolean canMerge(BasicBlock a, BasicBlock b, Map<BasicBlock, Integer> predecessors, Set<BasicBlock> handlers) {
+        Function f = b.getFunction();
+        return a != b && a.getIndex() == -1 && b.getIndex() == -1 && !b.isEmpty()
+                && predecessors.get(b) == 1 && !handlers.contains(b)
+                && a.getFunction() == f && b != f.getEntry() && b != f.getOrdinaryExit() && b != f.getExceptionalExit()
+                && a.getExceptionHandler() == b.getExceptionHandler()
+                && a.getEntryBlock() == b.getEntryBlock()
+                && !endsBlock(a.getLastNode()) && !startsBlock(b.getFirstNode());
+    }
+
+    /**
+     * Checks whether the given node must be the last node in its block.
+     */
+    private static boolean endsBlock(AbstractNode n) {
+        return n instanceof IfNode || n instanceof CallNode || n instanceof EventDispatcherNode
+                || n instanceof BeginForInNode || n instanceof EndForInNode || n instanceof BeginLoopNode || n instanceof EndLoopNode
+                || n instanceof ReturnNode || n instanceof ExceptionalReturnNode || n instanceof ThrowNode;
+    }
+
+    /**
+     * Checks whether the given node must be the first node in its block.
+     */
+    private static boolean startsBlock(AbstractNode n) {
+        return n instanceof CallNode || n instanceof EventDispatcherNode || n instanceof EndForInNode
+                || n instanceof BeginForInNode || n instanceof CatchNode;
+    }
+}
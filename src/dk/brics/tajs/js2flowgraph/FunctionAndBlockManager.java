@@ -103,6 +103,20 @@ public class FunctionAndBlockManager {
         blocks.addAll(bs);
     }
 
+    /**
+     * Returns the functions registered so far, in registration order.
+     */
+    List<Function> getFunctions() {
+        return java.util.Collections.unmodifiableList(functions);
+    }
+
+    /**
+     * Returns the blocks registered so far, in registration order.
+     */
+    List<BasicBlock> getBlocks() {
+        return java.util.Collections.unmodifiableList(blocks);
+    }
+
     /**
      * Closes this collection of functions and blocks.
      */
@@ -785,9 +785,14 @@ public class FunctionBuilder extends DefaultDispatchingParseTreeAuxVisitor<Trans
             }
         }
 
-        // 3. wire the function body
-        TranslationResult processedBody = process(body, functionEnv);
-        processedBody.getAppendBlock().addSuccessor(function.getOrdinaryExit());
+        // 3. wire the function body, or defer it until the function is called
+        if (Options.get().isLazyFunctionBodiesEnabled()) {
+            functionEnv.getAppendBlock().addSuccessor(function.getOrdinaryExit());
+            function.setBodyTranslation(flowGraph -> FlowGraphMutator.translateFunctionBody(flowGraph, function, body, functionEnv, astInfo, syntacticHintsCollector, this.location));
+        } else {
+            TranslationResult processedBody = process(body, functionEnv);
+            processedBody.getAppendBlock().addSuccessor(function.getOrdinaryExit());
+        }
 
         function.setMaxRegister(functionEnv.getRegisterManager().getRegister()); // assumes monotonically increasing register implementation
 
@@ -0,0 +1,124 @@
+/*
+ * Copyright 2009-2016 Aarhus University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dk.brics.tajs.js2flowgraph;
+
+import dk.brics.tajs.flowgraph.AbstractNode;
+import dk.brics.tajs.flowgraph.BasicBlock;
+import dk.brics.tajs.flowgraph.Function;
+import dk.brics.tajs.options.Options;
+
+import java.util.ArrayDeque;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static dk.brics.tajs.util.Collections.newList;
+import static dk.brics.tajs.util.Collections.newMap;
+import static dk.brics.tajs.util.Collections.newSet;
+
+/**
+ * Register liveness analysis (see {@link dk.brics.tajs.options.OptionValues#isRegisterLivenessEnabled()}).
+ * Computes the ordinary registers that are live at entry of each basic block,
+ * such that the other registers can be cleared when states are propagated to the block.
+ * <p>
+ * The registers that are live at entry of an exception handler are considered live in the entire block that it handles,
+ * as an exception may be thrown at any node in the block.
+ * Blocks that are created later (for dynamically generated code and implicit calls) have no liveness information,
+ * so no registers are cleared at those blocks.
+ */
+final class RegisterLiveness {
+
+    private RegisterLiveness() {
+    }
+
+    /**
+     * Checks whether the liveness analysis is enabled.
+     * The unevalizer reads registers of the nodes that construct the argument of eval, so the analysis is disabled with the unevalizer.
+     */
+    static boolean isEnabled() {
+        return Options.get().isRegisterLivenessEnabled() && !Options.get().isUnevalizerEnabled();
+    }
+
+    /**
+     * Computes and sets the live registers at entry of each block in the given function.
+     */
+    static void compute(Function f) {
+        List<BasicBlock> blocks = newList(f.getBlocks());
+        Map<BasicBlock, BitSet> gen = newMap();
+        Map<BasicBlock, BitSet> kill = newMap();
+        Map<BasicBlock, Set<BasicBlock>> predecessors = newMap();
+        BitSet reads = new BitSet();
+        BitSet writes = new BitSet();
+        RegisterUses uses = new RegisterUses(reads);
+        for (BasicBlock b : blocks) {
+            // registers that are read before they are written in the block, and registers that are written in the block
+            BitSet g = new BitSet();
+            BitSet k = new BitSet();
+            List<AbstractNode> nodes = b.getNodes();
+            for (int i = nodes.size() - 1; i >= 0; i--) {
+                reads.clear();
+                writes.clear();
+                uses.addReads(nodes.get(i));
+                RegisterUses.addWrites(nodes.get(i), writes);
+                g.andNot(writes);
+                g.or(reads);
+                k.or(writes);
+            }
+            gen.put(b, g);
+            kill.put(b, k);
+            for (BasicBlock s : b.getSuccessors())
+                predecessors.computeIfAbsent(s, x -> newSet()).add(b);
+            if (b.getExceptionHandler() != null)
+                predecessors.computeIfAbsent(b.getExceptionHandler(), x -> newSet()).add(b);
+        }
+        Map<BasicBlock, BitSet> live = newMap();
+        Deque<BasicBlock> worklist = new ArrayDeque<>();
+        Set<BasicBlock> pending = newSet();
+        for (int i = blocks.size() - 1; i >= 0; i--) { // backwards analysis, so start at the end
+            worklist.add(blocks.get(i));
+            pending.add(blocks.get(i));
+        }
+        while (!worklist.isEmpty()) {
+            BasicBlock b = worklist.removeFirst();
+            pending.remove(b);
+            BitSet in = new BitSet();
+            for (BasicBlock s : b.getSuccessors()) {
+                BitSet l = live.get(s);
+                if (l != null)
+                    in.or(l);
+            }
+            in.andNot(kill.get(b));
+            in.or(gen.get(b));
+            if (b.getExceptionHandler() != null) {
+                BitSet l = live.get(b.getExceptionHandler());
+                if (l != null)
+                    in.or(l);
+            }
+            if (!in.equals(live.get(b))) {
+                live.put(b, in);
+                for (BasicBlock p : predecessors.getOrDefault(b, Collections.emptySet()))
+                    if (pending.add(p))
+                        worklist.add(p);
+            }
+        }
+        for (BasicBlock b : blocks)
+            b.setLiveRegisters(live.get(b).stream().toArray());
+    }
+}
@@ -0,0 +1,249 @@
+/*
+ * Copyright 2009-2016 Aarhus University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dk.brics.tajs.js2flowgraph;
+
+import dk.brics.tajs.flowgraph.AbstractNode;
+import dk.brics.tajs.flowgraph.jsnodes.AssumeNode;
+import dk.brics.tajs.flowgraph.jsnodes.BeginForInNode;
+import dk.brics.tajs.flowgraph.jsnodes.BeginLoopNode;
+import dk.brics.tajs.flowgraph.jsnodes.BeginWithNode;
+import dk.brics.tajs.flowgraph.jsnodes.BinaryOperatorNode;
+import dk.brics.tajs.flowgraph.jsnodes.CallNode;
+import dk.brics.tajs.flowgraph.jsnodes.CatchNode;
+import dk.brics.tajs.flowgraph.jsnodes.ConstantNode;
+import dk.brics.tajs.flowgraph.jsnodes.DeclareFunctionNode;
+import dk.brics.tajs.flowgraph.jsnodes.DeclareVariableNode;
+import dk.brics.tajs.flowgraph.jsnodes.DeletePropertyNode;
+import dk.brics.tajs.flowgraph.jsnodes.EndForInNode;
+import dk.brics.tajs.flowgraph.jsnodes.EndLoopNode;
+import dk.brics.tajs.flowgraph.jsnodes.EndWithNode;
+import dk.brics.tajs.flowgraph.jsnodes.EventDispatcherNode;
+import dk.brics.tajs.flowgraph.jsnodes.ExceptionalReturnNode;
+import dk.brics.tajs.flowgraph.jsnodes.HasNextPropertyNode;
+import dk.brics.tajs.flowgraph.jsnodes.IfNode;
+import dk.brics.tajs.flowgraph.jsnodes.LoadNode;
+import dk.brics.tajs.flowgraph.jsnodes.NewObjectNode;
+import dk.brics.tajs.flowgraph.jsnodes.NextPropertyNode;
+import dk.brics.tajs.flowgraph.jsnodes.Node;
+import dk.brics.tajs.flowgraph.jsnodes.NodeVisitor;
+import dk.brics.tajs.flowgraph.jsnodes.NopNode;
+import dk.brics.tajs.flowgraph.jsnodes.ReadPropertyNode;
+import dk.brics.tajs.flowgraph.jsnodes.ReadVariableNode;
+import dk.brics.tajs.flowgraph.jsnodes.ReturnNode;
+import dk.brics.tajs.flowgraph.jsnodes.ThrowNode;
+import dk.brics.tajs.flowgraph.jsnodes.TypeofNode;
+import dk.brics.tajs.flowgraph.jsnodes.UnaryOperatorNode;
+import dk.brics.tajs.flowgraph.jsnodes.WritePropertyNode;
+import dk.brics.tajs.flowgraph.jsnodes.WriteVariableNode;
+
+import java.util.BitSet;
+
+/**
+ * Collects the ordinary registers that are read or written by nodes.
+ * Registers below {@link AbstractNode#FIRST_ORDINARY_REG} are ignored.
+ */
+final class RegisterUses implements NodeVisitor {
+
+    private final BitSet reads;
+
+    /**
+     * Constructs a new collector that adds the registers to the given set.
+     */
+    RegisterUses(BitSet reads) {
+        this.reads = reads;
+    }
+
+    /**
+     * Adds the ordinary registers that are read by the given node.
+     */
+    void addReads(AbstractNode n) {
+        ((Node) n).visitBy(this);
+    }
+
+    /**
+     * Adds the ordinary register that is always written by the given node when it completes normally, if any.
+     * Other registers that may be written (for example the base register of a variable read) are ignored,
+     * which is safe for the register liveness analysis.
+     */
+    static void addWrites(AbstractNode n, BitSet writes) {
+        if (n instanceof LoadNode) {
+            int r = ((LoadNode) n).getResultRegister();
+            if (r >= AbstractNode.FIRST_ORDINARY_REG)
+                writes.set(r);
+        }
+    }
+
+    private void read(int r) {
+        if (r >= AbstractNode.FIRST_ORDINARY_REG)
+            reads.set(r);
+    }
+
+    @Override
+    public void visit(AssumeNode n) {
+        read(n.getBaseRegister());
+        read(n.getPropertyRegister());
+    }
+
+    @Override
+    public void visit(BinaryOperatorNode n) {
+        read(n.getArg1Register());
+        read(n.getArg2Register());
+    }
+
+    @Override
+    public void visit(CallNode n) {
+        read(n.getBaseRegister());
+        read(n.getFunctionRegister());
+        read(n.getPropertyRegister());
+        for (int i = 0; i < n.getNumberOfArgs(); i++)
+            read(n.getArgRegister(i));
+    }
+
+    @Override
+    public void visit(CatchNode n) {
+        // only writes registers
+    }
+
+    @Override
+    public void visit(ConstantNode n) {
+        // only writes registers
+    }
+
+    @Override
+    public void visit(DeletePropertyNode n) {
+        read(n.getBaseRegister());
+        read(n.getPropertyRegister());
+    }
+
+    @Override
+    public void visit(BeginWithNode n) {
+        read(n.getObjectRegister());
+    }
+
+    @Override
+    public void visit(ExceptionalReturnNode n) {
+        // no registers
+    }
+
+    @Override
+    public void visit(DeclareFunctionNode n) {
+        // only writes registers
+    }
+
+    @Override
+    public void visit(BeginForInNode n) {
+        read(n.getObjectRegister());
+    }
+
+    @Override
+    public void visit(IfNode n) {
+        read(n.getConditionRegister());
+    }
+
+    @Override
+    public void visit(EndWithNode n) {
+        // no registers
+    }
+
+    @Override
+    public void visit(NewObjectNode n) {
+        // only writes registers
+    }
+
+    @Override
+    public void visit(NextPropertyNode n) {
+        read(n.getPropertyListRegister());
+    }
+
+    @Override
+    public void visit(HasNextPropertyNode n) {
+        read(n.getPropertyListRegister());
+    }
+
+    @Override
+    public void visit(NopNode n) {
+        // no registers
+    }
+
+    @Override
+    public void visit(ReadPropertyNode n) {
+        read(n.getBaseRegister());
+        read(n.getPropertyRegister());
+    }
+
+    @Override
+    public void visit(ReadVariableNode n) {
+        // only writes registers
+    }
+
+    @Override
+    public void visit(ReturnNode n) {
+        read(n.getReturnValueRegister());
+    }
+
+    @Override
+    public void visit(ThrowNode n) {
+        read(n.getValueRegister());
+    }
+
+    @Override
+    public void visit(TypeofNode n) {
+        read(n.getArgRegister());
+    }
+
+    @Override
+    public void visit(UnaryOperatorNode n) {
+        read(n.getArgRegister());
+    }
+
+    @Override
+    public void visit(DeclareVariableNode n) {
+        // no registers
+    }
+
+    @Override
+    public void visit(WritePropertyNode n) {
+        read(n.getBaseRegister());
+        read(n.getPropertyRegister());
+        read(n.getValueRegister());
+    }
+
+    @Override
+    public void visit(WriteVariableNode n) {
+        read(n.getValueRegister());
+    }
+
+    @Override
+    public void visit(EventDispatcherNode n) {
+        // no registers
+    }
+
+    @Override
+    public void visit(EndForInNode n) {
+        // no registers
+    }
+
+    @Override
+    public void visit(BeginLoopNode n) {
+        read(n.getIfNode().getConditionRegister()); // the loop condition is inspected when entering the loop
+    }
+
+    @Override
+    public void visit(EndLoopNode n) {
+        // no registers
+    }
+}
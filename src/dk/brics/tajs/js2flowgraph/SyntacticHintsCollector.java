@@ -33,6 +33,11 @@ public class SyntacticHintsCollector {
 
     private SyntacticHints syntacticHints;
 
+    /**
+     * Hints registered since {@link #startRecording()}, or null if not recording.
+     */
+    private SyntacticHints recording;
+
     public SyntacticHintsCollector() {
         this.syntacticHints = new SyntacticHints();
     }
@@ -41,14 +46,70 @@ public class SyntacticHintsCollector {
         return syntacticHints;
     }
 
+    /**
+     * Starts recording the hints that are registered from now on, in addition to collecting them.
+     */
+    void startRecording() {
+        recording = new SyntacticHints();
+    }
+
+    /**
+     * Stops recording.
+     *
+     * @return the hints registered since {@link #startRecording()}
+     */
+    SyntacticHints stopRecording() {
+        SyntacticHints recorded = recording;
+        recording = null;
+        return recorded;
+    }
+
+    /**
+     * Adds hints that have been collected elsewhere, for example by a recording.
+     */
+    void addAll(SyntacticHints hints) {
+        hints.getInForIn().forEach(this::registerInForIn);
+        hints.getVariableDependencies().forEach((n, vs) -> vs.forEach(v -> registerVariableDependency(n, v)));
+        hints.getLoopVariables().forEach((f, vs) -> vs.forEach(v -> registerLoopVariable(f, v)));
+        hints.getCorrelatedAccessFunctions().forEach(this::registerCorrelatedAccessFunction);
+    }
+
+    private void registerInForIn(AbstractNode literalNode) {
+        syntacticHints.registerInForIn(literalNode);
+        if (recording != null) {
+            recording.registerInForIn(literalNode);
+        }
+    }
+
+    private void registerVariableDependency(AbstractNode literalNode, String variableRead) {
+        syntacticHints.registerVariableDependency(literalNode, variableRead);
+        if (recording != null) {
+            recording.registerVariableDependency(literalNode, variableRead);
+        }
+    }
+
+    private void registerLoopVariable(Function function, String candidateVariable) {
+        syntacticHints.registerLoopVariable(function, candidateVariable);
+        if (recording != null) {
+            recording.registerLoopVariable(function, candidateVariable);
+        }
+    }
+
+    private void registerCorrelatedAccessFunction(Function function) {
+        syntacticHints.registerCorrelatedAccessFunction(function);
+        if (recording != null) {
+            recording.registerCorrelatedAccessFunction(function);
+        }
+    }
+
     public void registerLiteral(AbstractNode literalNode, ASTInfo.LiteralTree literalTree, ASTInfo astInfo) {
         if (astInfo.getLiteralsInForIn().contains(literalTree)) {
-            syntacticHints.registerInForIn(literalNode);
+            registerInForIn(literalNode);
         }
         if (astInfo.getVariableReadsInLiterals().containsKey(literalTree)) {
             Set<String> variableReads = astInfo.getVariableReadsInLiterals().get(literalTree);
             for (String variableRead : variableReads) {
-                syntacticHints.registerVariableDependency(literalNode, variableRead);
+                registerVariableDependency(literalNode, variableRead);
             }
         }
     }
@@ -77,14 +138,14 @@ public class SyntacticHintsCollector {
         candidateVariables.retainAll(dpaReadVariables);
 
         for (String candidateVariable : candidateVariables) {
-            syntacticHints.registerLoopVariable(env.getFunction(), candidateVariable);
+            registerLoopVariable(env.getFunction(), candidateVariable);
         }
     }
 
     public void registerFunction(Function function, FunctionDeclarationTree functionTree, ASTInfo astInfo) {
         Map<FunctionDeclarationTree, Set<String>> candidates = astInfo.getFunctionsWithVariableCorrelatedPropertyAccesses();
         if (candidates.containsKey(functionTree)) {
-            syntacticHints.registerCorrelatedAccessFunction(function);
+            registerCorrelatedAccessFunction(function);
         }
     }
 }
@@ -19,6 +19,8 @@ package dk.brics.tajs.lattice;
 import dk.brics.tajs.flowgraph.BasicBlock;
 import dk.brics.tajs.flowgraph.FlowGraph;
 import dk.brics.tajs.flowgraph.Function;
+import dk.brics.tajs.monitoring.AnalysisEvents;
+import dk.brics.tajs.monitoring.MonitoringCallback;
 import dk.brics.tajs.options.Options;
 import dk.brics.tajs.solver.BlockAndContext;
 import dk.brics.tajs.solver.CallGraph;
@@ -50,6 +52,11 @@ public class AnalysisLatticeElement implements
      */
     private final CallGraph<State, Context, CallEdge> call_graph;
 
+    /**
+     * Number of (block, context) pairs with a state.
+     */
+    private int number_of_states;
+
     /**
      * Constructs a new global analysis lattice element.
      */
@@ -69,6 +76,11 @@ public class AnalysisLatticeElement implements
         return call_graph;
     }
 
+    @Override
+    public int getNumberOfStates() {
+        return number_of_states;
+    }
+
     @Override
     public State getState(BasicBlock block, Context context) {
         Map<Context, State> bs = block_entry_states.get(block);
@@ -115,11 +127,17 @@ public class AnalysisLatticeElement implements
                 log.debug("before localization: " + s);
             }
         }
+        int[] live_registers = b.getLiveRegisters();
+        if (live_registers != null)
+            s.clearDeadRegisters(live_registers); // only set with -register-liveness
+        AnalysisEvents.Propagate event = new AnalysisEvents.Propagate();
+        event.begin();
         boolean add;
         String diff = null;
         Map<Context, State> m = getStates(b);
         State state_current = m.get(c);
-        if (state_current == null) { // existing state at (b,c) is implicitly bottom, so just store s
+        boolean new_state = state_current == null;
+        if (new_state) { // existing state at (b,c) is implicitly bottom, so just store s
             add = true;
             if (localize) {
                 s.localize(null);
@@ -127,6 +145,7 @@ public class AnalysisLatticeElement implements
             s.setBasicBlock(b);
             s.setContext(c);
             m.put(c, s);
+            number_of_states++;
             state_current = s;
         } else { // a nontrivial state already exists at (b,c), so join s into it
             if (Options.get().isIntermediateStatesEnabled()) {
@@ -149,11 +168,22 @@ public class AnalysisLatticeElement implements
                     log.debug("after localization, before join: " + s);
             }
             add = state_current.propagate(s, localize);
-            s.getSolverInterface().getMonitoring().visitJoin();
+            if (s.getSolverInterface().isMonitored(MonitoringCallback.JOIN))
+                s.getSolverInterface().getMonitoring().visitJoin();
             if (Options.get().isNewFlowEnabled()) {
                 diff = state_current.diff(state_old);
             }
         }
+        event.end();
+        if (event.shouldCommit()) {
+            event.block = b.getIndex();
+            event.localize = localize;
+            event.newState = new_state;
+            event.changed = add;
+            event.storeSize = state_current.getStore().size();
+            event.diffSize = diff != null ? diff.length() : -1;
+            event.commit();
+        }
         if (add) {
             if (Options.get().isIntermediateStatesEnabled()) {
                 if (log.isDebugEnabled())
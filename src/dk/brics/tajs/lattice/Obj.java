@@ -255,6 +255,19 @@ public final class Obj {
         return default_array_property.isMaybeModified() || default_nonarray_property.isMaybeModified() || internal_prototype.isMaybeModified() || internal_value.isMaybeModified();
     }
 
+    /**
+     * Checks whether some property is definitely not modified or polymorphic.
+     */
+    public boolean isSomeNonModifiedOrPolymorphic() {
+        for (Value v : properties.values())
+            if (!v.isMaybeModified() || v.isPolymorphic())
+                return true;
+        return !default_array_property.isMaybeModified() || default_array_property.isPolymorphic()
+                || !default_nonarray_property.isMaybeModified() || default_nonarray_property.isPolymorphic()
+                || !internal_prototype.isMaybeModified() || internal_prototype.isPolymorphic()
+                || !internal_value.isMaybeModified() || internal_value.isPolymorphic();
+    }
+
     private void checkWritable() {
         if (!writable)
             throw new AnalysisException("Attempt to modify non-writable Obj");
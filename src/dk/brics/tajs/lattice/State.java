@@ -19,6 +19,7 @@ package dk.brics.tajs.lattice;
 import dk.brics.tajs.flowgraph.AbstractNode;
 import dk.brics.tajs.flowgraph.BasicBlock;
 import dk.brics.tajs.lattice.ObjectLabel.Kind;
+import dk.brics.tajs.monitoring.AnalysisEvents;
 import dk.brics.tajs.options.OptionValues;
 import dk.brics.tajs.options.Options;
 import dk.brics.tajs.solver.BlockAndContext;
@@ -1870,7 +1871,10 @@ public class State implements IState<State, Context, CallEdge> {
         if (Options.get().isIntermediateStatesEnabled())
             if (log.isDebugEnabled())
                 log.debug("gc(): Before: " + this);
+        AnalysisEvents.StateGC event = new AnalysisEvents.StateGC();
+        event.begin();
         Set<ObjectLabel> dead = newSet(store.keySet());
+        int objects = dead.size();
         State entry_state = c.getAnalysisLatticeElement().getState(BlockAndContext.makeEntry(block, context));
         dead.removeAll(findLiveObjectLabels(extra, entry_state));
         if (log.isDebugEnabled()) {
@@ -1884,6 +1888,12 @@ public class State implements IState<State, Context, CallEdge> {
                 store.put(objlabel, Obj.makeNoneModified());
         }
         // don't remove from summarized (it may contain dead object labels)
+        event.end();
+        if (event.shouldCommit()) {
+            event.objects = objects;
+            event.dead = dead.size();
+            event.commit();
+        }
         if (Options.get().isIntermediateStatesEnabled())
             if (log.isDebugEnabled())
                 log.debug("gc(): After: " + this);
@@ -2093,19 +2103,21 @@ public class State implements IState<State, Context, CallEdge> {
         writable_registers = true;
     }
 
-//    /**
-//     * Clears the non-live registers.
-//     */
-//    public void clearDeadRegisters(int[] live_regs) {
-//        for (int reg = 0, i = 0; reg < registers.size(); reg++) {
-//            if (i < live_regs.length && live_regs[i] == reg)
-//                i++;
-//            else if (registers.get(reg) != null && reg >= AbstractNode.FIRST_ORDINARY_REG) {
-//                makeWritableRegisters();
-//                registers.set(reg, null);
-//            }
-//        }
-//    }
+    /**
+     * Clears the non-live registers, starting from {@link AbstractNode#FIRST_ORDINARY_REG}, and excluding property list values.
+     *
+     * @param live_regs the live registers, in increasing order
+     */
+    public void clearDeadRegisters(int[] live_regs) {
+        for (int reg = 0, i = 0; reg < registers.size(); reg++) {
+            if (i < live_regs.length && live_regs[i] == reg)
+                i++;
+            else if (reg >= AbstractNode.FIRST_ORDINARY_REG && registers.get(reg) != null && !registers.get(reg).isExtendedScope()) {
+                makeWritableRegisters();
+                registers.set(reg, null);
+            }
+        }
+    }
 
     /**
      * Returns the value of 'this'.
@@ -18,6 +18,8 @@ package dk.brics.tajs.lattice;
 
 import dk.brics.tajs.flowgraph.AbstractNode;
 import dk.brics.tajs.lattice.Property.Kind;
+import dk.brics.tajs.monitoring.AnalysisEvents;
+import dk.brics.tajs.monitoring.MonitoringCallback;
 import dk.brics.tajs.options.Options;
 import dk.brics.tajs.solver.BlockAndContext;
 import dk.brics.tajs.solver.CallGraph;
@@ -294,7 +296,10 @@ public final class UnknownValueResolver {
         if (log.isDebugEnabled())
             log.debug((partial ? "partially" : "fully") + " recovering " + prop + " at block " + s.getBasicBlock().getIndex() + " context " + s.getContext());
         GenericSolver<State, Context, CallEdge, ?, ?>.SolverInterface c = s.getSolverInterface();
-        c.getMonitoring().visitUnknownValueResolve(partial, c.isScanning());
+        if (c.isMonitored(MonitoringCallback.UNKNOWN_VALUE_RESOLVE))
+            c.getMonitoring().visitUnknownValueResolve(partial, c.isScanning());
+        AnalysisEvents.RecoveryGraph event = new AnalysisEvents.RecoveryGraph();
+        event.begin();
         // build recovery graph
         RecoveryGraph g = new RecoveryGraph();
         State entry_state = getEntryState(s);
@@ -331,7 +336,7 @@ public final class UnknownValueResolver {
                 }
             }
         }
-        if (Options.get().isStatisticsEnabled())
+        if (c.isMonitored(MonitoringCallback.RECOVERY_GRAPH))
             c.getMonitoring().visitRecoveryGraph(g.getNumberOfNodes());
         // recover at roots
         for (RGNode n : g.getRoots()) { // TODO: recover at roots as soon as we mark them as roots instead of having a separate phase?
@@ -355,7 +360,8 @@ public final class UnknownValueResolver {
                 }
             }
             if (changed) {
-                s.getSolverInterface().getMonitoring().visitNewFlow(n_entry.getBlock(), n_entry.getContext(), callee_functionentry_state, null, "recover");
+                if (c.isMonitored(MonitoringCallback.NEW_FLOW))
+                    s.getSolverInterface().getMonitoring().visitNewFlow(n_entry.getBlock(), n_entry.getContext(), callee_functionentry_state, null, "recover");
                 if (log.isDebugEnabled())
                     log.debug("recovered value at root " + n);
             }
@@ -387,7 +393,8 @@ public final class UnknownValueResolver {
                             pending_list2.add(callee_n);
                         }
                     }
-                    s.getSolverInterface().getMonitoring().visitNewFlow(callee_functionentry_n.getNode().getBlock(), callee_functionentry_n.getContext(), callee_functionentry_state, null, "recover");
+                    if (c.isMonitored(MonitoringCallback.NEW_FLOW))
+                        s.getSolverInterface().getMonitoring().visitNewFlow(callee_functionentry_n.getNode().getBlock(), callee_functionentry_n.getContext(), callee_functionentry_state, null, "recover");
                     if (log.isDebugEnabled())
                         log.debug("recovered value at node " + n);
                 }
@@ -405,6 +412,13 @@ public final class UnknownValueResolver {
             propagate(entry_state, entry_prop.prop1, s, prop, s.getSummarized(), partial, false, value_at_s);
         if (entry_prop.prop2 != null)
             propagate(entry_state, entry_prop.prop2, s, prop, s.getSummarized(), partial, false, value_at_s);
+        event.end();
+        if (event.shouldCommit()) {
+            event.partial = partial;
+            event.scanning = c.isScanning();
+            event.size = g.getNumberOfNodes();
+            event.commit();
+        }
         return s.getObject(prop.getObjectLabel(), false);
     }
 
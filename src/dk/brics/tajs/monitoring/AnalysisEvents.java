@@ -0,0 +1,236 @@
+/*
+ * Copyright 2009-2016 Aarhus University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dk.brics.tajs.monitoring;
+
+import dk.brics.tajs.flowgraph.BasicBlock;
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Java Flight Recorder events for the analysis.
+ * <p>
+ * The events are only instrumented by the JVM when a recording with the corresponding event types enabled is running.
+ * Otherwise, <code>begin</code>, <code>shouldCommit</code> and <code>commit</code> are empty, and the event objects
+ * are eliminated by the JIT compiler, so the events are free when not recording.
+ * Event fields that are expensive to compute should only be set after checking <code>shouldCommit</code>.
+ */
+public final class AnalysisEvents {
+
+    private AnalysisEvents() {
+    }
+
+    /**
+     * Returns a short description of the given block for event fields.
+     */
+    private static String describe(BasicBlock block) {
+        String name = block.getFunction().getName();
+        return (name != null ? name : "<anonymous>") + " at " + block.getSourceLocation();
+    }
+
+    /**
+     * Transfer of a basic block in a context, including the successor edge transfers.
+     */
+    @Name("dk.brics.tajs.BlockTransfer")
+    @Label("Block Transfer")
+    @Category({"TAJS", "Solver"})
+    @Description("Transfer of a basic block in a context")
+    @StackTrace(false)
+    public static final class BlockTransfer extends Event {
+
+        @Label("Block")
+        public int block;
+
+        @Label("Location")
+        public String location;
+
+        @Label("Context")
+        public String context;
+
+        @Label("Node Transfers")
+        public int nodeTransfers;
+
+        @Label("Reached End")
+        @Description("Set if the end of the block was reached with non-exceptional flow")
+        public boolean reachedEnd;
+
+        /**
+         * Sets the block fields and commits the event, if it is enabled.
+         */
+        public void commit(BasicBlock b, Object c, int nodes, boolean end) {
+            end();
+            if (shouldCommit()) {
+                block = b.getIndex();
+                location = describe(b);
+                context = String.valueOf(c);
+                nodeTransfers = nodes;
+                reachedEnd = end;
+                commit();
+            }
+        }
+    }
+
+    /**
+     * Selection of the next work list entry.
+     */
+    @Name("dk.brics.tajs.WorklistPick")
+    @Label("Worklist Pick")
+    @Category({"TAJS", "Solver"})
+    @Description("Selection of the next entry from the solver work list")
+    @StackTrace(false)
+    public static final class WorklistPick extends Event {
+
+        @Label("Block")
+        public int block;
+
+        @Label("Worklist Size")
+        public int worklistSize;
+
+        @Label("Stale")
+        @Description("Set if the picked entry had already been removed")
+        public boolean stale;
+
+        /**
+         * Sets the fields and commits the event, if it is enabled.
+         */
+        public void commit(BasicBlock b, int size) {
+            end();
+            if (shouldCommit()) {
+                block = b != null ? b.getIndex() : -1;
+                stale = b == null;
+                worklistSize = size;
+                commit();
+            }
+        }
+    }
+
+    /**
+     * Join of an abstract state into a block entry state.
+     */
+    @Name("dk.brics.tajs.Propagate")
+    @Label("Propagate")
+    @Category({"TAJS", "Lattice"})
+    @Description("Join of an abstract state into the entry state of a basic block")
+    @StackTrace(false)
+    public static final class Propagate extends Event {
+
+        @Label("Block")
+        public int block;
+
+        @Label("Localize")
+        public boolean localize;
+
+        @Label("New State")
+        @Description("Set if there was no state at the block and context before")
+        public boolean newState;
+
+        @Label("Changed")
+        public boolean changed;
+
+        @Label("Store Size")
+        @Description("Number of abstract objects in the resulting block entry state")
+        public int storeSize;
+
+        @Label("Diff Size")
+        @Description("Length of the state diff description, -1 if not available (see -newflow)")
+        public int diffSize;
+    }
+
+    /**
+     * Recovery of unknown values through the call graph.
+     */
+    @Name("dk.brics.tajs.RecoveryGraph")
+    @Label("Unknown Value Recovery")
+    @Category({"TAJS", "Lattice"})
+    @Description("Recovery of an unknown value using a recovery graph")
+    @StackTrace(false)
+    public static final class RecoveryGraph extends Event {
+
+        @Label("Partial")
+        public boolean partial;
+
+        @Label("Scanning")
+        public boolean scanning;
+
+        @Label("Graph Size")
+        @Description("Number of nodes in the recovery graph")
+        public int size;
+    }
+
+    /**
+     * Abstract garbage collection of a state.
+     */
+    @Name("dk.brics.tajs.StateGC")
+    @Label("Abstract GC")
+    @Category({"TAJS", "Lattice"})
+    @Description("Abstract garbage collection of an abstract state")
+    @StackTrace(false)
+    public static final class StateGC extends Event {
+
+        @Label("Objects")
+        @Description("Number of abstract objects in the store before collection")
+        public int objects;
+
+        @Label("Dead Objects")
+        public int dead;
+    }
+
+    /**
+     * Merging of a context that exceeds the context budget (see {@link dk.brics.tajs.options.OptionValues#getContextBudget()}).
+     */
+    @Name("dk.brics.tajs.ContextMerge")
+    @Label("Context Merge")
+    @Category({"TAJS", "Solver"})
+    @Description("A new context was merged into a widened context because the context budget was exhausted")
+    @StackTrace(false)
+    public static final class ContextMerge extends Event {
+
+        @Label("Kind")
+        @Description("Either 'function' or 'loop'")
+        public String kind;
+
+        @Label("Location")
+        public String location;
+
+        @Label("Budget")
+        public int budget;
+    }
+
+    /**
+     * Analysis phase, from beginning to end.
+     */
+    @Name("dk.brics.tajs.Phase")
+    @Label("Analysis Phase")
+    @Category({"TAJS"})
+    @Description("An analysis phase (loading files, data flow analysis, scan)")
+    @StackTrace(false)
+    public static final class Phase extends Event {
+
+        @Label("Phase")
+        public String phase;
+
+        /**
+         * Constructs a new phase event.
+         */
+        public Phase(AnalysisPhase p) {
+            phase = p.name();
+        }
+    }
+}
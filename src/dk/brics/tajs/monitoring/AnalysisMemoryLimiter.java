@@ -0,0 +1,111 @@
+/*
+ * Copyright 2009-2016 Aarhus University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dk.brics.tajs.monitoring;
+
+import dk.brics.tajs.util.AnalysisLimitationException;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.util.Arrays;
+import java.util.List;
+
+import static dk.brics.tajs.util.Collections.newList;
+
+/**
+ * A simple monitoring that will prevent the analysis from using more than a set amount of heap memory.
+ * <p>
+ * The memory use is measured as the usage of the tenured heap pools after the most recent garbage collection,
+ * so garbage does not count, and the limit is only meaningful if no other analysis runs in the same JVM.
+ * The usage of a pool after a collection that happened before this limiter was constructed, for example
+ * during the previous job of a batch, is ignored until the pool has been collected again.
+ */
+public class AnalysisMemoryLimiter extends DefaultAnalysisMonitoring {
+
+    private static final long megaFactor = 1024 * 1024;
+
+    /**
+     * Number of iterations between two checks of the memory pools.
+     */
+    private static final int CHECK_INTERVAL_MASK = 0xff;
+
+    private final long megabytesLimit;
+
+    private final List<MemoryPoolMXBean> pools = newList();
+
+    /**
+     * Garbage collectors of each pool.
+     */
+    private final List<List<GarbageCollectorMXBean>> collectors = newList();
+
+    /**
+     * Number of collections of each pool when this limiter was constructed.
+     */
+    private final long[] baseline_collections;
+
+    private int iterations;
+
+    /**
+     * @param megabytesLimit as the number of megabytes the analysis is allowed to use
+     */
+    public AnalysisMemoryLimiter(long megabytesLimit) {
+        this.megabytesLimit = megabytesLimit;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            // the pools supporting collection usage thresholds are the ones that are not emptied by every collection
+            if (pool.getType() == MemoryType.HEAP && pool.isCollectionUsageThresholdSupported())
+                pools.add(pool);
+        }
+        baseline_collections = new long[pools.size()];
+        for (int i = 0; i < pools.size(); i++) {
+            List<GarbageCollectorMXBean> gcs = newList();
+            for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans())
+                if (Arrays.asList(gc.getMemoryPoolNames()).contains(pools.get(i).getName()))
+                    gcs.add(gc);
+            collectors.add(gcs);
+            baseline_collections[i] = getCollectionCount(gcs);
+        }
+    }
+
+    /**
+     * Returns the total number of collections by the given collectors.
+     */
+    private static long getCollectionCount(List<GarbageCollectorMXBean> gcs) {
+        long count = 0;
+        for (GarbageCollectorMXBean gc : gcs)
+            count += Math.max(gc.getCollectionCount(), 0);
+        return count;
+    }
+
+    @Override
+    public boolean allowNextIteration() {
+        if ((++iterations & CHECK_INTERVAL_MASK) != 0)
+            return true;
+        long used = 0;
+        for (int i = 0; i < pools.size(); i++) {
+            if (getCollectionCount(collectors.get(i)) == baseline_collections[i]) // the last collection happened before this analysis
+                continue;
+            MemoryUsage usage = pools.get(i).getCollectionUsage();
+            if (usage != null)
+                used += usage.getUsed();
+        }
+        if (used > megabytesLimit * megaFactor)
+            throw new AnalysisLimitationException.AnalysisMemoryException(String.format("Analysis exceeded memory limit. Used: %dMB. Allowed: %dMB.", used / megaFactor, megabytesLimit));
+        return true;
+    }
+}
@@ -0,0 +1,252 @@
+/*
+ * Copyright 2009-2016 Aarhus University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dk.brics.tajs.monitoring;
+
+import dk.brics.tajs.lattice.CallEdge;
+import dk.brics.tajs.lattice.Context;
+import dk.brics.tajs.lattice.ScopeChain;
+import dk.brics.tajs.lattice.State;
+import dk.brics.tajs.lattice.Value;
+import dk.brics.tajs.solver.GenericSolver;
+import dk.brics.tajs.solver.IAnalysisLatticeElement;
+import org.apache.log4j.Logger;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+
+/**
+ * Monitoring that exposes the progress of the analysis as a JMX MBean (see {@link AnalysisProgressMXBean}).
+ * <p>
+ * The analysis data structures are not thread safe, so the statistics are sampled by the solver thread
+ * in {@link #allowNextIteration()} at most once per sampling interval and published as an immutable snapshot.
+ * A termination request is honored by returning false from {@link #allowNextIteration()}.
+ */
+public class AnalysisProgress extends DefaultAnalysisMonitoring implements AnalysisProgressMXBean {
+
+    private static Logger log = Logger.getLogger(AnalysisProgress.class);
+
+    /**
+     * Name of the registered MBean.
+     */
+    public static final String OBJECT_NAME = "dk.brics.tajs:type=AnalysisProgress";
+
+    /**
+     * Minimum time between two samples.
+     */
+    private static final long SAMPLE_INTERVAL_NANOS = 1000L * 1000L * 1000L;
+
+    private final GenericSolver<State, Context, CallEdge, ?, ?> solver;
+
+    private ObjectName name;
+
+    private volatile Snapshot snapshot = new Snapshot();
+
+    private volatile boolean termination_requested;
+
+    private volatile AnalysisPhase phase;
+
+    private long dataflow_start_nanos = -1;
+
+    private long next_sample_nanos;
+
+    private int iterations;
+
+    /**
+     * Constructs a new progress monitoring for the given solver.
+     */
+    public AnalysisProgress(GenericSolver<State, Context, CallEdge, ?, ?> solver) {
+        this.solver = solver;
+    }
+
+    /**
+     * Registers this object in the platform MBean server, replacing any previously registered analysis.
+     */
+    public void register() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName n = new ObjectName(OBJECT_NAME);
+            if (server.isRegistered(n))
+                server.unregisterMBean(n);
+            server.registerMBean(this, n);
+            name = n;
+        } catch (JMException e) {
+            log.warn("Unable to register MBean " + OBJECT_NAME + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Unregisters this object from the platform MBean server.
+     */
+    public void unregister() {
+        if (name == null)
+            return;
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(name);
+        } catch (JMException e) {
+            log.warn("Unable to unregister MBean " + OBJECT_NAME + ": " + e.getMessage());
+        }
+        name = null;
+    }
+
+    @Override
+    public boolean allowNextIteration() {
+        if ((++iterations & 0xff) == 0) {
+            long now = System.nanoTime();
+            if (now >= next_sample_nanos) {
+                sample(now);
+                next_sample_nanos = now + SAMPLE_INTERVAL_NANOS;
+            }
+        }
+        return !termination_requested;
+    }
+
+    @Override
+    public void beginPhase(AnalysisPhase phase) {
+        this.phase = phase;
+        if (phase == AnalysisPhase.DATAFLOW_ANALYSIS)
+            dataflow_start_nanos = System.nanoTime();
+        sample(System.nanoTime());
+    }
+
+    @Override
+    public void endPhase(AnalysisPhase phase) {
+        sample(System.nanoTime());
+        if (phase == AnalysisPhase.SCAN)
+            unregister();
+    }
+
+    /**
+     * Takes a new snapshot of the statistics. Must be called by the solver thread.
+     */
+    private void sample(long now) {
+        Snapshot s = new Snapshot();
+        s.worklist_size = solver.getWorkListSize();
+        s.node_transfers = solver.getNumberOfNodeTransfers();
+        if (dataflow_start_nanos != -1 && now > dataflow_start_nanos)
+            s.node_transfers_per_second = s.node_transfers * 1e9 / (now - dataflow_start_nanos);
+        if (solver.getFlowGraph() != null) {
+            IAnalysisLatticeElement<State, Context, CallEdge> e = solver.getAnalysisLatticeElement();
+            s.states = e.getNumberOfStates();
+            s.call_edges = e.getCallGraph().getNumberOfCallEdges();
+        }
+        s.states_created = State.getNumberOfStatesCreated();
+        s.value_cache_size = Value.getValueCacheSize();
+        s.value_cache_hit_rate = hitRate(Value.getNumberOfValueCacheHits(), Value.getNumberOfValueCacheMisses());
+        s.scope_chain_cache_size = ScopeChain.getCacheSize();
+        s.scope_chain_cache_hit_rate = hitRate(ScopeChain.getNumberOfCacheHits(), ScopeChain.getNumberOfCacheMisses());
+        snapshot = s;
+    }
+
+    private static double hitRate(int hits, int misses) {
+        return hits + misses > 0 ? (double) hits / (hits + misses) : 0;
+    }
+
+    @Override
+    public String getPhase() {
+        AnalysisPhase p = phase;
+        return p != null ? p.name() : "";
+    }
+
+    @Override
+    public int getWorkListSize() {
+        return snapshot.worklist_size;
+    }
+
+    @Override
+    public int getNodeTransfers() {
+        return snapshot.node_transfers;
+    }
+
+    @Override
+    public double getNodeTransfersPerSecond() {
+        return snapshot.node_transfers_per_second;
+    }
+
+    @Override
+    public int getNumberOfBlockContextStates() {
+        return snapshot.states;
+    }
+
+    @Override
+    public int getNumberOfCallEdges() {
+        return snapshot.call_edges;
+    }
+
+    @Override
+    public int getNumberOfStatesCreated() {
+        return snapshot.states_created;
+    }
+
+    @Override
+    public int getValueCacheSize() {
+        return snapshot.value_cache_size;
+    }
+
+    @Override
+    public double getValueCacheHitRate() {
+        return snapshot.value_cache_hit_rate;
+    }
+
+    @Override
+    public int getScopeChainCacheSize() {
+        return snapshot.scope_chain_cache_size;
+    }
+
+    @Override
+    public double getScopeChainCacheHitRate() {
+        return snapshot.scope_chain_cache_hit_rate;
+    }
+
+    @Override
+    public boolean isTerminationRequested() {
+        return termination_requested;
+    }
+
+    @Override
+    public void requestTermination() {
+        log.info("Early termination requested via JMX");
+        termination_requested = true;
+    }
+
+    /**
+     * Immutable (once published) sample of the analysis statistics.
+     */
+    private static final class Snapshot {
+
+        int worklist_size;
+
+        int node_transfers;
+
+        double node_transfers_per_second;
+
+        int states;
+
+        int call_edges;
+
+        int states_created;
+
+        int value_cache_size;
+
+        double value_cache_hit_rate;
+
+        int scope_chain_cache_size;
+
+        double scope_chain_cache_hit_rate;
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright 2009-2016 Aarhus University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dk.brics.tajs.monitoring;
+
+/**
+ * JMX management interface for observing a running analysis.
+ * <p>
+ * The statistics are sampled by the solver thread (see {@link AnalysisProgress}), so they may be slightly out of date.
+ */
+public interface AnalysisProgressMXBean {
+
+    /**
+     * Returns the name of the current analysis phase.
+     */
+    String getPhase();
+
+    /**
+     * Returns the number of entries in the solver work list.
+     */
+    int getWorkListSize();
+
+    /**
+     * Returns the number of node transfers performed so far.
+     */
+    int getNodeTransfers();
+
+    /**
+     * Returns the average number of node transfers per second in the data flow analysis phase.
+     */
+    double getNodeTransfersPerSecond();
+
+    /**
+     * Returns the number of (basic block, context) pairs with an abstract state.
+     */
+    int getNumberOfBlockContextStates();
+
+    /**
+     * Returns the number of call edges in the call graph.
+     */
+    int getNumberOfCallEdges();
+
+    /**
+     * Returns the number of abstract states created.
+     */
+    int getNumberOfStatesCreated();
+
+    /**
+     * Returns the size of the {@link dk.brics.tajs.lattice.Value} canonicalization cache.
+     */
+    int getValueCacheSize();
+
+    /**
+     * Returns the hit rate of the {@link dk.brics.tajs.lattice.Value} canonicalization cache.
+     */
+    double getValueCacheHitRate();
+
+    /**
+     * Returns the size of the {@link dk.brics.tajs.lattice.ScopeChain} canonicalization cache.
+     */
+    int getScopeChainCacheSize();
+
+    /**
+     * Returns the hit rate of the {@link dk.brics.tajs.lattice.ScopeChain} canonicalization cache.
+     */
+    double getScopeChainCacheHitRate();
+
+    /**
+     * Returns true if early termination has been requested.
+     */
+    boolean isTerminationRequested();
+
+    /**
+     * Requests that the fixpoint solver terminates (unsoundly) before the next iteration.
+     * The scan phase is still performed on the partial result.
+     */
+    void requestTermination();
+}
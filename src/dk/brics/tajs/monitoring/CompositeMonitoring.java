@@ -208,6 +208,12 @@ public class CompositeMonitoring implements IAnalysisMonitoring {
         m2.visitJoin();
     }
 
+    @Override
+    public void visitIncompleteResult(String reason) {
+        m1.visitIncompleteResult(reason);
+        m2.visitIncompleteResult(reason);
+    }
+
     @Override
     public void visitPostBlockTransfer(BasicBlock b, State state) {
         m1.visitPostBlockTransfer(b, state);
@@ -232,6 +238,11 @@ public class CompositeMonitoring implements IAnalysisMonitoring {
         m2.visitNodeTransfer(n);
     }
 
+    @Override
+    public boolean isSubscribed(MonitoringCallback callback) {
+        return m1.isSubscribed(callback) || m2.isSubscribed(callback);
+    }
+
     @Override
     public void visitPropertyAccess(Node n, Value baseval) {
         m1.visitPropertyAccess(n, baseval);
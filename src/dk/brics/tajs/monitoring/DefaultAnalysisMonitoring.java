@@ -127,6 +127,10 @@ public class DefaultAnalysisMonitoring implements IAnalysisMonitoring {
     public void visitJoin() {
     }
 
+    @Override
+    public void visitIncompleteResult(String reason) {
+    }
+
     @Override
     public void visitPostBlockTransfer(BasicBlock b, State state) {
     }
@@ -143,6 +147,14 @@ public class DefaultAnalysisMonitoring implements IAnalysisMonitoring {
     public void visitNodeTransfer(AbstractNode n) {
     }
 
+    /**
+     * Returns true if the callback method is overridden in a subclass.
+     */
+    @Override
+    public boolean isSubscribed(MonitoringCallback callback) {
+        return callback.getMethod(getClass()).getDeclaringClass() != DefaultAnalysisMonitoring.class;
+    }
+
     @Override
     public void visitPropertyAccess(Node n, Value baseval) {
     }
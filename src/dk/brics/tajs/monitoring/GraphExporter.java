@@ -0,0 +1,280 @@
+/*
+ * Copyright 2009-2016 Aarhus University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dk.brics.tajs.monitoring;
+
+import dk.brics.tajs.flowgraph.AbstractNode;
+import dk.brics.tajs.flowgraph.BasicBlock;
+import dk.brics.tajs.flowgraph.FlowGraph;
+import dk.brics.tajs.flowgraph.Function;
+import dk.brics.tajs.flowgraph.HostEnvSources;
+import dk.brics.tajs.flowgraph.SourceLocation;
+import dk.brics.tajs.options.Options;
+import dk.brics.tajs.solver.CallGraph;
+import dk.brics.tajs.util.AnalysisException;
+import org.apache.log4j.Logger;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Predicate;
+import java.util.zip.GZIPOutputStream;
+
+import static dk.brics.tajs.util.Collections.newList;
+import static dk.brics.tajs.util.Collections.newSet;
+import static dk.brics.tajs.util.Strings.toJSONString;
+
+/**
+ * Streaming export of flow graphs and call graphs.
+ * <p>
+ * The graphs are written incrementally, function by function, to a buffered (and optionally gzip compressed) file,
+ * so memory use does not grow with the size of the output.
+ * The format is Graphviz dot or JSON lines (see <code>-export-format</code>),
+ * and the output can be restricted to functions matching <code>-export-filter</code>.
+ * In JSON lines format, each line is an object with a <code>kind</code> field:
+ * <code>function</code> (flow graph functions with their blocks and nodes, and call graph functions) or
+ * <code>call</code> (call graph edges from a call site to a function).
+ */
+public final class GraphExporter {
+
+    private static final Logger log = Logger.getLogger(GraphExporter.class);
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private GraphExporter() {
+    }
+
+    /**
+     * Checks whether JSON lines format is selected.
+     */
+    private static boolean isJSON() {
+        String format = Options.get().getExportFormat();
+        if (format == null || format.equals("dot"))
+            return false;
+        if (format.equals("json"))
+            return true;
+        throw new AnalysisException("Unexpected export format: " + format);
+    }
+
+    /**
+     * Returns the file with the given base name in the given directory, with extension according to the options.
+     */
+    public static Path resolve(Path dir, String basename) {
+        return dir.resolve(basename + (isJSON() ? ".json" : ".dot") + (Options.get().isExportGzipEnabled() ? ".gz" : ""));
+    }
+
+    /**
+     * Opens a buffered writer for the given file, with gzip compression if the file name ends with ".gz".
+     */
+    public static Writer open(Path file) throws IOException {
+        OutputStream out = Files.newOutputStream(file);
+        if (file.getFileName().toString().endsWith(".gz"))
+            out = new GZIPOutputStream(out, BUFFER_SIZE);
+        return new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), BUFFER_SIZE);
+    }
+
+    /**
+     * Checks whether the given function should be exported.
+     * Host environment functions are never exported.
+     */
+    private static boolean isIncluded(Function f) {
+        if (HostEnvSources.isHostEnvSource(f.getSourceLocation()))
+            return false;
+        String filter = Options.get().getExportFilter();
+        if (filter == null)
+            return true;
+        SourceLocation loc = f.getSourceLocation();
+        return (f.getName() != null && f.getName().contains(filter))
+                || (loc != null && loc.getPrettyFileName() != null && loc.getPrettyFileName().contains(filter));
+    }
+
+    /**
+     * Writes the given flow graph to the file with the given base name in the given directory.
+     *
+     * @return the file
+     * @throws AnalysisException if the file cannot be written
+     */
+    public static Path writeFlowGraph(FlowGraph g, Path dir, String basename) {
+        Path file = resolve(dir, basename);
+        try {
+            Files.createDirectories(dir);
+            try (Writer out = open(file)) {
+                writeFlowGraph(g, out, GraphExporter::isIncluded);
+            }
+        } catch (IOException e) {
+            throw new AnalysisException("Unable to write " + file + ": " + e.getMessage(), e);
+        }
+        if (log.isDebugEnabled())
+            log.debug("Flow graph written to " + file);
+        return file;
+    }
+
+    /**
+     * Writes the functions of the given flow graph that satisfy the filter.
+     */
+    public static void writeFlowGraph(FlowGraph g, Writer out, Predicate<Function> filter) throws IOException {
+        boolean json = isJSON();
+        PrintWriter pw = new PrintWriter(out);
+        if (!json) {
+            pw.println("digraph {");
+            pw.println("compound=true");
+        }
+        for (Function f : g.getFunctions()) {
+            if (!filter.test(f))
+                continue;
+            if (json)
+                writeFunctionJSON(f, pw);
+            else
+                f.toDot(pw, false, f == g.getMain());
+        }
+        if (!json)
+            pw.println("}");
+        pw.flush();
+        if (pw.checkError())
+            throw new IOException("Write error");
+    }
+
+    private static void writeFunctionJSON(Function f, PrintWriter pw) {
+        pw.print("{\"kind\":\"function\"");
+        appendFunction(f, pw);
+        pw.print(",\"blocks\":[");
+        List<BasicBlock> blocks = newList(f.getBlocks());
+        blocks.sort((b1, b2) -> b1.getOrder() - b2.getOrder());
+        boolean first_block = true;
+        for (BasicBlock b : blocks) {
+            if (!first_block)
+                pw.print(',');
+            first_block = false;
+            pw.print("{\"index\":" + b.getIndex() + ",\"nodes\":[");
+            boolean first_node = true;
+            for (AbstractNode n : b.getNodes()) {
+                if (!first_node)
+                    pw.print(',');
+                first_node = false;
+                pw.print("{\"index\":" + n.getIndex() + ",\"node\":" + toJSONString(n.toString()));
+                appendLocation(n.getSourceLocation(), pw);
+                pw.print('}');
+            }
+            pw.print("],\"successors\":[");
+            boolean first_successor = true;
+            for (BasicBlock s : b.getSuccessors()) {
+                if (!first_successor)
+                    pw.print(',');
+                first_successor = false;
+                pw.print(s.getIndex());
+            }
+            pw.print(']');
+            if (b.getExceptionHandler() != null && b.canThrowExceptions())
+                pw.print(",\"exceptionHandler\":" + b.getExceptionHandler().getIndex());
+            pw.print('}');
+        }
+        pw.println("]}");
+    }
+
+    private static void appendFunction(Function f, PrintWriter pw) {
+        pw.print(",\"index\":" + f.getIndex());
+        pw.print(",\"name\":" + toJSONString(f.isMain() ? "<main>" : f.getName()));
+        appendLocation(f.getSourceLocation(), pw);
+    }
+
+    private static void appendLocation(SourceLocation loc, PrintWriter pw) {
+        if (loc == null)
+            return;
+        pw.print(",\"file\":" + toJSONString(loc.getPrettyFileName()));
+        pw.print(",\"line\":" + loc.getLineNumber());
+        pw.print(",\"column\":" + loc.getColumnNumber());
+    }
+
+    /**
+     * Writes the given call graph to the file with the given base name in the given directory.
+     *
+     * @return the file
+     * @throws AnalysisException if the file cannot be written
+     */
+    public static Path writeCallGraph(CallGraph<?, ?, ?> g, Path dir, String basename) {
+        Path file = resolve(dir, basename);
+        try {
+            Files.createDirectories(dir);
+            try (Writer out = open(file)) {
+                writeCallGraph(g, out, GraphExporter::isIncluded);
+            }
+        } catch (IOException e) {
+            throw new AnalysisException("Unable to write " + file + ": " + e.getMessage(), e);
+        }
+        log.info("Call graph written to " + file);
+        return file;
+    }
+
+    /**
+     * Writes the call edges of the given call graph where the caller or the callee satisfies the filter.
+     * Contexts and pseudo-call-edges are disregarded.
+     */
+    public static void writeCallGraph(CallGraph<?, ?, ?> g, Writer out, Predicate<Function> filter) throws IOException {
+        boolean json = isJSON();
+        PrintWriter pw = new PrintWriter(out);
+        Set<Function> functions = newSet();
+        Set<Long> edges = newSet();
+        if (!json)
+            pw.println("digraph {");
+        g.forEachCallEdgeIgnoreContexts((n, callee) -> {
+            Function caller = n.getBlock().getFunction();
+            if (!filter.test(caller) && !filter.test(callee))
+                return;
+            if (json) {
+                if (!edges.add(((long) n.getIndex() << 32) | callee.getIndex()))
+                    return;
+                writeFunction(caller, functions, true, pw);
+                writeFunction(callee, functions, true, pw);
+                pw.print("{\"kind\":\"call\",\"caller\":" + caller.getIndex() + ",\"callee\":" + callee.getIndex());
+                appendLocation(n.getSourceLocation(), pw);
+                pw.println('}');
+            } else {
+                if (!edges.add(((long) caller.getIndex() << 32) | callee.getIndex()))
+                    return;
+                writeFunction(caller, functions, false, pw);
+                writeFunction(callee, functions, false, pw);
+                pw.println("  f" + caller.getIndex() + " -> f" + callee.getIndex());
+            }
+        });
+        if (!json)
+            pw.println("}");
+        pw.flush();
+        if (pw.checkError())
+            throw new IOException("Write error");
+    }
+
+    /**
+     * Writes the given call graph function, unless already written.
+     */
+    private static void writeFunction(Function f, Set<Function> written, boolean json, PrintWriter pw) {
+        if (!written.add(f))
+            return;
+        if (json) {
+            pw.print("{\"kind\":\"function\"");
+            appendFunction(f, pw);
+            pw.println('}');
+        } else
+            pw.println("  f" + f.getIndex() + " [shape=box label=\"" + CallGraph.dotLabel(f, true) + "\"]");
+    }
+}
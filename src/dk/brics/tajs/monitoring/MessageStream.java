@@ -0,0 +1,199 @@
+/*
+ * Copyright 2009-2016 Aarhus University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dk.brics.tajs.monitoring;
+
+import dk.brics.tajs.flowgraph.SourceLocation;
+import dk.brics.tajs.lattice.Value;
+import dk.brics.tajs.solver.Message;
+import dk.brics.tajs.solver.Message.Status;
+import dk.brics.tajs.util.AnalysisException;
+import org.apache.log4j.Logger;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static dk.brics.tajs.util.Strings.toJSONString;
+
+/**
+ * Writes messages and variable type summaries as JSON lines while the scan phase progresses.
+ * <p>
+ * A message line is written when a message is first reported and whenever its status changes,
+ * and a type line is written whenever the joined value of a variable summary changes.
+ * Deduplication uses bounded tables keyed on the message node and key, and on the variable summary, respectively.
+ * When a table is full, the least recently written entries are forgotten,
+ * so an entry may occasionally be written again. Readers should keep the last line for each key.
+ * <p>
+ * The output is flushed every {@link #FLUSH_LINES} lines, and when a line is written more than
+ * {@link #FLUSH_INTERVAL} milliseconds after the previous flush, so the lines become visible
+ * without flushing after every line.
+ */
+public class MessageStream {
+
+    private static Logger log = Logger.getLogger(MessageStream.class);
+
+    /**
+     * Default maximum number of entries in each deduplication table.
+     */
+    public static final int DEFAULT_CAPACITY = 1 << 16;
+
+    /**
+     * Maximum number of lines written between flushes.
+     */
+    public static final int FLUSH_LINES = 256;
+
+    /**
+     * Maximum number of milliseconds between flushes, as long as lines are being written.
+     */
+    public static final long FLUSH_INTERVAL = 1000;
+
+    private final Writer out;
+
+    /**
+     * Number of lines written since the last flush.
+     */
+    private int unflushed_lines;
+
+    /**
+     * Time of the last flush.
+     */
+    private long last_flush = System.currentTimeMillis();
+
+    /**
+     * Last written status of each message.
+     */
+    private final Map<Message, Status> messages;
+
+    /**
+     * Last written value of each variable summary.
+     */
+    private final Map<TypeCollector.VariableSummary, Value> types;
+
+    /**
+     * Constructs a new message stream.
+     *
+     * @param out      destination of the JSON lines
+     * @param capacity maximum number of entries in each deduplication table
+     */
+    public MessageStream(Writer out, int capacity) {
+        this.out = out;
+        messages = makeTable(capacity);
+        types = makeTable(capacity);
+    }
+
+    /**
+     * Constructs a new message stream that writes to the given file.
+     */
+    public static MessageStream make(String file) {
+        try {
+            return new MessageStream(Files.newBufferedWriter(Paths.get(file), StandardCharsets.UTF_8), DEFAULT_CAPACITY);
+        } catch (IOException e) {
+            throw new AnalysisException("Unable to write message stream " + file + ": " + e.getMessage(), e);
+        }
+    }
+
+    private static <K, V> Map<K, V> makeTable(int capacity) {
+        return new LinkedHashMap<K, V>(16, 0.75f, true) {
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /**
+     * Writes the given message unless it has already been written with the same status.
+     * Messages with status {@link Status#NONE} are only written if the message has been written before with another status.
+     */
+    public void write(Message m) {
+        Status old = messages.get(m);
+        if (old == m.getStatus() || (old == null && m.getStatus() == Status.NONE))
+            return;
+        messages.put(m, m.getStatus());
+        SourceLocation loc = m.getNode().getSourceLocation();
+        StringBuilder b = new StringBuilder("{\"kind\":\"message\"");
+        appendLocation(b, loc);
+        b.append(",\"status\":").append(toJSONString(m.getStatus().toString()));
+        b.append(",\"severity\":").append(toJSONString(m.getSeverity().toString()));
+        b.append(",\"message\":").append(toJSONString(m.getMessage()));
+        b.append("}\n");
+        writeLine(b);
+    }
+
+    /**
+     * Writes the given variable summary unless it has already been written with the same value.
+     */
+    public void write(TypeCollector.VariableSummary s, Value v) {
+        Value old = types.get(s);
+        if (old != null)
+            v = Value.join(old, v);
+        if (v.equals(old))
+            return;
+        types.put(s, v);
+        StringBuilder b = new StringBuilder("{\"kind\":\"type\"");
+        appendLocation(b, s.getVariableLocation());
+        b.append(",\"variable\":").append(toJSONString(s.getVariableName()));
+        b.append(",\"context\":").append(toJSONString(String.valueOf(s.getContext())));
+        b.append(",\"value\":").append(toJSONString(v.toString()));
+        b.append("}\n");
+        writeLine(b);
+    }
+
+    private static void appendLocation(StringBuilder b, SourceLocation loc) {
+        if (loc == null)
+            return;
+        b.append(",\"file\":").append(toJSONString(loc.getPrettyFileName()));
+        b.append(",\"line\":").append(loc.getLineNumber());
+        b.append(",\"column\":").append(loc.getColumnNumber());
+    }
+
+    private void writeLine(CharSequence line) {
+        try {
+            out.append(line);
+            unflushed_lines++;
+            if (unflushed_lines >= FLUSH_LINES || System.currentTimeMillis() - last_flush >= FLUSH_INTERVAL)
+                flush();
+        } catch (IOException e) {
+            log.error("Unable to write message stream: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Flushes the lines written so far.
+     */
+    private void flush() throws IOException {
+        out.flush();
+        unflushed_lines = 0;
+        last_flush = System.currentTimeMillis();
+    }
+
+    /**
+     * Closes the stream.
+     */
+    public void close() {
+        try {
+            out.close();
+        } catch (IOException e) {
+            log.error("Unable to close message stream: " + e.getMessage());
+        }
+    }
+}
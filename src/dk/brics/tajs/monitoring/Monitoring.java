@@ -16,6 +16,7 @@
 
 package dk.brics.tajs.monitoring;
 
+import dk.brics.tajs.analysis.nativeobjects.concrete.NashornConcreteSemantics;
 import dk.brics.tajs.flowgraph.AbstractNode;
 import dk.brics.tajs.flowgraph.BasicBlock;
 import dk.brics.tajs.flowgraph.FlowGraph;
@@ -82,10 +83,12 @@ import java.io.File;
 import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
-import java.io.PrintWriter;
+import java.nio.file.Paths;
 import java.text.NumberFormat;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.EnumSet;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
@@ -107,6 +110,63 @@ public class Monitoring implements IAnalysisMonitoring {
 
     private static Logger log = Logger.getLogger(Monitoring.class);
 
+    /**
+     * Collectors of information that is not needed for the messages.
+     * Each collector subscribes only to the callbacks it needs.
+     */
+    public enum Collector {
+
+        /**
+         * Counters and memory usage for the statistics (see -statistics and -memory-usage).
+         */
+        STATISTICS(MonitoringCallback.NODE_TRANSFER, MonitoringCallback.BLOCK_TRANSFER, MonitoringCallback.JOIN,
+                MonitoringCallback.UNKNOWN_VALUE_RESOLVE, MonitoringCallback.RECOVERY_GRAPH),
+
+        /**
+         * Values read at each node and context, for the type size statistics (see -statistics).
+         */
+        VALUE_READS(MonitoringCallback.READ),
+
+        /**
+         * Types of variables and properties (see -show-variable-info).
+         */
+        TYPES(MonitoringCallback.VARIABLE_OR_PROPERTY),
+
+        /**
+         * Descriptions of new dataflow at function entry blocks (see -newflow).
+         */
+        NEW_FLOWS(MonitoringCallback.NEW_FLOW);
+
+        private final Set<MonitoringCallback> callbacks;
+
+        Collector(MonitoringCallback... callbacks) {
+            this.callbacks = EnumSet.copyOf(Arrays.asList(callbacks));
+        }
+
+        /**
+         * Checks whether the information from this collector is requested by the options.
+         */
+        private boolean isRequested() {
+            switch (this) {
+                case STATISTICS:
+                    return Options.get().isStatisticsEnabled() || Options.get().isMemoryMeasurementEnabled();
+                case VALUE_READS:
+                    return Options.get().isStatisticsEnabled();
+                case TYPES:
+                    return Options.get().isShowVariableInfoEnabled() || Options.get().getResultStoreFile() != null;
+                case NEW_FLOWS:
+                    return Options.get().isNewFlowEnabled();
+                default:
+                    throw new AnalysisException("Unexpected collector " + this);
+            }
+        }
+    }
+
+    /**
+     * The enabled collectors, null if determined by the options.
+     */
+    private Set<Collector> collectors;
+
     /**
      * Set if in scan phase (at the fixpoint).
      */
@@ -267,6 +327,11 @@ public class Monitoring implements IAnalysisMonitoring {
      */
     private Map<Message, Message> messages;
 
+    /**
+     * Stream for writing messages and types during the scan phase, null if not enabled.
+     */
+    private MessageStream message_stream;
+
     /**
      * The current flowgraph
      */
@@ -278,9 +343,24 @@ public class Monitoring implements IAnalysisMonitoring {
     private CallGraph<State, Context, CallEdge> callgraph;
 
     /**
-     * Constructs a new monitoring object.
+     * Why the analysis result is incomplete, null if it is complete.
+     */
+    private String incomplete_reason;
+
+    /**
+     * Constructs a new monitoring object with the collectors that are requested by the options.
      */
     public Monitoring() {
+        this(null);
+    }
+
+    /**
+     * Constructs a new monitoring object with the given collectors in addition to the messages.
+     *
+     * @param collectors the collectors to enable, null to use the collectors that are requested by the options
+     */
+    public Monitoring(Set<Collector> collectors) {
+        this.collectors = collectors != null ? EnumSet.copyOf(collectors) : null;
         call_to_non_function = newSet();
         absent_variable_read = newSet();
         null_undef_base = newSet();
@@ -302,6 +382,27 @@ public class Monitoring implements IAnalysisMonitoring {
         messages = null;
     }
 
+    /**
+     * Constructs a new monitoring object that only collects the messages.
+     * All the callbacks in {@link MonitoringCallback} are then avoided.
+     */
+    public static Monitoring makeMessagesOnly() {
+        return new Monitoring(EnumSet.noneOf(Collector.class));
+    }
+
+    /**
+     * Checks whether the given collector is enabled.
+     */
+    private boolean isCollecting(Collector c) {
+        if (collectors == null) {
+            collectors = EnumSet.noneOf(Collector.class);
+            for (Collector r : Collector.values())
+                if (r.isRequested())
+                    collectors.add(r);
+        }
+        return collectors.contains(c);
+    }
+
     private void reportUnreachableFunctions() {
         for (Function f : functions) {
             if (!reachable_functions.contains(f))
@@ -380,8 +481,7 @@ public class Monitoring implements IAnalysisMonitoring {
             if (rw.isUnknownWritten() && !rw.isSomePropertyRead()) {
                 for (AbstractNode n : rw.getDefaultWriteLocations()) {
                     String m_s = "Dead assignment, property is never read";
-                    Message m = new Message(n, Status.CERTAIN, m_s, Severity.MEDIUM, true);
-                    messages.put(m, m);
+                    putMessage(new Message(n, Status.CERTAIN, m_s, Severity.MEDIUM, true));
                 }
             }
         }
@@ -391,8 +491,7 @@ public class Monitoring implements IAnalysisMonitoring {
         deadWrites.removeAll(undeadWrites);
         for (Pair<AbstractNode, String> deadWrite : deadWrites) {
             String m_s = "Dead assignment, property " + deadWrite.getSecond() + " is never read";
-            Message m = new Message(deadWrite.getFirst(), Status.CERTAIN, m_s, Severity.MEDIUM, true);
-            messages.put(m, m);
+            putMessage(new Message(deadWrite.getFirst(), Status.CERTAIN, m_s, Severity.MEDIUM, true));
         }
     }
 
@@ -472,6 +571,8 @@ public class Monitoring implements IAnalysisMonitoring {
 
     private void visitBeginScanPhase() {
         messages = newMap();
+        if (Options.get().getMessageStreamFile() != null && !Options.get().isNoMessages())
+            message_stream = MessageStream.make(Options.get().getMessageStreamFile());
         scan_phase = true;
         for (Function f : flowgraph.getFunctions())
             for (BasicBlock b : f.getBlocks())
@@ -611,6 +712,8 @@ public class Monitoring implements IAnalysisMonitoring {
     }
 
     private void visitEndScanPhase() {
+        List<String> emittedMessages = newList();
+        List<String> emittedTypes = newList();
         if (!Options.get().isNoMessages()) {
             reportUnreachableFunctions();
             reportUnreachableCode(flowgraph);
@@ -618,7 +721,10 @@ public class Monitoring implements IAnalysisMonitoring {
             reportDeadAssignments();
             reportShadowing(flowgraph);
             if (Options.get().isShowVariableInfoEnabled()) {
-                type_collector.logTypeInformation();
+                emittedTypes = type_collector.describeTypeInformation();
+                for (String line : emittedTypes) {
+                    log.info(line);
+                }
             }
             // TODO: this de-duplication should happen somewhere else?
             Set<String> emittedOutput = newSet(); // avoid redundant output
@@ -628,8 +734,17 @@ public class Monitoring implements IAnalysisMonitoring {
                 }
                 message.emit();
                 emittedOutput.add(message.toString());
+                emittedMessages.add(message.toString());
             }
         }
+        if (message_stream != null) {
+            message_stream.close();
+            message_stream = null;
+        }
+        if (Options.get().getResultStoreFile() != null) {
+            log.info("Writing analysis results to " + Options.get().getResultStoreFile());
+            ResultStoreWriter.write(Options.get().getResultStoreFile(), flowgraph, callgraph, type_collector.getTypeInformation(), reachable_functions);
+        }
 
         if (Options.get().isStatisticsEnabled()) {
             log.info(this.toString());
@@ -639,6 +754,7 @@ public class Monitoring implements IAnalysisMonitoring {
             log.info("Value cache: hits=" + Value.getNumberOfValueCacheHits() + ", misses=" + Value.getNumberOfValueCacheMisses() + ", finalSize=" + Value.getValueCacheSize());
             log.info("Value object set cache: hits=" + Value.getNumberOfObjectSetCacheHits() + ", misses=" + Value.getNumberOfObjectSetCacheMisses() + ", finalSize=" + Value.getObjectSetCacheSize());
             log.info("ScopeChain cache: hits=" + ScopeChain.getNumberOfCacheHits() + ", misses=" + ScopeChain.getNumberOfCacheMisses() + ", finalSize=" + ScopeChain.getCacheSize());
+            log.info("Concrete semantics cache: hits=" + NashornConcreteSemantics.getNumberOfCacheHits() + ", misses=" + NashornConcreteSemantics.getNumberOfCacheMisses() + ", finalSize=" + NashornConcreteSemantics.getCacheSize());
             log.info("Basic blocks: " + flowgraph.getNumberOfBlocks());
         }
 
@@ -647,19 +763,20 @@ public class Monitoring implements IAnalysisMonitoring {
         }
 
         if (Options.get().isCallGraphEnabled()) {
-            log.info(callgraph.toString());
-            File outdir = new File("out");
-            if (!outdir.exists()) {
-                outdir.mkdir();
-            }
-            String filename = "out" + File.separator + "callgraph.dot";
-            try (FileWriter f = new FileWriter(filename)) {
-                log.info("Writing call graph to " + filename);
-                callgraph.toDot(new PrintWriter(f));
-            } catch (IOException e) {
-                log.error("Unable to write " + filename + ": " + e.getMessage());
+            try {
+                GraphExporter.writeCallGraph(callgraph, Paths.get("out"), "callgraph");
+            } catch (AnalysisException e) {
+                log.error(e.getMessage());
             }
         }
+
+        ResultCache result_cache = ResultCache.make();
+        if (result_cache != null) {
+            if (incomplete_reason != null)
+                log.warn("Not storing the result in the result cache, " + incomplete_reason);
+            else
+                result_cache.store(emittedMessages, emittedTypes, flowgraph);
+        }
     }
 
     @Override
@@ -667,6 +784,14 @@ public class Monitoring implements IAnalysisMonitoring {
         node_transfers++;
     }
 
+    @Override
+    public boolean isSubscribed(MonitoringCallback callback) {
+        for (Collector c : Collector.values())
+            if (c.callbacks.contains(callback) && isCollecting(c))
+                return true;
+        return false;
+    }
+
     /**
      * Registers a block transfer occurrence.
      * Also measures memory usage if enabled.
@@ -703,9 +828,15 @@ public class Monitoring implements IAnalysisMonitoring {
         joins++;
     }
 
+    @Override
+    public void visitIncompleteResult(String reason) {
+        if (incomplete_reason == null)
+            incomplete_reason = reason;
+    }
+
     @Override
     public void visitNewFlow(BasicBlock b, Context c, State s, String diff, String info) {
-        if (Options.get().isNewFlowEnabled() && b.isEntry()) {
+        if (isCollecting(Collector.NEW_FLOWS) && b.isEntry()) {
             if (diff != null) {
                 Map<Context, List<String>> m = newflows.get(b);
                 if (m == null) {
@@ -1153,8 +1284,11 @@ public class Monitoring implements IAnalysisMonitoring {
      */
     @Override
     public void visitVariableOrProperty(String var, SourceLocation loc, Value value, Context context, State state) {
-        if (scan_phase && Options.get().isShowVariableInfoEnabled()) {
-            type_collector.record(var, loc, UnknownValueResolver.getRealValue(value, state), context);
+        if (scan_phase && isCollecting(Collector.TYPES)) {
+            Value v = UnknownValueResolver.getRealValue(value, state);
+            type_collector.record(var, loc, v, context);
+            if (message_stream != null)
+                message_stream.write(new TypeCollector.VariableSummary(var == null ? "null" : var, loc, context), v);
         }
     }
 
@@ -1271,7 +1405,7 @@ public class Monitoring implements IAnalysisMonitoring {
      */
     @Override
     public void visitRead(Node n, Value v, State state) {
-        if (!scan_phase) {
+        if (!scan_phase || !isCollecting(Collector.VALUE_READS)) {
             return;
         }
         v = UnknownValueResolver.getRealValue(v, state); // it is not important to preserve polymorphic values during the scan phase
@@ -1637,8 +1771,10 @@ public class Monitoring implements IAnalysisMonitoring {
                 Status old = mo.getStatus();
                 mo.join(m);
                 dump = old != mo.getStatus();
+                if (dump)
+                    streamMessage(mo);
             } else {
-                messages.put(m, m);
+                putMessage(m);
                 dump = s != Status.NONE;
             }
             if (dump && log.isDebugEnabled()) {
@@ -1647,6 +1783,25 @@ public class Monitoring implements IAnalysisMonitoring {
         }
     }
 
+    /**
+     * Adds a new message.
+     */
+    private void putMessage(Message m) {
+        messages.put(m, m);
+        streamMessage(m);
+    }
+
+    /**
+     * Writes the given message to the message stream, if enabled.
+     * Messages that are never shown (see {@link #visitEndScanPhase()}) are not written.
+     */
+    private void streamMessage(Message m) {
+        if (message_stream != null
+                && !(m.getSeverity() == Severity.LOW && !Options.get().isLowSeverityEnabled())
+                && !HostEnvSources.isHostEnvSource(m.getNode().getSourceLocation()))
+            message_stream.write(m);
+    }
+
     /**
      * Returns the collected messages.
      */
@@ -0,0 +1,99 @@
+/*
+ * Copyright 2009-2016 Aarhus University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dk.brics.tajs.monitoring;
+
+import dk.brics.tajs.flowgraph.AbstractNode;
+import dk.brics.tajs.flowgraph.BasicBlock;
+import dk.brics.tajs.flowgraph.SourceLocation;
+import dk.brics.tajs.flowgraph.jsnodes.Node;
+import dk.brics.tajs.lattice.Context;
+import dk.brics.tajs.lattice.State;
+import dk.brics.tajs.lattice.Value;
+import dk.brics.tajs.solver.ISolverMonitoring;
+import dk.brics.tajs.util.AnalysisException;
+
+import java.lang.reflect.Method;
+
+/**
+ * Monitoring callbacks that are only invoked if some monitor subscribes to them
+ * (see {@link ISolverMonitoring#isSubscribed(MonitoringCallback)}).
+ * These are the callbacks that are invoked frequently during the fixpoint iteration and only collect
+ * statistics and other information that is not needed for the messages.
+ * The subscriptions are resolved once when the solver is initialized.
+ */
+public enum MonitoringCallback {
+
+    /**
+     * {@link ISolverMonitoring#visitNodeTransfer(AbstractNode)}.
+     */
+    NODE_TRANSFER("visitNodeTransfer", AbstractNode.class),
+
+    /**
+     * {@link ISolverMonitoring#visitBlockTransfer(BasicBlock, dk.brics.tajs.solver.IState)}.
+     */
+    BLOCK_TRANSFER("visitBlockTransfer", BasicBlock.class, State.class),
+
+    /**
+     * {@link ISolverMonitoring#visitJoin()}.
+     */
+    JOIN("visitJoin"),
+
+    /**
+     * {@link ISolverMonitoring#visitNewFlow(BasicBlock, dk.brics.tajs.solver.IContext, dk.brics.tajs.solver.IState, String, String)}.
+     */
+    NEW_FLOW("visitNewFlow", BasicBlock.class, Context.class, State.class, String.class, String.class),
+
+    /**
+     * {@link ISolverMonitoring#visitUnknownValueResolve(boolean, boolean)}.
+     */
+    UNKNOWN_VALUE_RESOLVE("visitUnknownValueResolve", boolean.class, boolean.class),
+
+    /**
+     * {@link ISolverMonitoring#visitRecoveryGraph(int)}.
+     */
+    RECOVERY_GRAPH("visitRecoveryGraph", int.class),
+
+    /**
+     * {@link IAnalysisMonitoring#visitRead(Node, Value, State)}.
+     */
+    READ("visitRead", Node.class, Value.class, State.class),
+
+    /**
+     * {@link IAnalysisMonitoring#visitVariableOrProperty(String, SourceLocation, Value, Context, State)}.
+     */
+    VARIABLE_OR_PROPERTY("visitVariableOrProperty", String.class, SourceLocation.class, Value.class, Context.class, State.class);
+
+    private final String method_name;
+
+    private final Class<?>[] parameter_types;
+
+    MonitoringCallback(String method_name, Class<?>... parameter_types) {
+        this.method_name = method_name;
+        this.parameter_types = parameter_types;
+    }
+
+    /**
+     * Returns the callback method in the given monitoring class.
+     */
+    Method getMethod(Class<?> c) {
+        try {
+            return c.getMethod(method_name, parameter_types);
+        } catch (NoSuchMethodException e) {
+            throw new AnalysisException(e);
+        }
+    }
+}
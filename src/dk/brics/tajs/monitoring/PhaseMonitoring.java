@@ -160,6 +160,12 @@ public class PhaseMonitoring implements IAnalysisMonitoring {
         activeMonitor.visitJoin();
     }
 
+    @Override
+    public void visitIncompleteResult(String reason) {
+        preScanMonitor.visitIncompleteResult(reason);
+        scanMonitor.visitIncompleteResult(reason);
+    }
+
     @Override
     public void visitNativeFunctionCall(AbstractNode n, HostObject hostobject, boolean num_actuals_unknown, int num_actuals, int min, int max) {
         activeMonitor.visitNativeFunctionCall(n, hostobject, num_actuals_unknown, num_actuals, min, max);
@@ -175,6 +181,11 @@ public class PhaseMonitoring implements IAnalysisMonitoring {
         activeMonitor.visitNodeTransfer(n);
     }
 
+    @Override
+    public boolean isSubscribed(MonitoringCallback callback) {
+        return preScanMonitor.isSubscribed(callback) || scanMonitor.isSubscribed(callback);
+    }
+
     @Override
     public void visitPostBlockTransfer(BasicBlock b, State state) {
         activeMonitor.visitPostBlockTransfer(b, state);
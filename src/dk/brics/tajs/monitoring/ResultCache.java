@@ -0,0 +1,569 @@
+/*
+ * Copyright 2009-2016 Aarhus University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dk.brics.tajs.monitoring;
+
+import dk.brics.tajs.Main;
+import dk.brics.tajs.flowgraph.AbstractNode;
+import dk.brics.tajs.flowgraph.BasicBlock;
+import dk.brics.tajs.flowgraph.FlowGraph;
+import dk.brics.tajs.flowgraph.Function;
+import dk.brics.tajs.flowgraph.HostEnvSources;
+import dk.brics.tajs.flowgraph.JavaScriptSource;
+import dk.brics.tajs.flowgraph.SourceFile;
+import dk.brics.tajs.flowgraph.SourceLocation;
+import dk.brics.tajs.options.OptionValues;
+import dk.brics.tajs.options.Options;
+import dk.brics.tajs.util.AnalysisException;
+import org.apache.log4j.Logger;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static dk.brics.tajs.util.Collections.newList;
+import static dk.brics.tajs.util.Collections.newMap;
+import static dk.brics.tajs.util.Collections.newSet;
+
+/**
+ * Persistent cache of whole analysis results, see {@link OptionValues#getResultCacheDirectory()}.
+ * <p>
+ * An entry holds the output of the scan phase: the emitted messages, the type information (with <code>-show-variable-info</code>),
+ * and the files written by <code>-callgraph</code>, <code>-result-store</code> and <code>-message-stream</code>.
+ * Entries are keyed by a hash of the contents of the input files, the options, the host environment models and the TAJS build,
+ * so a run with byte-identical inputs and identical options can replay the output of an earlier run without analyzing.
+ * Files that are loaded indirectly, for example scripts referenced from an HTML file, are recorded with their hashes in the entry
+ * and checked when the entry is used.
+ * The TAJS build is identified by a hash of the jar file, or of the class files when TAJS is run from a class directory.
+ * If neither can be read, the cache is disabled.
+ * <p>
+ * The least recently used entries are deleted when the cache exceeds its size limit, see {@link OptionValues#getResultCacheSize()}.
+ */
+public final class ResultCache {
+
+    private static final Logger log = Logger.getLogger(ResultCache.class);
+
+    /**
+     * Version of the entry format, must be changed whenever the format changes.
+     */
+    private static final int VERSION = 1;
+
+    private static final int MAGIC = 0x54414a43;
+
+    private static final String SUFFIX = ".result";
+
+    /**
+     * Default size limit in megabytes.
+     */
+    private static final int DEFAULT_SIZE = 1024;
+
+    /**
+     * Description of the TAJS build, computed on first use, see {@link #getBuild()}.
+     */
+    private static String build;
+
+    private static boolean build_computed;
+
+    /**
+     * Cached analysis result.
+     */
+    public static final class Entry {
+
+        private final Map<String, String> dependencies;
+
+        private final List<String> messages;
+
+        private final List<String> types;
+
+        private final Map<String, byte[]> files;
+
+        private Entry(Map<String, String> dependencies, List<String> messages, List<String> types, Map<String, byte[]> files) {
+            this.dependencies = dependencies;
+            this.messages = messages;
+            this.types = types;
+            this.files = files;
+        }
+
+        /**
+         * Returns the emitted messages, in the order they were emitted.
+         */
+        public List<String> getMessages() {
+            return Collections.unmodifiableList(messages);
+        }
+
+        /**
+         * Returns the type information lines (see {@link TypeCollector#describeTypeInformation()}), empty if not shown.
+         */
+        public List<String> getTypeInformation() {
+            return Collections.unmodifiableList(types);
+        }
+
+        /**
+         * Returns the contents of the output files, such as the call graph, by file name.
+         */
+        public Map<String, byte[]> getFiles() {
+            return Collections.unmodifiableMap(files);
+        }
+    }
+
+    private final Path directory;
+
+    private final String key;
+
+    private ResultCache(Path directory, String key) {
+        this.directory = directory;
+        this.key = key;
+    }
+
+    /**
+     * Creates a cache for the directory given by the options, for the current options and input files.
+     *
+     * @return the cache, or null if caching is disabled, the options produce output that is not cached,
+     * or the cache directory or the input files cannot be read
+     */
+    public static ResultCache make() {
+        String dir = Options.get().getResultCacheDirectory();
+        if (dir == null) {
+            return null;
+        }
+        if (!isCacheable()) {
+            log.debug("Result cache is not used with -flowgraph, -statistics, -coverage, -newflow or -debug");
+            return null;
+        }
+        String build = getBuild();
+        if (build == null) {
+            log.warn("Result cache is disabled, unable to identify the TAJS build");
+            return null;
+        }
+        Path directory = Paths.get(dir);
+        try {
+            Files.createDirectories(directory);
+            return new ResultCache(directory, makeKey(build));
+        } catch (IOException e) {
+            log.warn("Unable to use result cache directory " + directory + ": " + e);
+            return null;
+        }
+    }
+
+    /**
+     * Checks whether the current options only produce output that is stored in entries.
+     */
+    private static boolean isCacheable() {
+        OptionValues options = Options.get();
+        return !options.isFlowGraphEnabled() && !options.isStatisticsEnabled() && !options.isCoverageEnabled()
+                && !options.isNewFlowEnabled() && !options.isDebugEnabled();
+    }
+
+    private Path getEntryFile() {
+        return directory.resolve(key + SUFFIX);
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new AnalysisException(e);
+        }
+    }
+
+    /**
+     * Adds the given bytes to the digest, prefixed by their length so consecutive parts cannot be confused.
+     */
+    private static void update(MessageDigest digest, byte[] bytes) {
+        int n = bytes.length;
+        digest.update(new byte[]{(byte) (n >>> 24), (byte) (n >>> 16), (byte) (n >>> 8), (byte) n});
+        digest.update(bytes);
+    }
+
+    private static void update(MessageDigest digest, String s) {
+        update(digest, s.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder b = new StringBuilder();
+        for (byte x : bytes) {
+            b.append(String.format("%02x", x));
+        }
+        return b.toString();
+    }
+
+    private static String hash(Path file) throws IOException {
+        MessageDigest digest = newDigest();
+        update(digest, Files.readAllBytes(file));
+        return toHex(digest.digest());
+    }
+
+    /**
+     * Computes the entry key for the current options and input files.
+     */
+    private static String makeKey(String build) throws IOException {
+        MessageDigest digest = newDigest();
+        update(digest, "version=" + VERSION);
+        update(digest, "build=" + build);
+        Map<String, Object> options = Options.get().getOptionValues();
+        if (Options.get().getArguments().stream().anyMatch(Main::isHTMLFileName)) {
+            options.put("-dom", true); // enabled during initialization, after the cached result has been looked up
+        }
+        for (Map.Entry<String, Object> me : options.entrySet()) {
+            if (!me.getKey().startsWith("-result-cache")) {
+                update(digest, me.getKey() + "=" + me.getValue());
+            }
+        }
+        for (JavaScriptSource s : HostEnvSources.get()) {
+            update(digest, "hostenv=" + s.getPrettyFileName());
+            update(digest, s.getCode());
+        }
+        for (String f : Options.get().getArguments()) {
+            update(digest, "input=" + f);
+            update(digest, Files.readAllBytes(Paths.get(f)));
+        }
+        return toHex(digest.digest());
+    }
+
+    /**
+     * Returns a description of the TAJS build: the version, and a hash of the jar file or of the class files in the class directory.
+     *
+     * @return the description, or null if the code source of TAJS cannot be read
+     */
+    private static synchronized String getBuild() {
+        if (!build_computed) {
+            build = computeBuild();
+            build_computed = true;
+        }
+        return build;
+    }
+
+    private static String computeBuild() {
+        String version = ResultCache.class.getPackage().getImplementationVersion();
+        try {
+            URL url = ResultCache.class.getProtectionDomain().getCodeSource().getLocation();
+            Path location = Paths.get(url.toURI());
+            if (Files.isRegularFile(location)) {
+                return version + "," + hash(location);
+            }
+            if (Files.isDirectory(location)) {
+                MessageDigest digest = newDigest();
+                List<Path> classes;
+                try (Stream<Path> files = Files.walk(location)) {
+                    classes = files.filter(f -> f.toString().endsWith(".class") && Files.isRegularFile(f)).sorted().collect(Collectors.toList());
+                }
+                for (Path f : classes) {
+                    update(digest, location.relativize(f).toString().replace('\\', '/'));
+                    update(digest, Files.readAllBytes(f));
+                }
+                return version + "," + toHex(digest.digest());
+            }
+        } catch (URISyntaxException | IOException | RuntimeException e) {
+            log.debug("Unable to read TAJS code source: " + e);
+        }
+        return null;
+    }
+
+    /**
+     * Returns the entry for the current options and input files.
+     *
+     * @return the entry, or null if there is no usable entry
+     */
+    public Entry lookup() {
+        Path file = getEntryFile();
+        if (!Files.exists(file)) {
+            return null;
+        }
+        Entry entry;
+        try {
+            entry = decode(Files.readAllBytes(file));
+        } catch (IOException | RuntimeException e) {
+            log.warn("Ignoring unreadable result cache entry " + file + ": " + e);
+            return null;
+        }
+        for (Map.Entry<String, String> me : entry.dependencies.entrySet()) {
+            try {
+                if (!hash(Paths.get(me.getKey())).equals(me.getValue())) {
+                    log.debug("Ignoring result cache entry " + file + ", " + me.getKey() + " has changed");
+                    return null;
+                }
+            } catch (IOException e) {
+                log.debug("Ignoring result cache entry " + file + ", " + me.getKey() + " cannot be read");
+                return null;
+            }
+        }
+        try {
+            Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+        } catch (IOException e) {
+            // only affects the eviction order
+        }
+        return entry;
+    }
+
+    /**
+     * Emits the output of the entry for the current options and input files, and restores its output files.
+     *
+     * @return true if an entry was used, false if the analysis must be run
+     */
+    public boolean replay() {
+        Entry entry = lookup();
+        if (entry == null) {
+            return false;
+        }
+        try {
+            for (Map.Entry<String, byte[]> me : entry.files.entrySet()) {
+                Path f = Paths.get(me.getKey());
+                if (f.getParent() != null) {
+                    Files.createDirectories(f.getParent());
+                }
+                Files.write(f, me.getValue());
+            }
+        } catch (IOException e) {
+            log.warn("Unable to restore output of result cache entry " + key + ": " + e);
+            return false;
+        }
+        if (!Options.get().isQuietEnabled()) {
+            log.info("Using cached analysis result " + key);
+        }
+        for (String line : entry.types) {
+            log.info(line);
+        }
+        for (String line : entry.messages) {
+            log.info(line);
+        }
+        return true;
+    }
+
+    /**
+     * Stores the result of the analysis of the given flow graph.
+     * The output files given by the options must have been written.
+     *
+     * @param messages emitted messages
+     * @param types    type information lines, empty if not shown
+     */
+    public void store(List<String> messages, List<String> types, FlowGraph flowgraph) {
+        Map<String, String> dependencies = newMap();
+        Map<String, byte[]> files = newMap();
+        try {
+            for (Path p : getLoadedFiles(flowgraph)) {
+                dependencies.put(p.toString(), hash(p));
+            }
+            for (String f : getOutputFiles()) {
+                Path p = Paths.get(f);
+                if (Files.exists(p)) {
+                    files.put(f, Files.readAllBytes(p));
+                }
+            }
+        } catch (IOException e) {
+            log.warn("Not caching analysis result: " + e);
+            return;
+        }
+        Path file = getEntryFile();
+        try {
+            // write to a temporary file first, so concurrent readers never see a partial entry
+            Path tmp = Files.createTempFile(directory, "tmp", SUFFIX + ".tmp");
+            Files.write(tmp, encode(new Entry(dependencies, messages, types, files)));
+            try {
+                Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            log.warn("Unable to write result cache entry " + file + ": " + e);
+            return;
+        }
+        evict();
+    }
+
+    /**
+     * Returns the local files that have been loaded into the given flow graph, except host environment sources.
+     * The files are found from the source locations of the nodes, since scripts referenced from an HTML file
+     * are part of the main function of the HTML file.
+     */
+    private static Set<Path> getLoadedFiles(FlowGraph flowgraph) {
+        Set<SourceFile> sources = newSet();
+        for (Function f : flowgraph.getFunctions()) {
+            for (BasicBlock b : f.getBlocks()) {
+                for (AbstractNode n : b.getNodes()) {
+                    SourceLocation loc = n.getSourceLocation();
+                    if (loc != null) {
+                        sources.add(loc.getSourceFile());
+                    }
+                }
+            }
+        }
+        Set<Path> files = newSet();
+        for (SourceFile s : sources) {
+            URL url = s.getLocation();
+            if (s.isHostEnvSource() || url == null || !"file".equals(url.getProtocol())) {
+                continue;
+            }
+            try {
+                files.add(Paths.get(url.toURI()));
+            } catch (URISyntaxException | RuntimeException e) {
+                log.debug("Ignoring location " + url + ": " + e);
+            }
+        }
+        return files;
+    }
+
+    /**
+     * Returns the names of the output files that are stored in entries.
+     */
+    private static List<String> getOutputFiles() {
+        List<String> files = newList();
+        if (Options.get().isCallGraphEnabled()) {
+            files.add(GraphExporter.resolve(Paths.get("out"), "callgraph").toString());
+        }
+        if (Options.get().getResultStoreFile() != null) {
+            files.add(Options.get().getResultStoreFile());
+        }
+        if (Options.get().getMessageStreamFile() != null) {
+            files.add(Options.get().getMessageStreamFile());
+        }
+        return files;
+    }
+
+    /**
+     * Deletes the least recently used entries until the cache is within its size limit.
+     */
+    private void evict() {
+        long limit = (Options.get().getResultCacheSize() >= 0 ? Options.get().getResultCacheSize() : DEFAULT_SIZE) * 1024L * 1024L;
+        Map<Path, Long> sizes = newMap();
+        Map<Path, Long> times = newMap();
+        long total = 0;
+        try (Stream<Path> entries = Files.list(directory)) {
+            for (Path p : (Iterable<Path>) entries::iterator) {
+                if (!p.getFileName().toString().endsWith(SUFFIX)) {
+                    continue;
+                }
+                try {
+                    sizes.put(p, Files.size(p));
+                    times.put(p, Files.getLastModifiedTime(p).toMillis());
+                    total += sizes.get(p);
+                } catch (IOException e) {
+                    // deleted concurrently
+                }
+            }
+        } catch (IOException e) {
+            log.warn("Unable to list result cache directory " + directory + ": " + e);
+            return;
+        }
+        if (total <= limit) {
+            return;
+        }
+        List<Path> lru = newList(sizes.keySet());
+        lru.sort((p1, p2) -> Long.compare(times.get(p1), times.get(p2)));
+        for (Path p : lru) {
+            if (total <= limit) {
+                break;
+            }
+            try {
+                Files.deleteIfExists(p);
+                total -= sizes.get(p);
+                if (log.isDebugEnabled()) {
+                    log.debug("Evicted result cache entry " + p);
+                }
+            } catch (IOException e) {
+                log.warn("Unable to delete result cache entry " + p + ": " + e);
+            }
+        }
+    }
+
+    private static byte[] encode(Entry entry) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt(entry.dependencies.size());
+        for (Map.Entry<String, String> me : entry.dependencies.entrySet()) {
+            writeString(out, me.getKey());
+            writeString(out, me.getValue());
+        }
+        writeStrings(out, entry.messages);
+        writeStrings(out, entry.types);
+        out.writeInt(entry.files.size());
+        for (Map.Entry<String, byte[]> me : entry.files.entrySet()) {
+            writeString(out, me.getKey());
+            out.writeInt(me.getValue().length);
+            out.write(me.getValue());
+        }
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    private static Entry decode(byte[] bytes) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+        if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+            throw new IOException("Unexpected entry format");
+        }
+        Map<String, String> dependencies = newMap();
+        for (int n = in.readInt(); n > 0; n--) {
+            dependencies.put(readString(in), readString(in));
+        }
+        List<String> messages = readStrings(in);
+        List<String> types = readStrings(in);
+        Map<String, byte[]> files = newMap();
+        for (int n = in.readInt(); n > 0; n--) {
+            String name = readString(in);
+            byte[] contents = new byte[in.readInt()];
+            in.readFully(contents);
+            files.put(name, contents);
+        }
+        return new Entry(dependencies, messages, types, files);
+    }
+
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        byte[] b = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(b.length);
+        out.write(b);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        byte[] b = new byte[in.readInt()];
+        in.readFully(b);
+        return new String(b, StandardCharsets.UTF_8);
+    }
+
+    private static void writeStrings(DataOutputStream out, List<String> strings) throws IOException {
+        out.writeInt(strings.size());
+        for (String s : strings) {
+            writeString(out, s);
+        }
+    }
+
+    private static List<String> readStrings(DataInputStream in) throws IOException {
+        List<String> strings = newList();
+        for (int n = in.readInt(); n > 0; n--) {
+            strings.add(readString(in));
+        }
+        return strings;
+    }
+}
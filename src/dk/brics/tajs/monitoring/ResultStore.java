@@ -0,0 +1,295 @@
+/*
+ * Copyright 2009-2016 Aarhus University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dk.brics.tajs.monitoring;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Reader for analysis result files (see <code>-result-store</code>).
+ * <p>
+ * The file is memory mapped, and queries are answered by binary search on the mapped records,
+ * so opening a large result file is cheap and each query only touches a few pages.
+ * This class only depends on the Java class library, so it can be used without loading the analysis.
+ * <p>
+ * File format (big endian ints):
+ * <pre>
+ * header:    MAGIC VERSION
+ * strings:   count, offset[count+1], UTF-8 bytes (padded to 4 bytes); sorted lexicographically
+ * files:     count, string[count]; sorted by name
+ * functions: count, (name string or -1, file or -1, line, column, reachable)[count]
+ * types:     count, (file, line, column, variable string, type string)[count]; sorted by file, line, column, variable
+ * calls:     count, (file, line, column, first callee, number of callees)[count]; sorted by file, line, column
+ * callees:   count, function[count]
+ * </pre>
+ * Strings and files are referred to by their index in the respective tables, and functions by their index in the function table.
+ */
+public final class ResultStore implements Closeable {
+
+    /**
+     * Magic number at the start of result files.
+     */
+    static final int MAGIC = 0x54414a52; // "TAJR"
+
+    /**
+     * Version of the file format.
+     */
+    static final int VERSION = 1;
+
+    /**
+     * Number of ints in each function record.
+     */
+    static final int FUNCTION_RECORD = 5;
+
+    /**
+     * Number of ints in each type record.
+     */
+    static final int TYPE_RECORD = 5;
+
+    /**
+     * Number of ints in each call record.
+     */
+    static final int CALL_RECORD = 5;
+
+    private final FileChannel channel;
+
+    private final ByteBuffer buffer;
+
+    private final int string_count;
+
+    private final int string_offsets;
+
+    private final int string_data;
+
+    private final int file_table;
+
+    private final Map<String, Integer> files;
+
+    private final int function_count;
+
+    private final int functions;
+
+    private final int type_count;
+
+    private final int types;
+
+    private final int call_count;
+
+    private final int calls;
+
+    private final int callees;
+
+    private ResultStore(FileChannel channel, MappedByteBuffer buffer) throws IOException {
+        this.channel = channel;
+        this.buffer = buffer;
+        if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION)
+            throw new IOException("Not a result file of version " + VERSION);
+        int pos = 8;
+        string_count = buffer.getInt(pos);
+        string_offsets = pos + 4;
+        string_data = string_offsets + 4 * (string_count + 1);
+        pos = string_data + align(buffer.getInt(string_offsets + 4 * string_count));
+        int file_count = buffer.getInt(pos);
+        file_table = pos + 4;
+        files = new HashMap<>();
+        for (int i = 0; i < file_count; i++)
+            files.put(getString(buffer.getInt(file_table + 4 * i)), i);
+        pos += 4 + 4 * file_count;
+        function_count = buffer.getInt(pos);
+        functions = pos + 4;
+        pos = functions + 4 * FUNCTION_RECORD * function_count;
+        type_count = buffer.getInt(pos);
+        types = pos + 4;
+        pos = types + 4 * TYPE_RECORD * type_count;
+        call_count = buffer.getInt(pos);
+        calls = pos + 4;
+        pos = calls + 4 * CALL_RECORD * call_count;
+        callees = pos + 4;
+    }
+
+    /**
+     * Opens the given result file.
+     *
+     * @throws IOException if the file cannot be read or is not a result file
+     */
+    public static ResultStore open(Path file) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            return new ResultStore(channel, channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Rounds up to a multiple of 4.
+     */
+    static int align(int n) {
+        return (n + 3) & ~3;
+    }
+
+    private String getString(int s) {
+        if (s < 0)
+            return null;
+        int start = buffer.getInt(string_offsets + 4 * s);
+        int end = buffer.getInt(string_offsets + 4 * (s + 1));
+        byte[] bytes = new byte[end - start];
+        for (int i = 0; i < bytes.length; i++)
+            bytes[i] = buffer.get(string_data + start + i);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Finds the first record that is not before the given file, line and column.
+     */
+    private int search(int records, int record_size, int count, int file, int line, int column) {
+        int lo = 0, hi = count;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            int r = records + 4 * record_size * mid;
+            int c = Integer.compare(buffer.getInt(r), file);
+            if (c == 0)
+                c = Integer.compare(buffer.getInt(r + 4), line);
+            if (c == 0)
+                c = Integer.compare(buffer.getInt(r + 8), column);
+            if (c < 0)
+                lo = mid + 1;
+            else
+                hi = mid;
+        }
+        return lo;
+    }
+
+    private boolean matches(int r, int file, int line, int column) {
+        return buffer.getInt(r) == file && buffer.getInt(r + 4) == line && buffer.getInt(r + 8) == column;
+    }
+
+    /**
+     * Returns the types of the variables and properties that occur at the given source location,
+     * joined over all contexts.
+     *
+     * @return map from variable or property name to type description, empty if none
+     */
+    public Map<String, String> getTypes(String file, int line, int column) {
+        Integer f = files.get(file);
+        if (f == null)
+            return Collections.emptyMap();
+        Map<String, String> res = new LinkedHashMap<>();
+        for (int i = search(types, TYPE_RECORD, type_count, f, line, column); i < type_count; i++) {
+            int r = types + 4 * TYPE_RECORD * i;
+            if (!matches(r, f, line, column))
+                break;
+            res.put(getString(buffer.getInt(r + 12)), getString(buffer.getInt(r + 16)));
+        }
+        return res;
+    }
+
+    /**
+     * Returns the functions that may be called at the call site at the given source location.
+     *
+     * @return indices of the callee functions, empty if none
+     */
+    public int[] getCallees(String file, int line, int column) {
+        Integer f = files.get(file);
+        if (f == null)
+            return new int[0];
+        int i = search(calls, CALL_RECORD, call_count, f, line, column);
+        int r = calls + 4 * CALL_RECORD * i;
+        if (i == call_count || !matches(r, f, line, column))
+            return new int[0];
+        int first = buffer.getInt(r + 12);
+        int[] res = new int[buffer.getInt(r + 16)];
+        for (int j = 0; j < res.length; j++)
+            res[j] = buffer.getInt(callees + 4 * (first + j));
+        return res;
+    }
+
+    /**
+     * Returns the number of functions.
+     */
+    public int getNumberOfFunctions() {
+        return function_count;
+    }
+
+    private int getFunctionField(int f, int field) {
+        if (f < 0 || f >= function_count)
+            throw new IndexOutOfBoundsException("No function " + f);
+        return buffer.getInt(functions + 4 * (FUNCTION_RECORD * f + field));
+    }
+
+    /**
+     * Returns the name of the given function, or null if anonymous.
+     */
+    public String getFunctionName(int f) {
+        return getString(getFunctionField(f, 0));
+    }
+
+    /**
+     * Returns the file of the given function, or null if not available.
+     */
+    public String getFunctionFile(int f) {
+        int file = getFunctionField(f, 1);
+        return file < 0 ? null : getString(buffer.getInt(file_table + 4 * file));
+    }
+
+    /**
+     * Returns the line of the given function.
+     */
+    public int getFunctionLine(int f) {
+        return getFunctionField(f, 2);
+    }
+
+    /**
+     * Returns the column of the given function.
+     */
+    public int getFunctionColumn(int f) {
+        return getFunctionField(f, 3);
+    }
+
+    /**
+     * Checks whether the given function is reachable.
+     */
+    public boolean isFunctionReachable(int f) {
+        return getFunctionField(f, 4) != 0;
+    }
+
+    /**
+     * Returns the names of the files that have results, in sorted order.
+     */
+    public String[] getFiles() {
+        String[] res = files.keySet().toArray(new String[0]);
+        Arrays.sort(res);
+        return res;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
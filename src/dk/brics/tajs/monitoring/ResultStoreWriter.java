@@ -0,0 +1,229 @@
+/*
+ * Copyright 2009-2016 Aarhus University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dk.brics.tajs.monitoring;
+
+import dk.brics.tajs.flowgraph.AbstractNode;
+import dk.brics.tajs.flowgraph.FlowGraph;
+import dk.brics.tajs.flowgraph.Function;
+import dk.brics.tajs.flowgraph.SourceLocation;
+import dk.brics.tajs.lattice.Value;
+import dk.brics.tajs.solver.CallGraph;
+import dk.brics.tajs.util.AnalysisException;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import static dk.brics.tajs.util.Collections.newList;
+import static dk.brics.tajs.util.Collections.newMap;
+
+/**
+ * Writer for analysis result files (see {@link ResultStore} for the format).
+ */
+final class ResultStoreWriter {
+
+    /**
+     * Source location key of a record.
+     */
+    private static final class Key implements Comparable<Key> {
+
+        private final String file;
+
+        private final int line;
+
+        private final int column;
+
+        private Key(SourceLocation loc) {
+            file = loc.getPrettyFileName();
+            line = loc.getLineNumber();
+            column = loc.getColumnNumber();
+        }
+
+        @Override
+        public int compareTo(Key k) {
+            int c = file.compareTo(k.file);
+            if (c == 0)
+                c = Integer.compare(line, k.line);
+            if (c == 0)
+                c = Integer.compare(column, k.column);
+            return c;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key))
+                return false;
+            Key k = (Key) o;
+            return file.equals(k.file) && line == k.line && column == k.column;
+        }
+
+        @Override
+        public int hashCode() {
+            return (file.hashCode() * 31 + line) * 31 + column;
+        }
+    }
+
+    private final SortedSet<String> strings = new TreeSet<>();
+
+    private final SortedSet<String> files = new TreeSet<>();
+
+    private final List<Function> functions;
+
+    private final Map<Function, Integer> function_index = newMap();
+
+    private final Set<Function> reachable_functions;
+
+    private final SortedMap<Key, SortedMap<String, Value>> types = new TreeMap<>();
+
+    private final SortedMap<Key, SortedSet<Integer>> calls = new TreeMap<>();
+
+    private ResultStoreWriter(FlowGraph flowgraph, Set<Function> reachable_functions) {
+        this.functions = newList(flowgraph.getFunctions());
+        this.reachable_functions = reachable_functions;
+        for (Function f : functions) {
+            function_index.put(f, function_index.size());
+            if (f.getName() != null)
+                strings.add(f.getName());
+            addFile(f.getSourceLocation());
+        }
+    }
+
+    /**
+     * Writes the given analysis results to a file.
+     *
+     * @throws AnalysisException if the file cannot be written
+     */
+    static void write(String filename, FlowGraph flowgraph, CallGraph<?, ?, ?> callgraph,
+                      Map<TypeCollector.VariableSummary, Value> type_info, Set<Function> reachable_functions) {
+        ResultStoreWriter w = new ResultStoreWriter(flowgraph, reachable_functions);
+        for (Map.Entry<TypeCollector.VariableSummary, Value> e : type_info.entrySet())
+            w.addType(e.getKey(), e.getValue());
+        callgraph.forEachCallEdgeIgnoreContexts(w::addCall);
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(filename)))) {
+            w.write(out);
+        } catch (IOException e) {
+            throw new AnalysisException("Unable to write " + filename + ": " + e.getMessage(), e);
+        }
+    }
+
+    private boolean addFile(SourceLocation loc) {
+        if (loc == null || loc.getPrettyFileName() == null)
+            return false;
+        files.add(loc.getPrettyFileName());
+        strings.add(loc.getPrettyFileName());
+        return true;
+    }
+
+    private void addType(TypeCollector.VariableSummary s, Value v) {
+        if (!addFile(s.getVariableLocation()))
+            return;
+        SortedMap<String, Value> m = types.computeIfAbsent(new Key(s.getVariableLocation()), k -> new TreeMap<>());
+        Value old = m.get(s.getVariableName());
+        m.put(s.getVariableName(), old != null ? old.join(v) : v);
+        strings.add(s.getVariableName());
+    }
+
+    private void addCall(AbstractNode n, Function callee) {
+        if (!addFile(n.getSourceLocation()))
+            return;
+        calls.computeIfAbsent(new Key(n.getSourceLocation()), k -> new TreeSet<>()).add(function_index.get(callee));
+    }
+
+    private void write(DataOutputStream out) throws IOException {
+        for (SortedMap<String, Value> m : types.values())
+            for (Value v : m.values())
+                strings.add(v.toString());
+        Map<String, Integer> string_index = newMap();
+        Map<String, Integer> file_index = newMap();
+        out.writeInt(ResultStore.MAGIC);
+        out.writeInt(ResultStore.VERSION);
+        // strings
+        List<byte[]> bytes = new ArrayList<>();
+        for (String s : strings) {
+            string_index.put(s, bytes.size());
+            bytes.add(s.getBytes(StandardCharsets.UTF_8));
+        }
+        out.writeInt(bytes.size());
+        int offset = 0;
+        for (byte[] b : bytes) {
+            out.writeInt(offset);
+            offset += b.length;
+        }
+        out.writeInt(offset);
+        for (byte[] b : bytes)
+            out.write(b);
+        for (int i = offset; i < ResultStore.align(offset); i++)
+            out.writeByte(0);
+        // files
+        out.writeInt(files.size());
+        for (String f : files) {
+            file_index.put(f, file_index.size());
+            out.writeInt(string_index.get(f));
+        }
+        // functions
+        out.writeInt(functions.size());
+        for (Function f : functions) {
+            SourceLocation loc = f.getSourceLocation();
+            boolean has_file = loc != null && loc.getPrettyFileName() != null;
+            out.writeInt(f.getName() != null ? string_index.get(f.getName()) : -1);
+            out.writeInt(has_file ? file_index.get(loc.getPrettyFileName()) : -1);
+            out.writeInt(loc != null ? loc.getLineNumber() : 0);
+            out.writeInt(loc != null ? loc.getColumnNumber() : 0);
+            out.writeInt(reachable_functions.contains(f) ? 1 : 0);
+        }
+        // types
+        int type_count = 0;
+        for (SortedMap<String, Value> m : types.values())
+            type_count += m.size();
+        out.writeInt(type_count);
+        for (Map.Entry<Key, SortedMap<String, Value>> e : types.entrySet())
+            for (Map.Entry<String, Value> t : e.getValue().entrySet()) {
+                writeKey(out, e.getKey(), file_index);
+                out.writeInt(string_index.get(t.getKey()));
+                out.writeInt(string_index.get(t.getValue().toString()));
+            }
+        // calls
+        out.writeInt(calls.size());
+        int first = 0;
+        for (Map.Entry<Key, SortedSet<Integer>> e : calls.entrySet()) {
+            writeKey(out, e.getKey(), file_index);
+            out.writeInt(first);
+            out.writeInt(e.getValue().size());
+            first += e.getValue().size();
+        }
+        out.writeInt(first);
+        for (SortedSet<Integer> callees : calls.values())
+            for (int f : callees)
+                out.writeInt(f);
+    }
+
+    private static void writeKey(DataOutputStream out, Key k, Map<String, Integer> file_index) throws IOException {
+        out.writeInt(file_index.get(k.file));
+        out.writeInt(k.line);
+        out.writeInt(k.column);
+    }
+}
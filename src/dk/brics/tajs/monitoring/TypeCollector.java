@@ -22,9 +22,12 @@ import dk.brics.tajs.lattice.Value;
 import org.apache.log4j.Logger;
 
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 
+import static dk.brics.tajs.util.Collections.newList;
+
 /**
  * Collects abstract values for variable occurrences during the scanning phase of the analysis.
  * Used by the TAJS Eclipse plug-in.
@@ -113,8 +116,19 @@ public class TypeCollector {
      * Presents the collected type information in the format varname: location -&gt; type.
      */
     public void logTypeInformation() {
+        for (String line : describeTypeInformation()) {
+            log.info(line);
+        }
+    }
+
+    /**
+     * Returns the lines of {@link #logTypeInformation()}.
+     */
+    public List<String> describeTypeInformation() {
+        List<String> lines = newList();
         for (Entry<VariableSummary, Value> entry : type_info_map.entrySet()) {
-            log.info(entry.getKey().getVariableName() + ":\t" + entry.getKey().getVariableLocation() + "\t->\t" + entry.getValue());
+            lines.add(entry.getKey().getVariableName() + ":\t" + entry.getKey().getVariableLocation() + "\t->\t" + entry.getValue());
         }
+        return lines;
     }
 }
@@ -85,8 +85,8 @@ public class OptionValues {
     @Option(name = "-no-for-in", usage = "Disable for-in specialization")
     private boolean noForInSpecialization;
 
-//	@Optional(name = "-flowgraph-optimization", usage = "Enable flowgraph optimization")
-//	private boolean flowgraphOptimization;
+    @Option(name = "-flowgraph-optimization", usage = "Enable flowgraph optimization (removes nops and dead constants, and merges straight-line blocks)")
+    private boolean flowgraphOptimization;
 
     @Option(name = "-context-specialization", usage = "Enable context specialization")
     private boolean contextSpecialization;
@@ -97,10 +97,10 @@ public class OptionValues {
     @Option(name = "-unsound", usage = "Enable unsound assumptions")
     private boolean unsound;
 
-    @Option(name = "-flowgraph", usage = "Output flowgraph.dot")
+    @Option(name = "-flowgraph", usage = "Output the flowgraph (see -export-format)")
     private boolean flowgraph;
 
-    @Option(name = "-callgraph", usage = "Output callgraph.dot")
+    @Option(name = "-callgraph", usage = "Output the call graph (see -export-format)")
     private boolean callgraph;
 
     @Option(name = "-debug", usage = "Output debug information")
@@ -204,6 +204,84 @@ public class OptionValues {
     @Option(name = "-async-events", usage = "Enables execution of asynchronous event handlers with TAJS_asyncListen")
     private boolean asyncEvents;
 
+    @Option(name = "-jmx", usage = "Expose analysis progress as a JMX MBean")
+    private boolean jmx;
+
+    @Option(name = "-progress-interval", usage = "Report analysis progress at most every [n] seconds (default 5)")
+    private int progressInterval = -1;
+
+    @Option(name = "-progress-file", usage = "Write analysis progress samples to the given file as JSON lines")
+    private String progressFile;
+
+    @Option(name = "-memory-budget", usage = "Degrade context sensitivity when the tenured heap exceeds [n] percent of its maximum after GC")
+    private int memoryBudget = -1;
+
+    @Option(name = "-context-budget", usage = "Maximum number of argument contexts per function and unrolling contexts per loop, further contexts are merged")
+    private int contextBudget = -1;
+
+    @Option(name = "-split-concrete-calls", usage = "Evaluate native functions concretely for each combination of concrete receiver and argument values")
+    private boolean splitConcreteCalls;
+
+    @Option(name = "-parsing-threads", usage = "Number of threads for parsing the JavaScript sources ahead of the flow graph construction (default 1, i.e. no parallel parsing)")
+    private int parsingThreads = 1;
+
+    @Option(name = "-flowgraph-cache", usage = "Cache the translated flow graphs of JavaScript files in the given directory, keyed by their contents")
+    private String flowGraphCacheDirectory;
+
+    @Option(name = "-lazy-function-bodies", usage = "Translate the body of each function when the function is first called, instead of translating all function bodies up front")
+    private boolean lazyFunctionBodies;
+
+    @Option(name = "-register-liveness", usage = "Clear dead registers when propagating states to basic blocks")
+    private boolean registerLiveness;
+
+    @Option(name = "-message-stream", usage = "Write messages (and variable types with -show-variable-info) to the given file as JSON lines during the scan phase")
+    private String messageStreamFile;
+
+    @Option(name = "-result-store", usage = "Write types, call edges and reachability to the given file for queries by source location (see ResultStore)")
+    private String resultStoreFile;
+
+    @Option(name = "-export-format", usage = "Format of -flowgraph and -callgraph output: dot (default) or json (JSON lines)")
+    private String exportFormat;
+
+    @Option(name = "-export-gzip", usage = "Compress -flowgraph and -callgraph output with gzip")
+    private boolean exportGzip;
+
+    @Option(name = "-export-filter", usage = "Only include functions whose name or file name contains the given string in -flowgraph and -callgraph output")
+    private String exportFilter;
+
+    @Option(name = "-result-cache", usage = "Reuse the output of earlier runs with identical input files and options from the given directory")
+    private String resultCacheDirectory;
+
+    @Option(name = "-result-cache-size", usage = "Maximum size of the result cache in megabytes, least recently used results are deleted (default 1024)")
+    private int resultCacheSize = -1;
+
+    @Option(name = "-batch", usage = "Analyze the jobs of the given manifest file, one job (input files and options) per line")
+    private String batchManifest;
+
+    @Option(name = "-batch-output", usage = "Directory for the results of -batch (default out/batch)")
+    private String batchOutputDirectory;
+
+    @Option(name = "-batch-time-limit", usage = "Limit the data flow analysis of each -batch job to [n] seconds")
+    private int batchTimeLimit = -1;
+
+    @Option(name = "-batch-memory-limit", usage = "Limit the heap usage after GC of each -batch job to [n] megabytes")
+    private int batchMemoryLimit = -1;
+
+    @Option(name = "-batch-workers", usage = "Run the -batch jobs in [n] worker JVMs")
+    private int batchWorkers = -1;
+
+    @Option(name = "-batch-heap", usage = "Maximum heap size of -batch-workers JVMs in megabytes (default: the JVM default)")
+    private int batchHeap = -1;
+
+    @Option(name = "-batch-retry-heap", usage = "Maximum heap size in megabytes of -batch-workers JVMs that retry jobs that ran out of memory or hit an analysis limitation (default: twice -batch-heap)")
+    private int batchRetryHeap = -1;
+
+    @Option(name = "-batch-job-deadline", usage = "Stop -batch-workers JVMs whose job has not finished after [n] seconds (default: twice -batch-time-limit plus a minute, or an hour)")
+    private int batchJobDeadline = -1;
+
+    @Option(name = "-batch-worker", usage = "Run as a worker of a -batch-workers coordinator, reading jobs from standard input")
+    private boolean batchWorker;
+
     @Argument
     private List<String> arguments = new ArrayList<>();
 
@@ -226,6 +304,7 @@ public class OptionValues {
         if (noChargedCalls != that.noChargedCalls) return false;
         if (noConcreteNative != that.noConcreteNative) return false;
         if (noForInSpecialization != that.noForInSpecialization) return false;
+        if (flowgraphOptimization != that.flowgraphOptimization) return false;
         if (contextSpecialization != that.contextSpecialization) return false;
         if (lowSeverity != that.lowSeverity) return false;
         if (unsound != that.unsound) return false;
@@ -262,6 +341,41 @@ public class OptionValues {
         if (polyfillES6Collections != that.polyfillES6Collections) return false;
         if (polyfillTypedArrays != that.polyfillTypedArrays) return false;
         if (asyncEvents != that.asyncEvents) return false;
+        if (jmx != that.jmx) return false;
+        if (progressInterval != that.progressInterval) return false;
+        if (progressFile != null ? !progressFile.equals(that.progressFile) : that.progressFile != null)
+            return false;
+        if (memoryBudget != that.memoryBudget) return false;
+        if (contextBudget != that.contextBudget) return false;
+        if (splitConcreteCalls != that.splitConcreteCalls) return false;
+        if (parsingThreads != that.parsingThreads) return false;
+        if (flowGraphCacheDirectory != null ? !flowGraphCacheDirectory.equals(that.flowGraphCacheDirectory) : that.flowGraphCacheDirectory != null)
+            return false;
+        if (lazyFunctionBodies != that.lazyFunctionBodies) return false;
+        if (registerLiveness != that.registerLiveness) return false;
+        if (messageStreamFile != null ? !messageStreamFile.equals(that.messageStreamFile) : that.messageStreamFile != null)
+            return false;
+        if (resultStoreFile != null ? !resultStoreFile.equals(that.resultStoreFile) : that.resultStoreFile != null)
+            return false;
+        if (exportFormat != null ? !exportFormat.equals(that.exportFormat) : that.exportFormat != null)
+            return false;
+        if (exportGzip != that.exportGzip) return false;
+        if (exportFilter != null ? !exportFilter.equals(that.exportFilter) : that.exportFilter != null)
+            return false;
+        if (resultCacheDirectory != null ? !resultCacheDirectory.equals(that.resultCacheDirectory) : that.resultCacheDirectory != null)
+            return false;
+        if (resultCacheSize != that.resultCacheSize) return false;
+        if (batchManifest != null ? !batchManifest.equals(that.batchManifest) : that.batchManifest != null)
+            return false;
+        if (batchOutputDirectory != null ? !batchOutputDirectory.equals(that.batchOutputDirectory) : that.batchOutputDirectory != null)
+            return false;
+        if (batchTimeLimit != that.batchTimeLimit) return false;
+        if (batchMemoryLimit != that.batchMemoryLimit) return false;
+        if (batchWorkers != that.batchWorkers) return false;
+        if (batchHeap != that.batchHeap) return false;
+        if (batchRetryHeap != that.batchRetryHeap) return false;
+        if (batchJobDeadline != that.batchJobDeadline) return false;
+        if (batchWorker != that.batchWorker) return false;
         if (ignoredLibrariesString != null ? !ignoredLibrariesString.equals(that.ignoredLibrariesString) : that.ignoredLibrariesString != null)
             return false;
         if (ignoredLibraries != null ? !ignoredLibraries.equals(that.ignoredLibraries) : that.ignoredLibraries != null)
@@ -283,6 +397,7 @@ public class OptionValues {
         result = 31 * result + (noChargedCalls ? 1 : 0);
         result = 31 * result + (noConcreteNative ? 1 : 0);
         result = 31 * result + (noForInSpecialization ? 1 : 0);
+        result = 31 * result + (flowgraphOptimization ? 1 : 0);
         result = 31 * result + (contextSpecialization ? 1 : 0);
         result = 31 * result + (lowSeverity ? 1 : 0);
         result = 31 * result + (unsound ? 1 : 0);
@@ -321,6 +436,32 @@ public class OptionValues {
         result = 31 * result + (polyfillES6Collections ? 1 : 0);
         result = 31 * result + (polyfillTypedArrays ? 1 : 0);
         result = 31 * result + (asyncEvents ? 1 : 0);
+        result = 31 * result + (jmx ? 1 : 0);
+        result = 31 * result + progressInterval;
+        result = 31 * result + (progressFile != null ? progressFile.hashCode() : 0);
+        result = 31 * result + memoryBudget;
+        result = 31 * result + contextBudget;
+        result = 31 * result + (splitConcreteCalls ? 1 : 0);
+        result = 31 * result + parsingThreads;
+        result = 31 * result + (flowGraphCacheDirectory != null ? flowGraphCacheDirectory.hashCode() : 0);
+        result = 31 * result + (lazyFunctionBodies ? 1 : 0);
+        result = 31 * result + (registerLiveness ? 1 : 0);
+        result = 31 * result + (messageStreamFile != null ? messageStreamFile.hashCode() : 0);
+        result = 31 * result + (resultStoreFile != null ? resultStoreFile.hashCode() : 0);
+        result = 31 * result + (exportFormat != null ? exportFormat.hashCode() : 0);
+        result = 31 * result + (exportGzip ? 1 : 0);
+        result = 31 * result + (exportFilter != null ? exportFilter.hashCode() : 0);
+        result = 31 * result + (resultCacheDirectory != null ? resultCacheDirectory.hashCode() : 0);
+        result = 31 * result + resultCacheSize;
+        result = 31 * result + (batchManifest != null ? batchManifest.hashCode() : 0);
+        result = 31 * result + (batchOutputDirectory != null ? batchOutputDirectory.hashCode() : 0);
+        result = 31 * result + batchTimeLimit;
+        result = 31 * result + batchMemoryLimit;
+        result = 31 * result + batchWorkers;
+        result = 31 * result + batchHeap;
+        result = 31 * result + batchRetryHeap;
+        result = 31 * result + batchJobDeadline;
+        result = 31 * result + (batchWorker ? 1 : 0);
         result = 31 * result + (arguments != null ? arguments.hashCode() : 0);
         return result;
     }
@@ -487,9 +628,9 @@ public class OptionValues {
         flowgraph = false;
     }
 
-//	public void disableFlowgraphOptimization() {
-//		flowgraphOptimization = false;
-//	}
+    public void disableFlowgraphOptimization() {
+        flowgraphOptimization = false;
+    }
 
     public void disableNoForInSpecialization() {
         noForInSpecialization = false;
@@ -651,9 +792,9 @@ public class OptionValues {
         contextSpecialization = true;
     }
 
-//	public void enableFlowgraphOptimization() {
-//		flowgraphOptimization = true;
-//	}
+    public void enableFlowgraphOptimization() {
+        flowgraphOptimization = true;
+    }
 
     public void enableControlSensitivity() {
         noControlSensitivity = false;
@@ -846,9 +987,9 @@ public class OptionValues {
         return contextSensitiveHeap;
     }
 
-//	public boolean isFlowGraphOptimizationEnabled() {
-//		return flowgraphOptimization;
-//	}
+    public boolean isFlowGraphOptimizationEnabled() {
+        return flowgraphOptimization;
+    }
 
     public boolean isContextSpecializationEnabled() {
         return contextSpecialization;
@@ -1047,4 +1188,236 @@ public class OptionValues {
     public boolean isAsyncEventsEnabled() {
         return asyncEvents;
     }
+
+    public void disableJMX() {
+        jmx = false;
+    }
+
+    public void enableJMX() {
+        jmx = true;
+    }
+
+    public boolean isJMXEnabled() {
+        return jmx;
+    }
+
+    public void setProgressInterval(int progressInterval) {
+        this.progressInterval = progressInterval;
+    }
+
+    public int getProgressInterval() {
+        return progressInterval;
+    }
+
+    public void setProgressFile(String progressFile) {
+        this.progressFile = progressFile;
+    }
+
+    public String getProgressFile() {
+        return progressFile;
+    }
+
+    public void setMemoryBudget(int memoryBudget) {
+        this.memoryBudget = memoryBudget;
+    }
+
+    public int getMemoryBudget() {
+        return memoryBudget;
+    }
+
+    public void setContextBudget(int contextBudget) {
+        this.contextBudget = contextBudget;
+    }
+
+    public int getContextBudget() {
+        return contextBudget;
+    }
+
+    public void disableSplitConcreteCalls() {
+        splitConcreteCalls = false;
+    }
+
+    public void enableSplitConcreteCalls() {
+        splitConcreteCalls = true;
+    }
+
+    public boolean isSplitConcreteCallsEnabled() {
+        return splitConcreteCalls;
+    }
+
+    public void setParsingThreads(int parsingThreads) {
+        this.parsingThreads = parsingThreads;
+    }
+
+    public int getParsingThreads() {
+        return parsingThreads;
+    }
+
+    public void setFlowGraphCacheDirectory(String flowGraphCacheDirectory) {
+        this.flowGraphCacheDirectory = flowGraphCacheDirectory;
+    }
+
+    public String getFlowGraphCacheDirectory() {
+        return flowGraphCacheDirectory;
+    }
+
+    public void disableLazyFunctionBodies() {
+        lazyFunctionBodies = false;
+    }
+
+    public void enableLazyFunctionBodies() {
+        lazyFunctionBodies = true;
+    }
+
+    public boolean isLazyFunctionBodiesEnabled() {
+        return lazyFunctionBodies;
+    }
+
+    public void disableRegisterLiveness() {
+        registerLiveness = false;
+    }
+
+    public void enableRegisterLiveness() {
+        registerLiveness = true;
+    }
+
+    public boolean isRegisterLivenessEnabled() {
+        return registerLiveness;
+    }
+
+    public void setMessageStreamFile(String messageStreamFile) {
+        this.messageStreamFile = messageStreamFile;
+    }
+
+    public String getMessageStreamFile() {
+        return messageStreamFile;
+    }
+
+    public void setResultStoreFile(String resultStoreFile) {
+        this.resultStoreFile = resultStoreFile;
+    }
+
+    public String getResultStoreFile() {
+        return resultStoreFile;
+    }
+
+    public void setExportFormat(String exportFormat) {
+        this.exportFormat = exportFormat;
+    }
+
+    public String getExportFormat() {
+        return exportFormat;
+    }
+
+    public void disableExportGzip() {
+        exportGzip = false;
+    }
+
+    public void enableExportGzip() {
+        exportGzip = true;
+    }
+
+    public boolean isExportGzipEnabled() {
+        return exportGzip;
+    }
+
+    public void setExportFilter(String exportFilter) {
+        this.exportFilter = exportFilter;
+    }
+
+    public String getExportFilter() {
+        return exportFilter;
+    }
+
+    public void setResultCacheDirectory(String resultCacheDirectory) {
+        this.resultCacheDirectory = resultCacheDirectory;
+    }
+
+    public String getResultCacheDirectory() {
+        return resultCacheDirectory;
+    }
+
+    public void setResultCacheSize(int resultCacheSize) {
+        this.resultCacheSize = resultCacheSize;
+    }
+
+    public int getResultCacheSize() {
+        return resultCacheSize;
+    }
+
+    public void setBatchManifest(String batchManifest) {
+        this.batchManifest = batchManifest;
+    }
+
+    public String getBatchManifest() {
+        return batchManifest;
+    }
+
+    public void setBatchOutputDirectory(String batchOutputDirectory) {
+        this.batchOutputDirectory = batchOutputDirectory;
+    }
+
+    public String getBatchOutputDirectory() {
+        return batchOutputDirectory;
+    }
+
+    public void setBatchTimeLimit(int batchTimeLimit) {
+        this.batchTimeLimit = batchTimeLimit;
+    }
+
+    public int getBatchTimeLimit() {
+        return batchTimeLimit;
+    }
+
+    public void setBatchMemoryLimit(int batchMemoryLimit) {
+        this.batchMemoryLimit = batchMemoryLimit;
+    }
+
+    public int getBatchMemoryLimit() {
+        return batchMemoryLimit;
+    }
+
+    public void setBatchWorkers(int batchWorkers) {
+        this.batchWorkers = batchWorkers;
+    }
+
+    public int getBatchWorkers() {
+        return batchWorkers;
+    }
+
+    public void setBatchHeap(int batchHeap) {
+        this.batchHeap = batchHeap;
+    }
+
+    public int getBatchHeap() {
+        return batchHeap;
+    }
+
+    public void setBatchRetryHeap(int batchRetryHeap) {
+        this.batchRetryHeap = batchRetryHeap;
+    }
+
+    public int getBatchRetryHeap() {
+        return batchRetryHeap;
+    }
+
+    public void setBatchJobDeadline(int batchJobDeadline) {
+        this.batchJobDeadline = batchJobDeadline;
+    }
+
+    public int getBatchJobDeadline() {
+        return batchJobDeadline;
+    }
+
+    public void disableBatchWorker() {
+        batchWorker = false;
+    }
+
+    public void enableBatchWorker() {
+        batchWorker = true;
+    }
+
+    public boolean isBatchWorkerEnabled() {
+        return batchWorker;
+    }
 }
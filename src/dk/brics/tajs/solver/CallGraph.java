@@ -30,6 +30,7 @@ import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.function.BiConsumer;
 
 import static dk.brics.tajs.util.Collections.addToMapSet;
 import static dk.brics.tajs.util.Collections.newList;
@@ -63,6 +64,8 @@ public class CallGraph<StateType extends IState<StateType, ContextType, CallEdge
 
     private int next_block_context_order;
 
+    private int number_of_call_edges;
+
     public static class ReverseEdge<ContextType extends IContext<?>> {
 
         AbstractNode call_node;
@@ -125,6 +128,7 @@ public class CallGraph<StateType extends IState<StateType, ContextType, CallEdge
         if (call_edge == null) {
             // new edge
             mb.put(fc, analysis.makeCallEdge(edge_state.clone()));
+            number_of_call_edges++;
             if (sync != null && isOrdinaryCallEdge(callee))
                 sync.callEdgeAdded(caller.getBlock().getFunction(), callee.getFunction());
             changed = true;
@@ -238,6 +242,19 @@ public class CallGraph<StateType extends IState<StateType, ContextType, CallEdge
         return m;
     }
 
+    /**
+     * Visits the ordinary call edges, disregarding contexts and without building intermediate maps.
+     * The same (call node, callee) pair is visited once for each pair of contexts.
+     */
+    public void forEachCallEdgeIgnoreContexts(BiConsumer<AbstractNode, Function> visitor) {
+        for (Map.Entry<BlockAndContext<ContextType>, Set<ReverseEdge<ContextType>>> me : call_sources.entrySet()) {
+            BasicBlock b = me.getKey().getBlock();
+            if (isOrdinaryCallEdge(b))
+                for (ReverseEdge<ContextType> re : me.getValue())
+                    visitor.accept(re.getCallNode(), b.getFunction());
+        }
+    }
+
     private static List<Map.Entry<Function, List<AbstractNode>>> sort(Set<Map.Entry<Function, Set<AbstractNode>>> s) {
         List<Map.Entry<Function, List<AbstractNode>>> res = newList();
         for (Map.Entry<Function, Set<AbstractNode>> me : s) {
@@ -279,7 +296,10 @@ public class CallGraph<StateType extends IState<StateType, ContextType, CallEdge
         out.println("  f0 [shape=box label=\"<main>\"]}");
     }
 
-    private static String dotLabel(Function f, boolean show_source_location) {
+    /**
+     * Returns the Graphviz dot label of the given function.
+     */
+    public static String dotLabel(Function f, boolean show_source_location) {
         if (f.isMain())
             return "<main>";
         StringBuilder sb = new StringBuilder();
@@ -326,6 +346,13 @@ public class CallGraph<StateType extends IState<StateType, ContextType, CallEdge
         return c;
     }
 
+    /**
+     * Returns the number of call edges, counting each (caller node, caller context, callee, edge context) once.
+     */
+    public int getNumberOfCallEdges() {
+        return number_of_call_edges;
+    }
+
     /**
      * Return call graph statistics on the number of invocations in human readable form.
      */
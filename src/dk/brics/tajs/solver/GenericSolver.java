@@ -18,19 +18,26 @@ package dk.brics.tajs.solver;
 
 import dk.brics.tajs.flowgraph.AbstractNode;
 import dk.brics.tajs.flowgraph.BasicBlock;
+import dk.brics.tajs.flowgraph.CompactFlowGraph;
 import dk.brics.tajs.flowgraph.FlowGraph;
 import dk.brics.tajs.flowgraph.Function;
+import dk.brics.tajs.monitoring.AnalysisEvents;
+import dk.brics.tajs.monitoring.MonitoringCallback;
 import dk.brics.tajs.options.Options;
 import dk.brics.tajs.solver.IAnalysisLatticeElement.MergeResult;
 import dk.brics.tajs.util.AnalysisException;
 import net.htmlparser.jericho.Source;
 import org.apache.log4j.Logger;
 
-import java.util.Iterator;
+import java.util.EnumSet;
+import java.util.List;
 import java.util.Locale;
 import java.util.Map.Entry;
+import java.util.Set;
 import java.util.function.Supplier;
 
+import static dk.brics.tajs.util.Collections.newList;
+
 /**
  * Generic fixpoint solver for flow graphs.
  */
@@ -60,6 +67,16 @@ public class GenericSolver<StateType extends IState<StateType, ContextType, Call
 
     private StateType current_state;
 
+    /**
+     * Number of node transfers performed by {@link #solve()}.
+     */
+    private int node_transfers;
+
+    /**
+     * Number of block transfers performed by {@link #solve()}.
+     */
+    private int block_transfers;
+
     /**
      * Messages are disabled during fixpoint iteration and enabled in the subsequent scan phase.
      */
@@ -67,6 +84,34 @@ public class GenericSolver<StateType extends IState<StateType, ContextType, Call
 
     private SolverInterface c;
 
+    /**
+     * The monitoring callbacks that the monitoring subscribes to.
+     */
+    private Set<MonitoringCallback> subscriptions;
+
+    /**
+     * Exceptional flow collected during the current block transfer, or null if not in a block transfer.
+     */
+    private List<ExceptionalFlow> exceptional_flow;
+
+    /**
+     * Exceptional flow to an exception handler block in a context, collected during a block transfer.
+     */
+    private final class ExceptionalFlow {
+
+        private final BasicBlock handler;
+
+        private final ContextType context;
+
+        private final StateType state;
+
+        private ExceptionalFlow(BasicBlock handler, ContextType context, StateType state) {
+            this.handler = handler;
+            this.context = context;
+            this.state = state;
+        }
+    }
+
     /**
      * Interface to solver used while evaluating transfer functions.
      * Provides callbacks from transfer functions to solver state.
@@ -148,6 +193,14 @@ public class GenericSolver<StateType extends IState<StateType, ContextType, Call
             return analysis.getMonitoring();
         }
 
+        /**
+         * Checks whether the monitoring subscribes to the given callback.
+         * Callbacks that are not subscribed to should not be invoked.
+         */
+        public boolean isMonitored(MonitoringCallback callback) {
+            return subscriptions.contains(callback);
+        }
+
         /**
          * Returns true if in message scanning phase.
          */
@@ -167,6 +220,32 @@ public class GenericSolver<StateType extends IState<StateType, ContextType, Call
             propagate(state, block, context, false);
         }
 
+        /**
+         * Merges the exceptional flow <code>state</code> into the entry state of the exception handler <code>block</code>
+         * in context <code>context</code> and updates the work list accordingly.
+         * During a block transfer, the exceptional flow to the same handler and context is first joined locally,
+         * and propagated when the node transfers of the block have finished,
+         * so that a block with many nodes that may throw exceptions only updates the entry state of its handler
+         * and the work list once. Each throwing node still provides a full state that is joined into the local one,
+         * so the number of state joins is not reduced.
+         * The given state may be modified by this operation.
+         * Ignored if in scan phase.
+         */
+        public void propagateToExceptionHandler(StateType state, BasicBlock block, ContextType context) {
+            if (messages_enabled)
+                return;
+            if (exceptional_flow == null) {
+                propagate(state, block, context, false);
+                return;
+            }
+            for (ExceptionalFlow f : exceptional_flow)
+                if (f.handler == block && f.context.equals(context)) {
+                    f.state.propagate(state, false);
+                    return;
+                }
+            exceptional_flow.add(new ExceptionalFlow(block, context, state));
+        }
+
         /**
          * Propagates dataflow.
          */
@@ -177,7 +256,8 @@ public class GenericSolver<StateType extends IState<StateType, ContextType, Call
                 addToWorklist(block, context);
                 if (sync != null)
                     sync.markPendingBlock(block);
-                analysis.getMonitoring().visitNewFlow(block, context, the_analysis_lattice_element.getState(block, context), res.getDiff(), "CALL");
+                if (subscriptions.contains(MonitoringCallback.NEW_FLOW))
+                    analysis.getMonitoring().visitNewFlow(block, context, the_analysis_lattice_element.getState(block, context), res.getDiff(), "CALL");
                 if (log.isDebugEnabled())
                     log.debug("New flow at block " + block.getIndex() + " node "
                             + block.getFirstNode().getIndex() + ", context " + context
@@ -267,6 +347,10 @@ public class GenericSolver<StateType extends IState<StateType, ContextType, Call
         global_entry_block = fg.getEntryBlock();
         the_analysis_lattice_element = analysis.makeAnalysisLattice(fg);
         analysis.initContextSensitivity(fg);
+        subscriptions = EnumSet.noneOf(MonitoringCallback.class);
+        for (MonitoringCallback callback : MonitoringCallback.values())
+            if (analysis.getMonitoring().isSubscribed(callback))
+                subscriptions.add(callback);
         c = new SolverInterface();
         analysis.setSolverInterface(c);
 
@@ -281,8 +365,26 @@ public class GenericSolver<StateType extends IState<StateType, ContextType, Call
      * Runs the solver.
      */
     public void solve() {
-        int nodeTransfers = 0;
+        ProgressReporter progress = ProgressReporter.make(this);
+        if (progress != null)
+            progress.start();
+        try {
+            solveWorkList();
+        } finally {
+            if (progress != null)
+                progress.stop();
+        }
+    }
+
+    /**
+     * Iterates until the work list is empty (or the monitoring stops the iteration).
+     */
+    private void solveWorkList() {
         boolean terminatedEarly = false;
+        // resolve the node transfer functions and monitoring once rather than for each node
+        INodeTransfer<StateType, ContextType> node_transfer = analysis.getNodeTransferFunctions();
+        MonitoringType monitoring = analysis.getMonitoring();
+        boolean monitor_node_transfers = subscriptions.contains(MonitoringCallback.NODE_TRANSFER);
         // iterate until fixpoint
         block_loop:
         while (!worklist.isEmpty()) {
@@ -291,6 +393,7 @@ public class GenericSolver<StateType extends IState<StateType, ContextType, Call
                     log.warn("Terminating fixpoint solver early and unsoundly");
                 }
                 terminatedEarly = true;
+                monitoring.visitIncompleteResult("the fixpoint solver terminated early");
                 break;
             }
             if (sync != null) {
@@ -300,7 +403,10 @@ public class GenericSolver<StateType extends IState<StateType, ContextType, Call
                 sync.waitIfSingleStep();
             }
             // pick a pending entry
+            AnalysisEvents.WorklistPick pick_event = new AnalysisEvents.WorklistPick();
+            pick_event.begin();
             WorkList<ContextType>.Entry p = worklist.removeNext();
+            pick_event.commit(p != null ? p.getBlock() : null, worklist.size());
             if (p == null)
                 continue; // entry may have been removed
             BasicBlock block = p.getBlock();
@@ -317,56 +423,57 @@ public class GenericSolver<StateType extends IState<StateType, ContextType, Call
                 log.debug("Visiting " + block);
 //    			log.debug("Number of abstract states at this block: " + the_analysis_lattice_element.getSize(block));
                 log.debug("Context: " + context);
-            } else if (!Options.get().isQuietEnabled() && !Options.get().isTestEnabled() && log.isInfoEnabled()) {
-//    			if (block.isEntry())
-//    				log.debug("Entering " + block.getFunction() + " at " + block.getFunction().getSourceLocation());
-//    			if (block.isOrdinaryExit())
-//    				log.debug("Returning from " + block.getFunction() + " at " + block.getFunction().getSourceLocation());
-//    			if (block.isExceptionalExit())
-//    				log.debug("Exception from " + block.getFunction() + " at " + block.getFunction().getSourceLocation());
-                log.info(//"block " + block.getIndex() + " at " +
-                        block.getSourceLocation() +
-//    					", context " + context +
-                                " (node transfers: " + (nodeTransfers + 1) +
-//    					" (avg/node: " + ((float) ((analysis.getMonitoring().getTotalNumberOfNodeTransfers() + 1) * 1000 / flowgraph.getNumberOfNodes())) / 1000 + ")" + 
-                                ", worklist size: " + (worklist.size() + 1) +
-//    					", contexts: " + the_analysis_lattice_element.getSize(block) +
-                                ")");
             }
             // basic block transfer
-            analysis.getMonitoring().visitBlockTransfer(block, state);
+            AnalysisEvents.BlockTransfer block_event = new AnalysisEvents.BlockTransfer();
+            block_event.begin();
+            int node_transfers_before = node_transfers;
+            block_transfers++;
+            if (subscriptions.contains(MonitoringCallback.BLOCK_TRANSFER))
+                monitoring.visitBlockTransfer(block, state);
             current_state = state.clone();
             if (global_entry_block == block)
                 current_state.localize(null); // use *localized* initial state
             if (Options.get().isIntermediateStatesEnabled())
                 if (log.isDebugEnabled())
                     log.debug("Before block transfer: " + current_state);
+            exceptional_flow = newList();
             for (AbstractNode n : block.getNodes()) {
-                nodeTransfers++;
+                node_transfers++;
                 current_node = n;
                 if (log.isDebugEnabled())
                     log.debug("Visiting node " + current_node.getIndex() + ": "
                             + current_node + " at " + current_node.getSourceLocation());
-                analysis.getNodeTransferFunctions().transfer(current_node);
-                analysis.getMonitoring().visitNodeTransfer(current_node);
+                node_transfer.transfer(current_node);
+                if (monitor_node_transfers)
+                    monitoring.visitNodeTransfer(current_node);
                 if (current_state.isNone()) {
                     log.debug("No non-exceptional flow");
+                    propagateExceptionalFlow();
+                    block_event.commit(block, context, node_transfers - node_transfers_before, false);
                     continue block_loop;
                 }
                 if (Options.get().isIntermediateStatesEnabled())
                     if (log.isDebugEnabled())
                         log.debug("After node transfer: " + current_state.toStringBrief());
             }
+            propagateExceptionalFlow();
             analysis.getMonitoring().visitPostBlockTransfer(block, current_state);
-            // edge transfer
-            for (Iterator<BasicBlock> i = block.getSuccessors().iterator(); i.hasNext(); ) {
-                BasicBlock succ = i.next();
-                StateType s = i.hasNext() ? current_state.clone() : current_state;
+            // edge transfer (through the frozen flow graph, except for blocks created during the analysis)
+            CompactFlowGraph compact = flowgraph.getCompactFlowGraph();
+            int b = block.getIndex();
+            boolean frozen = compact.contains(block);
+            List<BasicBlock> unfrozen_successors = frozen ? null : newList(block.getSuccessors());
+            int successor_count = frozen ? compact.getNumberOfSuccessors(b) : unfrozen_successors.size();
+            for (int k = 0; k < successor_count; k++) {
+                BasicBlock succ = frozen ? compact.getBlock(compact.getSuccessor(b, k)) : unfrozen_successors.get(k);
+                StateType s = k + 1 < successor_count ? current_state.clone() : current_state;
                 ContextType new_context = analysis.getEdgeTransferFunctions().transfer(block, succ, s);
                 if (new_context != null) {
                     c.propagateToBasicBlock(s, succ, new_context);
                 }
             }
+            block_event.commit(block, context, node_transfers - node_transfers_before, true);
             if (!deps.isFunctionActive(BlockAndContext.makeEntry(block, context)))
                 for (CallGraph.ReverseEdge<ContextType> re : the_analysis_lattice_element.getCallGraph().getSources(BlockAndContext.makeEntry(block, context))) {
                     // callee has become inactive, so discharge the call edge
@@ -378,6 +485,16 @@ public class GenericSolver<StateType extends IState<StateType, ContextType, Call
         messages_enabled = true;
     }
 
+    /**
+     * Propagates the exceptional flow that has been collected during the current block transfer.
+     */
+    private void propagateExceptionalFlow() {
+        List<ExceptionalFlow> flow = exceptional_flow;
+        exceptional_flow = null;
+        for (ExceptionalFlow f : flow)
+            c.propagate(f.state, f.handler, f.context, false);
+    }
+
     /**
      * Scans for messages. Takes one round through all nodes and all contexts without invoking <code>propagate</code>.
      * {@link #solve()} must be called first.
@@ -435,4 +552,39 @@ public class GenericSolver<StateType extends IState<StateType, ContextType, Call
     public FlowGraph getFlowGraph() {
         return flowgraph;
     }
+
+    /**
+     * Returns the number of entries in the work list, or 0 if the solver has not been initialized.
+     */
+    public int getWorkListSize() {
+        return worklist != null ? worklist.size() : 0;
+    }
+
+    /**
+     * Returns the number of node transfers performed by {@link #solve()} so far.
+     */
+    public int getNumberOfNodeTransfers() {
+        return node_transfers;
+    }
+
+    /**
+     * Returns the number of block transfers performed by {@link #solve()} so far.
+     */
+    public int getNumberOfBlockTransfers() {
+        return block_transfers;
+    }
+
+    /**
+     * Returns the number of (basic block, context) pairs with an abstract state, or 0 if the solver has not been initialized.
+     */
+    public int getNumberOfStates() {
+        return the_analysis_lattice_element != null ? the_analysis_lattice_element.getNumberOfStates() : 0;
+    }
+
+    /**
+     * Returns the node currently being visited, or null if none.
+     */
+    AbstractNode getCurrentNode() {
+        return current_node;
+    }
 }
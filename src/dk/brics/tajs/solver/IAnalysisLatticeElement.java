@@ -67,6 +67,11 @@ public interface IAnalysisLatticeElement<StateType extends IState<StateType, Con
      */
     Map<ContextType, StateType> getStates(BasicBlock block);
 
+    /**
+     * Returns the total number of (basic block, context) pairs that have an abstract state.
+     */
+    int getNumberOfStates();
+
     /**
      * Returns the call graph.
      */
@@ -19,6 +19,7 @@ package dk.brics.tajs.solver;
 import dk.brics.tajs.flowgraph.AbstractNode;
 import dk.brics.tajs.flowgraph.BasicBlock;
 import dk.brics.tajs.flowgraph.Function;
+import dk.brics.tajs.monitoring.MonitoringCallback;
 
 import java.util.Collection;
 
@@ -32,6 +33,13 @@ public interface ISolverMonitoring<StateType extends IState<StateType, ContextTy
      */
     void visitNodeTransfer(AbstractNode n);
 
+    /**
+     * Checks whether this monitoring subscribes to the given callback.
+     * The callbacks that are not subscribed to are not invoked.
+     * Queried once when the solver is initialized.
+     */
+    boolean isSubscribed(MonitoringCallback callback);
+
     /**
      * Registers the beginning of a block transfer
      */
@@ -77,4 +85,10 @@ public interface ISolverMonitoring<StateType extends IState<StateType, ContextTy
      * Returns true if the fixpoint solver should continue with its next iteration or abort early and unsoundly.
      */
     boolean allowNextIteration();
+
+    /**
+     * Registers that the analysis result is incomplete, for example because the fixpoint solver terminated early.
+     * May be called more than once.
+     */
+    void visitIncompleteResult(String reason);
 }
@@ -0,0 +1,200 @@
+/*
+ * Copyright 2009-2016 Aarhus University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dk.brics.tajs.solver;
+
+import dk.brics.tajs.flowgraph.AbstractNode;
+import dk.brics.tajs.options.Options;
+import dk.brics.tajs.util.AnalysisException;
+import org.apache.log4j.Logger;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Locale;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reports the progress of the fixpoint solver from a separate timer thread.
+ * <p>
+ * Unless quiet or test mode is enabled, a summary line is logged at most once per reporting interval.
+ * If a progress file is given, each sample is also written to it as a line of JSON.
+ * <p>
+ * The solver counters are read without synchronization, so the reported numbers are approximate.
+ */
+public class ProgressReporter {
+
+    private static Logger log = Logger.getLogger(ProgressReporter.class);
+
+    /**
+     * Default number of seconds between two reports.
+     */
+    public static final int DEFAULT_INTERVAL = 5;
+
+    /**
+     * Weight of the newest sample in the smoothed work list drain rate.
+     */
+    private static final double SMOOTHING = 0.3;
+
+    private final GenericSolver<?, ?, ?, ?, ?> solver;
+
+    private final boolean console;
+
+    private final Writer out;
+
+    private final long interval_millis;
+
+    private ScheduledExecutorService timer;
+
+    private long start_nanos;
+
+    private long last_nanos;
+
+    private int last_node_transfers;
+
+    private int last_worklist_size;
+
+    private double drain_rate = Double.NaN;
+
+    /**
+     * Constructs a new progress reporter for the given solver.
+     *
+     * @param console  if set, log summaries
+     * @param file     if non-null, write the samples as JSON lines to this file
+     * @param interval number of seconds between two samples
+     */
+    public ProgressReporter(GenericSolver<?, ?, ?, ?, ?> solver, boolean console, String file, int interval) {
+        this.solver = solver;
+        this.console = console;
+        this.interval_millis = 1000L * Math.max(1, interval);
+        if (file != null) {
+            try {
+                out = Files.newBufferedWriter(Paths.get(file), StandardCharsets.UTF_8);
+            } catch (IOException e) {
+                throw new AnalysisException("Unable to write progress file " + file + ": " + e.getMessage(), e);
+            }
+        } else
+            out = null;
+    }
+
+    /**
+     * Constructs a progress reporter according to the current options,
+     * or returns null if progress reporting is disabled.
+     */
+    public static ProgressReporter make(GenericSolver<?, ?, ?, ?, ?> solver) {
+        boolean console = !Options.get().isQuietEnabled() && !Options.get().isTestEnabled() && log.isInfoEnabled();
+        String file = Options.get().getProgressFile();
+        if (!console && file == null)
+            return null;
+        int interval = Options.get().getProgressInterval();
+        return new ProgressReporter(solver, console, file, interval != -1 ? interval : DEFAULT_INTERVAL);
+    }
+
+    /**
+     * Starts the timer thread.
+     */
+    public void start() {
+        start_nanos = last_nanos = System.nanoTime();
+        last_node_transfers = solver.getNumberOfNodeTransfers();
+        last_worklist_size = solver.getWorkListSize();
+        timer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "TAJS progress reporter");
+            t.setDaemon(true);
+            return t;
+        });
+        timer.scheduleAtFixedRate(this::report, interval_millis, interval_millis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops the timer thread and writes a final sample.
+     */
+    public void stop() {
+        if (timer != null) {
+            timer.shutdownNow();
+            try {
+                timer.awaitTermination(interval_millis, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            timer = null;
+        }
+        report();
+        if (out != null) {
+            try {
+                out.close();
+            } catch (IOException e) {
+                log.error("Unable to close progress file: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Takes a sample of the solver counters and reports it.
+     */
+    private synchronized void report() {
+        long now = System.nanoTime();
+        int node_transfers = solver.getNumberOfNodeTransfers();
+        int block_transfers = solver.getNumberOfBlockTransfers();
+        int worklist_size = solver.getWorkListSize();
+        int states = solver.getNumberOfStates();
+        double seconds = (now - last_nanos) / 1e9;
+        double total_seconds = (now - start_nanos) / 1e9;
+        double rate = seconds > 0 ? (node_transfers - last_node_transfers) / seconds : 0;
+        if (seconds > 0) {
+            double drain = (last_worklist_size - worklist_size) / seconds;
+            drain_rate = Double.isNaN(drain_rate) ? drain : SMOOTHING * drain + (1 - SMOOTHING) * drain_rate;
+        }
+        long remaining_millis = estimateRemainingMillis(worklist_size);
+        last_nanos = now;
+        last_node_transfers = node_transfers;
+        last_worklist_size = worklist_size;
+        if (console) {
+            AbstractNode n = solver.getCurrentNode();
+            log.info(String.format(Locale.US, "Progress after %.1fs: node transfers: %d (%.0f/s), block transfers: %d, worklist size: %d, states: %d, est. remaining: %s%s",
+                    total_seconds, node_transfers, rate, block_transfers, worklist_size, states,
+                    remaining_millis != -1 ? remaining_millis / 1000 + "s" : "unknown",
+                    n != null ? ", at " + n.getSourceLocation() : ""));
+        }
+        if (out != null) {
+            try {
+                out.write(String.format(Locale.US, "{\"time_ms\":%d,\"node_transfers\":%d,\"node_transfers_per_second\":%.1f,\"block_transfers\":%d,\"worklist_size\":%d,\"states\":%d,\"estimated_remaining_ms\":%d}\n",
+                        (now - start_nanos) / 1000000, node_transfers, rate, block_transfers, worklist_size, states, remaining_millis));
+                out.flush();
+            } catch (IOException e) {
+                log.error("Unable to write progress file: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Estimates the remaining time from the smoothed rate at which the work list shrinks.
+     * This is only a heuristic, since new flow may add arbitrarily many entries to the work list.
+     *
+     * @return estimated remaining milliseconds, or -1 if the work list is not shrinking
+     */
+    private long estimateRemainingMillis(int worklist_size) {
+        if (worklist_size == 0)
+            return 0;
+        if (Double.isNaN(drain_rate) || drain_rate <= 0)
+            return -1;
+        return (long) (worklist_size / drain_rate * 1000);
+    }
+}
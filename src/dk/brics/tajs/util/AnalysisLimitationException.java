@@ -52,6 +52,19 @@ public class AnalysisLimitationException extends RuntimeException { // TODO: use
         }
     }
 
+    /**
+     * To be used when the analysis exceeds its memory limit.
+     */
+    public static class AnalysisMemoryException extends AnalysisLimitationException {
+
+        /**
+         * Constructs a new exception.
+         */
+        public AnalysisMemoryException(String msg) {
+            super(msg);
+        }
+    }
+
     /**
      * To be used when encountering unmodeled native functions.
      */
@@ -21,7 +21,11 @@ import org.junit.runners.Suite;
         TestLiteralContextSensitivity.class,
         TestSourceLocations.class,
         TestUtilities.class,
-        TestJQueryPatterns.class
+        TestJQueryPatterns.class,
+        TestMessageStream.class,
+        TestResultStore.class,
+        TestResultCache.class,
+        TestBatch.class
 })
 public class RunMediumFeatures {
 
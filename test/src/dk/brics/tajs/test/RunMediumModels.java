@@ -37,6 +37,7 @@ import org.junit.runners.Suite;
 //        TestHostFunctionSources_TypedArrays.class,
         TestFunctionBind.class,
         TestConcreteSemantics.class,
+        TestJavaConcreteSemantics.class,
         JSRegExp_exec_test.class,
         JSRegExp_test_test.class,
         JSString_charAt_charCodeAt_test.class,
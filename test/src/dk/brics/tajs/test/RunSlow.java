@@ -9,7 +9,8 @@ import org.junit.runners.Suite;
 //        TestJQueryUse.class,
 //        TestJQueryUse_unanalyzable.class,
         TestOptionToggling.class,
-        TestSmoke.class
+        TestSmoke.class,
+        TestBatchCoordinator.class
 })
 public class RunSlow {
 
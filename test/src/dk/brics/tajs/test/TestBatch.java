@@ -0,0 +1,192 @@
+package dk.brics.tajs.test;
+
+import dk.brics.tajs.Batch;
+import dk.brics.tajs.Main;
+import dk.brics.tajs.monitoring.AnalysisMemoryLimiter;
+import dk.brics.tajs.options.Options;
+import dk.brics.tajs.util.AnalysisLimitationException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests of {@link Batch}.
+ */
+public class TestBatch {
+
+    private Path dir;
+
+    @Before
+    public void before() throws IOException {
+        Main.reset();
+        Misc.init();
+        dir = Files.createTempDirectory("tajs-batch-test");
+    }
+
+    @After
+    public void after() throws IOException {
+        Main.reset();
+        try (Stream<Path> files = Files.walk(dir)) {
+            files.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+        }
+    }
+
+    private Path write(String name, String... lines) throws IOException {
+        Path file = dir.resolve(name);
+        Files.write(file, String.join("\n", lines).getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+
+    private Batch.Result runJob(int id, int time_limit, int memory_limit, String... args) {
+        return Batch.runJob(new Batch.Job(id, Arrays.asList(args)), Collections.emptyList(), dir, time_limit, memory_limit);
+    }
+
+    private static String field(String json, String name) {
+        int i = json.indexOf("\"" + name + "\":");
+        if (i == -1)
+            return null;
+        i += name.length() + 3;
+        int j = i;
+        if (json.charAt(i) == '"') {
+            for (j = i + 1; json.charAt(j) != '"'; j++)
+                if (json.charAt(j) == '\\')
+                    j++;
+            j++;
+        } else {
+            while (j < json.length() && json.charAt(j) != ',' && json.charAt(j) != '}')
+                j++;
+        }
+        return json.substring(i, j);
+    }
+
+    @Test
+    public void readManifest() throws IOException {
+        Path manifest = write("jobs.txt",
+                "# comment",
+                "a.js",
+                "",
+                "   -unsound   b.js\tc.js  ",
+                "  # indented comment");
+        List<Batch.Job> jobs = Batch.readManifest(manifest);
+        assertEquals(2, jobs.size());
+        assertEquals(2, jobs.get(0).getId());
+        assertEquals(Collections.singletonList("a.js"), jobs.get(0).getArguments());
+        assertEquals(4, jobs.get(1).getId());
+        assertEquals(Arrays.asList("-unsound", "b.js", "c.js"), jobs.get(1).getArguments());
+        assertEquals("-unsound b.js c.js", jobs.get(1).toString());
+    }
+
+    @Test
+    public void jobsAreIsolated() throws IOException {
+        Path a = write("a.js", "var x;", "x.p;");
+        // with -no-messages, the message stream of the job is not written
+        Batch.Result r1 = runJob(1, -1, -1, "-no-messages", a.toString());
+        assertEquals(Batch.Status.OK, r1.getStatus());
+        assertEquals("2", field(r1.toJSON(), "messages"));
+        assertFalse(Files.exists(dir.resolve("job-1.jsonl")));
+        // the options of a job are reset after the job
+        assertFalse(Options.get().isNoMessages());
+        assertTrue(Options.get().getArguments().isEmpty());
+        Batch.Result r2 = runJob(2, -1, -1, a.toString());
+        assertEquals(Batch.Status.OK, r2.getStatus());
+        assertEquals("2", field(r2.toJSON(), "messages"));
+        assertEquals(2, Files.readAllLines(dir.resolve("job-2.jsonl"), StandardCharsets.UTF_8).size());
+    }
+
+    @Test
+    public void invalidOption() throws IOException {
+        Path a = write("a.js", "var x;");
+        Batch.Result r = runJob(1, -1, -1, "-no-such-option", a.toString());
+        assertEquals(Batch.Status.INVALID, r.getStatus());
+        assertTrue(r.toJSON(), field(r.toJSON(), "detail").contains("-no-such-option"));
+        assertTrue(Options.get().getArguments().isEmpty());
+    }
+
+    @Test
+    public void invalidInput() {
+        Path missing = dir.resolve("missing.js");
+        Batch.Result r = runJob(1, -1, -1, missing.toString());
+        assertEquals(Batch.Status.INVALID, r.getStatus());
+        assertTrue(r.toJSON(), field(r.toJSON(), "detail").contains("missing.js"));
+        assertEquals(Batch.Status.INVALID, runJob(1, -1, -1, "-unsound").getStatus());
+    }
+
+    @Test
+    public void timeLimit() {
+        Batch.Result r = runJob(1, 1, -1, "test/google/cryptobench.js");
+        assertEquals(Batch.Status.TIME_LIMIT, r.getStatus());
+        assertTrue(r.toJSON(), field(r.toJSON(), "detail").contains("time limit"));
+        assertEquals(null, field(r.toJSON(), "messages"));
+    }
+
+    @Test
+    public void memoryLimit() {
+        // a job may finish without any collection, so the limiter is tested directly
+        AnalysisMemoryLimiter limiter = new AnalysisMemoryLimiter(1);
+        System.gc();
+        try {
+            for (int i = 0; i < 1000; i++)
+                limiter.allowNextIteration();
+            fail("memory limit not detected");
+        } catch (AnalysisLimitationException.AnalysisMemoryException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("memory limit"));
+        }
+    }
+
+    @Test
+    public void memoryOfEarlierJobsIgnored() {
+        // the heap usage after this collection exceeds the limit of the job, but it happens before the job
+        byte[][] garbage = new byte[128][];
+        for (int i = 0; i < garbage.length; i++)
+            garbage[i] = new byte[1024 * 1024];
+        System.gc();
+        garbage = null;
+        assertEquals(Batch.Status.OK, runJob(1, -1, 64, "test/google/richards.js").getStatus());
+    }
+
+    @Test
+    public void indexAndSummary() throws IOException {
+        Path a = write("a.js", "var x;", "x.p;");
+        Path manifest = write("jobs.txt",
+                a.toString(),
+                "-no-such-option " + a,
+                "-no-messages " + a);
+        Path output = dir.resolve("out");
+        int exit = Batch.run(new String[]{"-batch", manifest.toString(), "-batch-output", output.toString(), "-quiet"});
+        assertEquals(1, exit);
+        List<String> index = Files.readAllLines(output.resolve("index.jsonl"), StandardCharsets.UTF_8);
+        assertEquals(3, index.size());
+        assertEquals("1", field(index.get(0), "job"));
+        assertEquals("\"OK\"", field(index.get(0), "status"));
+        assertEquals("\"" + a + "\"", field(index.get(0), "arguments"));
+        assertEquals("2", field(index.get(1), "job"));
+        assertEquals("\"INVALID\"", field(index.get(1), "status"));
+        assertTrue(field(index.get(1), "detail").contains("-no-such-option"));
+        assertEquals("\"OK\"", field(index.get(2), "status"));
+        assertEquals("2", field(index.get(2), "messages"));
+        assertTrue(Files.exists(output.resolve("job-1.jsonl")));
+        assertFalse(Files.exists(output.resolve("job-2.jsonl")));
+        assertFalse(Files.exists(output.resolve("job-3.jsonl")));
+        String summary = new String(Files.readAllBytes(output.resolve("summary.json")), StandardCharsets.UTF_8);
+        assertEquals("3", field(summary, "jobs"));
+        assertEquals("1", field(summary, "failed"));
+        assertEquals("2", field(summary, "OK"));
+        assertEquals("1", field(summary, "INVALID"));
+        assertEquals(null, field(summary, "ERROR"));
+    }
+}
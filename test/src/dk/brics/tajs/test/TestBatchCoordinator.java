@@ -0,0 +1,122 @@
+package dk.brics.tajs.test;
+
+import dk.brics.tajs.Batch;
+import dk.brics.tajs.Main;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests of batch mode with worker JVMs.
+ */
+public class TestBatchCoordinator {
+
+    private Path dir;
+
+    private Path output;
+
+    @Before
+    public void before() throws IOException {
+        Main.reset();
+        Misc.init();
+        dir = Files.createTempDirectory("tajs-batch-workers-test");
+        output = dir.resolve("out");
+    }
+
+    @After
+    public void after() throws IOException {
+        Main.reset();
+        try (Stream<Path> files = Files.walk(dir)) {
+            files.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+        }
+    }
+
+    private Path write(String name, String... lines) throws IOException {
+        Path file = dir.resolve(name);
+        Files.write(file, String.join("\n", lines).getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+
+    /**
+     * Runs the batch of the given manifest lines with the given extra options.
+     *
+     * @return the results index lines, ordered by job number
+     */
+    private List<String> runBatch(List<String> manifest, String... options) throws IOException {
+        Path m = dir.resolve("jobs.txt");
+        Files.write(m, manifest, StandardCharsets.UTF_8);
+        String[] args = Stream.concat(Stream.of("-batch", m.toString(), "-batch-output", output.toString(), "-batch-heap", "256", "-batch-retry-heap", "384"),
+                Stream.of(options)).toArray(String[]::new);
+        Batch.run(args);
+        return Files.readAllLines(output.resolve("index.jsonl"), StandardCharsets.UTF_8).stream()
+                .sorted(Comparator.comparing(l -> Integer.parseInt(l.substring("{\"job\":".length(), l.indexOf(','))))).collect(Collectors.toList());
+    }
+
+    private static void assertContains(String line, String... parts) {
+        for (String p : parts)
+            assertTrue(line, line.contains(p));
+    }
+
+    @Test
+    public void protocol() throws IOException {
+        Path a = write("a.js", "var x;", "x.p;");
+        Path b = write("b.js", "var y = 1;");
+        List<String> index = runBatch(Arrays.asList(a.toString(), "-no-such-option " + a, b.toString(), "# comment", "-no-messages " + b),
+                "-batch-workers", "2");
+        assertEquals(4, index.size());
+        assertContains(index.get(0), "\"job\":1,", "\"status\":\"OK\"", "\"messages\":2", "\"retried\":false}");
+        assertContains(index.get(1), "\"job\":2,", "\"status\":\"INVALID\"", "-no-such-option", "\"retried\":false}");
+        assertContains(index.get(2), "\"job\":3,", "\"status\":\"OK\"", "\"retried\":false}");
+        assertContains(index.get(3), "\"job\":5,", "\"status\":\"OK\"", "\"retried\":false}");
+        assertTrue(Files.exists(output.resolve("job-1.jsonl")));
+        assertTrue(Files.exists(output.resolve("worker-0.log")));
+        String summary = new String(Files.readAllBytes(output.resolve("summary.json")), StandardCharsets.UTF_8);
+        assertContains(summary, "\"jobs\":4,", "\"failed\":1,", "\"OK\":3", "\"INVALID\":1");
+    }
+
+    @Test
+    public void retry() throws IOException {
+        Path a = write("a.js", "eval('var z = 1;');");
+        Path b = write("b.js", "var y = 1;");
+        List<String> index = runBatch(Arrays.asList(a.toString(), b.toString()), "-batch-workers", "1");
+        assertEquals(2, index.size());
+        // the job is retried once in a worker with the retry heap, and then recorded
+        assertContains(index.get(0), "\"job\":1,", "\"status\":\"ANALYSIS_LIMITATION\"", "\"retried\":true}");
+        assertContains(index.get(1), "\"job\":2,", "\"status\":\"OK\"", "\"retried\":false}");
+    }
+
+    @Test
+    public void memoryLimit() throws IOException {
+        Path b = write("b.js", "var y = 1;");
+        List<String> index = runBatch(Arrays.asList("test/google/richards.js", b.toString()),
+                "-batch-workers", "1", "-batch-memory-limit", "1", "-batch-retry-heap", "256");
+        assertEquals(2, index.size());
+        // the worker exits after each such job, so the retry and the next job get fresh workers of the same heap size
+        assertContains(index.get(0), "\"job\":1,", "\"status\":\"MEMORY_LIMIT\"", "memory limit", "\"retried\":true}");
+        assertContains(index.get(1), "\"job\":2,", "\"status\":\"OK\"", "\"retried\":false}");
+    }
+
+    @Test
+    public void deadline() throws IOException {
+        Path b = write("b.js", "var y = 1;");
+        List<String> index = runBatch(Arrays.asList("test/google/cryptobench.js", b.toString()),
+                "-batch-workers", "1", "-batch-job-deadline", "3");
+        assertEquals(2, index.size());
+        // the worker is killed, and the job is not retried
+        assertContains(index.get(0), "\"job\":1,", "\"status\":\"TIME_LIMIT\"", "deadline of 3s", "\"retried\":false}");
+        assertContains(index.get(1), "\"job\":2,", "\"status\":\"OK\"", "\"retried\":false}");
+    }
+}
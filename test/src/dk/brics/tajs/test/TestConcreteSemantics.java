@@ -39,50 +39,67 @@ public class TestConcreteSemantics {
         }, monitor);
     }
 
-//    @Test
-//    public void multiConcrete() {
-//        Misc.runSource(new String[]{
-//                "var x = Math.random()? 1: '1';",
-//                "TAJS_assert('abc'.substring(x, 2) === 'b');"
-//        }, monitor);
-//    }
-
-//    @Test
-//    public void multiConcrete2() {
-//        Misc.runSource(new String[]{
-//                "var x = Math.random()? undefined: 0;",
-//                "TAJS_assert('abc'.substring(x, 2) === 'ab');"
-//        }, monitor);
-//    }
-
-//    @Test
-//    public void multiConcreteMultiResults() {
-//        Misc.runSource(new String[]{
-//                "var x = Math.random()? 0: '1';",
-//                "var result = 'abc'.substring(x, 2);",
-//                "TAJS_assert(result, 'isMaybeAnyStr', false);",
-//                "TAJS_assert(result, 'isMaybeStrIdentifier');"
-//        }, monitor);
-//    }
-
-//    @Test
-//    public void multiConcreteMultiResults2() {
-//        Misc.runSource(new String[]{
-//                "var x = Math.random()? undefined: '1';",
-//                "var result = 'abc'.substring(x, 2);",
-//                "TAJS_assert(result, 'isMaybeAnyStr', false);",
-//                "TAJS_assert(result, 'isMaybeStrIdentifier');"
-//        }, monitor);
-//    }
-
-//    @Test
-//    public void multiConcretes() {
-//        Misc.runSource(new String[]{
-//                "var x = Math.random()? 1: '1';",
-//                "var y = Math.random()? 2: '2';",
-//                "TAJS_assert('abc'.substring(x, y) === 'b');"
-//        }, monitor);
-//    }
+    @Test
+    public void javaEvaluatedNatives() {
+        Misc.runSource(new String[]{
+                "TAJS_assert('a-b-c'.replace(/-/g, '+') === 'a+b+c');",
+                "TAJS_assert('a,b,,c'.split(',').length === 4);",
+                "TAJS_assert((255).toString(16) === 'ff');",
+                "TAJS_assert((1.005).toFixed(2) === '1.00');",
+                "TAJS_assert(parseInt('0x1F') === 31);",
+                "TAJS_assert(/(\\d+)-(\\d+)/.exec('10-20')[2] === '20');"
+        }, monitor);
+    }
+
+    @Test
+    public void multiConcrete() {
+        Options.get().enableSplitConcreteCalls();
+        Misc.runSource(new String[]{
+                "var x = Math.random()? 1: '1';",
+                "TAJS_assert('abc'.substring(x, 2) === 'b');"
+        }, monitor);
+    }
+
+    @Test
+    public void multiConcrete2() {
+        Options.get().enableSplitConcreteCalls();
+        Misc.runSource(new String[]{
+                "var x = Math.random()? undefined: 0;",
+                "TAJS_assert('abc'.substring(x, 2) === 'ab');"
+        }, monitor);
+    }
+
+    @Test
+    public void multiConcreteMultiResults() {
+        Options.get().enableSplitConcreteCalls();
+        Misc.runSource(new String[]{
+                "var x = Math.random()? 0: '1';",
+                "var result = 'abc'.substring(x, 2);",
+                "TAJS_assert(result, 'isMaybeAnyStr', false);",
+                "TAJS_assert(result, 'isMaybeStrIdentifier');"
+        }, monitor);
+    }
+
+    @Test
+    public void multiConcreteMultiResults2() {
+        Options.get().enableSplitConcreteCalls();
+        Misc.runSource(new String[]{
+                "var x = Math.random()? undefined: '1';",
+                "var result = 'abc'.substring(x, 2);",
+                "TAJS_assert(result, 'isMaybeAnyStr', false);",
+                "TAJS_assert(result, 'isMaybeStrIdentifier');"
+        }, monitor);
+    }
+
+    @Test
+    public void multiConcretes() {
+        Options.get().enableSplitConcreteCalls();
+        Misc.runSource(new String[]{
+                "var x = Math.random()? 1: '1';",
+                "var y = Math.random()? 2: '2';",
+                "TAJS_assert('abc'.substring(x, y) === 'b');"
+        }, monitor);
+    }
 
     @Test
     public void abstracts() {
@@ -1,13 +1,33 @@
 package dk.brics.tajs.test;
 
 import dk.brics.tajs.Main;
+import dk.brics.tajs.analysis.Analysis;
+import dk.brics.tajs.flowgraph.AbstractNode;
+import dk.brics.tajs.flowgraph.BasicBlock;
+import dk.brics.tajs.flowgraph.CompactFlowGraph;
+import dk.brics.tajs.flowgraph.FlowGraph;
+import dk.brics.tajs.flowgraph.Function;
+import dk.brics.tajs.flowgraph.jsnodes.Node;
+import dk.brics.tajs.flowgraph.jsnodes.Opcode;
+import dk.brics.tajs.monitoring.Monitoring;
 import dk.brics.tajs.options.Options;
+import dk.brics.tajs.solver.Message;
 import dk.brics.tajs.util.AnalysisLimitationException;
 import dk.brics.tajs.util.ParseError;
 import org.junit.Before;
 import org.junit.Ignore;
 import org.junit.Test;
 
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Set;
+
+import static dk.brics.tajs.util.Collections.newList;
+import static dk.brics.tajs.util.Collections.newSet;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
 @SuppressWarnings("static-method")
 public class TestFlowgraphBuilder {
 
@@ -2484,6 +2504,33 @@ public class TestFlowgraphBuilder {
                 "");
     }
 
+    @Test
+    public void exceptionsFromOneBlock() {
+        // several nodes of one block may throw to the same handler
+        Misc.init();
+        Misc.runSource("",
+                "function f() { throw 'thrown'; }",
+                "var a = Math.random() ? {x: 1} : undefined;",
+                "var b = Math.random() ? {y: 2} : null;",
+                "var x1 = false, x2 = false, x3 = false;",
+                "try {",
+                "   x1 = true;",
+                "   a.x;",
+                "   x2 = true;",
+                "   b.y;",
+                "   x3 = true;",
+                "   f();",
+                "} catch (e) {",
+                "   TAJS_assertEquals(true, x1);",
+                "   TAJS_assert(x2, 'isMaybeAnyBool');",
+                "   TAJS_assert(x3, 'isMaybeAnyBool');",
+                "   TAJS_assert(e, 'isMaybeObject');",
+                "   TAJS_assert(e, 'isMaybeSingleStr');",
+                "   TAJS_assert(e instanceof TypeError, 'isMaybeAnyBool');",
+                "}",
+                "");
+    }
+
     @Test
     public void exceptionInCatch() {
         // should not crash
@@ -2693,6 +2740,147 @@ public class TestFlowgraphBuilder {
         );
         //Misc.checkSystemOutput();
     }
-}
 
+    @Test
+    public void parallelParsing() {
+        Misc.init();
+        String[] args = {"test/flowgraphbuilder/flowgraph_builder0000.js", "test/flowgraphbuilder/flowgraph_builder0001.js", "test/flowgraphbuilder/flowgraph_builder0002.js"};
+        String sequential = Main.init(args, null).getSolver().getFlowGraph().toString();
+        Main.reset();
+        Options.get().setParsingThreads(4);
+        String parallel = Main.init(args, null).getSolver().getFlowGraph().toString();
+        assertEquals(sequential, parallel);
+    }
 
+    @Test
+    public void flowGraphCache() throws Exception {
+        Misc.init();
+        String[] args = {"test/flowgraphbuilder/flowgraph_builder0000.js", "test/flowgraphbuilder/flowgraph_builder0001.js", "test/flowgraphbuilder/flowgraph_builder0002.js"};
+        String uncached = Main.init(args, null).getSolver().getFlowGraph().toString();
+        String cacheDirectory = Files.createTempDirectory("tajs-flowgraph-cache").toString();
+        Main.reset();
+        Options.get().setFlowGraphCacheDirectory(cacheDirectory);
+        String stored = Main.init(args, null).getSolver().getFlowGraph().toString();
+        Main.reset();
+        Options.get().setFlowGraphCacheDirectory(cacheDirectory);
+        String loaded = Main.init(args, null).getSolver().getFlowGraph().toString();
+        assertEquals(uncached, stored);
+        assertEquals(uncached, loaded);
+    }
+
+    @Test
+    public void compactFlowGraph() {
+        Misc.init();
+        String[] args = {"test/flowgraphbuilder/flowgraph_builder0000.js", "test/flowgraphbuilder/flowgraph_builder0001.js", "test/flowgraphbuilder/flowgraph_builder0002.js"};
+        FlowGraph fg = Main.init(args, null).getSolver().getFlowGraph();
+        CompactFlowGraph compact = fg.getCompactFlowGraph();
+        for (Function f : fg.getFunctions()) {
+            for (BasicBlock b : f.getBlocks()) {
+                assertTrue(compact.contains(b));
+                List<BasicBlock> successors = newList();
+                for (int i = 0; i < compact.getNumberOfSuccessors(b.getIndex()); i++) {
+                    successors.add(compact.getBlock(compact.getSuccessor(b.getIndex(), i)));
+                }
+                assertEquals(newList(b.getSuccessors()), successors);
+                for (AbstractNode n : b.getNodes()) {
+                    assertSame(n, compact.getNode(n.getIndex()));
+                    assertEquals(Opcode.of((Node) n), compact.getOpcode(n.getIndex()));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void flowGraphOptimization() {
+        Misc.init();
+        String[] args = {"test/google/richards.js"};
+        Monitoring plainMonitoring = new Monitoring();
+        Analysis plain = Main.init(args, plainMonitoring, null);
+        int plainBlocks = plain.getSolver().getFlowGraph().getNumberOfBlocks();
+        Main.run(plain);
+        Main.reset();
+        Options.get().enableTestFlowGraphBuiler();
+        Options.get().enableFlowgraphOptimization();
+        Monitoring optimizedMonitoring = new Monitoring();
+        Analysis optimized = Main.init(args, optimizedMonitoring, null);
+        assertTrue(optimized.getSolver().getFlowGraph().getNumberOfBlocks() < plainBlocks);
+        Main.run(optimized);
+        assertEquals(getMessages(plainMonitoring), getMessages(optimizedMonitoring));
+    }
+
+    @Test
+    public void flowGraphOptimization_deadConstants() {
+        Misc.init();
+        String[] src = {"function f(x) {",
+                "  var y = x;",
+                "  42;",
+                "  'unused';",
+                "  return y;",
+                "}",
+                "f(1);"};
+        int plainNodes = Misc.build(src).getNumberOfNodes();
+        Main.reset();
+        Options.get().enableTestFlowGraphBuiler();
+        Options.get().enableFlowgraphOptimization();
+        int optimizedNodes = Misc.build(src).getNumberOfNodes();
+        assertEquals(plainNodes - 2, optimizedNodes);
+    }
+
+    @Test
+    public void registerLiveness() {
+        Misc.init();
+        String[] args = {"test/google/richards.js"};
+        Monitoring plainMonitoring = new Monitoring();
+        Main.run(Main.init(args, plainMonitoring, null));
+        Main.reset();
+        Options.get().enableTestFlowGraphBuiler();
+        Options.get().enableRegisterLiveness();
+        Monitoring livenessMonitoring = new Monitoring();
+        Analysis liveness = Main.init(args, livenessMonitoring, null);
+        for (Function f : liveness.getSolver().getFlowGraph().getFunctions()) {
+            for (BasicBlock b : f.getBlocks()) {
+                int[] live = b.getLiveRegisters();
+                for (int i = 0; i < live.length; i++) {
+                    assertTrue(live[i] >= AbstractNode.FIRST_ORDINARY_REG);
+                    assertTrue(i == 0 || live[i - 1] < live[i]);
+                }
+            }
+        }
+        Main.run(liveness);
+        // the block structure is unchanged, so all messages must be the same
+        assertEquals(getAllMessages(plainMonitoring), getAllMessages(livenessMonitoring));
+    }
+
+    @Test
+    public void lazyFunctionBodies() {
+        Misc.init();
+        String[] args = {"test/google/richards.js"};
+        Monitoring eagerMonitoring = new Monitoring();
+        Main.run(Main.init(args, eagerMonitoring, null));
+        Main.reset();
+        Options.get().enableTestFlowGraphBuiler();
+        Options.get().enableLazyFunctionBodies();
+        Monitoring lazyMonitoring = new Monitoring();
+        Analysis lazy = Main.init(args, lazyMonitoring, null);
+        FlowGraph lazyFlowGraph = lazy.getSolver().getFlowGraph();
+        assertTrue(lazyFlowGraph.getFunctions().stream().anyMatch(f -> !f.isBodyTranslated()));
+        Main.run(lazy);
+        assertEquals(getMessages(eagerMonitoring), getMessages(lazyMonitoring));
+    }
+
+    private static Set<String> getMessages(Monitoring monitoring) {
+        Set<String> messages = newSet();
+        for (Message m : monitoring.getMessages()) {
+            if (!m.getMessage().equals("Unreachable code")) // reported once per block
+                messages.add(m.toString());
+        }
+        return messages;
+    }
+
+    private static Set<String> getAllMessages(Monitoring monitoring) {
+        Set<String> messages = newSet();
+        for (Message m : monitoring.getMessages())
+            messages.add(m.toString());
+        return messages;
+    }
+}
@@ -0,0 +1,285 @@
+package dk.brics.tajs.test;
+
+import dk.brics.tajs.Main;
+import dk.brics.tajs.analysis.nativeobjects.concrete.ConcreteArray;
+import dk.brics.tajs.analysis.nativeobjects.concrete.ConcreteBoolean;
+import dk.brics.tajs.analysis.nativeobjects.concrete.ConcreteNull;
+import dk.brics.tajs.analysis.nativeobjects.concrete.ConcreteNumber;
+import dk.brics.tajs.analysis.nativeobjects.concrete.ConcreteRegularExpression;
+import dk.brics.tajs.analysis.nativeobjects.concrete.ConcreteString;
+import dk.brics.tajs.analysis.nativeobjects.concrete.ConcreteUndefined;
+import dk.brics.tajs.analysis.nativeobjects.concrete.ConcreteValue;
+import dk.brics.tajs.analysis.nativeobjects.concrete.InvocationResult;
+import dk.brics.tajs.analysis.nativeobjects.concrete.JavaConcreteSemantics;
+import dk.brics.tajs.analysis.nativeobjects.concrete.NashornConcreteSemantics;
+import dk.brics.tajs.options.Options;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Tests of {@link JavaConcreteSemantics}, directly and differentially against the script engine.
+ */
+public class TestJavaConcreteSemantics {
+
+    private static final ConcreteValue UNDEFINED = new ConcreteUndefined();
+
+    @Before
+    public void before() {
+        Main.reset();
+        Options.get().enableTest();
+    }
+
+    private static ConcreteNumber num(double d) {
+        return new ConcreteNumber(d);
+    }
+
+    private static ConcreteString str(String s) {
+        return new ConcreteString(s);
+    }
+
+    private static ConcreteRegularExpression re(String source, boolean global, boolean ignoreCase, boolean multiline) {
+        return new ConcreteRegularExpression(str(source), new ConcreteBoolean(global), new ConcreteBoolean(ignoreCase), new ConcreteBoolean(multiline));
+    }
+
+    private static ConcreteRegularExpression re(String source) {
+        return re(source, false, false, false);
+    }
+
+    /**
+     * Source code of a value, where numbers are written without loss of precision.
+     */
+    private static String toSource(ConcreteValue v) {
+        if (v instanceof ConcreteNumber) {
+            return "(" + Double.toString(((ConcreteNumber) v).getNumber()) + ")";
+        }
+        return v.toSourceCode();
+    }
+
+    /**
+     * Description of a result that distinguishes NaN, -0 and the types of the values.
+     */
+    private static String describe(InvocationResult<ConcreteValue> r) {
+        if (r == null) {
+            return "declined";
+        }
+        if (r.kind != InvocationResult.Kind.VALUE) {
+            return r.kind.toString();
+        }
+        return describe(r.getValue());
+    }
+
+    private static String describe(ConcreteValue v) {
+        if (v instanceof ConcreteNumber) {
+            return "number " + Double.toString(((ConcreteNumber) v).getNumber());
+        }
+        if (v instanceof ConcreteString) {
+            return "string '" + ((ConcreteString) v).getString() + "'";
+        }
+        if (v instanceof ConcreteArray) {
+            ConcreteArray a = (ConcreteArray) v;
+            StringBuilder b = new StringBuilder("array [");
+            for (int i = 0; i < a.getLength(); i++) {
+                b.append(i > 0 ? ", " : "").append(describe(a.get(i)));
+            }
+            b.append("]");
+            a.getExtraProperties().keySet().stream().sorted().forEach(k -> b.append(" ").append(k).append(": ").append(describe(a.getExtraProperties().get(k))));
+            return b.toString();
+        }
+        return v.getClass().getSimpleName() + " " + v.toSourceCode();
+    }
+
+    private static InvocationResult<ConcreteValue> java(String functionName, ConcreteValue base, ConcreteValue... args) {
+        return JavaConcreteSemantics.apply(functionName, base, Arrays.asList(args));
+    }
+
+    private static InvocationResult<ConcreteValue> nashorn(String functionName, ConcreteValue base, ConcreteValue... args) {
+        List<String> argSources = Arrays.stream(args).map(TestJavaConcreteSemantics::toSource).collect(Collectors.toList());
+        return NashornConcreteSemantics.get().eval(String.format("%s.apply(%s, [%s]);", functionName, toSource(base), String.join(",", argSources)));
+    }
+
+    /**
+     * Checks that the call is evaluated by the Java implementation with the same result as the script engine.
+     */
+    private static void same(String functionName, ConcreteValue base, ConcreteValue... args) {
+        InvocationResult<ConcreteValue> expected = nashorn(functionName, base, args);
+        InvocationResult<ConcreteValue> actual = java(functionName, base, args);
+        String call = functionName + " " + toSource(base) + " " + Arrays.stream(args).map(TestJavaConcreteSemantics::toSource).collect(Collectors.toList());
+        assertNotNull("declined: " + call, actual);
+        assertEquals(call, describe(expected), describe(actual));
+    }
+
+    private static void declined(String functionName, ConcreteValue base, ConcreteValue... args) {
+        assertNull(java(functionName, base, args));
+    }
+
+    private static void expect(String expected, String functionName, ConcreteValue base, ConcreteValue... args) {
+        assertEquals(expected, describe(java(functionName, base, args)));
+    }
+
+    @Test
+    public void numberToString() {
+        for (double d : new double[]{0, -0.0, Double.NaN, Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY, 1, -1, 0.1, 0.1 + 0.2, 1.0 / 3,
+                123456789, 1e20, 1e21, 1.5e21, 123456789012345680000.0, 1e-6, 1.5e-6, 1e-7, 1.5e-7, 1e100, -1e-100, Double.MAX_VALUE, 4.35, 0.000001234}) {
+            same("Number.prototype.toString", num(d));
+            same("Number.prototype.toString", num(d), num(10));
+        }
+    }
+
+    @Test
+    public void numberToStringShortest() {
+        // the script engine does not produce the shortest representation for these
+        expect("string '5e-324'", "Number.prototype.toString", num(Double.MIN_VALUE));
+        expect("string '2e+23'", "Number.prototype.toString", num(2e23));
+        expect("string '0'", "Number.prototype.toString", num(-0.0));
+    }
+
+    @Test
+    public void numberToStringRadix() {
+        same("Number.prototype.toString", num(255), num(16));
+        same("Number.prototype.toString", num(-255), num(2));
+        same("Number.prototype.toString", num(35), num(36));
+        same("Number.prototype.toString", num(Double.NaN), num(2));
+        same("Number.prototype.toString", num(Double.NEGATIVE_INFINITY), num(16));
+        same("Number.prototype.toString", num(255), num(16.9));
+        expect("EXCEPTION", "Number.prototype.toString", num(1), num(1));
+        expect("EXCEPTION", "Number.prototype.toString", num(1), num(37));
+        declined("Number.prototype.toString", num(1.5), num(2));
+        declined("Number.prototype.toString", num(1e300), num(16));
+        declined("Number.prototype.toString", str("1"));
+    }
+
+    @Test
+    public void toFixed() {
+        for (double d : new double[]{0, 1.005, 1.45, 1.55, -1.5, 0.5, 2.5, 123.456, 1e20, 1e21, -1e21, Double.NaN, Double.POSITIVE_INFINITY, 0.000001}) {
+            for (int f : new int[]{0, 1, 2, 10}) {
+                same("Number.prototype.toFixed", num(d), num(f));
+            }
+        }
+        same("Number.prototype.toFixed", num(1.5));
+        expect("EXCEPTION", "Number.prototype.toFixed", num(1), num(21));
+        expect("EXCEPTION", "Number.prototype.toFixed", num(1), num(-1));
+        // the script engine deviates from the specification on these
+        expect("string '0.0'", "Number.prototype.toFixed", num(-0.0), num(1));
+        expect("string '0.10000000000000000555'", "Number.prototype.toFixed", num(0.1), num(20));
+    }
+
+    @Test
+    public void parseNumbers() {
+        for (String s : new String[]{"42", "  42abc", "-0", "08", "0x1F", "-0x1f", "", "1e3", "z", "  7", "Infinity", "+12"}) {
+            same("parseInt", UNDEFINED, str(s));
+            same("parseInt", UNDEFINED, str(s), num(36));
+            same("parseInt", UNDEFINED, str(s), num(16));
+        }
+        same("parseInt", UNDEFINED, str("11"), num(1));
+        same("parseInt", UNDEFINED, str("11"), num(37));
+        same("parseInt", UNDEFINED, num(-0.0));
+        for (String s : new String[]{"3.14abc", ".5", "-.5e-3x", "-Infinityx", "e5", "-0", "1e", "0x10", "\t\n 2", ""}) {
+            same("parseFloat", UNDEFINED, str(s));
+        }
+        expect("number -0.0", "parseInt", UNDEFINED, str("-0"));
+        expect("number -0.0", "parseFloat", UNDEFINED, str("-0"));
+    }
+
+    @Test
+    public void mathNaNAndNegativeZero() {
+        same("Math.round", UNDEFINED, num(-0.5));
+        same("Math.round", UNDEFINED, num(-0.4));
+        same("Math.round", UNDEFINED, num(2.5));
+        same("Math.round", UNDEFINED, num(-2.5));
+        same("Math.round", UNDEFINED, num(Double.NaN));
+        same("Math.ceil", UNDEFINED, num(-0.5));
+        same("Math.floor", UNDEFINED, num(-0.0));
+        same("Math.abs", UNDEFINED, num(-0.0));
+        same("Math.sqrt", UNDEFINED, num(-1));
+        same("Math.sqrt", UNDEFINED, num(-0.0));
+        same("Math.atan2", UNDEFINED, num(0), num(-0.0));
+        same("Math.atan2", UNDEFINED, num(-0.0), num(0));
+        same("Math.pow", UNDEFINED, num(Double.NaN), num(0));
+        same("Math.pow", UNDEFINED, num(1), num(Double.POSITIVE_INFINITY));
+        same("Math.pow", UNDEFINED, num(-8), num(1.0 / 3));
+        same("Math.max", UNDEFINED);
+        same("Math.min", UNDEFINED);
+        same("Math.max", UNDEFINED, num(1), num(Double.NaN), num(2));
+        same("Math.max", UNDEFINED, num(-0.0), num(0));
+        same("Math.min", UNDEFINED, num(0), num(-0.0));
+        same("Math.max", UNDEFINED, str("3"), num(2));
+        same("Math.abs", UNDEFINED, str("x"));
+        same("Math.abs", UNDEFINED);
+        expect("number -0.0", "Math.round", UNDEFINED, num(-0.4));
+        expect("number NaN", "Math.max", UNDEFINED, num(Double.NaN), num(1));
+        expect("number -0.0", "Math.min", UNDEFINED, num(0), num(-0.0));
+        declined("Math.random", UNDEFINED);
+    }
+
+    @Test
+    public void strings() {
+        ConcreteString abc = str("abc");
+        same("String.prototype.substring", abc, num(2), num(0));
+        same("String.prototype.substring", abc, num(Double.NaN), num(Double.POSITIVE_INFINITY));
+        same("String.prototype.charAt", abc, num(5));
+        same("String.prototype.charCodeAt", abc, num(5));
+        same("String.prototype.slice", abc, num(-2));
+        same("String.prototype.substr", abc, num(-2), num(1));
+        same("String.prototype.indexOf", abc, str(""), num(10));
+        same("String.prototype.lastIndexOf", str("aaa"), str("a"), num(-1));
+        same("String.prototype.concat", abc, num(-0.0), num(1e21), new ConcreteNull(), UNDEFINED, new ConcreteBoolean(true));
+        same("String.prototype.split", str("a,b,,c"), str(","));
+        same("String.prototype.split", str("ab"), str(""));
+        same("String.prototype.split", str("a,b,c"), str(","), num(2));
+        same("String.prototype.split", abc);
+        same("String.prototype.split", str(""), str(","));
+        same("String.prototype.toUpperCase", str("stra\u00dfe"));
+        same("String.prototype.replace", abc, str("b"), str("[$&$`$'$$]"));
+        same("String.prototype.replace", str("a-b-c"), re("-", true, false, false), str("+"));
+        same("String.prototype.replace", str("x1y22"), re("(\\d)(\\d)?", true, false, false), str("<$2$1$01$$$>"));
+        declined("String.prototype.replace", str("x1y22"), re("(\\d)", true, false, false), str("$2"));
+        same("String.prototype.match", abc, re("x", true, false, false));
+        same("String.prototype.match", str("a1b22"), re("\\d+", true, false, false));
+        same("String.prototype.search", abc, re("c"));
+        same("String.fromCharCode", UNDEFINED, num(65), num(65536 + 66), num(-1));
+        expect("EXCEPTION", "String.prototype.charAt", UNDEFINED, num(0));
+        expect("EXCEPTION", "String.prototype.charAt", new ConcreteNull(), num(0));
+    }
+
+    @Test
+    public void regExpTranslation() {
+        same("RegExp.prototype.exec", re("(\\d+)-(\\d+)"), str("10-20"));
+        // the script engine converts unmatched captures to null rather than undefined
+        expect("array [string 'b', ConcreteUndefined undefined, string 'b'] index: number 0.0 input: string 'b'", "RegExp.prototype.exec", re("(a)|(b)"), str("b"));
+        same("RegExp.prototype.exec", re("\\bfoo\\b"), str("a foo b"));
+        same("RegExp.prototype.exec", re("\\Bo"), str("foo"));
+        same("RegExp.prototype.exec", re("[\\b]"), str("a\bb"));
+        same("RegExp.prototype.exec", re("a.c"), str("a\nc"));
+        same("RegExp.prototype.exec", re("a.c"), str("a c"));
+        same("RegExp.prototype.exec", re("^\\s+$"), str("\u00a0\ufeff"));
+        same("RegExp.prototype.exec", re("\\S"), str(" x"));
+        same("RegExp.prototype.exec", re("a$"), str("a\n"));
+        same("RegExp.prototype.exec", re("[a&&b]"), str("&"));
+        same("RegExp.prototype.exec", re("\\x41\\u0042"), str("AB"));
+        same("RegExp.prototype.exec", re("(?:ab)+(?=c)"), str("ababc"));
+        same("RegExp.prototype.exec", re("ABC", false, true, false), str("xabc"));
+        same("RegExp.prototype.exec", re("x"), str("abc"));
+        same("RegExp.prototype.exec", re("(a)*"), str("aa"));
+        // features with Java semantics that differ from ECMAScript are declined
+        declined("RegExp.prototype.exec", re("(a)\\1"), str("aa"));
+        declined("RegExp.prototype.exec", re("(a|(b))+"), str("ba"));
+        declined("RegExp.prototype.exec", re("(?:(a)|b)+"), str("ab"));
+        declined("RegExp.prototype.exec", re("[^]"), str("a"));
+        declined("RegExp.prototype.exec", re("[]"), str("a"));
+        declined("RegExp.prototype.exec", re("(?<=a)b"), str("ab"));
+        declined("RegExp.prototype.exec", re("\\p{L}"), str("a"));
+        declined("RegExp.prototype.exec", re("^a", false, false, true), str("b\na"));
+        declined("RegExp.prototype.exec", re("\u00e6", false, true, false), str("\u00c6"));
+        declined("RegExp.prototype.exec", str("a"), str("a"));
+        declined("String.prototype.match", str("aaa"), re("a*", true, false, false));
+        declined("String.prototype.replace", str("aaa"), re("", true, false, false), str("-"));
+    }
+}
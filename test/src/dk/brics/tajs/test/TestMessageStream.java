@@ -0,0 +1,133 @@
+package dk.brics.tajs.test;
+
+import dk.brics.tajs.Main;
+import dk.brics.tajs.flowgraph.SourceLocation;
+import dk.brics.tajs.flowgraph.jsnodes.NopNode;
+import dk.brics.tajs.lattice.Value;
+import dk.brics.tajs.monitoring.MessageStream;
+import dk.brics.tajs.monitoring.TypeCollector;
+import dk.brics.tajs.options.Options;
+import dk.brics.tajs.solver.Message;
+import dk.brics.tajs.solver.Message.Severity;
+import dk.brics.tajs.solver.Message.Status;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.StringWriter;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests of {@link MessageStream}.
+ */
+public class TestMessageStream {
+
+    private StringWriter out;
+
+    private MessageStream stream;
+
+    private SourceLocation loc;
+
+    @Before
+    public void before() {
+        Main.reset();
+        Options.get().enableTest();
+        out = new StringWriter();
+        stream = new MessageStream(out, 2);
+        loc = new SourceLocation(3, 7, "test.js", null);
+    }
+
+    private String[] lines() {
+        String s = out.toString();
+        return s.isEmpty() ? new String[0] : s.split("\n");
+    }
+
+    private static String line(String status, String message) {
+        return "{\"kind\":\"message\",\"file\":\"test.js\",\"line\":3,\"column\":7,\"status\":\"" + status + "\",\"severity\":\"HIGH\",\"message\":\"" + message + "\"}";
+    }
+
+    private String written() {
+        return out.toString();
+    }
+
+    @Test
+    public void dedupAndStatusChange() {
+        NopNode n = new NopNode(loc);
+        stream.write(new Message(n, Status.MAYBE, "k", "msg", Severity.HIGH));
+        stream.write(new Message(n, Status.MAYBE, "k", "msg", Severity.HIGH));
+        assertEquals(line("maybe", "msg") + "\n", written());
+        stream.write(new Message(n, Status.CERTAIN, "k", "msg", Severity.HIGH));
+        stream.write(new Message(n, Status.CERTAIN, "k", "msg", Severity.HIGH));
+        assertEquals(line("maybe", "msg") + "\n" + line("definite", "msg") + "\n", written());
+        // another key at the same node is a different message
+        stream.write(new Message(n, Status.CERTAIN, "k2", "msg2", Severity.HIGH));
+        assertEquals(3, lines().length);
+    }
+
+    @Test
+    public void noneOnlyAfterOtherStatus() {
+        NopNode n1 = new NopNode(loc);
+        NopNode n2 = new NopNode(loc);
+        stream.write(new Message(n1, Status.NONE, "k", "msg", Severity.HIGH));
+        assertEquals("", written());
+        stream.write(new Message(n2, Status.MAYBE, "k", "msg", Severity.HIGH));
+        stream.write(new Message(n2, Status.NONE, "k", "msg", Severity.HIGH));
+        assertEquals(line("maybe", "msg") + "\n" + line("none", "msg") + "\n", written());
+    }
+
+    @Test
+    public void overflowForgetsLeastRecentlyWritten() {
+        NopNode n1 = new NopNode(loc);
+        NopNode n2 = new NopNode(loc);
+        NopNode n3 = new NopNode(loc);
+        stream.write(new Message(n1, Status.MAYBE, "k", "1", Severity.HIGH));
+        stream.write(new Message(n2, Status.MAYBE, "k", "2", Severity.HIGH));
+        stream.write(new Message(n1, Status.MAYBE, "k", "1", Severity.HIGH)); // refreshes n1, so n2 is evicted next
+        stream.write(new Message(n3, Status.MAYBE, "k", "3", Severity.HIGH));
+        assertEquals(3, lines().length);
+        stream.write(new Message(n1, Status.MAYBE, "k", "1", Severity.HIGH));
+        stream.write(new Message(n3, Status.MAYBE, "k", "3", Severity.HIGH));
+        assertEquals(3, lines().length);
+        stream.write(new Message(n2, Status.MAYBE, "k", "2", Severity.HIGH));
+        String[] lines = lines();
+        assertEquals(4, lines.length);
+        assertEquals(line("maybe", "2"), lines[3]);
+    }
+
+    @Test
+    public void jsonEscaping() {
+        stream.write(new Message(new NopNode(new SourceLocation(1, 2, "a\"b.js", null)), Status.MAYBE, "k", "q\"b\\n\nt\tc\u0001", Severity.HIGH));
+        assertEquals("{\"kind\":\"message\",\"file\":\"a\\\"b.js\",\"line\":1,\"column\":2,\"status\":\"maybe\",\"severity\":\"HIGH\",\"message\":\"q\\\"b\\\\n\\nt\\tc\\u0001\"}\n", written());
+    }
+
+    @Test
+    public void typesJoined() {
+        TypeCollector.VariableSummary s = new TypeCollector.VariableSummary("x", loc, null);
+        stream.write(s, Value.makeNum(1));
+        stream.write(s, Value.makeNum(1));
+        stream.write(s, Value.makeStr("a"));
+        stream.write(s, Value.makeNum(1));
+        String[] lines = lines();
+        assertEquals(2, lines.length);
+        assertEquals("{\"kind\":\"type\",\"file\":\"test.js\",\"line\":3,\"column\":7,\"variable\":\"x\",\"context\":\"null\",\"value\":\"1.0\"}", lines[0]);
+        assertEquals("{\"kind\":\"type\",\"file\":\"test.js\",\"line\":3,\"column\":7,\"variable\":\"x\",\"context\":\"null\",\"value\":\"1.0|\\\"a\\\"\"}", lines[1]);
+    }
+
+    @Test
+    public void flushesEveryNLines() {
+        int[] flushes = {0};
+        StringWriter counting = new StringWriter() {
+            @Override
+            public void flush() {
+                flushes[0]++;
+            }
+        };
+        MessageStream s = new MessageStream(counting, MessageStream.DEFAULT_CAPACITY);
+        for (int i = 0; i < MessageStream.FLUSH_LINES - 1; i++)
+            s.write(new Message(new NopNode(loc), Status.MAYBE, "k", "m", Severity.HIGH));
+        assertEquals(0, flushes[0]);
+        s.write(new Message(new NopNode(loc), Status.MAYBE, "k", "m", Severity.HIGH));
+        assertEquals(1, flushes[0]);
+        assertEquals(MessageStream.FLUSH_LINES, counting.toString().split("\n").length);
+    }
+}
@@ -0,0 +1,170 @@
+package dk.brics.tajs.test;
+
+import dk.brics.tajs.Main;
+import dk.brics.tajs.monitoring.CompositeMonitoring;
+import dk.brics.tajs.monitoring.DefaultAnalysisMonitoring;
+import dk.brics.tajs.monitoring.Monitoring;
+import dk.brics.tajs.monitoring.ResultCache;
+import dk.brics.tajs.options.Options;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests of {@link ResultCache}.
+ */
+public class TestResultCache {
+
+    private Path dir;
+
+    private Path cache;
+
+    @Before
+    public void before() throws IOException {
+        Main.reset();
+        Misc.init();
+        dir = Files.createTempDirectory("tajs-result-cache-test");
+        cache = dir.resolve("cache");
+    }
+
+    @After
+    public void after() throws IOException {
+        Main.reset();
+        try (Stream<Path> files = Files.walk(dir)) {
+            files.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+        }
+    }
+
+    private Path write(String name, String... lines) throws IOException {
+        Path file = dir.resolve(name);
+        Files.write(file, String.join("\n", lines).getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+
+    private String[] args(Path input, String... extra) {
+        String[] args = new String[extra.length + 3];
+        args[0] = "-result-cache";
+        args[1] = cache.toString();
+        System.arraycopy(extra, 0, args, 2, extra.length);
+        args[args.length - 1] = input.toString();
+        return args;
+    }
+
+    /**
+     * Returns the entry for the given arguments, without running the analysis.
+     */
+    private static ResultCache.Entry lookup(String[] args) {
+        Main.reset();
+        Options.parse(args);
+        ResultCache c = ResultCache.make();
+        assertNotNull(c);
+        ResultCache.Entry entry = c.lookup();
+        Main.reset();
+        return entry;
+    }
+
+    private static long countEntries(Path cache) throws IOException {
+        try (Stream<Path> files = Files.list(cache)) {
+            return files.filter(p -> p.toString().endsWith(".result")).count();
+        }
+    }
+
+    @Test
+    public void storeAndReplay() throws IOException {
+        Path input = write("a.js", "var x;", "x.p;");
+        String[] args = args(input);
+        assertNull(lookup(args));
+        Misc.run(args);
+        ResultCache.Entry entry = lookup(args);
+        assertNotNull(entry);
+        assertTrue(entry.getMessages().stream().anyMatch(m -> m.contains("TypeError")));
+        assertTrue(entry.getTypeInformation().isEmpty());
+        Main.reset();
+        Options.parse(args);
+        assertTrue(ResultCache.make().replay());
+        // other options and other inputs have other entries
+        assertNull(lookup(args(input, "-no-messages")));
+        write("a.js", "var x;", "x.q;");
+        assertNull(lookup(args));
+    }
+
+    @Test
+    public void storeOutputFiles() throws IOException {
+        Path input = write("a.js", "var x = 1;");
+        Path store = dir.resolve("results.bin");
+        String[] args = args(input, "-result-store", store.toString());
+        Misc.run(args);
+        byte[] contents = Files.readAllBytes(store);
+        ResultCache.Entry entry = lookup(args);
+        assertNotNull(entry);
+        assertEquals(1, entry.getFiles().size());
+        Files.delete(store);
+        Options.parse(args);
+        assertTrue(ResultCache.make().replay());
+        assertArrayEquals(contents, Files.readAllBytes(store));
+    }
+
+    @Test
+    public void dependencyInvalidation() throws IOException {
+        write("b.js", "var y = 1;");
+        Path input = write("a.html", "<html><head><script src=\"b.js\"></script></head><body></body></html>");
+        String[] args = args(input);
+        Misc.run(args);
+        assertNotNull(lookup(args));
+        // the key only depends on the HTML file, so a change of the script is detected by the dependencies of the entry
+        write("b.js", "var y = 2;");
+        assertNull(lookup(args));
+    }
+
+    @Test
+    public void incompleteResultNotStored() throws IOException {
+        Path input = write("a.js", "var x = 0;", "while (x < 10) x++;");
+        String[] args = args(input);
+        // the solver terminates after a few iterations, as if requested via JMX
+        Misc.run(args, CompositeMonitoring.buildFromList(new Monitoring(), new DefaultAnalysisMonitoring() {
+            private int iterations;
+
+            @Override
+            public boolean allowNextIteration() {
+                return ++iterations < 3;
+            }
+        }));
+        assertNull(lookup(args));
+        Misc.run(args);
+        assertNotNull(lookup(args));
+    }
+
+    @Test
+    public void evictLeastRecentlyUsed() throws IOException {
+        Files.createDirectories(cache);
+        Path older = cache.resolve("older.result");
+        Path newer = cache.resolve("newer.result");
+        Files.write(older, new byte[800 * 1024]);
+        Files.write(newer, new byte[300 * 1024]);
+        long now = System.currentTimeMillis();
+        Files.setLastModifiedTime(older, FileTime.fromMillis(now - 20000));
+        Files.setLastModifiedTime(newer, FileTime.fromMillis(now - 10000));
+        Path input = write("a.js", "var x = 1;");
+        String[] args = args(input, "-result-cache-size", "1");
+        Misc.run(args);
+        assertFalse(Files.exists(older));
+        assertTrue(Files.exists(newer));
+        assertNotNull(lookup(args));
+        assertEquals(2, countEntries(cache));
+    }
+}
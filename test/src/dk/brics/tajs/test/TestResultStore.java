@@ -0,0 +1,77 @@
+package dk.brics.tajs.test;
+
+import dk.brics.tajs.Main;
+import dk.brics.tajs.monitoring.ResultStore;
+import dk.brics.tajs.options.Options;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+@SuppressWarnings("static-method")
+public class TestResultStore {
+
+    @Before
+    public void before() {
+        Main.reset();
+    }
+
+    private static String getSourceFile(ResultStore store) {
+        return Arrays.stream(store.getFiles()).filter(f -> f.contains("TestResultStore")).findFirst().get();
+    }
+
+    private static int getFunction(ResultStore store, String name) {
+        for (int f = 0; f < store.getNumberOfFunctions(); f++)
+            if (name.equals(store.getFunctionName(f)))
+                return f;
+        throw new AssertionError("No function " + name);
+    }
+
+    @Test
+    public void resultStore_callees() throws IOException {
+        File file = File.createTempFile("tajs-results", ".bin");
+        file.deleteOnExit();
+        Misc.init();
+        Options.get().setResultStoreFile(file.getPath());
+        Misc.runSource("function f(x) { return x; }",
+                "function g() {}",
+                "var y = f(42);");
+        try (ResultStore store = ResultStore.open(file.toPath())) {
+            String src = getSourceFile(store);
+            int f = getFunction(store, "f");
+            int g = getFunction(store, "g");
+            assertEquals(src, store.getFunctionFile(f));
+            assertEquals(1, store.getFunctionLine(f));
+            assertTrue(store.isFunctionReachable(f));
+            assertFalse(store.isFunctionReachable(g));
+            assertArrayEquals(new int[]{f}, store.getCallees(src, 3, 9));
+            assertEquals(0, store.getCallees(src, 3, 10).length);
+            assertTrue(store.getTypes("no-such-file.js", 1, 1).isEmpty());
+        }
+    }
+
+    @Test
+    public void resultStore_types() throws IOException {
+        File file = File.createTempFile("tajs-results", ".bin");
+        file.deleteOnExit();
+        Misc.init();
+        Options.get().setResultStoreFile(file.getPath());
+        Misc.runSource("function f(x) { return x; }",
+                "var y = f(42);",
+                "var z = Math.random() ? 'a' : y;");
+        try (ResultStore store = ResultStore.open(file.toPath())) {
+            String src = getSourceFile(store);
+            assertEquals(Collections.singletonMap("y", "42.0"), store.getTypes(src, 2, 5));
+            assertEquals(Collections.singletonMap("z", "42.0|\"a\""), store.getTypes(src, 3, 5));
+            assertTrue(store.getTypes(src, 2, 6).isEmpty());
+        }
+    }
+}